@@ -0,0 +1,86 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// un cierre de turno de BATCH_SIZE cargos: uno por uno contra chargeBatch, con y sin journal (un fsync por commit)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BatchChargeBenchmark.BATCH_SIZE)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchChargeBenchmark {
+    static final int BATCH_SIZE = 1_000;
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final String MERCHANT_CREDENTIAL = "galperin123";
+
+    @Param({"10", "100"})
+    public int cards;
+
+    @Param({"false", "true"})
+    public boolean journaled;
+
+    private Facade facade;
+    private ChargeJournal journal;
+    private Path directory;
+    private List<ChargeItem> settlement;
+
+    @Setup(Level.Iteration)
+    public void preload() throws IOException {
+        Map<String, GiftCard> giftCards = new HashMap<>();
+        for (int i = 0; i < cards; i++) {
+            String cardNumber = String.valueOf(i);
+            giftCards.put(cardNumber, new GiftCard(USER, cardNumber, Integer.MAX_VALUE));
+        }
+        facade = new Facade(Clock.systemUTC(), Duration.ofHours(1), Map.of(USER, PASSWORD), giftCards,
+                Map.of(MERCHANT_ID, new Merchant(MERCHANT_ID, MERCHANT_CREDENTIAL)));
+        String token = facade.login(USER, PASSWORD);
+        giftCards.keySet().forEach(cardNumber -> facade.claim(token, cardNumber));
+        if (journaled) {
+            directory = Files.createTempDirectory("batch");
+            journal = ChargeJournal.open(directory, FsyncPolicy.everyCommit());
+            facade.recoverFrom(journal);
+        }
+        settlement = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            settlement.add(new ChargeItem(String.valueOf(i % cards), 1, "cafe de havanna"));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeJournal() throws IOException {
+        if (!journaled) { return; }
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) { Files.delete(file); }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void oneByOne() {
+        for (ChargeItem item : settlement) {
+            facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, item.cardNumber(), item.amount(), item.description());
+        }
+    }
+
+    @Benchmark
+    public List<ChargeResult> batched() {
+        return facade.chargeBatch(MERCHANT_ID, MERCHANT_CREDENTIAL, settlement);
+    }
+}
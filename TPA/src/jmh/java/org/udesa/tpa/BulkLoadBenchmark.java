@@ -0,0 +1,109 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// precarga de tarjetas: leer el CSV a mapas y pasarselos al constructor de la Facade (que los copia) contra el
+// BulkLoader. El tiempo medido es el de carga; el pico de heap sale en peakHeapBytes (suma de los picos de cada
+// pool, asi que es una cota superior)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms24g", "-Xmx24g"})
+public class BulkLoadBenchmark {
+    private static final String[] OWNERS = {"martina", "juan", "sofia", "pedro"};
+    private static final long FIRST_CARD = 4_000_000_000_000_000L;
+
+    @Param({"1000000", "10000000", "50000000"})
+    public int cards;
+
+    private Path directory;
+    private Path usersFile;
+    private Path cardsFile;
+    private Path merchantsFile;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long peakHeapBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void writeFiles() throws IOException {
+        directory = Files.createTempDirectory("preload");
+        usersFile = Files.writeString(directory.resolve("users.csv"), String.join("\n",
+                OWNERS[0] + ",12345678", OWNERS[1] + ",12345678", OWNERS[2] + ",12345678", OWNERS[3] + ",12345678"));
+        merchantsFile = Files.writeString(directory.resolve("merchants.csv"), "mercado-pago,galperin123\n");
+        cardsFile = directory.resolve("cards.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(cardsFile)) {
+            for (int i = 0; i < cards; i++) {
+                writer.write(Long.toString(FIRST_CARD + i));
+                writer.write(',');
+                writer.write(OWNERS[i & 3]);
+                writer.write(",1000\n");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        for (Path file : new Path[] {usersFile, cardsFile, merchantsFile, directory}) { Files.deleteIfExists(file); }
+    }
+
+    @Setup(Level.Invocation)
+    public void resetPeak() {
+        System.gc();
+        System.gc();
+        heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    @Benchmark
+    public Facade constructorMaps(Footprint footprint) throws IOException {
+        Map<String, GiftCard> cardsByNumber = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(cardsFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                cardsByNumber.put(fields[0], new GiftCard(fields[1], fields[0], Integer.parseInt(fields[2])));
+            }
+        }
+        Map<String, String> users = new HashMap<>();
+        for (String line : Files.readAllLines(usersFile)) { users.put(line.split(",")[0], line.split(",")[1]); }
+        Facade facade = new Facade(Clock.systemUTC(), Duration.ofMinutes(5), users, cardsByNumber,
+                Map.of("mercado-pago", new Merchant("mercado-pago", "galperin123")));
+        footprint.peakHeapBytes = peakHeapBytes();
+        return facade;
+    }
+
+    @Benchmark
+    public Facade bulkLoader(Footprint footprint) throws IOException {
+        Facade facade = new Facade(Clock.systemUTC(), Duration.ofMinutes(5),
+                new BulkLoader().load(usersFile, cardsFile, merchantsFile));
+        footprint.peakHeapBytes = peakHeapBytes();
+        return facade;
+    }
+
+    private static long peakHeapBytes() {
+        return heapPools().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+    }
+
+    private static Stream<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream().filter(pool -> pool.getType() == MemoryType.HEAP);
+    }
+}
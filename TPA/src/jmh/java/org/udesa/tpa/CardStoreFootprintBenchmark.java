@@ -0,0 +1,67 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// heap retenido por las tarjetas precargadas: HashMap<String, GiftCard> contra CompactCardStore.
+// El tiempo medido es el de carga; el consumo sale en los contadores retainedBytes y bytesPerCard.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms16g", "-Xmx16g"})
+public class CardStoreFootprintBenchmark {
+    private static final String[] OWNERS = {"martina", "juan", "sofia", "pedro"};
+    private static final long FIRST_CARD = 4_000_000_000_000_000L;
+
+    @Param({"10000000", "50000000"})
+    public int cards;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedBytes;
+        public long bytesPerCard;
+
+        void measure(long bytes, int cards) {
+            retainedBytes = bytes;
+            bytesPerCard = bytes / cards;
+        }
+    }
+
+    @Benchmark
+    public Object giftCardMap(Footprint footprint) {
+        long before = usedHeapAfterGc();
+        Map<String, GiftCard> store = new HashMap<>(cards * 4 / 3 + 1);
+        for (int i = 0; i < cards; i++) {
+            String cardNumber = Long.toString(FIRST_CARD + i);
+            store.put(cardNumber, new GiftCard(OWNERS[i & 3], cardNumber, 1000));
+        }
+        footprint.measure(usedHeapAfterGc() - before, cards);
+        return store;
+    }
+
+    @Benchmark
+    public Object compactStore(Footprint footprint) {
+        long before = usedHeapAfterGc();
+        CompactCardStore store = new CompactCardStore(cards);
+        for (int i = 0; i < cards; i++) {
+            store.add(OWNERS[i & 3], Long.toString(FIRST_CARD + i), 1000);
+        }
+        footprint.measure(usedHeapAfterGc() - before, cards);
+        return store;
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
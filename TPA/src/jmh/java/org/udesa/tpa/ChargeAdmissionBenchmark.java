@@ -0,0 +1,83 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// cuanto le agrega el control de admision a un cobro admitido (limits = none vs admission) y cuanto cuesta un
+// rechazo. Correr con -t 1, 2, 4, ...: el balde es por merchant, asi que todos los threads pelean el mismo CAS
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChargeAdmissionBenchmark {
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final String MERCHANT_CREDENTIAL = "galperin123";
+    private static final int CARDS = 256;
+
+    @Param({"none", "admission"})
+    public String limits;
+
+    private Facade facade;
+    private ChargeAdmission exhausted;
+    private final AtomicInteger nextCard = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void preload() {
+        Map<String, GiftCard> cards = new HashMap<>();
+        for (int i = 0; i < CARDS; i++) {
+            String cardNumber = String.valueOf(i);
+            cards.put(cardNumber, new GiftCard(USER, cardNumber, Integer.MAX_VALUE));
+        }
+        facade = new Facade(Clock.systemUTC(), Duration.ofHours(1),
+                Map.of(USER, PASSWORD), cards,
+                Map.of(MERCHANT_ID, new Merchant(MERCHANT_ID, MERCHANT_CREDENTIAL)));
+        if (limits.equals("admission")) {
+            // un balde que nunca se vacia y un tope que nunca se alcanza: se mide el costo de pasar, no de esperar
+            facade.admitChargesWith(new ChargeAdmission(Clock.systemUTC(),
+                    new ChargeAdmission.RateLimit(1_000_000_000L, Integer.MAX_VALUE), Map.of(), 1 << 20));
+        }
+        String token = facade.login(USER, PASSWORD);
+        for (int i = 0; i < CARDS; i++) {
+            facade.claim(token, String.valueOf(i));
+        }
+        exhausted = new ChargeAdmission(Clock.systemUTC(), new ChargeAdmission.RateLimit(1, 1), Map.of(), 1 << 20);
+        exhausted.acquire(MERCHANT_ID, 1);
+        exhausted.release();
+    }
+
+    @State(Scope.Thread)
+    public static class Terminal {
+        String cardNumber;
+
+        @Setup
+        public void pickCard(ChargeAdmissionBenchmark benchmark) {
+            cardNumber = String.valueOf(benchmark.nextCard.getAndIncrement() % CARDS);
+        }
+    }
+
+    @Benchmark
+    public void admittedCharge(Terminal terminal) {
+        facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, terminal.cardNumber, 1, "cafe de havanna");
+    }
+
+    @Benchmark
+    public boolean rejectedCharge() {
+        try {
+            exhausted.acquire(MERCHANT_ID, 1);
+            exhausted.release();
+            return true;
+        } catch (ChargeRejectedException ex) {
+            return false;
+        }
+    }
+}
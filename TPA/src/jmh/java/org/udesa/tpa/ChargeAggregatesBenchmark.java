@@ -0,0 +1,95 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// el total de un merchant recorriendo los extractos de todas las tarjetas (lo que habia) contra leerlo de los
+// agregados, con charges cargos ya hechos; y cuanto le suma al cobro mantener los agregados
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChargeAggregatesBenchmark {
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final String MERCHANT_CREDENTIAL = "galperin123";
+    private static final int CARDS = 1_024;
+
+    @Param({"10000", "1000000"})
+    public int charges;
+
+    private Facade facade;
+    private Facade aggregatedFacade;
+    private ChargeAggregates aggregates;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void preload() {
+        facade = facadeWithCharges();
+        aggregatedFacade = facadeWithCharges();
+        aggregates = new ChargeAggregates();
+        aggregatedFacade.aggregateChargesWith(aggregates);
+        token = facade.login(USER, PASSWORD);
+        for (int i = 0; i < CARDS; i++) { facade.claim(token, String.valueOf(i)); }
+    }
+
+    private Facade facadeWithCharges() {
+        Map<String, GiftCard> cards = new HashMap<>();
+        for (int i = 0; i < CARDS; i++) {
+            String cardNumber = String.valueOf(i);
+            cards.put(cardNumber, new GiftCard(USER, cardNumber, Integer.MAX_VALUE));
+        }
+        Facade loaded = new Facade(Clock.systemUTC(), Duration.ofHours(1), Map.of(USER, PASSWORD), cards,
+                Map.of(MERCHANT_ID, new Merchant(MERCHANT_ID, MERCHANT_CREDENTIAL)));
+        String session = loaded.login(USER, PASSWORD);
+        cards.keySet().forEach(cardNumber -> loaded.claim(session, cardNumber));
+        for (int i = 0; i < charges; i++) {
+            loaded.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, String.valueOf(i % CARDS), 1, "cafe de havanna");
+        }
+        return loaded;
+    }
+
+    @Benchmark
+    public long merchantTotalByScanning() {
+        long total = 0;
+        for (int i = 0; i < CARDS; i++) {
+            List<Charge> statement = facade.chargesOf(token, String.valueOf(i));
+            for (Charge charge : statement) {
+                if (charge.merchantId().equals(MERCHANT_ID)) { total += charge.amount(); }
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long merchantTotalFromAggregates() {
+        return aggregates.merchantTotals(MERCHANT_ID).amount();
+    }
+
+    @Benchmark
+    public List<ChargeAggregates.Bucket> lastDayByHour() {
+        Instant now = Instant.now();
+        return aggregates.merchantBuckets(MERCHANT_ID, ChargeAggregates.Granularity.HOUR, now.minus(Duration.ofDays(1)), now);
+    }
+
+    @Benchmark
+    public void chargeWithoutAggregates() {
+        facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, String.valueOf(ThreadLocalRandom.current().nextInt(CARDS)), 1, "cafe de havanna");
+    }
+
+    @Benchmark
+    public void chargeWithAggregates() {
+        aggregatedFacade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, String.valueOf(ThreadLocalRandom.current().nextInt(CARDS)), 1, "cafe de havanna");
+    }
+}
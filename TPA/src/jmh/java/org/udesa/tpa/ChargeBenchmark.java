@@ -0,0 +1,51 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// la latencia de charge no deberia depender de cuantas sesiones hay abiertas
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChargeBenchmark {
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final String MERCHANT_CREDENTIAL = "galperin123";
+
+    @Param({"1", "1000", "100000"})
+    public int sessions;
+
+    private Facade facade;
+    private String lastClaimedCard;
+
+    // se rearma por iteracion para que el historial de cargos no crezca sin limite
+    @Setup(Level.Iteration)
+    public void preload() {
+        Map<String, GiftCard> cards = new HashMap<>();
+        for (int i = 0; i < sessions; i++) {
+            String cardNumber = String.valueOf(i);
+            cards.put(cardNumber, new GiftCard(USER, cardNumber, Integer.MAX_VALUE));
+        }
+        facade = new Facade(Clock.systemUTC(), Duration.ofHours(1),
+                Map.of(USER, PASSWORD), cards,
+                Map.of(MERCHANT_ID, new Merchant(MERCHANT_ID, MERCHANT_CREDENTIAL)));
+        for (int i = 0; i < sessions; i++) {
+            facade.claim(facade.login(USER, PASSWORD), String.valueOf(i));
+        }
+        lastClaimedCard = String.valueOf(sessions - 1);
+    }
+
+    @Benchmark
+    public void chargeClaimedCard() {
+        facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, lastClaimedCard, 1, "cafe de havanna");
+    }
+}
@@ -0,0 +1,70 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// cobros con el feed como listener y 0, 1 o 10 suscriptores que piden todo y solo cuentan: el cobro no deberia
+// notar la diferencia
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ChargeFeedBenchmark {
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final String MERCHANT_CREDENTIAL = "galperin123";
+    private static final int CARDS = 256;
+
+    @Param({"0", "1", "10"})
+    public int subscribers;
+
+    private Facade facade;
+    private ChargeFeed feed;
+    private final LongAdder delivered = new LongAdder();
+
+    @Setup(Level.Iteration)
+    public void preload() {
+        Map<String, GiftCard> cards = new HashMap<>();
+        for (int i = 0; i < CARDS; i++) {
+            String cardNumber = String.valueOf(i);
+            cards.put(cardNumber, new GiftCard(USER, cardNumber, Integer.MAX_VALUE));
+        }
+        facade = new Facade(Clock.systemUTC(), Duration.ofHours(1), Map.of(USER, PASSWORD), cards,
+                Map.of(MERCHANT_ID, new Merchant(MERCHANT_ID, MERCHANT_CREDENTIAL)));
+        String token = facade.login(USER, PASSWORD);
+        cards.keySet().forEach(cardNumber -> facade.claim(token, cardNumber));
+        feed = new ChargeFeed(1 << 16, 256);
+        facade.addListener(feed);
+        delivered.reset();
+        for (int i = 0; i < subscribers; i++) { feed.subscribe(new CountingSubscriber(delivered)); }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeFeed() {
+        feed.close();
+    }
+
+    @Benchmark
+    public void charge() {
+        facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, String.valueOf(ThreadLocalRandom.current().nextInt(CARDS)), 1, "cafe de havanna");
+    }
+
+    private record CountingSubscriber(LongAdder delivered) implements Flow.Subscriber<ChargeFeed.Batch> {
+        @Override public void onSubscribe(Flow.Subscription subscription) { subscription.request(Long.MAX_VALUE); }
+        @Override public void onNext(ChargeFeed.Batch batch) { delivered.add(batch.charges().size()); }
+        @Override public void onError(Throwable failure) {}
+        @Override public void onComplete() {}
+    }
+}
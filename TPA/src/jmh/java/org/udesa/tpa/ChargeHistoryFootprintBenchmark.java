@@ -0,0 +1,95 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// memoria por cargo: una List<Charge> por tarjeta contra ChargeHistory sobre ChargeColumns.
+// heapBytesPerCharge y offHeapBytesPerCharge salen como contadores; gc.alloc.rate lo agrega el profiler de gc.
+// las descripciones llegan como Strings nuevos en cada cargo, igual que desde un request
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class ChargeHistoryFootprintBenchmark {
+    private static final String[] MERCHANTS = {"mercado-pago", "uala", "naranja-x", "modo"};
+    private static final String[] DESCRIPTIONS = {"Cafe", "Almuerzo", "Supermercado", "Farmacia", "Libreria"};
+    private static final Instant START = Instant.parse("2025-09-18T12:00:00Z");
+    private static final int CARDS = 100_000;
+
+    @Param({"1000000", "10000000"})
+    public int charges;
+
+    private String[] cardNumbers;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long heapBytesPerCharge;
+        public long offHeapBytesPerCharge;
+    }
+
+    @Setup(Level.Trial)
+    public void cardNumbers() {
+        cardNumbers = new String[CARDS];
+        for (int i = 0; i < CARDS; i++) { cardNumbers[i] = String.valueOf(4_000_000_000_000_000L + i); }
+    }
+
+    @Benchmark
+    public Object chargeLists(Footprint footprint) {
+        long heap = usedHeapAfterGc();
+        long direct = usedDirect();
+        Map<String, List<Charge>> chargesByCard = new HashMap<>();
+        for (int i = 0; i < charges; i++) {
+            String cardNumber = cardNumbers[i % CARDS];
+            chargesByCard.computeIfAbsent(cardNumber, k -> new ArrayList<>())
+                    .add(new Charge(cardNumber, MERCHANTS[i & 3], 1 + i % 500, new String(DESCRIPTIONS[i % 5]), START.plusMillis(i)));
+        }
+        measure(footprint, heap, direct);
+        return chargesByCard;
+    }
+
+    @Benchmark
+    public Object columnarHistories(Footprint footprint) {
+        long heap = usedHeapAfterGc();
+        long direct = usedDirect();
+        ChargeColumns columns = new ChargeColumns();
+        Map<String, ChargeHistory> chargesByCard = new HashMap<>();
+        GiftCard card = new GiftCard("martina", cardNumbers[0], 0);
+        for (int i = 0; i < charges; i++) {
+            String cardNumber = cardNumbers[i % CARDS];
+            card.addBalance(1 + i % 500);
+            chargesByCard.computeIfAbsent(cardNumber, k -> new ChargeHistory(k, columns))
+                    .replay(card, new Charge(cardNumber, MERCHANTS[i & 3], 1 + i % 500, new String(DESCRIPTIONS[i % 5]), START.plusMillis(i)));
+        }
+        measure(footprint, heap, direct);
+        return chargesByCard;
+    }
+
+    private void measure(Footprint footprint, long heapBefore, long directBefore) {
+        footprint.heapBytesPerCharge = (usedHeapAfterGc() - heapBefore) / charges;
+        footprint.offHeapBytesPerCharge = (usedDirect() - directBefore) / charges;
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+}
@@ -0,0 +1,63 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// correr con -t 1, 2, 4, ... : cada thread carga su propia tarjeta, el throughput deberia escalar con los cores
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentChargeBenchmark {
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final String MERCHANT_CREDENTIAL = "galperin123";
+    private static final int CARDS = 256;
+
+    @Param({"false", "true"})
+    public boolean sameCard;
+
+    private Facade facade;
+    private final AtomicInteger nextCard = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void preload() {
+        Map<String, GiftCard> cards = new HashMap<>();
+        for (int i = 0; i < CARDS; i++) {
+            String cardNumber = String.valueOf(i);
+            cards.put(cardNumber, new GiftCard(USER, cardNumber, Integer.MAX_VALUE));
+        }
+        facade = new Facade(Clock.systemUTC(), Duration.ofHours(1),
+                Map.of(USER, PASSWORD), cards,
+                Map.of(MERCHANT_ID, new Merchant(MERCHANT_ID, MERCHANT_CREDENTIAL)));
+        String token = facade.login(USER, PASSWORD);
+        for (int i = 0; i < CARDS; i++) {
+            facade.claim(token, String.valueOf(i));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Terminal {
+        String cardNumber;
+
+        @Setup
+        public void pickCard(ConcurrentChargeBenchmark benchmark) {
+            int card = benchmark.sameCard ? 0 : benchmark.nextCard.getAndIncrement() % CARDS;
+            cardNumber = String.valueOf(card);
+        }
+    }
+
+    @Benchmark
+    public void charge(Terminal terminal) {
+        facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, terminal.cardNumber, 1, "cafe de havanna");
+    }
+}
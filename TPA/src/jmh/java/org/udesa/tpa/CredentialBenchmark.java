@@ -0,0 +1,58 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// logins y cobros por segundo con el costo real de PBKDF2. El cobro cacheado es el camino de la Facade;
+// fullVerification repite el PBKDF2 en cada cobro, que es lo que costaria sin el cache
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dtpa.pbkdf2.iterations=210000")
+public class CredentialBenchmark {
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+    private static final String CARD = "1";
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final String MERCHANT_CREDENTIAL = "galperin123";
+
+    private Facade facade;
+    private CredentialHasher hasher;
+    private HashedCredential merchantHash;
+
+    @Setup(Level.Iteration)
+    public void preload() {
+        SessionStore sessions = new SessionStore(Clock.systemUTC(), 10_000, SessionStore.EvictionPolicy.EVICT_OLDEST);
+        facade = new Facade(Clock.systemUTC(), Duration.ofHours(1), sessions, Map.of(USER, PASSWORD),
+                Map.of(CARD, new GiftCard(USER, CARD, Integer.MAX_VALUE)),
+                Map.of(MERCHANT_ID, new Merchant(MERCHANT_ID, MERCHANT_CREDENTIAL)));
+        facade.claim(facade.login(USER, PASSWORD), CARD);
+        hasher = new CredentialHasher();
+        merchantHash = hasher.hash(MERCHANT_CREDENTIAL);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String login() {
+        return facade.login(USER, PASSWORD);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void chargeCached() {
+        facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, CARD, 1, "cafe de havanna");
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void chargeFullVerification() {
+        if (!hasher.matches(merchantHash, MERCHANT_CREDENTIAL)) { throw new IllegalStateException(); }
+        facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, CARD, 1, "cafe de havanna");
+    }
+}
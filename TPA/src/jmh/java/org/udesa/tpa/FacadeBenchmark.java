@@ -0,0 +1,150 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// camino caliente de cada operacion segun el tamaño de los datos. Los reads y los cargos van a un pool de
+// tarjetas "calientes" (la primera de cada usuario, hasta HOT_CARDS), que son las unicas con historial precargado.
+// Los *AllCores corren con un hilo por core contra el mismo Facade.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FacadeBenchmark {
+    private static final int HOT_CARDS = 1024;
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final String MERCHANT_CREDENTIAL = "galperin123";
+    private static final String DESCRIPTION = "cafe de havanna";
+
+    @Param({"1000", "100000"})
+    public int users;
+
+    @Param({"1", "4"})
+    public int cardsPerUser;
+
+    @Param({"1", "4"})
+    public int sessionsPerUser;
+
+    @Param({"0", "1000"})
+    public int chargesPerCard;
+
+    private Facade facade;
+    private String[] hotUsers;
+    private String[] hotTokens;
+    private String[] hotCards;
+
+    @Setup(Level.Iteration)
+    public void preload() {
+        Map<String, String> passwords = new HashMap<>();
+        Map<String, GiftCard> cards = new HashMap<>();
+        for (int user = 0; user < users; user++) {
+            passwords.put(username(user), password(user));
+            for (int card = 0; card < cardsPerUser; card++) {
+                String cardNumber = cardNumber(user, card);
+                cards.put(cardNumber, new GiftCard(username(user), cardNumber, Integer.MAX_VALUE));
+            }
+        }
+        // la cantidad de sesiones vivas queda fija: cada login de mas desaloja a la mas vieja
+        Clock clock = Clock.systemUTC();
+        facade = new Facade(clock, Duration.ofHours(1),
+                new SessionStore(clock, users * sessionsPerUser, SessionStore.EvictionPolicy.EVICT_OLDEST),
+                passwords, cards, Map.of(MERCHANT_ID, new Merchant(MERCHANT_ID, MERCHANT_CREDENTIAL)));
+
+        int hot = Math.min(users, HOT_CARDS);
+        hotUsers = new String[hot];
+        hotTokens = new String[hot];
+        hotCards = new String[hot];
+        for (int user = 0; user < users; user++) {
+            String token = null;
+            for (int session = 0; session < sessionsPerUser; session++) { token = facade.login(username(user), password(user)); }
+            for (int card = 0; card < cardsPerUser; card++) { facade.claim(token, cardNumber(user, card)); }
+            if (user < hot) {
+                hotUsers[user] = username(user);
+                hotTokens[user] = token;
+                hotCards[user] = cardNumber(user, 0);
+                for (int charge = 0; charge < chargesPerCard; charge++) {
+                    facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, hotCards[user], 1, DESCRIPTION);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public String login() {
+        int user = pick();
+        return facade.login(hotUsers[user], password(user));
+    }
+
+    @Benchmark
+    public List<String> loginClaimLogout() {
+        int user = pick();
+        String token = facade.login(hotUsers[user], password(user));
+        facade.claim(token, hotCards[user]);
+        List<String> mine = facade.myCards(token);
+        facade.logout(token);
+        return mine;
+    }
+
+    @Benchmark
+    public SessionStatus sessionStatus() {
+        return facade.sessionStatus(hotTokens[pick()]);
+    }
+
+    @Benchmark
+    public int balanceOf() {
+        int user = pick();
+        return facade.balanceOf(hotTokens[user], hotCards[user]);
+    }
+
+    @Benchmark
+    public List<Charge> chargesOf() {
+        int user = pick();
+        return facade.chargesOf(hotTokens[user], hotCards[user]);
+    }
+
+    @Benchmark
+    public StatementPage statementPage() {
+        int user = pick();
+        return facade.statementPage(hotTokens[user], hotCards[user], StatementQuery.latest(20));
+    }
+
+    @Benchmark
+    public void charge() {
+        facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, hotCards[pick()], 1, DESCRIPTION);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int balanceOfAllCores() {
+        return balanceOf();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void chargeAllCores() {
+        charge();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String loginAllCores() {
+        return login();
+    }
+
+    private int pick() {
+        return ThreadLocalRandom.current().nextInt(hotCards.length);
+    }
+
+    private static String username(int user) { return "user" + user; }
+    private static String password(int user) { return "pw" + user; }
+    private String cardNumber(int user, int card) { return String.valueOf((long) user * cardsPerUser + card); }
+}
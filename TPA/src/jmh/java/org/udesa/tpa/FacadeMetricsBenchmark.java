@@ -0,0 +1,68 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// la medicion de cada operacion tiene que costar menos del 1% del cobro: comparar charge (con la medicion de
+// siempre) contra chargeWithoutMetrics (la misma Facade con las metricas apagadas), y recordCharge para ver la
+// medicion sola. Correr tambien con -t 4 para ver los contadores bajo contencion
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FacadeMetricsBenchmark {
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final String MERCHANT_CREDENTIAL = "galperin123";
+    private static final String CARD_NUMBER = "1";
+
+    private Facade facade;
+    private Facade unmeasured;
+    private FacadeMetrics metrics;
+
+    @Setup(Level.Iteration)
+    public void preload() {
+        facade = newFacade();
+        unmeasured = newFacade();
+        unmeasured.measureOperationsWith(FacadeMetrics.disabled());
+        metrics = new FacadeMetrics();
+    }
+
+    private static Facade newFacade() {
+        Map<String, GiftCard> cards = new HashMap<>();
+        cards.put(CARD_NUMBER, new GiftCard(USER, CARD_NUMBER, Integer.MAX_VALUE));
+        Facade facade = new Facade(Clock.systemUTC(), Duration.ofHours(1),
+                Map.of(USER, PASSWORD), cards,
+                Map.of(MERCHANT_ID, new Merchant(MERCHANT_ID, MERCHANT_CREDENTIAL)));
+        facade.claim(facade.login(USER, PASSWORD), CARD_NUMBER);
+        return facade;
+    }
+
+    @Benchmark
+    public void charge() {
+        facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, CARD_NUMBER, 1, "cafe de havanna");
+    }
+
+    @Benchmark
+    public void chargeWithoutMetrics() {
+        unmeasured.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, CARD_NUMBER, 1, "cafe de havanna");
+    }
+
+    @Benchmark
+    public void recordCharge() {
+        metrics.succeeded(FacadeMetrics.Operation.CHARGE, metrics.start());
+    }
+
+    @Benchmark
+    public long readP99() {
+        return facade.operationMetrics().outcome(FacadeMetrics.Operation.CHARGE, FacadeMetrics.SUCCESS).p99Nanos();
+    }
+}
@@ -0,0 +1,67 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// el costo del cache de idempotencia solo: un reintento (la clave ya esta, lo que corre en el camino caliente) y
+// una clave nueva por llamada, que con generaciones chicas rota seguido. freshKey deja ver que el tamaño no crece
+// aunque pasen millones de claves por iteracion
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdempotencyBenchmark {
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final int RETRIED_KEYS = 4_096;
+    private static final IdempotencyCache.Request REQUEST = new IdempotencyCache.Request("1", 1, "cafe de havanna");
+    private static final CompletableFuture<Charge> CHARGED = CompletableFuture.completedFuture(
+            new Charge("1", MERCHANT_ID, 1, "cafe de havanna", Instant.parse("2025-09-18T12:00:00Z")));
+
+    @Param({"65536"})
+    public int keysPerSegment;
+
+    private IdempotencyCache cache;
+    private String[] retried;
+
+    @State(Scope.Thread)
+    public static class Terminal {
+        long next;
+        int retry;
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long rememberedKeys;
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() {
+        cache = new IdempotencyCache(Clock.systemUTC(), Duration.ofMinutes(10), IdempotencyCache.DEFAULT_SEGMENTS, keysPerSegment);
+        retried = new String[RETRIED_KEYS];
+        for (int i = 0; i < RETRIED_KEYS; i++) {
+            retried[i] = "retried-" + i;
+            cache.charge(MERCHANT_ID, retried[i], REQUEST, () -> CHARGED);
+        }
+    }
+
+    @Benchmark
+    public CompletableFuture<Charge> retry(Terminal terminal) {
+        String key = retried[terminal.retry++ & (RETRIED_KEYS - 1)];
+        return cache.charge(MERCHANT_ID, key, REQUEST, () -> CHARGED);
+    }
+
+    @Benchmark
+    public CompletableFuture<Charge> freshKey(Terminal terminal, Footprint footprint) {
+        CompletableFuture<Charge> charged = cache.charge(MERCHANT_ID, Thread.currentThread().threadId() + "-" + terminal.next++, REQUEST, () -> CHARGED);
+        if ((terminal.next & 1023) == 0) { footprint.rememberedKeys = cache.metrics().size(); }
+        return charged;
+    }
+}
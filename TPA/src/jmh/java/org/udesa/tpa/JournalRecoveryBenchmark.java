@@ -0,0 +1,55 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// tiempo de arranque: abrir el journal (valida crc y busca el final) y reaplicar todos los cargos
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JournalRecoveryBenchmark {
+    private static final int CARDS = 10_000;
+
+    @Param({"1000000", "10000000"})
+    public int records;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void writeJournal() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        Instant now = Instant.parse("2025-09-18T12:00:00Z");
+        try (ChargeJournal journal = ChargeJournal.open(directory, FsyncPolicy.every(Duration.ofSeconds(1)))) {
+            for (int i = 0; i < records; i++) {
+                journal.charged(new Charge(String.valueOf(i % CARDS), "mercado-pago", 1, "cafe de havanna", now.plusMillis(i)));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) { Files.delete(file); }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public long openAndReplay() throws IOException {
+        long[] total = {0};
+        try (ChargeJournal journal = ChargeJournal.open(directory, FsyncPolicy.batched())) {
+            journal.replay((sequence, charge) -> total[0] += charge.amount());
+        }
+        return total[0];
+    }
+}
@@ -0,0 +1,96 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// cobros con journal (un fsync por commit) desde varios hilos: en linea, donde cada cobro escribe el suyo con el
+// lock de la tarjeta, contra el pipeline, donde el hilo durable junta los cobros en curso en un solo commit.
+// chargeAsync deja hasta WINDOW cobros sin esperar por hilo, como un POS que confirma despues
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class PipelinedChargeBenchmark {
+    static final int WINDOW = 32;
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final String MERCHANT_CREDENTIAL = "galperin123";
+
+    @Param({"64"})
+    public int cards;
+
+    @Param({"false", "true"})
+    public boolean pipelined;
+
+    private Facade facade;
+    private ChargeJournal journal;
+    private Path directory;
+
+    @State(Scope.Thread)
+    public static class Terminal {
+        final ArrayDeque<CompletableFuture<Charge>> outstanding = new ArrayDeque<>();
+
+        @TearDown(Level.Iteration)
+        public void awaitOutstanding() {
+            while (!outstanding.isEmpty()) { outstanding.poll().join(); }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void preload() throws IOException {
+        Map<String, GiftCard> giftCards = new HashMap<>();
+        for (int i = 0; i < cards; i++) {
+            String cardNumber = String.valueOf(i);
+            giftCards.put(cardNumber, new GiftCard(USER, cardNumber, Integer.MAX_VALUE));
+        }
+        facade = new Facade(Clock.systemUTC(), Duration.ofHours(1), Map.of(USER, PASSWORD), giftCards,
+                Map.of(MERCHANT_ID, new Merchant(MERCHANT_ID, MERCHANT_CREDENTIAL)));
+        String token = facade.login(USER, PASSWORD);
+        giftCards.keySet().forEach(cardNumber -> facade.claim(token, cardNumber));
+        directory = Files.createTempDirectory("pipeline");
+        journal = ChargeJournal.open(directory, FsyncPolicy.everyCommit());
+        facade.recoverFrom(journal);
+        if (pipelined) { facade.startChargePipeline(1024, 256); }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeJournal() throws IOException {
+        facade.stopChargePipeline();
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) { Files.delete(file); }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void charge() {
+        facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, randomCard(), 1, "cafe de havanna");
+    }
+
+    @Benchmark
+    public void chargeAsync(Terminal terminal) {
+        if (terminal.outstanding.size() == WINDOW) { terminal.outstanding.poll().join(); }
+        terminal.outstanding.add(facade.chargeAsync(MERCHANT_ID, MERCHANT_CREDENTIAL, randomCard(), 1, "cafe de havanna"));
+    }
+
+    private String randomCard() {
+        return String.valueOf(ThreadLocalRandom.current().nextInt(cards));
+    }
+}
@@ -0,0 +1,67 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// la conciliacion de todas las tarjetas con pools de distinto paralelismo, para ver cuanto escala con los nucleos.
+// Una de cada CHARGED_EVERY tarjetas tiene CHARGES_PER_CARD cargos; el resto se concilia sin historial
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms16g", "-Xmx16g"})
+public class ReconciliationBenchmark {
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final String MERCHANT_CREDENTIAL = "galperin123";
+    private static final long FIRST_CARD = 4_000_000_000_000_000L;
+    private static final int CHARGED_EVERY = 4;
+    private static final int CHARGES_PER_CARD = 8;
+
+    @Param({"1000000", "10000000"})
+    public int cards;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private Facade facade;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void preload() {
+        Map<String, GiftCard> giftCards = new HashMap<>();
+        for (int i = 0; i < cards; i++) {
+            String cardNumber = Long.toString(FIRST_CARD + i);
+            giftCards.put(cardNumber, new GiftCard(USER, cardNumber, 1_000_000));
+        }
+        facade = new Facade(Clock.systemUTC(), Duration.ofHours(1), Map.of(USER, PASSWORD), giftCards,
+                Map.of(MERCHANT_ID, new Merchant(MERCHANT_ID, MERCHANT_CREDENTIAL)));
+        String token = facade.login(USER, PASSWORD);
+        for (int i = 0; i < cards; i += CHARGED_EVERY) {
+            String cardNumber = Long.toString(FIRST_CARD + i);
+            facade.claim(token, cardNumber);
+            for (int j = 0; j < CHARGES_PER_CARD; j++) {
+                facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, cardNumber, 1, "cafe de havanna");
+            }
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Reconciliation.Report reconcile() {
+        return facade.reconcile(pool, Reconciliation.DEFAULT_MAX_MISMATCHES);
+    }
+}
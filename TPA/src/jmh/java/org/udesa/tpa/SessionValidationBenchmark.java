@@ -0,0 +1,40 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// con -prof gc, gc.alloc.rate.norm tiene que dar ~0 B/op para los tres tipos de token
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionValidationBenchmark {
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+
+    @Param({"ACTIVE", "EXPIRED", "UNKNOWN"})
+    public SessionStatus replayed;
+
+    private Facade facade;
+    private String token;
+
+    @Setup
+    public void login() {
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        facade = new Facade(clock, Duration.ofMinutes(5), Map.of(USER, PASSWORD), Map.of(), Map.of());
+        String issued = facade.login(USER, PASSWORD);
+        token = replayed == SessionStatus.UNKNOWN ? "stale-token" : issued;
+        if (replayed == SessionStatus.EXPIRED) { clock.plus(Duration.ofHours(1)); }
+    }
+
+    @Benchmark
+    public SessionStatus sessionStatus() {
+        return facade.sessionStatus(token);
+    }
+}
@@ -0,0 +1,70 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// throughput de charge al pasar de 1 a N shards con 16 hilos cobrando tarjetas distintas. Cada cobro es un
+// viaje de ida y vuelta a la cola del shard, asi que con un solo shard el limite es ese hilo; deberia escalar
+// hasta la cantidad de cores. Comparar con ConcurrentChargeBenchmark (la Facade sin shards) con -t 16
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class ShardedChargeBenchmark {
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+    private static final String MERCHANT_ID = "mercado-pago";
+    private static final String MERCHANT_CREDENTIAL = "galperin123";
+    private static final int CARDS = 1024;
+
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    private ShardedFacade facade;
+    private final AtomicInteger nextCard = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void preload() {
+        Map<String, GiftCard> cards = new HashMap<>();
+        for (int i = 0; i < CARDS; i++) {
+            String cardNumber = String.valueOf(i);
+            cards.put(cardNumber, new GiftCard(USER, cardNumber, Integer.MAX_VALUE));
+        }
+        facade = new ShardedFacade(Clock.systemUTC(), Duration.ofHours(1), shards,
+                Map.of(USER, PASSWORD), cards,
+                Map.of(MERCHANT_ID, new Merchant(MERCHANT_ID, MERCHANT_CREDENTIAL)));
+        String token = facade.login(USER, PASSWORD);
+        for (int i = 0; i < CARDS; i++) {
+            facade.claim(token, String.valueOf(i));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        facade.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Terminal {
+        String cardNumber;
+
+        @Setup
+        public void pickCard(ShardedChargeBenchmark benchmark) {
+            cardNumber = String.valueOf(benchmark.nextCard.getAndIncrement() % CARDS);
+        }
+    }
+
+    @Benchmark
+    public void charge(Terminal terminal) {
+        facade.charge(MERCHANT_ID, MERCHANT_CREDENTIAL, terminal.cardNumber, 1, "cafe de havanna");
+    }
+}
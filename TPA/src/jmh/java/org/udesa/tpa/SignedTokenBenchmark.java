@@ -0,0 +1,50 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// validaciones por segundo de un token firmado (HMAC, sin estado) contra la busqueda en la tabla de sesiones
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignedTokenBenchmark {
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+    private static final byte[] KEY = "clave-de-firma-compartida-32-bytes".getBytes();
+
+    private Facade stateful;
+    private Facade signed;
+    private String sessionToken;
+    private String signedToken;
+
+    @Setup
+    public void login() {
+        stateful = new Facade(Clock.systemUTC(), Duration.ofHours(1), Map.of(USER, PASSWORD), Map.of(), Map.of());
+        signed = new Facade(Clock.systemUTC(), Duration.ofHours(1), new SessionSigner(KEY), Map.of(USER, PASSWORD), Map.of(), Map.of());
+        sessionToken = stateful.login(USER, PASSWORD);
+        signedToken = signed.login(USER, PASSWORD);
+    }
+
+    @Benchmark
+    public SessionStatus sessionTable() {
+        return stateful.sessionStatus(sessionToken);
+    }
+
+    @Benchmark
+    public SessionStatus signedToken() {
+        return signed.sessionStatus(signedToken);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public SessionStatus signedTokenAllCores() {
+        return signed.sessionStatus(signedToken);
+    }
+}
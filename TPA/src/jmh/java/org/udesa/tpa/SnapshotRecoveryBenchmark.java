@@ -0,0 +1,68 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// arranque de un Facade: snapshot compactado + la cola del journal contra reaplicar el journal entero
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SnapshotRecoveryBenchmark {
+    private static final int CARDS = 10_000;
+    private static final String USER = "martina";
+
+    @Param({"1000000"})
+    public int records;
+
+    @Param({"false", "true"})
+    public boolean compacted;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void writeJournal() throws IOException {
+        directory = Files.createTempDirectory("recovery");
+        Instant now = Instant.parse("2025-09-18T12:00:00Z");
+        try (ChargeJournal journal = ChargeJournal.open(directory, FsyncPolicy.every(Duration.ofSeconds(1)), 8L << 20)) {
+            for (int i = 0; i < records; i++) {
+                journal.charged(new Charge(String.valueOf(i % CARDS), "mercado-pago", 1, "cafe de havanna", now.plusMillis(i)));
+            }
+            if (compacted) { new JournalCompactor(journal, directory).compact(); }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) { Files.delete(file); }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public Facade recover() throws IOException {
+        Map<String, GiftCard> cards = new HashMap<>();
+        for (int i = 0; i < CARDS; i++) {
+            String cardNumber = String.valueOf(i);
+            cards.put(cardNumber, new GiftCard(USER, cardNumber, Integer.MAX_VALUE));
+        }
+        Facade facade = new Facade(Clock.systemUTC(), Duration.ofMinutes(5), Map.of(USER, "12345678"), cards, Map.of());
+        try (ChargeJournal journal = ChargeJournal.open(directory, FsyncPolicy.batched(), 8L << 20)) {
+            facade.recoverFrom(ChargeSnapshot.latest(directory), journal);
+        }
+        return facade;
+    }
+}
@@ -0,0 +1,59 @@
+package org.udesa.tpa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// logins/s con 1, 4, 16 y 64 hilos: el token UUID de antes contra TokenGenerator, y el login completo.
+// cada clase anidada corre los mismos metodos con otra cantidad de hilos
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class TokenGenerationBenchmark {
+    private static final String USER = "martina";
+    private static final String PASSWORD = "12345678";
+
+    private TokenGenerator tokens;
+    private Facade facade;
+
+    @Setup
+    public void setup() {
+        tokens = new TokenGenerator();
+        SessionStore sessions = new SessionStore(Clock.systemUTC(), 100_000, SessionStore.EvictionPolicy.EVICT_OLDEST);
+        facade = new Facade(Clock.systemUTC(), Duration.ofMinutes(5), sessions, Map.of(USER, PASSWORD), Map.of(), Map.of());
+    }
+
+    @Benchmark
+    public String uuidToken() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String sessionToken() {
+        return tokens.next().encode();
+    }
+
+    @Benchmark
+    public String login() {
+        return facade.login(USER, PASSWORD);
+    }
+
+    @Threads(1)
+    public static class OneThread extends TokenGenerationBenchmark {}
+
+    @Threads(4)
+    public static class FourThreads extends TokenGenerationBenchmark {}
+
+    @Threads(16)
+    public static class SixteenThreads extends TokenGenerationBenchmark {}
+
+    @Threads(64)
+    public static class SixtyFourThreads extends TokenGenerationBenchmark {}
+}
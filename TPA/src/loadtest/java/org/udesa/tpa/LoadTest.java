@@ -0,0 +1,137 @@
+package org.udesa.tpa;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// carga contra un servidor local levantado con ./gradlew bootRun (usa los datos de application.properties).
+// cada worker es un hilo virtual que alterna cobros del merchant y consultas de saldo del usuario;
+// al final imprime requests/s y p50/p99/max por operacion
+public final class LoadTest {
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+    private final URI baseUrl;
+
+    private LoadTest(URI baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        URI baseUrl = URI.create(System.getProperty("loadtest.baseUrl", "http://localhost:8080"));
+        int workers = Integer.getInteger("loadtest.workers", 64);
+        Duration duration = Duration.ofSeconds(Integer.getInteger("loadtest.seconds", 30));
+        String card = System.getProperty("loadtest.card", "1001");
+        new LoadTest(baseUrl).run(workers, duration, card);
+    }
+
+    private void run(int workers, Duration duration, String card) throws Exception {
+        String token = login("martina", "12345678");
+        send(post("/cards/" + card + "/claim", "").header("Authorization", "Bearer " + token));
+        String charge = "{\"cardNumber\":\"" + card + "\",\"amount\":1,\"description\":\"load test\"}";
+
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<Latencies[]>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < workers; i++) {
+                results.add(executor.submit(() -> {
+                    Latencies charges = new Latencies();
+                    Latencies balances = new Latencies();
+                    while (System.nanoTime() < deadline) {
+                        charges.time(() -> send(post("/merchants/charges", charge)
+                                .header("X-Merchant-Id", "mercado-pago")
+                                .header("X-Merchant-Credential", "galperin123")));
+                        balances.time(() -> send(request("/cards/" + card + "/balance").GET()
+                                .header("Authorization", "Bearer " + token)));
+                    }
+                    return new Latencies[] {charges, balances};
+                }));
+            }
+        }
+        Latencies charges = new Latencies();
+        Latencies balances = new Latencies();
+        for (Future<Latencies[]> result : results) {
+            charges.addAll(result.get()[0]);
+            balances.addAll(result.get()[1]);
+        }
+        System.out.printf("%d workers, %ds%n", workers, duration.toSeconds());
+        charges.report("charge", duration);
+        balances.report("balance", duration);
+    }
+
+    private String login(String username, String password) throws Exception {
+        String body = send(post("/login", "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"));
+        Matcher matcher = TOKEN.matcher(body);
+        if (!matcher.find()) { throw new IllegalStateException("login failed: " + body); }
+        return matcher.group(1);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(baseUrl.resolve(path));
+    }
+
+    private HttpRequest.Builder post(String path, String json) {
+        return request(path).header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(json));
+    }
+
+    private String send(HttpRequest.Builder request) throws Exception {
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) { throw new IllegalStateException(response.statusCode() + " " + response.body()); }
+        return response.body();
+    }
+
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    // latencias en nanos de un worker; se juntan y se ordenan solo al final
+    private static final class Latencies {
+        private long[] nanos = new long[1024];
+        private int size;
+        private long errors;
+
+        void time(Call call) {
+            long start = System.nanoTime();
+            try {
+                call.run();
+                add(System.nanoTime() - start);
+            } catch (Exception ex) {
+                errors++;
+            }
+        }
+
+        void add(long value) {
+            if (size == nanos.length) { nanos = Arrays.copyOf(nanos, size * 2); }
+            nanos[size++] = value;
+        }
+
+        void addAll(Latencies other) {
+            for (int i = 0; i < other.size; i++) { add(other.nanos[i]); }
+            errors += other.errors;
+        }
+
+        void report(String operation, Duration duration) {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            System.out.printf("%-8s %10.0f req/s  p50 %8.3f ms  p99 %8.3f ms  max %8.3f ms  errors %d%n",
+                    operation, size / (double) duration.toSeconds(),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6, errors);
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) { return 0; }
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.udesa.tpa;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+import static org.udesa.tpa.Facade.*;
+
+// la Facade avisa todo con IllegalArgumentException y su mensaje; aca el mensaje elige el status
+@RestControllerAdvice
+public class ApiExceptionHandler {
+    public record ErrorResponse(String error) {}
+
+    private static final Map<String, HttpStatus> STATUS_BY_MESSAGE = Map.of(
+            UNKNOWN_USER, HttpStatus.NOT_FOUND,
+            UNKNOWN_CARD, HttpStatus.NOT_FOUND,
+            UNKNOWN_MERCHANT, HttpStatus.NOT_FOUND,
+            WRONG_PASSWORD, HttpStatus.UNAUTHORIZED,
+            UserSession.EXPIRED_TOKEN, HttpStatus.UNAUTHORIZED,
+            GIFT_CARD_DOES_NOT_BELONG_TO_USER, HttpStatus.FORBIDDEN,
+            CLAIMED_CARD, HttpStatus.CONFLICT,
+            IdempotencyCache.KEY_REUSED, HttpStatus.UNPROCESSABLE_ENTITY);
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorResponse> rejected(IllegalArgumentException ex) {
+        HttpStatus status = STATUS_BY_MESSAGE.getOrDefault(ex.getMessage(), HttpStatus.BAD_REQUEST);
+        return ResponseEntity.status(status).body(new ErrorResponse(ex.getMessage()));
+    }
+
+    @ExceptionHandler(ChargeRejectedException.class)
+    public ResponseEntity<ErrorResponse> rejected(ChargeRejectedException ex) {
+        HttpStatus status = ChargeAdmission.RATE_LIMITED.equals(ex.getMessage()) ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).body(new ErrorResponse(ex.getMessage()));
+    }
+}
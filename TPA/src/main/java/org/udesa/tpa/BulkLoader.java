@@ -0,0 +1,197 @@
+package org.udesa.tpa;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.stream.IntStream;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+// carga inicial desde CSV (usuario,password / numero,dueño,saldo / merchant,credencial; las lineas vacias o que
+// empiezan con # se saltean). Cada archivo se mapea en memoria por tramos de CHUNK_BYTES que se leen en paralelo:
+// una pasada cuenta las lineas para dimensionar el destino de una vez y otra lo llena directamente, sin mapas
+// intermedios. Las tarjetas van derecho a un CompactCardStore (que valida el numero al agregarlas); el parseo
+// sigue en paralelo y solo el add toma el lock del store. La Facade adopta el Preload tal cual, sin copiarlo
+public final class BulkLoader {
+    public record Preload(Map<String, HashedCredential> users, CompactCardStore cards, Map<String, Merchant> merchants) {
+        public Preload {
+            Objects.requireNonNull(users, NULL_OBJECT);
+            Objects.requireNonNull(cards, NULL_OBJECT);
+            Objects.requireNonNull(merchants, NULL_OBJECT);
+        }
+    }
+
+    public static String INVALID_LINE = "The preload file has a malformed line";
+    public static String DUPLICATED_USER = "The user is already loaded";
+    public static String DUPLICATED_MERCHANT = "The merchant is already loaded";
+
+    static final int CHUNK_BYTES = 16 << 20;
+    static final int MAX_LINE_BYTES = 4096;
+
+    private final CredentialHasher hasher;
+    private final int chunkBytes;
+
+    public BulkLoader() {
+        this(new CredentialHasher());
+    }
+
+    public BulkLoader(CredentialHasher hasher) {
+        this(hasher, CHUNK_BYTES);
+    }
+
+    BulkLoader(CredentialHasher hasher, int chunkBytes) {
+        this.hasher = Objects.requireNonNull(hasher, NULL_OBJECT);
+        this.chunkBytes = chunkBytes;
+    }
+
+    public Preload load(Path users, Path cards, Path merchants) throws IOException {
+        return new Preload(loadUsers(users), loadCards(cards), loadMerchants(merchants));
+    }
+
+    // los passwords en texto plano se hashean aca, en paralelo; los {pbkdf2}... solo se parsean
+    public Map<String, HashedCredential> loadUsers(Path file) throws IOException {
+        return load(file, 2, BulkLoader::newMap, (fields, users) -> {
+            HashedCredential credential = hasher.hashOrParse(fields[1]);
+            ensure(users.putIfAbsent(nonBlank(fields[0], NULL_OR_EMPTY_VALUE), credential) == null, DUPLICATED_USER);
+        });
+    }
+
+    // la capacidad es la cantidad de lineas, contando las que se saltean
+    public CompactCardStore loadCards(Path file) throws IOException {
+        return load(file, 3, lines -> new CompactCardStore((int) Math.max(1, Math.min(Integer.MAX_VALUE, lines))),
+                (fields, cards) -> cards.add(fields[1], fields[0], parseBalance(fields[2])));
+    }
+
+    public Map<String, Merchant> loadMerchants(Path file) throws IOException {
+        return load(file, 2, BulkLoader::newMap, (fields, merchants) -> {
+            Merchant merchant = new Merchant(fields[0], fields[1]);
+            ensure(merchants.putIfAbsent(merchant.id(), merchant) == null, DUPLICATED_MERCHANT);
+        });
+    }
+
+    private interface LineLoader<T> {
+        void load(String[] fields, T into);
+    }
+
+    private static <V> Map<String, V> newMap(long lines) {
+        return new ConcurrentHashMap<>((int) Math.min(Integer.MAX_VALUE, lines));
+    }
+
+    private <T> T load(Path file, int columns, LongFunction<T> sized, LineLoader<T> loader) throws IOException {
+        Objects.requireNonNull(file, NULL_OBJECT);
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            long size = channel.size();
+            int chunks = (int) ((size + chunkBytes - 1) / chunkBytes);
+            long lines = IntStream.range(0, chunks).parallel()
+                    .mapToLong(chunk -> new Chunk(channel, size, chunk, chunkBytes).countLines())
+                    .sum();
+            T loaded = sized.apply(lines);
+            IntStream.range(0, chunks).parallel()
+                    .forEach(chunk -> new Chunk(channel, size, chunk, chunkBytes).forEachLine(columns, fields -> loader.load(fields, loaded)));
+            return loaded;
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } catch (RuntimeException ex) {
+            throw thrownByWorker(ex);
+        }
+    }
+
+    // el fork/join relanza lo que fallo en otro hilo envuelto en una excepcion nueva del mismo tipo;
+    // se devuelve la original para no perder el mensaje
+    private static RuntimeException thrownByWorker(RuntimeException ex) {
+        return ex.getCause() instanceof RuntimeException cause && cause.getClass() == ex.getClass() ? cause : ex;
+    }
+
+    private static int parseBalance(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(INVALID_LINE);
+        }
+    }
+
+    // un tramo se queda con las lineas que empiezan dentro de el; para terminar la ultima mapea hasta
+    // MAX_LINE_BYTES de mas, y saltea la primera si el tramo anterior termino a mitad de ella
+    private static final class Chunk {
+        private final MappedByteBuffer bytes;
+        private final int start;
+        private final int end;
+        private final boolean endsAtFile;
+
+        Chunk(FileChannel channel, long size, int index, int chunkBytes) {
+            long from = (long) index * chunkBytes;
+            long mapFrom = Math.max(0, from - 1);
+            long mapTo = Math.min(size, from + chunkBytes + MAX_LINE_BYTES);
+            try {
+                this.bytes = channel.map(READ_ONLY, mapFrom, mapTo - mapFrom);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            this.start = (int) (from - mapFrom);
+            this.end = (int) (Math.min(size, from + chunkBytes) - mapFrom);
+            this.endsAtFile = mapTo == size;
+        }
+
+        long countLines() {
+            long lines = 0;
+            int position = firstLine();
+            while (position < end) {
+                lines++;
+                position = endOfLine(position) + 1;
+            }
+            return lines;
+        }
+
+        void forEachLine(int columns, Consumer<String[]> consumer) {
+            byte[] line = new byte[MAX_LINE_BYTES];
+            int position = firstLine();
+            while (position < end) {
+                int lineEnd = endOfLine(position);
+                int length = lineEnd - position;
+                if (length > 0 && bytes.get(lineEnd - 1) == '\r') { length--; }
+                ensure(length <= MAX_LINE_BYTES, INVALID_LINE);
+                bytes.get(position, line, 0, length);
+                if (length > 0 && line[0] != '#') { consumer.accept(split(line, length, columns)); }
+                position = lineEnd + 1;
+            }
+        }
+
+        private int firstLine() {
+            if (start == 0) { return 0; }
+            return bytes.get(start - 1) == '\n' ? start : endOfLine(start) + 1;
+        }
+
+        private int endOfLine(int position) {
+            int limit = bytes.limit();
+            while (position < limit && bytes.get(position) != '\n') { position++; }
+            ensure(position < limit || endsAtFile, INVALID_LINE);
+            return position;
+        }
+
+        private static String[] split(byte[] line, int length, int columns) {
+            String[] fields = new String[columns];
+            int field = 0;
+            int from = 0;
+            for (int i = 0; i <= length; i++) {
+                if (i == length || line[i] == ',') {
+                    ensure(field < columns, INVALID_LINE);
+                    fields[field++] = new String(line, from, i - from, StandardCharsets.UTF_8);
+                    from = i + 1;
+                }
+            }
+            ensure(field == columns, INVALID_LINE);
+            return fields;
+        }
+    }
+}
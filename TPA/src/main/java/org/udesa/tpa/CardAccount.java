@@ -0,0 +1,11 @@
+package org.udesa.tpa;
+
+// lo que el camino de cobro necesita de una tarjeta: una GiftCard suelta o una posicion del CompactCardStore
+public interface CardAccount {
+    String cardNumber();
+    String owner();
+    int initialBalance();
+    int balance();
+    void charge(int amount, String description);
+    void addBalance(int amount);
+}
@@ -1,5 +1,6 @@
 package org.udesa.tpa;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.regex.Pattern;
 import static org.udesa.tpa.Utils.*;
@@ -13,8 +14,10 @@ public record Charge(
         Instant timestamp
 ) {
     private static final Pattern DIGITS = Pattern.compile("\\d+");
+    public static final int MAX_DESCRIPTION_BYTES = 0xFFFF;
 
     public static String INVALID_AMOUNT = "The charging amount must be greater than 0";
+    public static String DESCRIPTION_TOO_LONG = "The charge description can not be longer than 65535 bytes";
     public static String CARD_NUMBER_MUST_BE_A_NUMERIC_STRING = "Value must have only numeric character, minus symbol is also excluded";
 
     public Charge {
@@ -24,6 +27,13 @@ public record Charge(
 
         ensure(DIGITS.matcher(cardNumber).matches(), CARD_NUMBER_MUST_BE_A_NUMERIC_STRING);
         ensure(amount > 0, INVALID_AMOUNT);
+        ensure(fitsTheJournal(description), DESCRIPTION_TOO_LONG);
         ensure(timestamp != null, NULL_OBJECT);
     }
+
+    // el journal guarda cada texto con un largo de 16 bits; hasta un tercio de eso en chars entra seguro en UTF-8
+    private static boolean fitsTheJournal(String description) {
+        return description.length() <= MAX_DESCRIPTION_BYTES / 3
+                || description.getBytes(StandardCharsets.UTF_8).length <= MAX_DESCRIPTION_BYTES;
+    }
 }
@@ -0,0 +1,115 @@
+package org.udesa.tpa;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+// control de admision de los cobros: un balde de tokens por merchant y un tope global de cobros en curso.
+// Los dos son un CAS sobre un solo numero y los rechazos lanzan siempre la misma excepcion sin stack trace,
+// asi que rechazar cuesta menos que cobrar. Solo llegan aca merchants autenticados: hay un lugar por merchant
+public final class ChargeAdmission {
+    public record RateLimit(long permitsPerSecond, int burst) {
+        public static final RateLimit UNLIMITED = new RateLimit(Long.MAX_VALUE, Integer.MAX_VALUE);
+
+        public RateLimit {
+            ensure(permitsPerSecond > 0, INVALID_RATE);
+            ensure(burst > 0, INVALID_BURST);
+        }
+
+        boolean isUnlimited() { return equals(UNLIMITED); }
+    }
+
+    public record Counters(long admitted, long rejected) {}
+
+    public static String RATE_LIMITED = "The merchant exceeded its charge rate";
+    public static String OVERLOADED = "Too many charges in progress";
+    public static String INVALID_RATE = "The charge rate must be greater than 0";
+    public static String INVALID_BURST = "The charge burst must be greater than 0";
+    public static String INVALID_CONCURRENCY = "The charge concurrency limit must be greater than 0";
+
+    private static final ChargeRejectedException RATE_LIMITED_REJECTION = new ChargeRejectedException(RATE_LIMITED);
+    private static final ChargeRejectedException OVERLOADED_REJECTION = new ChargeRejectedException(OVERLOADED);
+
+    private final Clock clock;
+    private final RateLimit defaultLimit;
+    private final Map<String, RateLimit> limitsByMerchant;
+    private final int maxConcurrentCharges;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, Gate> gates = new ConcurrentHashMap<>();
+
+    public static ChargeAdmission unlimited(Clock clock) {
+        return new ChargeAdmission(clock, RateLimit.UNLIMITED, Map.of(), Integer.MAX_VALUE);
+    }
+
+    public ChargeAdmission(Clock clock, RateLimit defaultLimit, Map<String, RateLimit> limitsByMerchant, int maxConcurrentCharges) {
+        ensure(maxConcurrentCharges > 0, INVALID_CONCURRENCY);
+        this.clock = Objects.requireNonNull(clock, NULL_OBJECT);
+        this.defaultLimit = Objects.requireNonNull(defaultLimit, NULL_OBJECT);
+        this.limitsByMerchant = new HashMap<>(Objects.requireNonNull(limitsByMerchant, NULL_OBJECT));
+        this.maxConcurrentCharges = maxConcurrentCharges;
+    }
+
+    // toma un lugar entre los cobros en curso y los permisos del merchant; quien entra tiene que llamar a release
+    public void acquire(String merchantId, int permits) {
+        Gate gate = gates.computeIfAbsent(merchantId, this::newGate);
+        if (!enter()) {
+            gate.rejected.increment();
+            throw OVERLOADED_REJECTION;
+        }
+        if (gate.bucket != null && !gate.bucket.tryAcquire(permits, clock.millis() * 1_000_000)) {
+            release();
+            gate.rejected.increment();
+            throw RATE_LIMITED_REJECTION;
+        }
+        gate.admitted.increment();
+    }
+
+    public void release() {
+        if (maxConcurrentCharges != Integer.MAX_VALUE) { inFlight.decrementAndGet(); }
+    }
+
+    public int inFlight() { return inFlight.get(); }
+
+    // cuantos permisos puede pedir el merchant de una vez: un pedido mas grande que la rafaga no entra nunca
+    public int burst(String merchantId) {
+        return gates.computeIfAbsent(merchantId, this::newGate).burst;
+    }
+
+    public Counters counters(String merchantId) {
+        Gate gate = merchantId == null ? null : gates.get(merchantId);
+        return gate == null ? new Counters(0, 0) : new Counters(gate.admitted.sum(), gate.rejected.sum());
+    }
+
+    private boolean enter() {
+        if (maxConcurrentCharges == Integer.MAX_VALUE) { return true; }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxConcurrentCharges) { return false; }
+            if (inFlight.compareAndSet(current, current + 1)) { return true; }
+        }
+    }
+
+    private Gate newGate(String merchantId) {
+        RateLimit limit = limitsByMerchant.getOrDefault(merchantId, defaultLimit);
+        return limit.isUnlimited() ? new Gate(null, Integer.MAX_VALUE) : new Gate(new TokenBucket(limit.permitsPerSecond(), limit.burst()), limit.burst());
+    }
+
+    private static final class Gate {
+        final TokenBucket bucket;
+        final int burst;
+        final LongAdder admitted = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+
+        Gate(TokenBucket bucket, int burst) {
+            this.bucket = bucket;
+            this.burst = burst;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package org.udesa.tpa;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+
+import static org.udesa.tpa.Utils.*;
+
+// totales por merchant y por tarjeta, y por hora y por dia (UTC), que se actualizan con cada cargo en vez de
+// recorrer los historiales. Cada clave guarda las ultimas hoursRetained horas y daysRetained dias contando desde el
+// tramo mas nuevo que vio; un cargo que cae antes de esa ventana (por ejemplo, uno viejo del backfill) suma al
+// total pero a ningun tramo. Los merchants son pocos y los cobran muchas tarjetas a la vez: sus contadores son
+// LongAdder para no pelear un mismo CAS. Las tarjetas son muchas y cada una se cobra de a un cargo por vez (con
+// el lock de su historial o desde el unico hilo del pipeline): cada una guarda solo los tramos en los que tuvo
+// cargos, y la que se queda sin ninguno en la ventana se olvida entera, totales incluidos, cuando empieza un dia
+// nuevo. Consultar un total es O(1) y un rango, O(tramos) del rango o de los guardados.
+// Como el feed, va despues del journal entre los listeners
+public final class ChargeAggregates implements FacadeListener {
+    public enum Granularity {
+        HOUR(TimeUnit.HOURS.toMillis(1)), DAY(TimeUnit.DAYS.toMillis(1));
+
+        private final long millis;
+
+        Granularity(long millis) { this.millis = millis; }
+    }
+
+    public record Totals(long count, long amount) {
+        public static final Totals NONE = new Totals(0, 0);
+    }
+
+    public record Bucket(Instant start, long count, long amount) {}
+
+    public static String INVALID_RETENTION = "The aggregates must retain at least one hour and one day";
+    public static String INVALID_RANGE = "The range must end after it starts";
+
+    public static final int DEFAULT_HOURS_RETAINED = 48;
+    public static final int DEFAULT_DAYS_RETAINED = 90;
+
+    private final int hoursRetained;
+    private final int daysRetained;
+    private final Map<String, Aggregate> byMerchant = new ConcurrentHashMap<>();
+    private final Map<String, CardRing> byCard = new ConcurrentHashMap<>();
+    private final AtomicLong today = new AtomicLong(Long.MIN_VALUE);
+
+    public ChargeAggregates() {
+        this(DEFAULT_HOURS_RETAINED, DEFAULT_DAYS_RETAINED);
+    }
+
+    public ChargeAggregates(int hoursRetained, int daysRetained) {
+        ensure(hoursRetained > 0 && daysRetained > 0, INVALID_RETENTION);
+        this.hoursRetained = hoursRetained;
+        this.daysRetained = daysRetained;
+    }
+
+    @Override
+    public void charged(Charge charge) {
+        long millis = charge.timestamp().toEpochMilli();
+        byMerchant.computeIfAbsent(charge.merchantId(), k -> new Aggregate()).add(charge.amount(), millis);
+        CardRing ring = byCard.computeIfAbsent(charge.cardNumber(), k -> new CardRing());
+        while (!ring.add(charge.amount(), millis)) {
+            byCard.remove(charge.cardNumber(), ring);
+            ring = byCard.computeIfAbsent(charge.cardNumber(), k -> new CardRing());
+        }
+        long day = Math.floorDiv(millis, Granularity.DAY.millis);
+        long seen = today.get();
+        if (day > seen && today.compareAndSet(seen, day)) { retireCardsBefore(day); }
+    }
+
+    // corre una vez por dia, en el cargo que lo estrena: recorre las tarjetas y suelta las que ya no tienen ningun
+    // tramo en la ventana, con sus totales
+    private void retireCardsBefore(long day) {
+        long firstHour = day * (Granularity.DAY.millis / Granularity.HOUR.millis) - hoursRetained;
+        byCard.forEach((cardNumber, ring) -> {
+            if (ring.retireBefore(firstHour, day - daysRetained + 1)) { byCard.remove(cardNumber, ring); }
+        });
+    }
+
+    public Totals merchantTotals(String merchantId) {
+        Aggregate aggregate = merchantId == null ? null : byMerchant.get(merchantId);
+        return aggregate == null ? Totals.NONE : aggregate.totals.totals();
+    }
+
+    public Totals cardTotals(String cardNumber) {
+        CardRing ring = cardNumber == null ? null : byCard.get(cardNumber);
+        return ring == null ? Totals.NONE : ring.totals();
+    }
+
+    // los tramos con cargos que empiezan en [from, to), del mas viejo al mas nuevo
+    public List<Bucket> merchantBuckets(String merchantId, Granularity granularity, Instant from, Instant to) {
+        ensure(from != null && to != null && from.isBefore(to), INVALID_RANGE);
+        Aggregate aggregate = merchantId == null ? null : byMerchant.get(merchantId);
+        return aggregate == null ? List.of() : aggregate.buckets(granularity, first(granularity, from), last(granularity, to));
+    }
+
+    public List<Bucket> cardBuckets(String cardNumber, Granularity granularity, Instant from, Instant to) {
+        ensure(from != null && to != null && from.isBefore(to), INVALID_RANGE);
+        CardRing ring = cardNumber == null ? null : byCard.get(cardNumber);
+        return ring == null ? List.of() : ring.buckets(granularity, first(granularity, from), last(granularity, to));
+    }
+
+    private static long first(Granularity granularity, Instant from) {
+        return Math.floorDiv(from.toEpochMilli(), granularity.millis);
+    }
+
+    private static long last(Granularity granularity, Instant to) {
+        return Math.floorDiv(to.toEpochMilli() - 1, granularity.millis);
+    }
+
+    private int retained(Granularity granularity) {
+        return granularity == Granularity.HOUR ? hoursRetained : daysRetained;
+    }
+
+    private static Bucket bucket(Granularity granularity, long index, long count, long amount) {
+        return new Bucket(Instant.ofEpochMilli(index * granularity.millis), count, amount);
+    }
+
+    private static final class Counter {
+        final LongAdder count = new LongAdder();
+        final LongAdder amount = new LongAdder();
+
+        void add(int charged) {
+            count.increment();
+            amount.add(charged);
+        }
+
+        Totals totals() {
+            return new Totals(count.sum(), amount.sum());
+        }
+    }
+
+    private final class Aggregate {
+        final Counter totals = new Counter();
+        final Map<Long, Counter> hours = new ConcurrentHashMap<>();
+        final Map<Long, Counter> days = new ConcurrentHashMap<>();
+        final AtomicLong newestHour = new AtomicLong(Long.MIN_VALUE);
+        final AtomicLong newestDay = new AtomicLong(Long.MIN_VALUE);
+
+        void add(int amount, long millis) {
+            totals.add(amount);
+            add(hours, newestHour, Math.floorDiv(millis, Granularity.HOUR.millis), hoursRetained, amount);
+            add(days, newestDay, Math.floorDiv(millis, Granularity.DAY.millis), daysRetained, amount);
+        }
+
+        // el tramo ya existe casi siempre: un get sin locks. Recien al crear uno se tiran los que quedaron afuera
+        private void add(Map<Long, Counter> buckets, AtomicLong newestIndex, long index, int retained, int amount) {
+            long newest = advance(newestIndex, index);
+            if (index <= newest - retained) { return; }
+            Counter counter = buckets.get(index);
+            if (counter == null) {
+                Counter created = new Counter();
+                counter = buckets.putIfAbsent(index, created);
+                if (counter == null) {
+                    counter = created;
+                    buckets.keySet().removeIf(start -> start <= newest - retained);
+                }
+            }
+            counter.add(amount);
+        }
+
+        // casi siempre el tramo es el mas nuevo: una lectura y ningun CAS
+        private static long advance(AtomicLong newestIndex, long index) {
+            long newest = newestIndex.get();
+            while (index > newest && !newestIndex.compareAndSet(newest, index)) { newest = newestIndex.get(); }
+            return Math.max(newest, index);
+        }
+
+        // se recorre lo mas corto: los tramos del rango o los que hay guardados, que son a lo sumo los retenidos
+        List<Bucket> buckets(Granularity granularity, long first, long last) {
+            Map<Long, Counter> counters = granularity == Granularity.HOUR ? hours : days;
+            long oldest = (granularity == Granularity.HOUR ? newestHour : newestDay).get() - retained(granularity);
+            List<Long> indexes = last - first < counters.size()
+                    ? LongStream.rangeClosed(first, last).boxed().toList()
+                    : counters.keySet().stream().filter(index -> index >= first && index <= last).sorted().toList();
+            List<Bucket> buckets = new ArrayList<>();
+            for (long index : indexes) {
+                Counter counter = counters.get(index);
+                if (counter != null && index > oldest) {
+                    Totals totals = counter.totals();
+                    buckets.add(bucket(granularity, index, totals.count(), totals.amount()));
+                }
+            }
+            return buckets;
+        }
+    }
+
+    // una tarjeta: sus totales y sus tramos de horas y de dias. Se cobra de a un cargo por vez, asi que su monitor
+    // nunca se disputa. Una vez retirada ya no esta en el mapa y el cargo que llegue tarde va a la que la reemplaza
+    private final class CardRing {
+        private final Buckets hours = new Buckets(hoursRetained);
+        private final Buckets days = new Buckets(daysRetained);
+        private long count;
+        private long amount;
+        private boolean retired;
+
+        synchronized boolean add(int charged, long millis) {
+            if (retired) { return false; }
+            count++;
+            amount += charged;
+            hours.add(Math.floorDiv(millis, Granularity.HOUR.millis), charged);
+            days.add(Math.floorDiv(millis, Granularity.DAY.millis), charged);
+            return true;
+        }
+
+        // se retira si todos sus tramos ya quedaron antes de la ventana que empieza en esa hora y ese dia
+        synchronized boolean retireBefore(long hour, long day) {
+            retired = hours.newest < hour && days.newest < day;
+            return retired;
+        }
+
+        synchronized Totals totals() {
+            return new Totals(count, amount);
+        }
+
+        synchronized List<Bucket> buckets(Granularity granularity, long first, long last) {
+            List<Bucket> buckets = (granularity == Granularity.HOUR ? hours : days).buckets(granularity, first, last);
+            buckets.sort(Comparator.comparing(Bucket::start));
+            return buckets;
+        }
+    }
+
+    // los tramos con cargos de una tarjeta, de a tres longs (indice, cantidad y monto) y sin orden. El arreglo nace
+    // vacio y se duplica hasta lo retenido: una tarjeta que se cobra pocas horas y pocos dias ocupa pocos tramos.
+    // Antes de agregar un tramo se tiran los que quedaron afuera de la ventana. Lo cuida el monitor de su CardRing
+    private static final class Buckets {
+        private static final long[] NONE = new long[0];
+        private static final int INITIAL_BUCKETS = 2;
+
+        private final int retained;
+        private long[] slots = NONE;
+        private int size;
+        private long newest = Long.MIN_VALUE;
+
+        Buckets(int retained) {
+            this.retained = retained;
+        }
+
+        // casi siempre el tramo es el ultimo que se agrego, asi que se busca de atras para adelante
+        void add(long index, int charged) {
+            if (size > 0 && index <= newest - retained) { return; }
+            newest = size > 0 ? Math.max(newest, index) : index;
+            for (int slot = 3 * (size - 1); slot >= 0; slot -= 3) {
+                if (slots[slot] == index) {
+                    slots[slot + 1]++;
+                    slots[slot + 2] += charged;
+                    return;
+                }
+            }
+            dropBefore(newest - retained + 1);
+            if (3 * size == slots.length) {
+                slots = Arrays.copyOf(slots, 3 * Math.min(retained, Math.max(INITIAL_BUCKETS, 2 * size)));
+            }
+            slots[3 * size] = index;
+            slots[3 * size + 1] = 1;
+            slots[3 * size + 2] = charged;
+            size++;
+        }
+
+        List<Bucket> buckets(Granularity granularity, long first, long last) {
+            List<Bucket> buckets = new ArrayList<>();
+            for (int slot = 0; slot < 3 * size; slot += 3) {
+                long index = slots[slot];
+                if (index > newest - retained && index >= first && index <= last) {
+                    buckets.add(bucket(granularity, index, slots[slot + 1], slots[slot + 2]));
+                }
+            }
+            return buckets;
+        }
+
+        private void dropBefore(long oldest) {
+            int kept = 0;
+            for (int slot = 0; slot < 3 * size; slot += 3) {
+                if (slots[slot] >= oldest) {
+                    System.arraycopy(slots, slot, slots, 3 * kept, 3);
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.udesa.tpa;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.udesa.tpa.Utils.*;
+
+// los cargos de todas las tarjetas guardados por columnas fuera del heap: monto (int), timestamp en millis (long),
+// merchant como id de diccionario (int) y descripcion (long). Son 24 bytes por cargo y ningun objeto para el GC;
+// el Charge se arma recien cuando alguien lee el extracto.
+// Las primeras maxDescriptions descripciones distintas van al diccionario y la columna guarda su id; las demas se
+// escriben como bytes en un area de textos fuera del heap y la columna guarda ~posicion, asi que descripciones
+// unicas por cargo no hacen crecer el heap. Las filas son long y se cortan con COLUMNS_FULL en vez de dar la vuelta.
+// Cada fila se escribe una sola vez; quien la publica (ChargeHistory) lo hace con una escritura volatile.
+// Las filas no salen de un contador global por cargo: cada hilo cae segun su id en una de varias franjas (como en
+// TokenGenerator) y la franja reparte de a una las filas de un bloque de ROWS_PER_BLOCK que reserva de una vez,
+// asi cargos a tarjetas distintas no pelean la misma linea de cache. Lo que queda sin usar de cada bloque (a lo
+// sumo franjas * ROWS_PER_BLOCK filas) es el precio.
+public final class ChargeColumns {
+    public static String COLUMNS_FULL = "The charge columns have reached their capacity";
+
+    static final int ROWS_PER_SEGMENT = 1 << 16;
+    static final int ROWS_PER_BLOCK = 1 << 10;
+    static final long MAX_ROWS = (long) Integer.MAX_VALUE * ROWS_PER_SEGMENT;
+    static final int MAX_DESCRIPTIONS = 1 << 16;
+    static final int TEXT_CHUNK_BYTES = 1 << 20;
+    private static final int AMOUNTS = 0;
+    private static final int MILLIS = AMOUNTS + 4 * ROWS_PER_SEGMENT;
+    private static final int MERCHANTS = MILLIS + 8 * ROWS_PER_SEGMENT;
+    private static final int DESCRIPTIONS = MERCHANTS + 4 * ROWS_PER_SEGMENT;
+    static final int SEGMENT_BYTES = DESCRIPTIONS + 8 * ROWS_PER_SEGMENT;
+
+    private final long maxRows;
+    private final AtomicLong nextRow = new AtomicLong();
+    private final LongAdder appended = new LongAdder();
+    private final Block[] blocks;
+    private final int mask;
+    private volatile ByteBuffer[] segments = new ByteBuffer[0];
+    private final Dictionary merchants = new Dictionary(Integer.MAX_VALUE);
+    private final Dictionary descriptions;
+    private final Texts texts;
+
+    public ChargeColumns() {
+        this(MAX_ROWS, MAX_DESCRIPTIONS, TEXT_CHUNK_BYTES);
+    }
+
+    ChargeColumns(long maxRows, int maxDescriptions, int textChunkBytes) {
+        this.maxRows = maxRows;
+        this.descriptions = new Dictionary(maxDescriptions);
+        this.texts = new Texts(textChunkBytes);
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        this.blocks = new Block[stripes];
+        this.mask = stripes - 1;
+        for (int i = 0; i < stripes; i++) { blocks[i] = new Block(); }
+    }
+
+    public long append(String merchantId, int amount, String description, Instant timestamp) {
+        long row = nextRow();
+        ByteBuffer segment = segment(row);
+        int offset = offsetOf(row);
+        int descriptionId = descriptions.idOf(description);
+        segment.putInt(AMOUNTS + 4 * offset, amount);
+        segment.putLong(MILLIS + 8 * offset, timestamp.toEpochMilli());
+        segment.putInt(MERCHANTS + 4 * offset, merchants.idOf(merchantId));
+        segment.putLong(DESCRIPTIONS + 8 * offset, descriptionId >= 0 ? descriptionId : ~texts.append(description));
+        appended.increment();
+        return row;
+    }
+
+    private long nextRow() {
+        long id = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        Block block = blocks[(int) (id ^ (id >>> 32)) & mask];
+        synchronized (block) {
+            if (block.next == block.end) {
+                long start = nextRow.getAndAdd(ROWS_PER_BLOCK);
+                ensure(start < maxRows, COLUMNS_FULL);
+                block.next = start;
+                block.end = Math.min(start + ROWS_PER_BLOCK, maxRows);
+            }
+            return block.next++;
+        }
+    }
+
+    public Charge charge(String cardNumber, long row) {
+        ByteBuffer segment = segments[segmentOf(row)];
+        int offset = offsetOf(row);
+        long description = segment.getLong(DESCRIPTIONS + 8 * offset);
+        return new Charge(cardNumber,
+                merchants.valueOf(segment.getInt(MERCHANTS + 4 * offset)),
+                segment.getInt(AMOUNTS + 4 * offset),
+                description >= 0 ? descriptions.valueOf((int) description) : texts.read(~description),
+                Instant.ofEpochMilli(segment.getLong(MILLIS + 8 * offset)));
+    }
+
+    public int amount(long row) {
+        return segments[segmentOf(row)].getInt(AMOUNTS + 4 * offsetOf(row));
+    }
+
+    public long millis(long row) {
+        return segments[segmentOf(row)].getLong(MILLIS + 8 * offsetOf(row));
+    }
+
+    public long rows() { return appended.sum(); }
+    public long offHeapBytes() { return (long) segments.length * SEGMENT_BYTES + texts.bytes(); }
+
+    private static int segmentOf(long row) { return (int) (row / ROWS_PER_SEGMENT); }
+    private static int offsetOf(long row) { return (int) (row & (ROWS_PER_SEGMENT - 1)); }
+
+    private ByteBuffer segment(long row) {
+        int index = segmentOf(row);
+        ByteBuffer[] current = segments;
+        return index < current.length ? current[index] : grow(index);
+    }
+
+    private synchronized ByteBuffer grow(int index) {
+        ByteBuffer[] current = segments;
+        if (index >= current.length) {
+            ByteBuffer[] grown = Arrays.copyOf(current, index + 1);
+            for (int i = current.length; i < grown.length; i++) {
+                grown[i] = ByteBuffer.allocateDirect(SEGMENT_BYTES).order(ByteOrder.nativeOrder());
+            }
+            segments = grown;
+            current = grown;
+        }
+        return current[index];
+    }
+
+    // los campos de relleno dejan next y end de cada franja en su propia linea de cache
+    @SuppressWarnings("unused")
+    private static final class Block {
+        private long p1, p2, p3, p4, p5, p6, p7;
+        long next;
+        long end;
+        private long q1, q2, q3, q4, q5, q6, q7;
+    }
+
+    // cada texto distinto se guarda una vez y los cargos solo guardan su id; lleno, idOf devuelve -1
+    private static final class Dictionary {
+        private final int max;
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[16];
+        private int size;
+
+        Dictionary(int max) {
+            this.max = max;
+        }
+
+        int idOf(String value) {
+            Integer id = ids.get(value);
+            return id != null ? id : add(value);
+        }
+
+        String valueOf(int id) { return values[id]; }
+
+        private synchronized int add(String value) {
+            Integer existing = ids.get(value);
+            if (existing != null) { return existing; }
+            if (size == max) { return -1; }
+            String[] current = values;
+            if (size == current.length) { current = Arrays.copyOf(current, size * 2); }
+            current[size] = value;
+            values = current;
+            ids.put(value, size);
+            return size++;
+        }
+    }
+
+    // textos como [largo][bytes utf-8] uno detras del otro en tramos de chunkBytes fuera del heap; cada escritura
+    // reserva su lugar con un getAndAdd, asi que no hay lock salvo para agregar tramos, y un texto puede cruzar tramos
+    private static final class Texts {
+        private final int chunkBytes;
+        private final AtomicLong end = new AtomicLong();
+        private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+        Texts(int chunkBytes) {
+            this.chunkBytes = chunkBytes;
+        }
+
+        long append(String text) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            long position = end.getAndAdd(Integer.BYTES + bytes.length);
+            copy(position, ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array(), true);
+            copy(position + Integer.BYTES, bytes, true);
+            return position;
+        }
+
+        String read(long position) {
+            byte[] length = new byte[Integer.BYTES];
+            copy(position, length, false);
+            byte[] bytes = new byte[ByteBuffer.wrap(length).getInt()];
+            copy(position + Integer.BYTES, bytes, false);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long bytes() { return (long) chunks.length * chunkBytes; }
+
+        private void copy(long position, byte[] bytes, boolean write) {
+            int done = 0;
+            while (done < bytes.length) {
+                long at = position + done;
+                ByteBuffer chunk = chunk((int) (at / chunkBytes));
+                int offset = (int) (at % chunkBytes);
+                int length = Math.min(bytes.length - done, chunkBytes - offset);
+                if (write) { chunk.put(offset, bytes, done, length); } else { chunk.get(offset, bytes, done, length); }
+                done += length;
+            }
+        }
+
+        private ByteBuffer chunk(int index) {
+            ByteBuffer[] current = chunks;
+            return index < current.length ? current[index] : grow(index);
+        }
+
+        private synchronized ByteBuffer grow(int index) {
+            ByteBuffer[] current = chunks;
+            if (index >= current.length) {
+                ByteBuffer[] grown = Arrays.copyOf(current, index + 1);
+                for (int i = current.length; i < grown.length; i++) { grown[i] = ByteBuffer.allocateDirect(chunkBytes); }
+                chunks = grown;
+                current = grown;
+            }
+            return current[index];
+        }
+    }
+}
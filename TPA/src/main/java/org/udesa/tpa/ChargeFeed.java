@@ -0,0 +1,247 @@
+package org.udesa.tpa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.udesa.tpa.Utils.*;
+
+// los cargos confirmados, en el orden en que se confirmaron, para quien se suscriba (fraude, contabilidad, push).
+// Como listener solo los agrega a un anillo de los ultimos retention cargos y avisa a un hilo despachante: el cobro
+// nunca espera a un suscriptor. Los que cobran no toman ningun lock ni esperan a otro cobro: cada uno reserva sus
+// offsets con un getAndAdd, escribe sus lugares del anillo y marca cada lugar con su offset. published lo avanzan
+// el despachante y los lectores, de a un lugar marcado por vez, asi avanza en orden y sin huecos sin que el cobro
+// (que corre con el lock de la tarjeta) gire esperando al anterior. Cada cargo tiene su offset y un suscriptor puede retomar desde cualquiera que
+// siga en el anillo; cada request(n) pide n lotes de hasta maxBatch cargos, que se entregan en un hilo virtual
+// propio, asi un suscriptor lento solo se atrasa el y, si lo pasan por mas de retention, recibe OFFSET_EXPIRED.
+// Va despues del journal entre los listeners: si el journal falla el cargo no llega al feed
+public final class ChargeFeed implements FacadeListener, Flow.Publisher<ChargeFeed.Batch>, AutoCloseable {
+    public record Batch(long firstOffset, List<Charge> charges) {
+        public long nextOffset() { return firstOffset + charges.size(); }
+    }
+
+    public static String INVALID_RETENTION = "The feed retention must be a power of 2 greater than 1";
+    public static String INVALID_BATCH_SIZE = "The feed batch size must be greater than 0";
+    public static String INVALID_OFFSET = "The feed offset is not published yet";
+    public static String OFFSET_EXPIRED = "The feed offset is no longer retained";
+    public static String INVALID_DEMAND = "The requested number of batches must be greater than 0";
+    public static String FEED_CLOSED = "The charge feed is closed";
+
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final AtomicReferenceArray<Charge> log;
+    private final AtomicLongArray written;
+    private final int mask;
+    private final int maxBatch;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ThreadFactory deliveries = Thread.ofVirtual().name("tpa-charge-feed-", 0).factory();
+    private final Thread dispatcher;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private volatile boolean idle;
+    private volatile boolean closed;
+
+    public ChargeFeed(int retention, int maxBatch) {
+        ensure(retention > 1 && Integer.bitCount(retention) == 1, INVALID_RETENTION);
+        ensure(maxBatch > 0, INVALID_BATCH_SIZE);
+        this.log = new AtomicReferenceArray<>(retention);
+        this.written = new AtomicLongArray(retention);
+        for (int i = 0; i < retention; i++) { written.set(i, -1); }
+        this.mask = retention - 1;
+        this.maxBatch = maxBatch;
+        this.dispatcher = new Thread(this::dispatch, "tpa-charge-feed");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public void charged(Charge charge) {
+        write(claimed.getAndIncrement(), charge);
+        wakeDispatcher();
+    }
+
+    @Override
+    public void charged(List<Charge> charges) {
+        if (charges.isEmpty()) { return; }
+        long first = claimed.getAndAdd(charges.size());
+        for (int i = 0; i < charges.size(); i++) { write(first + i, charges.get(i)); }
+        wakeDispatcher();
+    }
+
+    private void write(long offset, Charge charge) {
+        log.set((int) offset & mask, charge);
+        written.accumulateAndGet((int) offset & mask, offset, Math::max);
+    }
+
+    // corre published sobre los lugares ya marcados, en orden; se detiene en el primero que un cobro todavia no
+    // termino de escribir. Un lugar marcado con un offset mayor ya lo piso una vuelta posterior del anillo y quien
+    // lo lea recibe OFFSET_EXPIRED, asi que tampoco frena, aunque el anillo haya dado varias vueltas desde la ultima
+    // vez. Varios pueden avanzar a la vez: published solo crece
+    private long publish() {
+        long current = published.get();
+        long end = current;
+        while (written.get((int) end & mask) >= end) { end++; }
+        return end == current ? current : published.accumulateAndGet(end, Math::max);
+    }
+
+    private void wakeDispatcher() {
+        if (idle) { LockSupport.unpark(dispatcher); }
+    }
+
+    // el offset del proximo cargo que se confirme
+    public long nextOffset() {
+        return publish();
+    }
+
+    public long oldestOffset() {
+        return Math.max(0, publish() - mask);
+    }
+
+    // desde el proximo cargo
+    @Override
+    public void subscribe(Flow.Subscriber<? super Batch> subscriber) {
+        subscribe(subscriber, publish());
+    }
+
+    public void subscribe(Flow.Subscriber<? super Batch> subscriber, long fromOffset) {
+        ensure(subscriber != null, Facade.NULL_OBJECT);
+        ensure(fromOffset >= 0 && fromOffset <= publish(), INVALID_OFFSET);
+        Subscription subscription = new Subscription(subscriber, fromOffset);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.fail(new IllegalStateException(FEED_CLOSED));
+            return;
+        }
+        subscriptions.add(subscription);
+        subscription.signal();
+    }
+
+    // los suscriptores reciben lo que ya estaba publicado y despues onComplete
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(dispatcher);
+        try {
+            dispatcher.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch() {
+        long signalled = -1;
+        while (true) {
+            long current = publish();
+            if (current != signalled || closed) {
+                signalled = current;
+                subscriptions.forEach(Subscription::signal);
+                if (closed) { return; }
+                continue;
+            }
+            idle = true;
+            if (publish() == signalled && !closed) { LockSupport.parkNanos(this, IDLE_PARK_NANOS); }
+            idle = false;
+        }
+    }
+
+    private final class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super Batch> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean done;
+        private volatile Throwable rejected;
+        private long cursor;
+
+        Subscription(Flow.Subscriber<? super Batch> subscriber, long cursor) {
+            this.subscriber = subscriber;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public void request(long batches) {
+            if (batches <= 0) {
+                rejected = new IllegalArgumentException(INVALID_DEMAND);
+                signal();
+                return;
+            }
+            demand.getAndAccumulate(batches, (current, more) -> current + more < 0 ? Long.MAX_VALUE : current + more);
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            subscriptions.remove(this);
+        }
+
+        // una sola entrega en curso por suscriptor; las señales que llegan mientras tanto la hacen dar otra vuelta.
+        // Tambien el error por una demanda invalida sale por la entrega, nunca desde el hilo que llamo a request
+        void signal() {
+            if (done || (demand.get() == 0 && !closed && rejected == null)) { return; }
+            if (pending.getAndIncrement() == 0) { deliveries.newThread(this::drain).start(); }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                deliver();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            while (!done) {
+                if (rejected != null) {
+                    fail(rejected);
+                    return;
+                }
+                long end = published.get();
+                if (end - cursor > mask) {
+                    fail(new IllegalArgumentException(OFFSET_EXPIRED));
+                    return;
+                }
+                if (end == cursor) {
+                    if (closed) {
+                        cancel();
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                if (demand.get() == 0) { return; }
+                Batch batch = read(cursor, (int) Math.min(end - cursor, maxBatch));
+                if (batch == null) {
+                    fail(new IllegalArgumentException(OFFSET_EXPIRED));
+                    return;
+                }
+                demand.decrementAndGet();
+                cursor = batch.nextOffset();
+                try {
+                    subscriber.onNext(batch);
+                } catch (RuntimeException ex) {
+                    fail(ex);
+                    return;
+                }
+            }
+        }
+
+        // si mientras se copiaba alguien reservo el lugar del primer cargo (aunque todavia no lo publique), el lote
+        // ya no vale
+        private Batch read(long from, int count) {
+            List<Charge> charges = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) { charges.add(log.get((int) (from + i) & mask)); }
+            return claimed.get() - from > mask ? null : new Batch(from, List.copyOf(charges));
+        }
+
+        void fail(Throwable failure) {
+            cancel();
+            subscriber.onError(failure);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.udesa.tpa;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.StatementQuery.*;
+
+// cada tarjeta tiene su historial y su lock: cargos a tarjetas distintas no se bloquean entre si.
+// solo se agrega al final, asi que los lectores ven un prefijo inmutable sin tomar el lock.
+// los cargos viven en ChargeColumns; aca solo quedan los numeros de fila
+public final class ChargeHistory {
+    // lo que el lock deja ver junto: saldo, cargos en el historial y lo descontado que el pipeline todavia no agrego
+    record Snapshot(int balance, int size, long pending) {}
+
+    private final String cardNumber;
+    private final ChargeColumns columns;
+    private volatile long[] rows = new long[8];
+    private volatile int size;
+    private long pending;
+
+    public ChargeHistory(String cardNumber, ChargeColumns columns) {
+        this.cardNumber = cardNumber;
+        this.columns = columns;
+    }
+
+    // el cargo se arma antes de descontar, asi un cargo invalido nunca toca el saldo. Si el listener falla (por
+    // ejemplo, no se pudo escribir el journal) se devuelve el saldo y el cargo no queda
+    public synchronized Charge charge(CardAccount card, String merchantId, int amount, String description, Clock clock, FacadeListener listener) {
+        return chargeConfined(card, merchantId, amount, description, clock, listener);
+    }
+
+    // lo mismo sin el lock, para quien es el unico hilo que escribe este historial y su tarjeta (un shard)
+    Charge chargeConfined(CardAccount card, String merchantId, int amount, String description, Clock clock, FacadeListener listener) {
+        Charge charge = new Charge(card.cardNumber(), merchantId, amount, description, now(clock));
+        card.charge(amount, description);
+        try {
+            listener.charged(charge);
+        } catch (RuntimeException ex) {
+            card.addBalance(amount);
+            throw ex;
+        }
+        append(charge);
+        return charge;
+    }
+
+    // un lote de la misma tarjeta toma el lock una sola vez y avisa al listener con todos los cargos juntos
+    public synchronized List<ChargeResult> chargeAll(CardAccount card, String merchantId, List<ChargeItem> items, Clock clock, FacadeListener listener) {
+        ChargeResult[] results = new ChargeResult[items.size()];
+        List<Charge> charged = new ArrayList<>(items.size());
+        for (int i = 0; i < results.length; i++) {
+            results[i] = chargeItem(card, merchantId, items.get(i), clock);
+            if (results[i].succeeded()) { charged.add(results[i].charge()); }
+        }
+        try {
+            listener.charged(charged);
+        } catch (RuntimeException ex) {
+            charged.forEach(charge -> card.addBalance(charge.amount()));
+            return Arrays.stream(results).map(result -> result.succeeded() ? ChargeResult.failed(result.item(), ex.getMessage()) : result).toList();
+        }
+        charged.forEach(this::append);
+        return List.of(results);
+    }
+
+    private static ChargeResult chargeItem(CardAccount card, String merchantId, ChargeItem item, Clock clock) {
+        try {
+            Charge charge = new Charge(card.cardNumber(), merchantId, item.amount(), item.description(), now(clock));
+            card.charge(item.amount(), item.description());
+            return ChargeResult.charged(item, charge);
+        } catch (IllegalArgumentException ex) {
+            return ChargeResult.failed(item, ex.getMessage());
+        }
+    }
+
+    // las columnas guardan millis, asi que el cargo nace truncado y el extracto devuelve lo mismo que se notifico
+    private static Instant now(Clock clock) {
+        return Instant.ofEpochMilli(clock.millis());
+    }
+
+    // el pipeline descuenta y encola con el lock tomado; si la cola esta llena devuelve el saldo y da null.
+    // Hasta que record lo agregue (o refund lo devuelva) el cargo cuenta como pendiente
+    synchronized Charge reserve(CardAccount card, String merchantId, int amount, String description, Clock clock, Predicate<Charge> enqueue) {
+        Charge charge = new Charge(card.cardNumber(), merchantId, amount, description, now(clock));
+        card.charge(amount, description);
+        if (!enqueue.test(charge)) {
+            card.addBalance(amount);
+            return null;
+        }
+        pending += amount;
+        return charge;
+    }
+
+    // el cargo ya es durable; aca solo se agrega
+    synchronized void record(Charge charge) {
+        pending -= charge.amount();
+        append(charge);
+    }
+
+    synchronized void refund(CardAccount card, int amount) {
+        card.addBalance(amount);
+        pending -= amount;
+    }
+
+    synchronized Snapshot snapshot(CardAccount card) {
+        return new Snapshot(card.balance(), size, pending);
+    }
+
+    // la suma de los primeros count montos, leidos de las columnas sin armar ningun Charge
+    long amountOf(int count) {
+        long[] snapshot = rows;
+        long amount = 0;
+        for (int i = 0; i < count; i++) { amount += columns.amount(snapshot[i]); }
+        return amount;
+    }
+
+    public synchronized void replay(CardAccount card, Charge charge) {
+        card.charge(charge.amount(), charge.description());
+        append(charge);
+    }
+
+    // cargos de un snapshot cuyo monto ya se desconto de la tarjeta al recuperar
+    synchronized void restore(List<Charge> charges) {
+        charges.forEach(this::append);
+    }
+
+    private void append(Charge charge) {
+        if (size == rows.length) { rows = Arrays.copyOf(rows, size * 2); }
+        rows[size] = columns.append(charge.merchantId(), charge.amount(), charge.description(), charge.timestamp());
+        size = size + 1;
+    }
+
+    public List<Charge> charges() {
+        int count = size;
+        return slice(rows, 0, count, false);
+    }
+
+    private ChargeSlice slice(long[] snapshot, int from, int to, boolean newestFirst) {
+        return new ChargeSlice(columns, cardNumber, snapshot, from, to, newestFirst);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public StatementPage newestFirst(StatementQuery query) {
+        int count = size;
+        long[] snapshot = rows;
+        int first = firstAtOrAfter(snapshot, count, query.from());
+        int end = Math.min(Math.min(query.before(), count), firstAfter(snapshot, count, query.to()));
+        int start = Math.max(first, end - query.pageSize());
+        return start >= end
+                ? new StatementPage(List.of(), end, false)
+                : new StatementPage(slice(snapshot, start, end, true), start, start > first);
+    }
+
+    // las filas [start, end) de la mas nueva a la mas vieja, sin filtrar por fecha
+    StatementPage newestFirst(int start, int end) {
+        return new StatementPage(slice(rows, start, end, true), start, start > 0);
+    }
+
+    public StatementPage since(int cursor, int pageSize) {
+        ensure(cursor >= 0, INVALID_CURSOR);
+        ensure(pageSize > 0, INVALID_PAGE_SIZE);
+        int count = size;
+        int start = Math.min(cursor, count);
+        int end = (int) Math.min((long) start + pageSize, count);
+        return new StatementPage(slice(rows, start, end, false), end, end < count);
+    }
+
+    // los cargos se guardan en orden de timestamp, asi que el rango se resuelve con busqueda binaria
+    private int firstAtOrAfter(long[] rows, int count, Instant instant) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestampOf(rows[middle]).isBefore(instant)) { low = middle + 1; } else { high = middle; }
+        }
+        return low;
+    }
+
+    private int firstAfter(long[] rows, int count, Instant instant) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestampOf(rows[middle]).isAfter(instant)) { high = middle; } else { low = middle + 1; }
+        }
+        return low;
+    }
+
+    private Instant timestampOf(long row) {
+        return Instant.ofEpochMilli(columns.millis(row));
+    }
+}
@@ -0,0 +1,4 @@
+package org.udesa.tpa;
+
+// no se valida al crearlo: en un lote cada item invalido tiene que volver como un resultado fallido
+public record ChargeItem(String cardNumber, int amount, String description) {}
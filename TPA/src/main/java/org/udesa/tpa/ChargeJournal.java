@@ -0,0 +1,396 @@
+package org.udesa.tpa;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+// el journal es un directorio de segmentos journal-<primera secuencia>.log; solo se escribe el ultimo.
+// registro: [largo del payload][crc32 del payload][tipo][secuencia][segundos][nanos][campos del tipo].
+// Si una escritura o un fsync fallan el journal queda roto: no se sabe que parte del buffer llego al disco, asi que
+// fallan todos los commits que no eran durables todavia y los que vengan despues
+public final class ChargeJournal implements FacadeListener, Closeable {
+    public interface Replay {
+        void charged(long sequence, Charge charge);
+        default void claimed(long sequence, String username, String cardNumber, Instant at) {}
+    }
+
+    public static String TEXT_TOO_LONG = "Journal text fields can not be longer than 65535 bytes";
+    public static String INVALID_SEGMENT_SIZE = "Journal segment size must be greater than 0";
+    public static String JOURNAL_FAILED = "The charge journal failed to write and no longer accepts records";
+    public static String CORRUPT_SEGMENT = "A sealed journal segment has a corrupt record";
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+
+    private record Segment(long firstSequence, Path file) {}
+
+    private static final byte CHARGE = 1;
+    private static final byte CLAIM = 2;
+    private static final int HEADER = Integer.BYTES * 2;
+    private static final int MAX_PAYLOAD = 1 << 18;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final FsyncPolicy policy;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService flusher;
+    private FileChannel channel;
+    private long activeFirstSequence;
+    private long activeBytes;
+    private long nextSequence;
+    private volatile long durableSequence;
+    private volatile UncheckedIOException failure;
+
+    private ChargeJournal(Path directory, long segmentBytes, FsyncPolicy policy, Segment active, FileChannel channel, long end, long lastSequence) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.policy = policy;
+        this.channel = channel;
+        this.activeFirstSequence = active.firstSequence();
+        this.activeBytes = end;
+        this.nextSequence = lastSequence + 1;
+        this.durableSequence = lastSequence;
+        this.flusher = policy.kind() == FsyncPolicy.Kind.INTERVAL ? startFlusher(policy) : null;
+    }
+
+    public static ChargeJournal open(Path directory, FsyncPolicy policy) throws IOException {
+        return open(directory, policy, DEFAULT_SEGMENT_BYTES);
+    }
+
+    // un registro cortado por un crash queda al final del ultimo segmento: se descarta y se sigue escribiendo desde el ultimo registro sano
+    public static ChargeJournal open(Path directory, FsyncPolicy policy, long segmentBytes) throws IOException {
+        Objects.requireNonNull(directory, NULL_OBJECT);
+        Objects.requireNonNull(policy, NULL_OBJECT);
+        ensure(segmentBytes > 0, INVALID_SEGMENT_SIZE);
+        Files.createDirectories(directory);
+        List<Segment> segments = segments(directory);
+        Segment active = segments.isEmpty() ? segment(directory, 1) : segments.get(segments.size() - 1);
+        FileChannel channel = FileChannel.open(active.file(), CREATE, READ, WRITE);
+        long[] lastSequence = {active.firstSequence() - 1};
+        long end = read(channel, channel.size(), 0, Long.MAX_VALUE, null, sequence -> lastSequence[0] = sequence);
+        channel.truncate(end);
+        channel.position(end);
+        return new ChargeJournal(directory, segmentBytes, policy, active, channel, end, lastSequence[0]);
+    }
+
+    public void replay(Replay replay) {
+        replay(0, Long.MAX_VALUE, replay);
+    }
+
+    // reaplica solo los registros con after < secuencia <= upTo, salteando los segmentos que quedan fuera.
+    // Solo el ultimo segmento puede terminar en un registro cortado; en uno sellado eso son cargos perdidos
+    public void replay(long after, long upTo, Replay replay) {
+        Objects.requireNonNull(replay, NULL_OBJECT);
+        try {
+            List<Segment> segments = segments(directory);
+            for (int i = 0; i < segments.size(); i++) {
+                Segment segment = segments.get(i);
+                boolean endsBeforeAfter = i + 1 < segments.size() && segments.get(i + 1).firstSequence() <= after + 1;
+                if (endsBeforeAfter || segment.firstSequence() > upTo) { continue; }
+                try (FileChannel reader = FileChannel.open(segment.file(), READ)) {
+                    long end = read(reader, reader.size(), after, upTo, replay, sequence -> {});
+                    boolean sealed = i + 1 < segments.size();
+                    if (sealed && end != reader.size()) {
+                        throw new UncheckedIOException(CORRUPT_SEGMENT, new IOException(segment.file() + " at byte " + end));
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // ultima secuencia de los segmentos cerrados: esos ya no cambian y se pueden leer sin frenar a los cargos
+    public synchronized long sealedSequence() {
+        return activeFirstSequence - 1;
+    }
+
+    public synchronized int deleteSegmentsUpTo(long sequence) throws IOException {
+        List<Segment> segments = segments(directory);
+        int deleted = 0;
+        for (int i = 0; i + 1 < segments.size() && segments.get(i + 1).firstSequence() - 1 <= sequence; i++) {
+            Files.delete(segments.get(i).file());
+            deleted++;
+        }
+        return deleted;
+    }
+
+    @Override
+    public void charged(Charge charge) {
+        charged(List.of(charge));
+    }
+
+    // un lote se escribe entero con un solo fsync
+    @Override
+    public void charged(List<Charge> charges) {
+        if (charges.isEmpty()) { return; }
+        commit(appendCharges(charges));
+    }
+
+    @Override
+    public void claimed(String username, String cardNumber, Instant at) {
+        commit(appendClaim(username, cardNumber, at));
+    }
+
+    public synchronized long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    public void sync() {
+        synchronized (flushLock) {
+            flushAll();
+        }
+    }
+
+    private void flushAll() {
+        long target;
+        FileChannel active;
+        synchronized (this) {
+            drain();
+            target = nextSequence - 1;
+            active = channel;
+        }
+        force(active);
+        durableSequence = target;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) { stop(flusher); }
+        try {
+            if (failure == null) { sync(); }
+        } finally {
+            synchronized (this) { channel.close(); }
+        }
+    }
+
+    private long append(byte type, Instant at, int amount, byte[][] texts) {
+        int payload = 1 + Long.BYTES + Long.BYTES + Integer.BYTES + (type == CHARGE ? Integer.BYTES : 0);
+        for (byte[] text : texts) { payload += Short.BYTES + text.length; }
+        ensureWritable();
+        if (activeBytes > 0 && activeBytes + HEADER + payload > segmentBytes) { roll(); }
+        if (buffer.remaining() < HEADER + payload) { drain(); }
+
+        long sequence = nextSequence++;
+        activeBytes += HEADER + payload;
+        int start = buffer.position();
+        buffer.position(start + HEADER);
+        buffer.put(type).putLong(sequence).putLong(at.getEpochSecond()).putInt(at.getNano());
+        if (type == CHARGE) { buffer.putInt(amount); }
+        for (byte[] text : texts) { buffer.putShort((short) text.length).put(text); }
+        buffer.putInt(start, payload).putInt(start + Integer.BYTES, checksum(buffer, start + HEADER, payload));
+        return sequence;
+    }
+
+    private synchronized long appendClaim(String username, String cardNumber, Instant at) {
+        return forceEveryCommit(append(CLAIM, at, 0, texts(username, cardNumber)));
+    }
+
+    // todos los textos del lote se codifican y validan antes de dar la primera secuencia: un cargo invalido no
+    // puede dejar a los anteriores del mismo lote en el buffer, donde el replay los aplicaria aunque hayan fallado
+    private synchronized long appendCharges(List<Charge> charges) {
+        byte[][][] texts = new byte[charges.size()][][];
+        for (int i = 0; i < texts.length; i++) {
+            Charge charge = charges.get(i);
+            texts[i] = texts(charge.cardNumber(), charge.merchantId(), charge.description());
+        }
+        long last = 0;
+        for (int i = 0; i < texts.length; i++) {
+            Charge charge = charges.get(i);
+            last = append(CHARGE, charge.timestamp(), charge.amount(), texts[i]);
+        }
+        return forceEveryCommit(last);
+    }
+
+    private long forceEveryCommit(long sequence) {
+        if (policy.kind() == FsyncPolicy.Kind.EVERY_COMMIT) {
+            drain();
+            force(channel);
+            durableSequence = sequence;
+        }
+        return sequence;
+    }
+
+    private void roll() {
+        drain();
+        force(channel);
+        try {
+            channel.close();
+            channel = FileChannel.open(segment(directory, nextSequence).file(), CREATE_NEW, READ, WRITE);
+        } catch (IOException ex) {
+            throw failed(ex);
+        }
+        activeFirstSequence = nextSequence;
+        activeBytes = 0;
+    }
+
+    // group commit: el que entra primero hace el fsync para todos los registros que se juntaron mientras tanto.
+    // Si ese fsync falla, los que esperaban encuentran el journal roto en drain y fallan tambien
+    private void commit(long sequence) {
+        if (policy.kind() != FsyncPolicy.Kind.BATCHED) { return; }
+        synchronized (flushLock) {
+            if (durableSequence >= sequence) { return; }
+            flushAll();
+        }
+    }
+
+    private void drain() {
+        ensureWritable();
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) { channel.write(buffer); }
+        } catch (IOException ex) {
+            throw failed(ex);
+        }
+        buffer.clear();
+    }
+
+    // si el segmento se cerro en el medio es porque roll() ya le hizo fsync antes de cerrarlo
+    private void force(FileChannel segment) {
+        try {
+            segment.force(false);
+        } catch (ClosedChannelException ex) {
+            return;
+        } catch (IOException ex) {
+            throw failed(ex);
+        }
+    }
+
+    private void ensureWritable() {
+        UncheckedIOException failed = failure;
+        if (failed != null) { throw new UncheckedIOException(JOURNAL_FAILED, failed.getCause()); }
+    }
+
+    // se queda con el primer error: es el que dejo el archivo en un estado desconocido
+    private synchronized UncheckedIOException failed(IOException ex) {
+        if (failure == null) { failure = new UncheckedIOException(JOURNAL_FAILED, ex); }
+        return failure;
+    }
+
+    private ScheduledExecutorService startFlusher(FsyncPolicy policy) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "charge-journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = policy.interval().toMillis();
+        scheduler.scheduleAtFixedRate(this::sync, period, period, TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    // no se interrumpe al flusher: un FileChannel se cierra si interrumpen al hilo en medio de un fsync
+    private static void stop(ScheduledExecutorService flusher) throws IOException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+    }
+
+    private int checksum(ByteBuffer source, int offset, int length) {
+        crc.reset();
+        crc.update(source.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static byte[][] texts(String... values) {
+        byte[][] texts = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            texts[i] = values[i].getBytes(StandardCharsets.UTF_8);
+            ensure(texts[i].length <= 0xFFFF, TEXT_TOO_LONG);
+        }
+        return texts;
+    }
+
+    private static List<Segment> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(Path::getFileName).map(Path::toString)
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .map(firstSequence -> segment(directory, firstSequence))
+                    .toList();
+        }
+    }
+
+    private static Segment segment(Path directory, long firstSequence) {
+        return new Segment(firstSequence, directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX)));
+    }
+
+    private interface SequenceSink { void accept(long sequence); }
+
+    // devuelve la posicion del final del ultimo registro sano; sin replay solo valida y no decodifica textos
+    private static long read(FileChannel channel, long limit, long after, long upTo, Replay replay, SequenceSink sequences) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(4 * BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        long position = 0;
+        long fileOffset = 0;
+        chunk.limit(0);
+        while (true) {
+            if (chunk.remaining() < HEADER || chunk.remaining() < HEADER + chunk.getInt(chunk.position())) {
+                chunk.compact();
+                int read = fileOffset < limit ? channel.read(chunk.limit((int) Math.min(chunk.capacity(), chunk.position() + limit - fileOffset)), fileOffset) : -1;
+                chunk.flip();
+                if (read <= 0) { return position; }
+                fileOffset += read;
+                continue;
+            }
+            int start = chunk.position();
+            int payload = chunk.getInt(start);
+            if (payload <= 0 || payload > MAX_PAYLOAD) { return position; }
+            crc.reset();
+            crc.update(chunk.slice(start + HEADER, payload));
+            if ((int) crc.getValue() != chunk.getInt(start + Integer.BYTES)) { return position; }
+
+            chunk.position(start + HEADER);
+            byte type = chunk.get();
+            long sequence = chunk.getLong();
+            if (replay != null && sequence > after && sequence <= upTo) { decode(chunk, type, sequence, replay); }
+            sequences.accept(sequence);
+            chunk.position(start + HEADER + payload);
+            position += HEADER + payload;
+        }
+    }
+
+    private static void decode(ByteBuffer record, byte type, long sequence, Replay replay) {
+        Instant at = Instant.ofEpochSecond(record.getLong(), record.getInt());
+        if (type == CHARGE) {
+            int amount = record.getInt();
+            String cardNumber = text(record);
+            String merchantId = text(record);
+            replay.charged(sequence, new Charge(cardNumber, merchantId, amount, text(record), at));
+        } else {
+            replay.claimed(sequence, text(record), text(record), at);
+        }
+    }
+
+    private static String text(ByteBuffer record) {
+        int length = Short.toUnsignedInt(record.getShort());
+        String text = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return text;
+    }
+}
@@ -0,0 +1,180 @@
+package org.udesa.tpa;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import static org.udesa.tpa.Utils.*;
+
+// los cobros en etapas. El que llama descuenta el saldo y encola el cargo con el lock de la tarjeta tomado, asi
+// el orden de cada tarjeta queda fijo ahi. Un hilo saca lotes de la primera cola y se los pasa a los listeners
+// (el journal escribe el lote entero con un solo fsync); otro hilo saca lotes de la segunda, los agrega a los
+// historiales y completa los futures (lo que se encadena al future corre en ese hilo). El future se completa cuando el cargo es durable y ya
+// aparece en el extracto. Si los listeners rechazan el lote se reintenta por mitades: solo los cargos que
+// rechazan solos devuelven el saldo y fallan.
+// Con la primera cola llena el que llama espera afuera del lock: el saldo no queda reservado mientras tanto.
+// Cada submit se anota en submitting antes de mirar closed, asi close sabe cuando ya no queda ninguno a medio
+// encolar y recien entonces para las etapas
+public final class ChargePipeline implements AutoCloseable {
+    public record Metrics(long charged, long failed, long batches) {}
+
+    public static String PIPELINE_CLOSED = "The charge pipeline is closed";
+    public static String PIPELINE_ALREADY_STARTED = "The charge pipeline is already started";
+    public static String INVALID_BATCH_SIZE = "The pipeline batch size must be greater than 0";
+
+    private static final long IDLE_PARK_NANOS = 100_000;
+    private static final long FULL_PARK_NANOS = 1_000;
+
+    private final FacadeListener listener;
+    private final Stage durable;
+    private final Stage indexing;
+    private final LongAdder charged = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final AtomicInteger submitting = new AtomicInteger();
+    private volatile boolean closed;
+
+    record Pending(Charge charge, CardAccount card, ChargeHistory history, CompletableFuture<Charge> done) {}
+
+    ChargePipeline(int capacity, int maxBatch, FacadeListener listener) {
+        ensure(maxBatch > 0, INVALID_BATCH_SIZE);
+        this.listener = listener;
+        this.durable = new Stage("tpa-charges-durable", capacity, maxBatch, this::persist);
+        this.indexing = new Stage("tpa-charges-index", capacity, maxBatch, this::index);
+        durable.thread.start();
+        indexing.thread.start();
+    }
+
+    CompletableFuture<Charge> submit(CardAccount card, ChargeHistory history, String merchantId, int amount, String description, Clock clock) {
+        CompletableFuture<Charge> done = new CompletableFuture<>();
+        submitting.incrementAndGet();
+        try {
+            while (true) {
+                ensure(!closed, PIPELINE_CLOSED);
+                Charge charge = history.reserve(card, merchantId, amount, description, clock,
+                        reserved -> durable.offer(new Pending(reserved, card, history, done)));
+                if (charge != null) { return done; }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    public Metrics metrics() {
+        return new Metrics(charged.sum(), failed.sum(), batches.sum());
+    }
+
+    // deja de aceptar cobros, espera a que terminen de encolar los que ya habian pasado el chequeo (las etapas
+    // siguen andando, asi que una cola llena se vacia) y despues a que las dos etapas vacien sus colas: todo
+    // cobro aceptado termina completado o fallado y reintegrado
+    @Override
+    public void close() {
+        closed = true;
+        while (submitting.get() > 0) { LockSupport.parkNanos(FULL_PARK_NANOS); }
+        durable.stop();
+        indexing.stop();
+    }
+
+    private void persist(List<Pending> batch) {
+        batches.increment();
+        persistOrSplit(batch);
+    }
+
+    // si el lote falla se parte al medio y se reintenta cada mitad, hasta aislar los cargos que los listeners no
+    // aceptan: solo esos se reintegran y fallan, el resto del lote sigue. Las mitades van en orden, asi que cada
+    // tarjeta conserva el suyo. Un listener que tira no debe haber escrito nada del lote (el journal lo valida
+    // entero antes de escribir)
+    private void persistOrSplit(List<Pending> batch) {
+        List<Charge> charges = new ArrayList<>(batch.size());
+        batch.forEach(pending -> charges.add(pending.charge()));
+        try {
+            listener.charged(charges);
+        } catch (RuntimeException ex) {
+            if (batch.size() == 1) {
+                fail(batch.get(0), ex);
+            } else {
+                persistOrSplit(batch.subList(0, batch.size() / 2));
+                persistOrSplit(batch.subList(batch.size() / 2, batch.size()));
+            }
+            return;
+        }
+        batch.forEach(indexing::put);
+    }
+
+    private void fail(Pending pending, RuntimeException ex) {
+        pending.history().refund(pending.card(), pending.charge().amount());
+        failed.increment();
+        pending.done().completeExceptionally(ex);
+    }
+
+    private void index(List<Pending> batch) {
+        for (Pending pending : batch) {
+            pending.history().record(pending.charge());
+            charged.increment();
+            pending.done().complete(pending.charge());
+        }
+    }
+
+    // una cola y el unico hilo que la consume; el hilo se duerme cuando no hay nada y el que encola lo despierta
+    private static final class Stage {
+        final RingBuffer<Pending> ring;
+        final Thread thread;
+        private final int maxBatch;
+        private final Consumer<List<Pending>> work;
+        private volatile boolean idle;
+        private volatile boolean stopping;
+
+        Stage(String name, int capacity, int maxBatch, Consumer<List<Pending>> work) {
+            this.ring = new RingBuffer<>(capacity);
+            this.maxBatch = maxBatch;
+            this.work = work;
+            this.thread = new Thread(this::run, name);
+            this.thread.setDaemon(true);
+        }
+
+        boolean offer(Pending pending) {
+            if (!ring.offer(pending)) { return false; }
+            if (idle) { LockSupport.unpark(thread); }
+            return true;
+        }
+
+        void put(Pending pending) {
+            while (!offer(pending)) { LockSupport.parkNanos(FULL_PARK_NANOS); }
+        }
+
+        void stop() {
+            stopping = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            List<Pending> batch = new ArrayList<>(maxBatch);
+            while (true) {
+                if (ring.drainTo(batch, maxBatch) > 0) {
+                    work.accept(batch);
+                    batch.clear();
+                    continue;
+                }
+                if (stopping) { return; }
+                idle = true;
+                if (ring.drainTo(batch, maxBatch) == 0) { LockSupport.parkNanos(this, IDLE_PARK_NANOS); }
+                idle = false;
+                if (!batch.isEmpty()) {
+                    work.accept(batch);
+                    batch.clear();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.udesa.tpa;
+
+// rechazo del control de admision: sin stack trace ni suppressed, asi cada instancia se crea una vez y se
+// vuelve a lanzar tantas veces como haga falta sin costo
+public final class ChargeRejectedException extends RuntimeException {
+    public ChargeRejectedException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,8 @@
+package org.udesa.tpa;
+
+public record ChargeResult(ChargeItem item, Charge charge, String error) {
+    public static ChargeResult charged(ChargeItem item, Charge charge) { return new ChargeResult(item, charge, null); }
+    public static ChargeResult failed(ChargeItem item, String error) { return new ChargeResult(item, null, error); }
+
+    public boolean succeeded() { return error == null; }
+}
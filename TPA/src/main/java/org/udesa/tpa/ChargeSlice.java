@@ -0,0 +1,32 @@
+package org.udesa.tpa;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+// vista de solo lectura sobre las filas del historial: no copia nada y arma cada Charge recien cuando se pide
+final class ChargeSlice extends AbstractList<Charge> implements RandomAccess {
+    private final ChargeColumns columns;
+    private final String cardNumber;
+    private final long[] rows;
+    private final int from;
+    private final int to;
+    private final boolean newestFirst;
+
+    ChargeSlice(ChargeColumns columns, String cardNumber, long[] rows, int from, int to, boolean newestFirst) {
+        this.columns = columns;
+        this.cardNumber = cardNumber;
+        this.rows = rows;
+        this.from = from;
+        this.to = to;
+        this.newestFirst = newestFirst;
+    }
+
+    @Override
+    public Charge get(int index) {
+        if (index < 0 || index >= size()) { throw new IndexOutOfBoundsException(index); }
+        return columns.charge(cardNumber, newestFirst ? rows[to - 1 - index] : rows[from + index]);
+    }
+
+    @Override
+    public int size() { return to - from; }
+}
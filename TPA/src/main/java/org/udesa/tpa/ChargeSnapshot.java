@@ -0,0 +1,277 @@
+package org.udesa.tpa;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.*;
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+// estado de los cargos hasta una secuencia del journal, para arrancar sin reaplicar todo. Son dos archivos:
+// charges.archive, al que cada compactacion le agrega al final un tramo por tarjeta con sus cargos nuevos y un
+// puntero al tramo anterior de esa tarjeta (nunca se reescribe), y snapshot-<secuencia>.bin, un indice que por
+// tarjeta guarda cuantos cargos tiene, cuanto se le desconto y donde empieza su ultimo tramo. Arrancar lee solo el
+// indice, O(tarjetas con cargos); los cargos de una tarjeta se leen del archivo recien cuando alguien la toca.
+// indice: [magic][secuencia][bytes del archivo][tarjetas: (tarjeta, cantidad, monto, ultimo tramo)][crc32]
+// tramo: [tramo anterior][cantidad][bytes][cargos: (monto, segundos, nanos, merchant, descripcion)]
+public final class ChargeSnapshot {
+    public record Card(int count, long amount, long lastChunk) {}
+
+    public static String CORRUPT_SNAPSHOT = "Snapshot file is corrupt";
+
+    private static final int MAGIC = 0x54504154;
+    private static final long NO_CHUNK = -1;
+    private static final int CHUNK_HEADER = Long.BYTES + Integer.BYTES * 2;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String ARCHIVE = "charges.archive";
+
+    private final Path directory;
+    private final long sequence;
+    private final long archiveBytes;
+    private final Map<String, Card> cards;
+    private volatile FileChannel archive;
+
+    private ChargeSnapshot(Path directory, long sequence, long archiveBytes, Map<String, Card> cards) {
+        this.directory = directory;
+        this.sequence = sequence;
+        this.archiveBytes = archiveBytes;
+        this.cards = Collections.unmodifiableMap(cards);
+    }
+
+    public static ChargeSnapshot empty() {
+        return new ChargeSnapshot(null, 0, 0, Map.of());
+    }
+
+    public long sequence() { return sequence; }
+    public Map<String, Card> cards() { return cards; }
+
+    public boolean contains(String cardNumber) {
+        return cardNumber != null && cards.containsKey(cardNumber);
+    }
+
+    public static ChargeSnapshot latest(Path directory) throws IOException {
+        List<Path> snapshots = snapshots(directory);
+        return snapshots.isEmpty() ? empty() : read(snapshots.get(snapshots.size() - 1));
+    }
+
+    public static ChargeSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ensure(mapped.limit() >= Integer.BYTES * 2 + Long.BYTES * 2, CORRUPT_SNAPSHOT);
+            CRC32 crc = new CRC32();
+            crc.update(mapped.slice(0, mapped.limit() - Integer.BYTES));
+            ensure((int) crc.getValue() == mapped.getInt(mapped.limit() - Integer.BYTES), CORRUPT_SNAPSHOT);
+            ensure(mapped.getInt() == MAGIC, CORRUPT_SNAPSHOT);
+            long sequence = mapped.getLong();
+            long archiveBytes = mapped.getLong();
+            Map<String, Card> cards = new HashMap<>();
+            for (int i = mapped.getInt(); i > 0; i--) {
+                byte[] cardNumber = new byte[Short.toUnsignedInt(mapped.getShort())];
+                mapped.get(cardNumber);
+                cards.put(new String(cardNumber, StandardCharsets.UTF_8), new Card(mapped.getInt(), mapped.getLong(), mapped.getLong()));
+            }
+            return new ChargeSnapshot(file.getParent(), sequence, archiveBytes, cards);
+        }
+    }
+
+    // agrega los cargos nuevos (hasta sequence) al archivo y escribe un indice nuevo; lo que haya en el archivo
+    // despues de lo que conoce este snapshot es de una compactacion que se corto antes del indice y se pisa
+    public ChargeSnapshot extend(Path directory, long sequence, Map<String, List<Charge>> newCharges) throws IOException {
+        Objects.requireNonNull(newCharges, NULL_OBJECT);
+        Files.createDirectories(directory);
+        Map<String, Card> extended = new HashMap<>(cards);
+        long end;
+        try (FileChannel channel = FileChannel.open(directory.resolve(ARCHIVE), CREATE, WRITE)) {
+            channel.truncate(archiveBytes);
+            end = archiveBytes;
+            for (Map.Entry<String, List<Charge>> card : newCharges.entrySet()) {
+                if (card.getValue().isEmpty()) { continue; }
+                Card previous = extended.get(card.getKey());
+                ByteBuffer chunk = chunk(previous == null ? NO_CHUNK : previous.lastChunk(), card.getValue());
+                int bytes = chunk.remaining();
+                while (chunk.hasRemaining()) { channel.write(chunk, end + bytes - chunk.remaining()); }
+                long amount = card.getValue().stream().mapToLong(Charge::amount).sum();
+                extended.put(card.getKey(), previous == null
+                        ? new Card(card.getValue().size(), amount, end)
+                        : new Card(previous.count() + card.getValue().size(), previous.amount() + amount, end));
+                end += bytes;
+            }
+            channel.force(false);
+        }
+        ChargeSnapshot snapshot = new ChargeSnapshot(directory, sequence, end, extended);
+        snapshot.writeIndex();
+        return snapshot;
+    }
+
+    // los cargos de la tarjeta en el orden en que se hicieron, leidos del archivo
+    public List<Charge> charges(String cardNumber) {
+        List<Charge> charges = new ArrayList<>();
+        for (ByteBuffer chunk : chunks(cardNumber)) {
+            for (int i = chunk.getInt(Long.BYTES); i > 0; i--) {
+                int amount = chunk.getInt();
+                Instant at = Instant.ofEpochSecond(chunk.getLong(), chunk.getInt());
+                String merchantId = text(chunk);
+                charges.add(new Charge(cardNumber, merchantId, amount, text(chunk), at));
+            }
+        }
+        return charges;
+    }
+
+    // solo los montos, sin armar ningun Charge
+    public long amountOf(String cardNumber) {
+        long amount = 0;
+        for (ByteBuffer chunk : chunks(cardNumber)) {
+            for (int i = chunk.getInt(Long.BYTES); i > 0; i--) {
+                amount += chunk.getInt();
+                chunk.position(chunk.position() + Long.BYTES + Integer.BYTES);
+                skipText(chunk);
+                skipText(chunk);
+            }
+        }
+        return amount;
+    }
+
+    public static int deleteOlderThan(Path directory, long sequence) throws IOException {
+        int deleted = 0;
+        for (Path snapshot : snapshots(directory)) {
+            if (sequenceOf(snapshot) < sequence) {
+                Files.delete(snapshot);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    // del ultimo tramo para atras y despues dados vuelta; cada uno queda posicionado en su primer cargo
+    private List<ByteBuffer> chunks(String cardNumber) {
+        Card card = cardNumber == null ? null : cards.get(cardNumber);
+        if (card == null) { return List.of(); }
+        List<ByteBuffer> chunks = new ArrayList<>();
+        try {
+            FileChannel channel = archive();
+            for (long offset = card.lastChunk(); offset != NO_CHUNK; ) {
+                ByteBuffer header = readFully(channel, offset, CHUNK_HEADER);
+                ByteBuffer chunk = readFully(channel, offset, CHUNK_HEADER + header.getInt(Long.BYTES + Integer.BYTES));
+                chunk.position(CHUNK_HEADER);
+                chunks.add(chunk);
+                offset = header.getLong(0);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        Collections.reverse(chunks);
+        return chunks;
+    }
+
+    private FileChannel archive() throws IOException {
+        FileChannel channel = archive;
+        if (channel == null) {
+            synchronized (this) {
+                if (archive == null) { archive = FileChannel.open(directory.resolve(ARCHIVE), READ); }
+                channel = archive;
+            }
+        }
+        return channel;
+    }
+
+    private ByteBuffer readFully(FileChannel channel, long offset, int length) throws IOException {
+        ensure(offset >= 0 && offset + length <= archiveBytes, CORRUPT_SNAPSHOT);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) { throw new EOFException(CORRUPT_SNAPSHOT); }
+        }
+        return buffer.flip();
+    }
+
+    private static ByteBuffer chunk(long previous, List<Charge> charges) {
+        List<byte[]> texts = new ArrayList<>(charges.size() * 2);
+        int bytes = 0;
+        for (Charge charge : charges) {
+            byte[] merchantId = charge.merchantId().getBytes(StandardCharsets.UTF_8);
+            byte[] description = charge.description().getBytes(StandardCharsets.UTF_8);
+            texts.add(merchantId);
+            texts.add(description);
+            bytes += Integer.BYTES * 2 + Long.BYTES + Short.BYTES * 2 + merchantId.length + description.length;
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_HEADER + bytes).putLong(previous).putInt(charges.size()).putInt(bytes);
+        for (int i = 0; i < charges.size(); i++) {
+            Charge charge = charges.get(i);
+            chunk.putInt(charge.amount()).putLong(charge.timestamp().getEpochSecond()).putInt(charge.timestamp().getNano());
+            chunk.putShort((short) texts.get(2 * i).length).put(texts.get(2 * i));
+            chunk.putShort((short) texts.get(2 * i + 1).length).put(texts.get(2 * i + 1));
+        }
+        return chunk.flip();
+    }
+
+    private static String text(ByteBuffer chunk) {
+        int length = Short.toUnsignedInt(chunk.getShort());
+        String text = new String(chunk.array(), chunk.position(), length, StandardCharsets.UTF_8);
+        chunk.position(chunk.position() + length);
+        return text;
+    }
+
+    private static void skipText(ByteBuffer chunk) {
+        int length = Short.toUnsignedInt(chunk.getShort());
+        chunk.position(chunk.position() + length);
+    }
+
+    // se escribe a un temporal y se renombra: un crash a mitad de camino nunca deja un indice a medias.
+    // El fsync del directorio hace durable el rename
+    private void writeIndex() throws IOException {
+        Path target = directory.resolve(String.format("%s%019d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeLong(sequence);
+            out.writeLong(archiveBytes);
+            out.writeInt(cards.size());
+            for (Map.Entry<String, Card> card : cards.entrySet()) {
+                byte[] cardNumber = card.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(cardNumber.length);
+                out.write(cardNumber);
+                out.writeInt(card.getValue().count());
+                out.writeLong(card.getValue().amount());
+                out.writeLong(card.getValue().lastChunk());
+            }
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, target, ATOMIC_MOVE);
+        try (FileChannel parent = FileChannel.open(directory, READ)) {
+            parent.force(true);
+        }
+    }
+
+    private static List<Path> snapshots(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) { return List.of(); }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+                    })
+                    .sorted(Comparator.comparingLong(ChargeSnapshot::sequenceOf))
+                    .toList();
+        }
+    }
+
+    private static long sequenceOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,74 @@
+package org.udesa.tpa;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+public final class ClaimRegistry {
+    private final Map<String, Set<String>> cardsByToken = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> tokensByCard = new ConcurrentHashMap<>();
+
+    // los dos indices de una tarjeta cambian dentro del compute de esa tarjeta. Si el token se solto mientras
+    // tanto (su set ya no esta en cardsByToken) el claim no se indexa, asi no queda un claimant huerfano
+    public boolean claim(String token, String cardNumber) {
+        boolean[] added = new boolean[1];
+        tokensByCard.compute(cardNumber, (k, claimants) -> {
+            Set<String> cards = cardsByToken.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet());
+            added[0] = cards.add(cardNumber);
+            if (cardsByToken.get(token) != cards) {
+                cards.remove(cardNumber);
+                added[0] = false;
+                return claimants;
+            }
+            return withClaimant(claimants, token);
+        });
+        return added[0];
+    }
+
+    public boolean isClaimedBy(String token, String cardNumber) {
+        return cardsByToken.getOrDefault(token, Set.of()).contains(cardNumber);
+    }
+
+    public int claimedCards() {
+        return tokensByCard.size();
+    }
+
+    public Set<String> cardsOf(String token) {
+        return Collections.unmodifiableSet(cardsByToken.getOrDefault(token, Set.of()));
+    }
+
+    // los claims de sesiones que ya no estan vivas se sueltan aca, asi el indice no crece con sesiones muertas.
+    // El claimant muerto se saca de esta tarjeta aunque su token ya no tenga entrada en cardsByToken
+    public boolean isClaimed(String cardNumber, Predicate<String> isLive) {
+        Set<String> claimants = tokensByCard.get(cardNumber);
+        if (claimants == null) { return false; }
+        if (claimants.removeIf(token -> {
+            if (isLive.test(token)) { return false; }
+            release(token);
+            return true;
+        })) {
+            tokensByCard.computeIfPresent(cardNumber, (k, current) -> current.isEmpty() ? null : current);
+        }
+        return tokensByCard.containsKey(cardNumber);
+    }
+
+    public void release(String token) {
+        Set<String> cards = cardsByToken.remove(token);
+        if (cards != null) { cards.forEach(cardNumber -> unindex(cardNumber, token)); }
+    }
+
+    private void unindex(String cardNumber, String token) {
+        tokensByCard.computeIfPresent(cardNumber, (k, claimants) -> withoutClaimant(claimants, token));
+    }
+
+    private static Set<String> withClaimant(Set<String> claimants, String token) {
+        Set<String> updated = claimants == null ? ConcurrentHashMap.newKeySet() : claimants;
+        updated.add(token);
+        return updated;
+    }
+
+    private static Set<String> withoutClaimant(Set<String> claimants, String token) {
+        claimants.remove(token);
+        return claimants.isEmpty() ? null : claimants;
+    }
+}
@@ -0,0 +1,236 @@
+package org.udesa.tpa;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+import static org.udesa.tpa.Charge.*;
+import static org.udesa.tpa.GiftCard.*;
+
+// las mismas reglas que GiftCard pero sin un objeto por tarjeta: el numero se guarda como long en una tabla de
+// direccionamiento abierto que apunta a arreglos paralelos de numero, saldo inicial, saldo y dueño (entre 34 y 44
+// bytes por tarjeta). Se carga antes de publicarla: add no es seguro en paralelo con las consultas, los cobros si.
+// La tabla nunca pasa de 3/4 llena, asi que el sondeo siempre encuentra un slot libre.
+public final class CompactCardStore {
+    public static String STORE_FULL = "The card store has reached its capacity";
+    public static String DUPLICATED_CARD = "The gift card is already loaded";
+    public static String CARD_NUMBER_TOO_LONG = "Card numbers must have at most 18 digits and no leading zeros";
+    public static String INVALID_CAPACITY = "The card store capacity must be between 1 and " + (3 << 28);
+
+    private static final VarHandle BALANCES = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int MAX_DIGITS = 18;
+    private static final int MAX_CAPACITY = 3 << 28;
+    private static final long EMPTY = 0;
+
+    private final long[] slotKeys;
+    private final int[] slotPositions;
+    private final int mask;
+
+    private final long[] numbers;
+    private final int[] initialBalances;
+    private final int[] balances;
+    private final int[] owners;
+    private final List<String> ownerNames = new ArrayList<>();
+    private final Map<String, Integer> ownerIds = new HashMap<>();
+    private int size;
+
+    public CompactCardStore(int capacity) {
+        ensure(capacity > 0 && capacity <= MAX_CAPACITY, INVALID_CAPACITY);
+        int slots = Integer.highestOneBit(Math.max(2, (int) Math.min(1 << 30, capacity * 4L / 3)) - 1) << 1;
+        this.slotKeys = new long[slots];
+        this.slotPositions = new int[slots];
+        this.mask = slots - 1;
+        this.numbers = new long[capacity];
+        this.initialBalances = new int[capacity];
+        this.balances = new int[capacity];
+        this.owners = new int[capacity];
+    }
+
+    public synchronized void add(String owner, String cardNumber, int initialBalance) {
+        String nonBlankOwner = nonBlank(owner, NULL_OR_EMPTY_VALUE);
+        long number = encode(cardNumber);
+        if (initialBalance < 0) { throw new IllegalArgumentException(NEGATIVE_INITIAL_BALANCE); }
+        ensure(size < numbers.length, STORE_FULL);
+        int slot = slotOf(number);
+        ensure(slotKeys[slot] == EMPTY, DUPLICATED_CARD);
+
+        int position = size++;
+        numbers[position] = number;
+        initialBalances[position] = initialBalance;
+        balances[position] = initialBalance;
+        owners[position] = ownerIds.computeIfAbsent(nonBlankOwner, name -> {
+            ownerNames.add(name);
+            return ownerNames.size() - 1;
+        });
+        slotPositions[slot] = position;
+        slotKeys[slot] = number + 1;
+    }
+
+    // copia tarjetas sueltas con el saldo que tengan ahora
+    static CompactCardStore of(Collection<GiftCard> cards) {
+        CompactCardStore store = new CompactCardStore(Math.max(1, cards.size()));
+        for (GiftCard card : cards) {
+            store.add(card.owner(), card.cardNumber(), card.initialBalance());
+            store.balances[store.size - 1] = card.balance();
+        }
+        return store;
+    }
+
+    public int size() { return size; }
+    public int capacity() { return numbers.length; }
+
+    public boolean contains(String cardNumber) {
+        return positionOf(cardNumber) >= 0;
+    }
+
+    public String owner(String cardNumber) {
+        return ownerNames.get(owners[requirePosition(cardNumber)]);
+    }
+
+    public int balance(String cardNumber) {
+        return (int) BALANCES.getVolatile(balances, requirePosition(cardNumber));
+    }
+
+    public void addBalance(String cardNumber, int amount) {
+        addBalanceAt(requirePosition(cardNumber), amount);
+    }
+
+    public void charge(String cardNumber, int amount, String description) {
+        chargeAt(requirePosition(cardNumber), amount, description);
+    }
+
+    // posicion densa de la tarjeta (0..size-1) o -1 si no esta cargada
+    public int positionOf(String cardNumber) {
+        long number = encode(cardNumber);
+        int slot = slotOf(number);
+        return slotKeys[slot] == EMPTY ? -1 : slotPositions[slot];
+    }
+
+    public String cardNumberAt(int position) { return Long.toString(numbers[position]); }
+    public int balanceAt(int position) { return (int) BALANCES.getVolatile(balances, position); }
+    public String ownerAt(int position) { return ownerNames.get(owners[position]); }
+
+    // como positionOf pero sin quejarse de numeros mal formados: tampoco estan cargados
+    int find(String cardNumber) {
+        return fits(cardNumber) ? positionOf(cardNumber) : -1;
+    }
+
+    // si el numero se puede guardar como long y volver al mismo texto
+    static boolean fits(String cardNumber) {
+        if (cardNumber == null || cardNumber.isEmpty() || cardNumber.length() > MAX_DIGITS) { return false; }
+        if (cardNumber.length() > 1 && cardNumber.charAt(0) == '0') { return false; }
+        for (int i = 0; i < cardNumber.length(); i++) {
+            char digit = cardNumber.charAt(i);
+            if (digit < '0' || digit > '9') { return false; }
+        }
+        return true;
+    }
+
+    // la tarjeta o null si no esta cargada; la vista no copia nada, lee y cobra sobre los arreglos
+    CardAccount card(String cardNumber) {
+        int position = find(cardNumber);
+        return position < 0 ? null : new Card(position, cardNumber);
+    }
+
+    // todas las tarjetas cargadas, por posicion; el spliterator parte por indices
+    List<CardAccount> cards() {
+        return new Cards(size);
+    }
+
+    // descuenta de una lo que un snapshot dice que ya se cobro
+    void restoreCharged(int position, long amount) {
+        ensure(amount >= 0 && amount <= balanceAt(position), INSUFFICIENT_FUNDS);
+        BALANCES.getAndAdd(balances, position, -Math.toIntExact(amount));
+    }
+
+    private void chargeAt(int position, int amount, String description) {
+        ensure(amount > 0, INVALID_AMOUNT);
+        nonBlank(description, NULL_OR_EMPTY_VALUE);
+        int current;
+        int newBalance;
+        do {
+            current = (int) BALANCES.getVolatile(balances, position);
+            newBalance = current - amount;
+            if (newBalance < 0) { throw new IllegalArgumentException(INSUFFICIENT_FUNDS); }
+        } while (!BALANCES.compareAndSet(balances, position, current, newBalance));
+    }
+
+    private void addBalanceAt(int position, int amount) {
+        ensure(amount > 0, INVALID_AMOUNT);
+        BALANCES.getAndAdd(balances, position, amount);
+    }
+
+    private final class Card implements CardAccount {
+        private final int position;
+        private String cardNumber;
+
+        Card(int position, String cardNumber) {
+            this.position = position;
+            this.cardNumber = cardNumber;
+        }
+
+        @Override public String cardNumber() {
+            if (cardNumber == null) { cardNumber = cardNumberAt(position); }
+            return cardNumber;
+        }
+        @Override public String owner() { return ownerAt(position); }
+        @Override public int initialBalance() { return initialBalances[position]; }
+        @Override public int balance() { return balanceAt(position); }
+        @Override public void charge(int amount, String description) { chargeAt(position, amount, description); }
+        @Override public void addBalance(int amount) { addBalanceAt(position, amount); }
+    }
+
+    private final class Cards extends AbstractList<CardAccount> implements RandomAccess {
+        private final int size;
+
+        Cards(int size) {
+            this.size = size;
+        }
+
+        @Override public CardAccount get(int position) {
+            if (position < 0 || position >= size) { throw new IndexOutOfBoundsException(position); }
+            return new Card(position, null);
+        }
+        @Override public int size() { return size; }
+    }
+
+    private int requirePosition(String cardNumber) {
+        int position = positionOf(cardNumber);
+        if (position < 0) { throw new IllegalArgumentException(UNKNOWN_CARD); }
+        return position;
+    }
+
+    // sondeo lineal: devuelve el slot de la tarjeta o el primer slot libre de su cadena
+    private int slotOf(long number) {
+        long key = number + 1;
+        int slot = (int) mix(number) & mask;
+        while (slotKeys[slot] != EMPTY && slotKeys[slot] != key) { slot = (slot + 1) & mask; }
+        return slot;
+    }
+
+    private static long mix(long value) {
+        long mixed = value * 0x9E3779B97F4A7C15L;
+        return mixed ^ (mixed >>> 32);
+    }
+
+    // sin ceros a la izquierda, asi el long vuelve al mismo texto
+    static long encode(String cardNumber) {
+        String digits = nonBlank(cardNumber, NULL_OR_EMPTY_VALUE);
+        ensure(digits.length() <= MAX_DIGITS && (digits.length() == 1 || digits.charAt(0) != '0'), CARD_NUMBER_TOO_LONG);
+        long number = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            char digit = digits.charAt(i);
+            ensure(digit >= '0' && digit <= '9', CARD_NUMBER_MUST_BE_A_NUMERIC_STRING);
+            number = number * 10 + (digit - '0');
+        }
+        return number;
+    }
+}
@@ -0,0 +1,63 @@
+package org.udesa.tpa;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+// PBKDF2-HMAC-SHA256 del JDK. El costo por defecto se puede bajar con -Dtpa.pbkdf2.iterations
+// (los tests y los benchmarks que no miden el hash lo hacen); cada hash guarda sus iteraciones,
+// asi cambiar el costo no invalida las credenciales ya guardadas
+public final class CredentialHasher {
+    public static final int DEFAULT_ITERATIONS = Integer.getInteger("tpa.pbkdf2.iterations", 210_000);
+    public static String INVALID_ITERATIONS = "PBKDF2 iterations must be greater than 0";
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    public CredentialHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    public CredentialHasher(int iterations) {
+        ensure(iterations > 0, INVALID_ITERATIONS);
+        this.iterations = iterations;
+    }
+
+    public HashedCredential hash(String secret) {
+        nonBlank(secret, NULL_OR_EMPTY_VALUE);
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return new HashedCredential(iterations, salt, derive(secret, salt, iterations));
+    }
+
+    // los valores que ya vienen como {pbkdf2}... se usan tal cual; el resto se toma como texto plano
+    public HashedCredential hashOrParse(String value) {
+        return HashedCredential.isEncoded(value) ? HashedCredential.parse(value) : hash(value);
+    }
+
+    // se compara en tiempo constante; un candidato nulo o vacio nunca coincide
+    public boolean matches(HashedCredential stored, String candidate) {
+        if (stored == null || candidate == null || candidate.isBlank()) { return false; }
+        return MessageDigest.isEqual(stored.hash(), derive(candidate, stored.salt(), stored.iterations()));
+    }
+
+    private static byte[] derive(String secret, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(secret.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -4,20 +4,58 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.udesa.tpa.FacadeMetrics.Operation;
 
 import static org.udesa.tpa.Utils.*;
 
+// las tarjetas que se pasan sueltas se copian al CompactCardStore con el saldo que tienen al construir la Facade:
+// desde ahi un addBalance sobre esos GiftCard no llega a la Facade, ni los cobros de la Facade a ellos. Las que el
+// store no puede guardar (numeros no numericos, con ceros a la izquierda o de mas de 18 digitos, o una clave del
+// mapa distinta del numero de la tarjeta) quedan aparte como el GiftCard compartido, buscadas por la clave del mapa
 public final class Facade {
     private final Clock clock;
     private final Duration ttl;
 
-    private final Map<String, String> users;
-    private final Map<String, GiftCard> giftCardsByNumber;
-    private final Map<String, Merchant> merchantsById;
+    private final CredentialHasher hasher = new CredentialHasher();
+    private final Map<String, HashedCredential> users;
+    private final CompactCardStore cards;
+    private final Map<String, CardAccount> otherCards;
+    private final MerchantCredentials merchants;
+
+    private final SessionStore sessions;
+    private final SessionSigner signer;
+    private final Map<String, Long> claimDeadlines = new ConcurrentHashMap<>();
+    private final ClaimRegistry claims = new ClaimRegistry();
+    private final ChargeColumns columns = new ChargeColumns();
+    private final Map<String, ChargeHistory> chargesByCard = new ConcurrentHashMap<>();
+    private volatile StatementCache statements = new StatementCache(StatementCache.DEFAULT_CAPACITY, StatementCache.DEFAULT_PAGE_SIZE);
+    private volatile ChargeAdmission admission;
+    private volatile ChargePipeline pipeline;
+    private volatile IdempotencyCache idempotency;
+    private volatile FacadeMetrics metrics = new FacadeMetrics();
+    private volatile ChargeSnapshot archived = ChargeSnapshot.empty();
+    private static final String RESTORED_FROM_SNAPSHOT = "snapshot";
+    private static final ChargeHistory NO_CHARGES = new ChargeHistory("0", new ChargeColumns());
+    private final List<FacadeListener> listeners = new CopyOnWriteArrayList<>();
+    private final FacadeListener notifier = new FacadeListener() {
+        @Override public void claimed(String username, String cardNumber, Instant at) {
+            listeners.forEach(listener -> listener.claimed(username, cardNumber, at));
+        }
+        @Override public void charged(Charge charge) {
+            listeners.forEach(listener -> listener.charged(charge));
+        }
+        @Override public void charged(List<Charge> charges) {
+            listeners.forEach(listener -> listener.charged(charges));
+        }
+    };
 
-    private final Map<String, UserSession> sessionsByToken = new HashMap<>();
-    private final Map<String, Set<String>> claimsByToken = new HashMap<>();
-    private final Map<String, List<Charge>> chargesByCard = new HashMap<>();
 
     public static String WRONG_PASSWORD = "Password is incorrect";
     public static String NULL_OBJECT = "Object can not be null";
@@ -31,115 +69,616 @@ public final class Facade {
 
 
     public Facade(Clock clock, Duration ttl, Map<String, String> users, Map<String, GiftCard> giftCardsByNumber, Map<String, Merchant> merchantsById) {
+        this(clock, ttl, new SessionStore(Objects.requireNonNull(clock, NULL_OBJECT)), users, giftCardsByNumber, merchantsById);
+    }
+
+    public Facade(Clock clock, Duration ttl, SessionStore sessions, Map<String, String> users, Map<String, GiftCard> giftCardsByNumber, Map<String, Merchant> merchantsById) {
+        this(clock, ttl, sessions, null, hashAll(users), compact(giftCardsByNumber), others(giftCardsByNumber), merchantsById);
+    }
+
+    // los usuarios, las tarjetas y los merchants del BulkLoader se adoptan sin copiarlos
+    public Facade(Clock clock, Duration ttl, BulkLoader.Preload preload) {
+        this(clock, ttl, new SessionStore(Objects.requireNonNull(clock, NULL_OBJECT)), null,
+                Objects.requireNonNull(preload, NULL_OBJECT).users(), preload.cards(), Map.of(), preload.merchants());
+    }
+
+    public Facade(Clock clock, Duration ttl, SessionSigner signer, BulkLoader.Preload preload) {
+        this(clock, ttl, new SessionStore(Objects.requireNonNull(clock, NULL_OBJECT)), Objects.requireNonNull(signer, NULL_OBJECT),
+                Objects.requireNonNull(preload, NULL_OBJECT).users(), preload.cards(), Map.of(), preload.merchants());
+    }
+
+    // con tokens firmados no hay tabla de sesiones: cualquier Facade con la misma clave acepta el token,
+    // y los claims quedan a nombre del usuario hasta el vencimiento del ultimo token con el que reclamo.
+    // Lo unico que viaja es la sesion: claims, saldos e historiales son de cada Facade, asi que el claim y los
+    // cobros de una tarjeta tienen que llegar al mismo nodo (afinidad por numero de tarjeta en el balanceador)
+    public Facade(Clock clock, Duration ttl, SessionSigner signer, Map<String, String> users, Map<String, GiftCard> giftCardsByNumber, Map<String, Merchant> merchantsById) {
+        this(clock, ttl, new SessionStore(Objects.requireNonNull(clock, NULL_OBJECT)), Objects.requireNonNull(signer, NULL_OBJECT),
+                hashAll(users), compact(giftCardsByNumber), others(giftCardsByNumber), merchantsById);
+    }
+
+    private Facade(Clock clock, Duration ttl, SessionStore sessions, SessionSigner signer, Map<String, HashedCredential> users,
+                   CompactCardStore cards, Map<String, CardAccount> otherCards, Map<String, Merchant> merchantsById) {
         this.clock = Objects.requireNonNull(clock, NULL_OBJECT);
         this.ttl = Objects.requireNonNull(ttl, NULL_OBJECT);
-        this.users = new HashMap<>(Objects.requireNonNull(users));
-        this.giftCardsByNumber = new HashMap<>(Objects.requireNonNull(giftCardsByNumber));
-        this.merchantsById = new HashMap<>(Objects.requireNonNull(merchantsById));
+        this.sessions = Objects.requireNonNull(sessions, NULL_OBJECT);
+        this.signer = signer;
+        this.sessions.onRemoval(session -> claims.release(session.token()));
+        this.users = users;
+        this.cards = cards;
+        this.otherCards = otherCards;
+        this.merchants = new MerchantCredentials(merchantsById, hasher, clock);
+        this.admission = ChargeAdmission.unlimited(clock);
+        this.idempotency = new IdempotencyCache(clock);
+    }
+
+    private static boolean compactable(Map.Entry<String, GiftCard> card) {
+        return card.getKey().equals(card.getValue().cardNumber()) && CompactCardStore.fits(card.getKey());
+    }
+
+    private static CompactCardStore compact(Map<String, GiftCard> giftCardsByNumber) {
+        return CompactCardStore.of(Objects.requireNonNull(giftCardsByNumber, NULL_OBJECT).entrySet().stream()
+                .filter(Facade::compactable).map(Map.Entry::getValue).toList());
+    }
+
+    private static Map<String, CardAccount> others(Map<String, GiftCard> giftCardsByNumber) {
+        return giftCardsByNumber.entrySet().stream().filter(card -> !compactable(card))
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    // cada password en texto plano es un PBKDF2 entero: se hashean en paralelo, como en el BulkLoader
+    static Map<String, HashedCredential> hashAll(Map<String, String> users) {
+        CredentialHasher hasher = new CredentialHasher();
+        return Objects.requireNonNull(users).entrySet().parallelStream()
+                .collect(Collectors.toMap(Map.Entry::getKey, user -> hasher.hashOrParse(user.getValue()), (first, second) -> first, HashMap::new));
     }
 
     public boolean exists(String username) {
-        boolean doesExists = users.containsKey(username);
+        boolean doesExists = username != null && users.containsKey(username);
         ensure(doesExists, UNKNOWN_USER);
         return doesExists;
     }
 
-    private String requirePassword(String username) {
-        String pass = users.get(username);
-        nonBlank(pass, NULL_OR_EMPTY_VALUE);
-        return pass;
+    public String login(String username, String password) {
+        long start = metrics.start();
+        try {
+            String token = authenticate(username, password);
+            metrics.succeeded(Operation.LOGIN, start);
+            return token;
+        } catch (RuntimeException ex) {
+            metrics.failed(Operation.LOGIN, ex, start);
+            throw ex;
+        }
     }
 
-    public String login(String username, String password) {
+    private String authenticate(String username, String password) {
         exists(username);
-        String realPass = requirePassword(username);
-        ensure(Objects.equals(realPass, password), WRONG_PASSWORD);
+        ensure(hasher.matches(users.get(username), password), WRONG_PASSWORD);
+        if (signer != null) { return signer.issue(username, ttl, clock).token(); }
         UserSession session = UserSession.issue(username, ttl, clock);
-        sessionsByToken.put(session.token(), session);
+        sessions.add(session);
         return session.token();
     }
 
-    public boolean isSessionActive(String token) {
-        UserSession session = sessionsByToken.get(token);
-        if (session == null) {
-            return false;
+    // un token firmado no se puede revocar: el logout suelta los claims del usuario en este nodo
+    public void logout(String token) {
+        UserSession session = requireSession(token);
+        if (signer == null) {
+            sessions.remove(token);
+        } else {
+            claims.release(session.username());
+            claimDeadlines.remove(session.username());
         }
-        try {
-            session.ensureActive(clock);
-            return true;
-        } catch (IllegalArgumentException ex) {
-            return false;
+    }
+
+    // por defecto no hay limites; los cobros que ya estan en curso terminan con la admision anterior
+    public void admitChargesWith(ChargeAdmission admission) {
+        this.admission = Objects.requireNonNull(admission, NULL_OBJECT);
+    }
+
+    public ChargeAdmission.Counters chargeAdmissionCounters(String merchantId) {
+        return admission.counters(merchantId);
+    }
+
+    // las claves de idempotencia que ya se recuerdan se pierden al cambiarlo
+    public void deduplicateChargesWith(IdempotencyCache idempotency) {
+        this.idempotency = Objects.requireNonNull(idempotency, NULL_OBJECT);
+    }
+
+    // las paginas ya cacheadas se pierden al cambiarlo
+    public void cacheStatementsWith(StatementCache statements) {
+        this.statements = Objects.requireNonNull(statements, NULL_OBJECT);
+    }
+
+    public IdempotencyCache.Metrics idempotencyMetrics() {
+        return idempotency.metrics();
+    }
+
+    // desde aca los cobros pasan por el pipeline: los listeners (el journal) reciben lotes desde otro hilo y los
+    // cobros sincronicos esperan a que el suyo sea durable. Se arranca despues de recoverFrom
+    public ChargePipeline startChargePipeline(int capacity, int maxBatch) {
+        ChargePipeline started = new ChargePipeline(capacity, maxBatch, notifier);
+        synchronized (this) {
+            if (pipeline != null) {
+                started.close();
+                throw new IllegalStateException(ChargePipeline.PIPELINE_ALREADY_STARTED);
+            }
+            pipeline = started;
         }
+        return started;
     }
 
-    private UserSession requireActiveSession(String token) {
+    public void stopChargePipeline() {
+        ChargePipeline stopped;
+        synchronized (this) {
+            stopped = pipeline;
+            pipeline = null;
+        }
+        if (stopped != null) { stopped.close(); }
+    }
+
+    public void addListener(FacadeListener listener) {
+        listeners.add(Objects.requireNonNull(listener, NULL_OBJECT));
+    }
+
+    // carga los cargos que ya estan (por ejemplo los recuperados del journal) y despues sigue como listener;
+    // se llama antes de empezar a cobrar, si no un cargo en curso puede quedar afuera o contarse dos veces
+    public void aggregateChargesWith(ChargeAggregates aggregates) {
+        Objects.requireNonNull(aggregates, NULL_OBJECT);
+        chargesByCard.values().forEach(history -> history.charges().forEach(aggregates::charged));
+        archived.cards().keySet().stream().filter(cardNumber -> !chargesByCard.containsKey(cardNumber))
+                .forEach(cardNumber -> archived.charges(cardNumber).forEach(aggregates::charged));
+        addListener(aggregates);
+    }
+
+    // se puede correr con cobros en curso; en el pool comun de fork/join si no se le pasa otro
+    public Reconciliation.Report reconcile() {
+        return reconcile(ForkJoinPool.commonPool(), Reconciliation.DEFAULT_MAX_MISMATCHES);
+    }
+
+    public Reconciliation.Report reconcile(ForkJoinPool pool, int maxMismatches) {
+        Collection<CardAccount> all = otherCards.isEmpty() ? cards.cards() : allCards();
+        return new Reconciliation(all, chargesByCard, archived, maxMismatches).run(pool);
+    }
+
+    private List<CardAccount> allCards() {
+        List<CardAccount> all = new ArrayList<>(cards.cards());
+        all.addAll(otherCards.values());
+        return all;
+    }
+
+    // reconstruye saldos e historiales desde el journal y despues le escribe cada claim y cargo nuevo.
+    // los claims no se reaplican: las sesiones no sobreviven a un reinicio. Del snapshot solo se descuenta el
+    // total de cada tarjeta; su historial se lee del archivo la primera vez que se usa la tarjeta
+    public void recoverFrom(ChargeJournal journal) {
+        recoverFrom(ChargeSnapshot.empty(), journal);
+    }
+
+    public void recoverFrom(ChargeSnapshot snapshot, ChargeJournal journal) {
+        Objects.requireNonNull(snapshot, NULL_OBJECT);
+        Objects.requireNonNull(journal, NULL_OBJECT);
+        archived = snapshot;
+        snapshot.cards().forEach((cardNumber, card) -> {
+            int position = cards.find(cardNumber);
+            if (position >= 0) {
+                cards.restoreCharged(position, card.amount());
+            } else if (card.amount() > 0) {
+                requireCard(cardNumber).charge(Math.toIntExact(card.amount()), RESTORED_FROM_SNAPSHOT);
+            }
+        });
+        journal.replay(snapshot.sequence(), Long.MAX_VALUE, (sequence, charge) -> replay(charge));
+        addListener(journal);
+    }
+
+    private ChargeHistory newHistory(String cardNumber) {
+        ChargeHistory history = new ChargeHistory(cardNumber, columns);
+        if (archived.contains(cardNumber)) { history.restore(archived.charges(cardNumber)); }
+        return history;
+    }
+
+    private void replay(Charge charge) {
+        chargesByCard.computeIfAbsent(charge.cardNumber(), this::newHistory)
+                .replay(requireCard(charge.cardNumber()), charge);
+    }
+
+    public SessionStatus sessionStatus(String token) {
+        UserSession session = findSession(token);
+        return session == null ? SessionStatus.UNKNOWN : session.status(clock);
+    }
+
+    public boolean isSessionActive(String token) {
+        return sessionStatus(token).isActive();
+    }
+
+    public SessionStore.Metrics sessionMetrics() {
+        return sessions.metrics();
+    }
+
+    public StatementCache.Metrics statementCacheMetrics() {
+        return statements.metrics();
+    }
+
+    public FacadeMetrics operationMetrics() {
+        return metrics;
+    }
+
+    // se cambia antes de exportar: las series que ya se exportaron siguen leyendo las metricas anteriores
+    public void measureOperationsWith(FacadeMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics, NULL_OBJECT);
+    }
+
+    // en modo firmado no hay tabla de sesiones, asi que tpa.sessions.live queda en 0
+    public void exportMetricsTo(MetricsExporter exporter) {
+        metrics.exportTo(exporter);
+        exporter.gauge("tpa.sessions.live", Map.of(), () -> sessions.metrics().live());
+        exporter.gauge("tpa.cards.claimed", Map.of(), claims::claimedCards);
+        exporter.gauge("tpa.charges.total", Map.of(), columns::rows);
+        exporter.gauge("tpa.charges.idempotency.keys", Map.of(), () -> idempotency.metrics().size());
+    }
+
+    private UserSession requireSession(String token) {
         String nonEmptyToken = nonBlank(token, NULL_OR_EMPTY_VALUE);
-        UserSession session = sessionsByToken.get(nonEmptyToken);
+        UserSession session = findSession(nonEmptyToken);
         if (session == null) { throw new IllegalArgumentException(NULL_OBJECT); }
-        session.ensureActive(clock);
         return session;
     }
 
-    private GiftCard requireCard(String cardNumber) {
-        GiftCard card = giftCardsByNumber.get(cardNumber);
+    private UserSession findSession(String token) {
+        if (token == null) { return null; }
+        return signer == null ? sessions.get(token) : signer.verify(token);
+    }
+
+    // los claims se guardan por token, o por usuario cuando los tokens son firmados
+    private String claimant(UserSession session) {
+        return signer == null ? session.token() : session.username();
+    }
+
+    private boolean isClaimantActive(String claimant) {
+        return signer == null ? isSessionActive(claimant) : claimDeadlines.getOrDefault(claimant, Long.MIN_VALUE) >= clock.millis();
+    }
+
+    // usar un token que vence mas tarde estira los claims que el usuario ya tenia
+    private void extendClaims(UserSession session) {
+        long expiresAt = session.expiresAt().toEpochMilli();
+        Long deadline = claimDeadlines.get(session.username());
+        if (deadline != null && deadline < expiresAt) {
+            claimDeadlines.computeIfPresent(session.username(), (username, current) -> Math.max(current, expiresAt));
+        }
+    }
+
+    private UserSession requireActiveSession(String token) {
+        UserSession session = requireSession(token);
+        ensure(session.status(clock).isActive(), UserSession.EXPIRED_TOKEN);
+        if (signer != null) { extendClaims(session); }
+        return session;
+    }
+
+    private CardAccount requireCard(String cardNumber) {
+        CardAccount card = cards.card(cardNumber);
+        return existingCard(card != null || cardNumber == null ? card : otherCards.get(cardNumber));
+    }
+
+    // las reglas de tarjeta que comparten la Facade y los shards de ShardedFacade
+    static CardAccount existingCard(CardAccount card) {
         if (card == null) { throw new IllegalArgumentException(UNKNOWN_CARD); }
         return card;
     }
 
+    static CardAccount ownedBy(CardAccount card, String username) {
+        ensure(card.owner().equals(username), GIFT_CARD_DOES_NOT_BELONG_TO_USER);
+        return card;
+    }
+
     public void claim(String token, String cardNumber) {
+        long start = metrics.start();
+        try {
+            claimCard(token, cardNumber);
+            metrics.succeeded(Operation.CLAIM, start);
+        } catch (RuntimeException ex) {
+            metrics.failed(Operation.CLAIM, ex, start);
+            throw ex;
+        }
+    }
+
+    private void claimCard(String token, String cardNumber) {
         UserSession session = requireActiveSession(token);
-        GiftCard card = requireCard(cardNumber);
-        ensure(card.owner().equals(session.username()), GIFT_CARD_DOES_NOT_BELONG_TO_USER);
-        boolean added = claimsByToken.computeIfAbsent(token, k -> new HashSet<>()).add(cardNumber);
-        ensure(added, CLAIMED_CARD);
+        ownedBy(requireCard(cardNumber), session.username());
+        ensure(claims.claim(claimant(session), cardNumber), CLAIMED_CARD);
+        if (signer != null) { claimDeadlines.merge(session.username(), session.expiresAt().toEpochMilli(), Math::max); }
+        notifier.claimed(session.username(), cardNumber, Instant.now(clock));
     }
 
-    private GiftCard requireClaimed(String token, String cardNumber) {
+    private CardAccount requireClaimed(String token, String cardNumber) {
         UserSession session = requireActiveSession(token);
-        GiftCard card = requireCard(cardNumber);
-        ensure(claimsByToken.getOrDefault(token, Set.of()).contains(cardNumber), UNCLAIMED_CARD);
-        ensure(card.owner().equals(session.username()), GIFT_CARD_DOES_NOT_BELONG_TO_USER);
-        return card;
+        CardAccount card = requireCard(cardNumber);
+        ensure(claims.isClaimedBy(claimant(session), cardNumber), UNCLAIMED_CARD);
+        return ownedBy(card, session.username());
     }
 
-    private GiftCard requireClaimedByAnyUser(String cardNumber) {
-        GiftCard card = giftCardsByNumber.get(cardNumber);
-        if (card == null) { throw new IllegalArgumentException(UNKNOWN_CARD); }
-        ensure(claimsByToken.values().stream().anyMatch(set -> set.contains(cardNumber)), UNCLAIMED_CARD);
+    private CardAccount requireClaimedByAnyUser(String cardNumber) {
+        CardAccount card = requireCard(cardNumber);
+        ensure(claims.isClaimed(cardNumber, this::isClaimantActive), UNCLAIMED_CARD);
         return card;
     }
 
     public List<String> myCards(String token) {
-        requireActiveSession(token);
-        return List.copyOf(claimsByToken.getOrDefault(token, Set.of()));
+        UserSession session = requireActiveSession(token);
+        return List.copyOf(claims.cardsOf(claimant(session)));
     }
 
     public int balanceOf(String token, String cardNumber) {
-        return requireClaimed(token, cardNumber).balance();
+        long start = metrics.start();
+        try {
+            int balance = requireClaimed(token, cardNumber).balance();
+            metrics.succeeded(Operation.BALANCE, start);
+            return balance;
+        } catch (RuntimeException ex) {
+            metrics.failed(Operation.BALANCE, ex, start);
+            throw ex;
+        }
     }
 
     public List<Charge> chargesOf(String token, String cardNumber) {
-        requireClaimed(token, cardNumber);
-        return List.copyOf(chargesByCard.getOrDefault(cardNumber, List.of()));
+        long start = metrics.start();
+        try {
+            requireClaimed(token, cardNumber);
+            List<Charge> charges = historyOf(cardNumber).charges();
+            metrics.succeeded(Operation.STATEMENT, start);
+            return charges;
+        } catch (RuntimeException ex) {
+            metrics.failed(Operation.STATEMENT, ex, start);
+            throw ex;
+        }
+    }
+
+    public StatementPage statementPage(String token, String cardNumber, StatementQuery query) {
+        long start = metrics.start();
+        try {
+            Objects.requireNonNull(query, NULL_OBJECT);
+            requireClaimed(token, cardNumber);
+            StatementPage page = query.isLatest()
+                    ? statements.latest(cardNumber, historyOf(cardNumber), query.pageSize())
+                    : historyOf(cardNumber).newestFirst(query);
+            metrics.succeeded(Operation.STATEMENT, start);
+            return page;
+        } catch (RuntimeException ex) {
+            metrics.failed(Operation.STATEMENT, ex, start);
+            throw ex;
+        }
+    }
+
+    public StatementPage chargesSince(String token, String cardNumber, int cursor, int pageSize) {
+        long start = metrics.start();
+        try {
+            requireClaimed(token, cardNumber);
+            StatementPage page = historyOf(cardNumber).since(cursor, pageSize);
+            metrics.succeeded(Operation.STATEMENT, start);
+            return page;
+        } catch (RuntimeException ex) {
+            metrics.failed(Operation.STATEMENT, ex, start);
+            throw ex;
+        }
+    }
+
+    private ChargeHistory historyOf(String cardNumber) {
+        ChargeHistory history = chargesByCard.get(cardNumber);
+        if (history != null) { return history; }
+        return archived.contains(cardNumber) ? chargesByCard.computeIfAbsent(cardNumber, this::newHistory) : NO_CHARGES;
     }
 
     public int balance(String token, String cardNumber) { return balanceOf(token, cardNumber); }
     public List<Charge> statement(String token, String cardNumber) { return chargesOf(token, cardNumber); }
 
-    private Merchant requireMerchant(String merchantId, String privateCredential) {
-        Merchant merchant = merchantsById.get(merchantId);
-        if (merchant == null) { throw new IllegalArgumentException(UNKNOWN_MERCHANT); }
-        ensure(merchant.privateCredential().equals(privateCredential), NULL_OR_EMPTY_VALUE);
-        return merchant;
+    private void requireMerchant(String merchantId, String privateCredential) {
+        if (!merchants.contains(merchantId)) { throw new IllegalArgumentException(UNKNOWN_MERCHANT); }
+        ensure(merchants.verify(merchantId, privateCredential), NULL_OR_EMPTY_VALUE);
+    }
+
+    public boolean isMerchant(String merchantId, String merchantCredential) {
+        return merchants.verify(merchantId, merchantCredential);
+    }
+
+    // source es de donde viene el intento (la IP): los intentos fallidos de un origen no gastan el balde de otro
+    public boolean isMerchant(String merchantId, String merchantCredential, String source) {
+        return merchants.verify(merchantId, merchantCredential, source);
+    }
+
+    public MerchantCredentials.Metrics merchantCredentialMetrics() {
+        return merchants.metrics();
     }
 
     public void charge(String merchantId, String merchantCredential, String cardNumber, int amount, String description) {
-        Merchant merchant = requireMerchant(merchantId, merchantCredential);
-        GiftCard card = requireClaimedByAnyUser(cardNumber);
-        ensure(amount > 0, Charge.INVALID_AMOUNT);
-        nonBlank(description, NULL_OR_EMPTY_VALUE);
-        card.charge(amount, description);
-        Charge charge = new Charge(card.cardNumber(), merchant.id(), amount, description, Instant.now(clock));
-        chargesByCard.computeIfAbsent(cardNumber, k -> new ArrayList<>()).add(charge);
-    }
-}
\ No newline at end of file
+        if (pipeline != null) {
+            awaitCharged(chargeAsync(merchantId, merchantCredential, cardNumber, amount, description));
+            return;
+        }
+        long start = metrics.start();
+        try {
+            debit(merchantId, merchantCredential, cardNumber, amount, description);
+            metrics.succeeded(Operation.CHARGE, start);
+        } catch (RuntimeException ex) {
+            metrics.failed(Operation.CHARGE, ex, start);
+            throw ex;
+        }
+    }
+
+    private void debit(String merchantId, String merchantCredential, String cardNumber, int amount, String description) {
+        requireMerchant(merchantId, merchantCredential);
+        ChargeAdmission admitted = admit(merchantId, 1);
+        try {
+            CardAccount card = requireClaimedByAnyUser(cardNumber);
+            ensure(amount > 0, Charge.INVALID_AMOUNT);
+            nonBlank(description, NULL_OR_EMPTY_VALUE);
+            chargesByCard.computeIfAbsent(cardNumber, this::newHistory)
+                    .charge(card, merchantId, amount, description, clock, notifier);
+        } finally {
+            admitted.release();
+        }
+    }
+
+    // valida, autentica y descuenta en el hilo que llama; el future se completa cuando el cargo es durable y ya esta
+    // en el extracto. Sin pipeline se cobra en el momento y el future vuelve completo
+    public CompletableFuture<Charge> chargeAsync(String merchantId, String merchantCredential, String cardNumber, int amount, String description) {
+        return measured(() -> {
+            requireMerchant(merchantId, merchantCredential);
+            return submit(merchantId, cardNumber, amount, description);
+        });
+    }
+
+    // con la misma clave, el mismo merchant recibe el cargo del primer intento (o espera al que esta en curso) en vez
+    // de cobrar otra vez; reusar la clave para otro cobro es un error. El merchant se autentica igual en cada intento
+    public CompletableFuture<Charge> chargeAsync(String merchantId, String merchantCredential, String cardNumber, int amount, String description, String idempotencyKey) {
+        return measured(() -> {
+            requireMerchant(merchantId, merchantCredential);
+            IdempotencyCache.Request request = new IdempotencyCache.Request(cardNumber, amount, description);
+            return idempotency.charge(merchantId, idempotencyKey, request, () -> submit(merchantId, cardNumber, amount, description));
+        });
+    }
+
+    public Charge charge(String merchantId, String merchantCredential, String cardNumber, int amount, String description, String idempotencyKey) {
+        return awaitCharged(chargeAsync(merchantId, merchantCredential, cardNumber, amount, description, idempotencyKey));
+    }
+
+    private CompletableFuture<Charge> measured(Supplier<CompletableFuture<Charge>> submit) {
+        long start = metrics.start();
+        CompletableFuture<Charge> charged;
+        try {
+            charged = submit.get();
+        } catch (RuntimeException ex) {
+            metrics.failed(Operation.CHARGE, ex, start);
+            throw ex;
+        }
+        return charged.whenComplete((charge, ex) -> {
+            if (ex == null) { metrics.succeeded(Operation.CHARGE, start); } else { metrics.failed(Operation.CHARGE, asRuntime(ex), start); }
+        });
+    }
+
+    private CompletableFuture<Charge> submit(String merchantId, String cardNumber, int amount, String description) {
+        ChargeAdmission admitted = admit(merchantId, 1);
+        CompletableFuture<Charge> charged;
+        try {
+            CardAccount card = requireClaimedByAnyUser(cardNumber);
+            ensure(amount > 0, Charge.INVALID_AMOUNT);
+            nonBlank(description, NULL_OR_EMPTY_VALUE);
+            ChargeHistory history = chargesByCard.computeIfAbsent(cardNumber, this::newHistory);
+            ChargePipeline current = pipeline;
+            charged = current == null
+                    ? CompletableFuture.completedFuture(history.charge(card, merchantId, amount, description, clock, notifier))
+                    : current.submit(card, history, merchantId, amount, description, clock);
+        } catch (RuntimeException ex) {
+            admitted.release();
+            throw ex;
+        }
+        charged.whenComplete((charge, ex) -> admitted.release());
+        return charged;
+    }
+
+    private static Charge awaitCharged(CompletableFuture<Charge> charged) {
+        try {
+            return charged.join();
+        } catch (CompletionException ex) {
+            throw asRuntime(ex.getCause());
+        }
+    }
+
+    private static RuntimeException asRuntime(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) { failure = failure.getCause(); }
+        return failure instanceof RuntimeException runtime ? runtime : new IllegalStateException(failure);
+    }
+
+    private ChargeAdmission admit(String merchantId, int permits) {
+        ChargeAdmission current = admission;
+        current.acquire(merchantId, permits);
+        return current;
+    }
+
+    // el merchant se autentica una vez y cada tarjeta se cobra con un solo lock y una sola escritura al journal.
+    // El lote gasta un permiso del merchant por item, de a tramos de a lo sumo una rafaga que ocupan un lugar entre
+    // los cobros en curso cada uno. Si no entra el primer tramo se rechaza el lote entero; si no entra uno
+    // posterior, los items que faltan vuelven fallados con el motivo del rechazo
+    public List<ChargeResult> chargeBatch(String merchantId, String merchantCredential, List<ChargeItem> items) {
+        long start = metrics.start();
+        try {
+            List<ChargeResult> results = chargeItems(merchantId, merchantCredential, items);
+            metrics.succeeded(Operation.CHARGE_BATCH, start);
+            return results;
+        } catch (RuntimeException ex) {
+            metrics.failed(Operation.CHARGE_BATCH, ex, start);
+            throw ex;
+        }
+    }
+
+    private List<ChargeResult> chargeItems(String merchantId, String merchantCredential, List<ChargeItem> items) {
+        requireMerchant(merchantId, merchantCredential);
+        ensure(items != null && items.stream().noneMatch(Objects::isNull), NULL_OBJECT);
+        if (items.isEmpty()) { return List.of(); }
+        int chunk = admission.burst(merchantId);
+        List<ChargeResult> results = new ArrayList<>(items.size());
+        for (int from = 0; from < items.size(); from += chunk) {
+            List<ChargeItem> part = items.subList(from, from + Math.min(chunk, items.size() - from));
+            ChargeAdmission admitted;
+            try {
+                admitted = admit(merchantId, part.size());
+            } catch (ChargeRejectedException ex) {
+                if (from == 0) { throw ex; }
+                items.subList(from, items.size()).forEach(item -> results.add(ChargeResult.failed(item, ex.getMessage())));
+                return List.copyOf(results);
+            }
+            try {
+                results.addAll(chargeAdmittedBatch(merchantId, part));
+            } finally {
+                admitted.release();
+            }
+        }
+        return List.copyOf(results);
+    }
+
+    private List<ChargeResult> chargeAdmittedBatch(String merchantId, List<ChargeItem> items) {
+        Map<String, List<Integer>> positionsByCard = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            positionsByCard.computeIfAbsent(items.get(i).cardNumber(), k -> new ArrayList<>()).add(i);
+        }
+        ChargeResult[] results = new ChargeResult[items.size()];
+        positionsByCard.forEach((cardNumber, positions) -> {
+            List<ChargeItem> cardItems = positions.stream().map(items::get).toList();
+            List<ChargeResult> cardResults = chargeCard(merchantId, cardNumber, cardItems);
+            for (int i = 0; i < positions.size(); i++) { results[positions.get(i)] = cardResults.get(i); }
+        });
+        return List.of(results);
+    }
+
+    private List<ChargeResult> chargeCard(String merchantId, String cardNumber, List<ChargeItem> items) {
+        CardAccount card;
+        try {
+            card = requireClaimedByAnyUser(cardNumber);
+        } catch (IllegalArgumentException ex) {
+            return items.stream().map(item -> ChargeResult.failed(item, ex.getMessage())).toList();
+        }
+        ChargeHistory history = chargesByCard.computeIfAbsent(cardNumber, this::newHistory);
+        ChargePipeline current = pipeline;
+        return current == null
+                ? history.chargeAll(card, merchantId, items, clock, notifier)
+                : chargeThrough(current, card, history, merchantId, items);
+    }
+
+    // con el pipeline cada item se encola por separado (en orden, asi que suelen viajar en el mismo lote durable)
+    // y el lote espera a todos
+    private List<ChargeResult> chargeThrough(ChargePipeline current, CardAccount card, ChargeHistory history, String merchantId, List<ChargeItem> items) {
+        List<CompletableFuture<Charge>> charged = new ArrayList<>(items.size());
+        for (ChargeItem item : items) {
+            try {
+                charged.add(current.submit(card, history, merchantId, item.amount(), item.description(), clock));
+            } catch (IllegalArgumentException ex) {
+                charged.add(CompletableFuture.failedFuture(ex));
+            }
+        }
+        List<ChargeResult> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                results.add(ChargeResult.charged(items.get(i), charged.get(i).join()));
+            } catch (CompletionException ex) {
+                results.add(ChargeResult.failed(items.get(i), asRuntime(ex.getCause()).getMessage()));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,75 @@
+package org.udesa.tpa;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+public class FacadeConfiguration {
+    @Bean
+    public Clock clock() {
+        return Clock.systemUTC();
+    }
+
+    @Bean
+    public ChargeAggregates chargeAggregates() {
+        return new ChargeAggregates();
+    }
+
+    @Bean
+    public Facade facade(Clock clock, TpaProperties properties, ChargeAggregates aggregates) throws IOException {
+        Facade facade = properties.preload().isConfigured() ? preloadedFacade(clock, properties) : configuredFacade(clock, properties);
+        facade.admitChargesWith(chargeAdmission(clock, properties.charges()));
+        facade.deduplicateChargesWith(new IdempotencyCache(clock, properties.charges().idempotencyWindow(),
+                IdempotencyCache.DEFAULT_SEGMENTS, IdempotencyCache.DEFAULT_KEYS_PER_SEGMENT));
+        facade.cacheStatementsWith(new StatementCache(properties.statements().cacheCapacity(), properties.statements().cachePageSize()));
+        facade.aggregateChargesWith(aggregates);
+        return facade;
+    }
+
+    private static Facade preloadedFacade(Clock clock, TpaProperties properties) throws IOException {
+        TpaProperties.PreloadProperties files = properties.preload();
+        BulkLoader.Preload preload = new BulkLoader().load(files.users(), files.cards(), files.merchants());
+        if (properties.signingKey() == null) {
+            return new Facade(clock, properties.sessionTtl(), preload);
+        }
+        return new Facade(clock, properties.sessionTtl(), signer(properties), preload);
+    }
+
+    private static Facade configuredFacade(Clock clock, TpaProperties properties) {
+        Map<String, GiftCard> cards = new HashMap<>();
+        properties.cards().forEach((number, card) -> cards.put(number, new GiftCard(card.owner(), number, card.balance())));
+        Map<String, Merchant> merchants = new HashMap<>();
+        properties.merchants().forEach((id, credential) -> merchants.put(id, new Merchant(id, credential)));
+        if (properties.signingKey() == null) {
+            return new Facade(clock, properties.sessionTtl(), properties.users(), cards, merchants);
+        }
+        return new Facade(clock, properties.sessionTtl(), signer(properties), properties.users(), cards, merchants);
+    }
+
+    private static SessionSigner signer(TpaProperties properties) {
+        return new SessionSigner(Base64.getDecoder().decode(properties.signingKey()));
+    }
+
+    @Bean
+    public MeterBinder facadeMetrics(Facade facade) {
+        return registry -> facade.exportMetricsTo(new MicrometerMetricsExporter(registry));
+    }
+
+    // sin tpa.charges.rate ni tpa.charges.max-in-flight no se limita nada
+    private static ChargeAdmission chargeAdmission(Clock clock, TpaProperties.ChargeProperties charges) {
+        ChargeAdmission.RateLimit defaultLimit = charges.rate() == null
+                ? ChargeAdmission.RateLimit.UNLIMITED
+                : new ChargeAdmission.RateLimit(charges.rate(), charges.burst() == null ? (int) Math.min(charges.rate(), Integer.MAX_VALUE) : charges.burst());
+        Map<String, ChargeAdmission.RateLimit> limits = new HashMap<>();
+        charges.merchants().forEach((id, limit) -> limits.put(id, new ChargeAdmission.RateLimit(limit.rate(), limit.burst())));
+        int maxInFlight = charges.maxInFlight() == null ? Integer.MAX_VALUE : charges.maxInFlight();
+        return new ChargeAdmission(clock, defaultLimit, limits, maxInFlight);
+    }
+}
@@ -0,0 +1,12 @@
+package org.udesa.tpa;
+
+import java.time.Instant;
+import java.util.List;
+
+// se llama dentro del lock de la tarjeta (o, con el pipeline, desde su unico hilo durable en el orden en que se
+// encolaron), asi que ve los cargos de cada tarjeta en orden
+public interface FacadeListener {
+    default void claimed(String username, String cardNumber, Instant at) {}
+    default void charged(Charge charge) {}
+    default void charged(List<Charge> charges) { charges.forEach(this::charged); }
+}
@@ -0,0 +1,169 @@
+package org.udesa.tpa;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+// cuantas veces se llamo cada operacion de la Facade y como termino (bien o con el motivo del error), mas su
+// latencia. Los contadores son exactos; la latencia se mide en una de cada sampleEvery llamadas porque leer el
+// reloj dos veces cuesta mas que el resto de la medicion. El motivo es un codigo fijo por cada mensaje constante
+// que puede lanzar una operacion; cualquier otro mensaje (o una excepcion sin mensaje) se cuenta como
+// OTHER_REASON, asi los tags no dependen del texto de los errores ni crecen con ellos
+public final class FacadeMetrics {
+    public enum Operation {
+        LOGIN, CLAIM, BALANCE, STATEMENT, CHARGE, CHARGE_BATCH;
+
+        public String tag() { return name().toLowerCase(); }
+    }
+
+    public record Outcome(long count, long p50Nanos, long p99Nanos, long maxNanos) {}
+
+    public static String INVALID_SAMPLING = "The latency sampling rate must be a power of 2";
+    public static final String OPERATIONS = "tpa.facade.operations";
+    public static final String LATENCY = "tpa.facade.latency";
+    public static final String SUCCESS = "success";
+    public static final String OTHER_REASON = "other";
+    public static final int DEFAULT_SAMPLE_EVERY = 64;
+    private static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private final boolean enabled;
+    private final int sampleMask;
+    private final Stats[] operations = new Stats[Operation.values().length];
+    private final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+
+    public FacadeMetrics() {
+        this(DEFAULT_SAMPLE_EVERY);
+    }
+
+    public FacadeMetrics(int sampleEvery) {
+        this(sampleEvery, true);
+    }
+
+    // no cuenta ni mide nada: la linea de base para ver cuanto le cuesta la medicion a cada operacion
+    public static FacadeMetrics disabled() {
+        return new FacadeMetrics(1, false);
+    }
+
+    private FacadeMetrics(int sampleEvery, boolean enabled) {
+        ensure(sampleEvery > 0 && Integer.bitCount(sampleEvery) == 1, INVALID_SAMPLING);
+        this.enabled = enabled;
+        this.sampleMask = sampleEvery - 1;
+        for (Operation operation : Operation.values()) { operations[operation.ordinal()] = new Stats(); }
+    }
+
+    // devuelve el instante de inicio o NOT_SAMPLED; se le pasa tal cual a succeeded o failed
+    public long start() {
+        if (!enabled) { return NOT_SAMPLED; }
+        return (ThreadLocalRandom.current().nextInt() & sampleMask) == 0 ? System.nanoTime() : NOT_SAMPLED;
+    }
+
+    public void succeeded(Operation operation, long start) {
+        if (!enabled) { return; }
+        operations[operation.ordinal()].success.record(start);
+    }
+
+    public void failed(Operation operation, RuntimeException failure, long start) {
+        if (!enabled) { return; }
+        operations[operation.ordinal()].failure(operation, reasonOf(failure)).record(start);
+    }
+
+    public static String reasonOf(RuntimeException failure) {
+        String message = failure.getMessage();
+        return message == null ? OTHER_REASON : Reasons.CODES.getOrDefault(message, OTHER_REASON);
+    }
+
+    public Outcome outcome(Operation operation, String reason) {
+        Series series = SUCCESS.equals(reason) ? operations[operation.ordinal()].success : operations[operation.ordinal()].failures.get(reason);
+        if (series == null) { return new Outcome(0, 0, 0, 0); }
+        return new Outcome(series.count.sum(), series.latency.valueAtPercentile(50), series.latency.valueAtPercentile(99), series.latency.maxNanos());
+    }
+
+    // registra todas las series que ya existen y las que aparezcan despues
+    public synchronized void exportTo(MetricsExporter exporter) {
+        Objects.requireNonNull(exporter, NULL_OBJECT);
+        exporters.add(exporter);
+        for (Operation operation : Operation.values()) {
+            Stats stats = operations[operation.ordinal()];
+            stats.success.exportTo(exporter, operation, SUCCESS);
+            stats.failures.forEach((reason, series) -> series.exportTo(exporter, operation, reason));
+        }
+    }
+
+    private synchronized Series newFailure(Operation operation, String reason) {
+        Series series = new Series();
+        exporters.forEach(exporter -> series.exportTo(exporter, operation, reason));
+        return series;
+    }
+
+    private final class Series {
+        final LongAdder count = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        void record(long start) {
+            count.increment();
+            if (start != NOT_SAMPLED) { latency.record(System.nanoTime() - start); }
+        }
+
+        void exportTo(MetricsExporter exporter, Operation operation, String outcome) {
+            Map<String, String> tags = Map.of("operation", operation.tag(), "outcome", outcome);
+            exporter.counter(OPERATIONS, tags, count::sum);
+            exporter.latency(LATENCY, tags, count::sum, latency);
+        }
+    }
+
+    private final class Stats {
+        final Series success = new Series();
+        final Map<String, Series> failures = new ConcurrentHashMap<>();
+
+        Series failure(Operation operation, String reason) {
+            Series series = failures.get(reason);
+            return series != null ? series : failures.computeIfAbsent(reason, key -> newFailure(operation, key));
+        }
+    }
+
+    // aparte para que la tabla se arme recien con el primer error, cuando los mensajes de todas las clases ya
+    // estan inicializados
+    private static final class Reasons {
+        static final Map<String, String> CODES = codes(
+                Facade.WRONG_PASSWORD, "wrong_password",
+                Facade.NULL_OBJECT, "null_object",
+                Facade.NULL_OR_EMPTY_VALUE, "null_or_empty_value",
+                Facade.GIFT_CARD_DOES_NOT_BELONG_TO_USER, "gift_card_does_not_belong_to_user",
+                Facade.UNCLAIMED_CARD, "unclaimed_card",
+                Facade.CLAIMED_CARD, "claimed_card",
+                Facade.UNKNOWN_CARD, "unknown_card",
+                Facade.UNKNOWN_USER, "unknown_user",
+                Facade.UNKNOWN_MERCHANT, "unknown_merchant",
+                GiftCard.INSUFFICIENT_FUNDS, "insufficient_funds",
+                Charge.INVALID_AMOUNT, "invalid_amount",
+                Charge.CARD_NUMBER_MUST_BE_A_NUMERIC_STRING, "card_number_must_be_a_numeric_string",
+                Charge.DESCRIPTION_TOO_LONG, "description_too_long",
+                UserSession.EXPIRED_TOKEN, "expired_token",
+                SessionToken.INVALID_TOKEN, "invalid_token",
+                SessionStore.TOO_MANY_SESSIONS, "too_many_sessions",
+                ChargeAdmission.RATE_LIMITED, "rate_limited",
+                ChargeAdmission.OVERLOADED, "overloaded",
+                IdempotencyCache.KEY_REUSED, "key_reused",
+                ChargePipeline.PIPELINE_CLOSED, "pipeline_closed",
+                ChargeJournal.JOURNAL_FAILED, "journal_failed",
+                ChargeJournal.TEXT_TOO_LONG, "text_too_long",
+                ChargeColumns.COLUMNS_FULL, "columns_full",
+                StatementQuery.INVALID_PAGE_SIZE, "invalid_page_size",
+                StatementQuery.INVALID_CURSOR, "invalid_cursor",
+                StatementQuery.INVALID_RANGE, "invalid_range");
+
+        private static Map<String, String> codes(String... messagesAndCodes) {
+            Map<String, String> codes = new HashMap<>();
+            for (int i = 0; i < messagesAndCodes.length; i += 2) { codes.putIfAbsent(messagesAndCodes[i], messagesAndCodes[i + 1]); }
+            return Map.copyOf(codes);
+        }
+    }
+}
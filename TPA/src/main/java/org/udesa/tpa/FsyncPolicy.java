@@ -0,0 +1,25 @@
+package org.udesa.tpa;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+public record FsyncPolicy(Kind kind, Duration interval) {
+    // EVERY_COMMIT: un fsync por registro. BATCHED: los que llegan durante un fsync comparten el siguiente.
+    // INTERVAL: se vuelve sin esperar y un hilo hace fsync cada interval
+    public enum Kind { EVERY_COMMIT, BATCHED, INTERVAL }
+
+    public static String INVALID_INTERVAL = "The fsync interval must be greater than 0";
+
+    public FsyncPolicy {
+        Objects.requireNonNull(kind, NULL_OBJECT);
+        Objects.requireNonNull(interval, NULL_OBJECT);
+        ensure(kind != Kind.INTERVAL || (!interval.isNegative() && !interval.isZero()), INVALID_INTERVAL);
+    }
+
+    public static FsyncPolicy everyCommit() { return new FsyncPolicy(Kind.EVERY_COMMIT, Duration.ZERO); }
+    public static FsyncPolicy batched() { return new FsyncPolicy(Kind.BATCHED, Duration.ZERO); }
+    public static FsyncPolicy every(Duration interval) { return new FsyncPolicy(Kind.INTERVAL, interval); }
+}
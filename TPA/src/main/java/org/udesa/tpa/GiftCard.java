@@ -1,13 +1,16 @@
 package org.udesa.tpa;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.udesa.tpa.Utils.*;
 import static org.udesa.tpa.Facade.*;
 import static org.udesa.tpa.Charge.*;
 
-public class GiftCard {
+public class GiftCard implements CardAccount {
     private final String owner;
     private final String cardNumber;
-    private int balance;
+    private final int initialBalance;
+    private final AtomicInteger balance;
 
     public static String NEGATIVE_INITIAL_BALANCE = "Initial Balance must be a non-negative number";
     public static String INSUFFICIENT_FUNDS = "Charging amount must be less than the card's balance";
@@ -17,23 +20,29 @@ public class GiftCard {
         this.owner = nonBlank(owner, NULL_OR_EMPTY_VALUE);
         this.cardNumber = nonBlank(cardNumber, NULL_OR_EMPTY_VALUE);
         if (initialBalance < 0) { throw new IllegalArgumentException(NEGATIVE_INITIAL_BALANCE); }
-        this.balance = initialBalance;
+        this.initialBalance = initialBalance;
+        this.balance = new AtomicInteger(initialBalance);
     }
 
     public void addBalance(int amount) {
         ensure(amount > 0, INVALID_AMOUNT);
-        balance += amount;
+        balance.addAndGet(amount);
     }
 
     public void charge(int amount, String description) {
         ensure(amount > 0, INVALID_AMOUNT);
         nonBlank(description, NULL_OR_EMPTY_VALUE);
-        int newBalance = balance - amount;
-        if (newBalance < 0) {throw new IllegalArgumentException(INSUFFICIENT_FUNDS);}
-        balance = newBalance;
+        int current;
+        int newBalance;
+        do {
+            current = balance.get();
+            newBalance = current - amount;
+            if (newBalance < 0) {throw new IllegalArgumentException(INSUFFICIENT_FUNDS);}
+        } while (!balance.compareAndSet(current, newBalance));
     }
 
     public String owner() { return owner; }
     public String cardNumber() { return cardNumber; }
-    public int balance() { return balance; }
+    public int initialBalance() { return initialBalance; }
+    public int balance() { return balance.get(); }
 }
@@ -0,0 +1,93 @@
+package org.udesa.tpa;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.List;
+
+// las rutas de usuario reciben el token que dejo SessionTokenFilter y las de merchant el Merchant que dejo
+// MerchantCredentialFilter; las reglas siguen estando en la Facade
+@RestController
+public class GiftCardController {
+    public record LoginRequest(String username, String password) {}
+    public record LoginResponse(String token) {}
+    public record BalanceResponse(String cardNumber, int balance) {}
+
+    private final Facade facade;
+    private final ChargeAggregates aggregates;
+
+    public GiftCardController(Facade facade, ChargeAggregates aggregates) {
+        this.facade = facade;
+        this.aggregates = aggregates;
+    }
+
+    @PostMapping("/login")
+    public LoginResponse login(@RequestBody LoginRequest request) {
+        return new LoginResponse(facade.login(request.username(), request.password()));
+    }
+
+    @PostMapping("/logout")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void logout(@AuthenticationPrincipal String token) {
+        facade.logout(token);
+    }
+
+    @PostMapping("/cards/{cardNumber}/claim")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void claim(@AuthenticationPrincipal String token, @PathVariable String cardNumber) {
+        facade.claim(token, cardNumber);
+    }
+
+    @GetMapping("/cards")
+    public List<String> myCards(@AuthenticationPrincipal String token) {
+        return facade.myCards(token);
+    }
+
+    @GetMapping("/cards/{cardNumber}/balance")
+    public BalanceResponse balance(@AuthenticationPrincipal String token, @PathVariable String cardNumber) {
+        return new BalanceResponse(cardNumber, facade.balanceOf(token, cardNumber));
+    }
+
+    @GetMapping("/cards/{cardNumber}/statement")
+    public StatementPage statement(@AuthenticationPrincipal String token, @PathVariable String cardNumber,
+                                   @RequestParam(defaultValue = "50") int pageSize,
+                                   @RequestParam(required = false) Integer before,
+                                   @RequestParam(required = false) Instant from,
+                                   @RequestParam(required = false) Instant to) {
+        StatementQuery query = StatementQuery.latest(pageSize)
+                .before(before == null ? Integer.MAX_VALUE : before)
+                .between(from == null ? Instant.MIN : from, to == null ? Instant.MAX : to);
+        return facade.statementPage(token, cardNumber, query);
+    }
+
+    @PostMapping("/merchants/charges")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void charge(@AuthenticationPrincipal Merchant merchant, @RequestBody ChargeItem item,
+                       @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            facade.charge(merchant.id(), merchant.privateCredential(), item.cardNumber(), item.amount(), item.description());
+        } else {
+            facade.charge(merchant.id(), merchant.privateCredential(), item.cardNumber(), item.amount(), item.description(), idempotencyKey);
+        }
+    }
+
+    @PostMapping("/merchants/charges/batch")
+    public List<ChargeResult> chargeBatch(@AuthenticationPrincipal Merchant merchant, @RequestBody List<ChargeItem> items) {
+        return facade.chargeBatch(merchant.id(), merchant.privateCredential(), items);
+    }
+
+    @GetMapping("/merchants/totals")
+    public ChargeAggregates.Totals totals(@AuthenticationPrincipal Merchant merchant) {
+        return aggregates.merchantTotals(merchant.id());
+    }
+
+    @GetMapping("/merchants/totals/buckets")
+    public List<ChargeAggregates.Bucket> buckets(@AuthenticationPrincipal Merchant merchant,
+                                                 @RequestParam(defaultValue = "HOUR") ChargeAggregates.Granularity granularity,
+                                                 @RequestParam Instant from,
+                                                 @RequestParam Instant to) {
+        return aggregates.merchantBuckets(merchant.id(), granularity, from, to);
+    }
+}
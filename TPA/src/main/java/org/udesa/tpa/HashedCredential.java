@@ -0,0 +1,40 @@
+package org.udesa.tpa;
+
+import java.util.Base64;
+
+import static org.udesa.tpa.Utils.*;
+
+// credencial guardada como PBKDF2-HMAC-SHA256 con su propia sal. En texto queda {pbkdf2}iteraciones$sal$hash,
+// con el id entre llaves como en los password encoders de Spring, asi se distingue de un texto plano
+public record HashedCredential(int iterations, byte[] salt, byte[] hash) {
+    public static String INVALID_HASHED_CREDENTIAL = "Hashed credentials must look like {pbkdf2}iterations$salt$hash";
+    public static final String PREFIX = "{pbkdf2}";
+
+    public HashedCredential {
+        ensure(iterations > 0, INVALID_HASHED_CREDENTIAL);
+        ensure(salt != null && salt.length > 0, INVALID_HASHED_CREDENTIAL);
+        ensure(hash != null && hash.length > 0, INVALID_HASHED_CREDENTIAL);
+    }
+
+    public static boolean isEncoded(String value) {
+        return value != null && value.startsWith(PREFIX);
+    }
+
+    public static HashedCredential parse(String encoded) {
+        ensure(isEncoded(encoded), INVALID_HASHED_CREDENTIAL);
+        String[] fields = encoded.substring(PREFIX.length()).split("\\$");
+        ensure(fields.length == 3, INVALID_HASHED_CREDENTIAL);
+        try {
+            return new HashedCredential(Integer.parseInt(fields[0]), Base64.getDecoder().decode(fields[1]), Base64.getDecoder().decode(fields[2]));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(INVALID_HASHED_CREDENTIAL);
+        }
+    }
+
+    public String encoded() {
+        return PREFIX + iterations + "$" + Base64.getEncoder().encodeToString(salt) + "$" + Base64.getEncoder().encodeToString(hash);
+    }
+
+    @Override
+    public String toString() { return encoded(); }
+}
@@ -0,0 +1,171 @@
+package org.udesa.tpa;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+// el resultado de cada cobro con clave de idempotencia, por merchant, para que el reintento de un POS devuelva el
+// mismo cargo sin volver a cobrar. Las claves van en generaciones de window / segments: cada tanto nace una
+// generacion nueva y se tira entera la mas vieja, asi que expirar no recorre claves y una clave se recuerda por lo
+// menos window. Buscar es leer una referencia volatil y hacer un get por generacion, sin locks. Cada generacion
+// guarda hasta maxKeysPerSegment claves; si se llena rota antes de tiempo y la memoria queda acotada aunque la
+// ventana se acorte. Un cobro que falla no queda: el reintento vuelve a intentarlo
+public final class IdempotencyCache {
+    public record Metrics(long replays, long misses, long rotations, int size) {}
+
+    public static String KEY_REUSED = "The idempotency key was already used for a different charge";
+    public static String INVALID_WINDOW = "The idempotency window must be positive";
+    public static String INVALID_SEGMENTS = "The idempotency segments must be greater than 0";
+    public static String INVALID_SEGMENT_SIZE = "The idempotency segment size must be greater than 0";
+
+    public static final Duration DEFAULT_WINDOW = Duration.ofMinutes(10);
+    public static final int DEFAULT_SEGMENTS = 4;
+    public static final int DEFAULT_KEYS_PER_SEGMENT = 1 << 17;
+
+    record Key(String merchantId, String idempotencyKey) {}
+    record Request(String cardNumber, int amount, String description) {}
+    private record Entry(Request request, CompletableFuture<Charge> outcome) {}
+
+    // la primera es la actual y la ultima la mas vieja
+    private record Generations(long startedAt, Map<Key, Entry>[] segments) {}
+
+    private final Clock clock;
+    private final long segmentMillis;
+    private final int maxKeysPerSegment;
+    private final AtomicReference<Generations> generations;
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+
+    public IdempotencyCache(Clock clock) {
+        this(clock, DEFAULT_WINDOW, DEFAULT_SEGMENTS, DEFAULT_KEYS_PER_SEGMENT);
+    }
+
+    public IdempotencyCache(Clock clock, Duration window, int segments, int maxKeysPerSegment) {
+        this.clock = Objects.requireNonNull(clock, NULL_OBJECT);
+        ensure(window != null && window.toMillis() > 0, INVALID_WINDOW);
+        ensure(segments > 0, INVALID_SEGMENTS);
+        ensure(maxKeysPerSegment > 0, INVALID_SEGMENT_SIZE);
+        this.segmentMillis = Math.max(1, window.toMillis() / segments);
+        this.maxKeysPerSegment = maxKeysPerSegment;
+        this.generations = new AtomicReference<>(new Generations(clock.millis(), newSegments(segments + 1)));
+    }
+
+    // devuelve el resultado del primer cobro con esa clave (aunque todavia este en curso) o cobra con charge. Si
+    // una rotacion se cruzo entre buscar e insertar, otro pudo haber buscado en la generacion nueva sin ver esta
+    // entrada: se saca y se vuelve a empezar, y quien ya la habia encontrado recibe el resultado del reintento
+    CompletableFuture<Charge> charge(String merchantId, String idempotencyKey, Request request, Supplier<CompletableFuture<Charge>> charge) {
+        Key key = new Key(merchantId, nonBlank(idempotencyKey, NULL_OR_EMPTY_VALUE));
+        Generations current = current(clock.millis());
+        Entry remembered = find(current, key);
+        if (remembered == null) {
+            Entry fresh = new Entry(request, new CompletableFuture<>());
+            remembered = current.segments()[0].putIfAbsent(key, fresh);
+            if (remembered == null) {
+                if (generations.get() != current) {
+                    current.segments()[0].remove(key, fresh);
+                    return relay(fresh, () -> charge(merchantId, idempotencyKey, request, charge));
+                }
+                misses.increment();
+                return run(current, key, fresh, charge);
+            }
+        }
+        ensure(remembered.request().equals(request), KEY_REUSED);
+        replays.increment();
+        return remembered.outcome();
+    }
+
+    public Metrics metrics() {
+        int size = 0;
+        for (Map<Key, Entry> segment : generations.get().segments()) { size += segment.size(); }
+        return new Metrics(replays.sum(), misses.sum(), rotations.sum(), size);
+    }
+
+    private CompletableFuture<Charge> run(Generations current, Key key, Entry entry, Supplier<CompletableFuture<Charge>> charge) {
+        CompletableFuture<Charge> charged;
+        try {
+            charged = charge.get();
+        } catch (RuntimeException ex) {
+            forget(current, key, entry);
+            entry.outcome().completeExceptionally(ex);
+            throw ex;
+        }
+        charged.whenComplete((done, ex) -> {
+            if (ex == null) {
+                entry.outcome().complete(done);
+            } else {
+                forget(current, key, entry);
+                entry.outcome().completeExceptionally(ex);
+            }
+        });
+        return charged;
+    }
+
+    private static CompletableFuture<Charge> relay(Entry abandoned, Supplier<CompletableFuture<Charge>> retry) {
+        CompletableFuture<Charge> retried;
+        try {
+            retried = retry.get();
+        } catch (RuntimeException ex) {
+            abandoned.outcome().completeExceptionally(ex);
+            throw ex;
+        }
+        retried.whenComplete((done, ex) -> {
+            if (ex == null) {
+                abandoned.outcome().complete(done);
+            } else {
+                abandoned.outcome().completeExceptionally(ex);
+            }
+        });
+        return retried;
+    }
+
+    private static void forget(Generations generations, Key key, Entry entry) {
+        for (Map<Key, Entry> segment : generations.segments()) { segment.remove(key, entry); }
+    }
+
+    private static Entry find(Generations generations, Key key) {
+        for (Map<Key, Entry> segment : generations.segments()) {
+            Entry entry = segment.get(key);
+            if (entry != null) { return entry; }
+        }
+        return null;
+    }
+
+    // rota cuando la actual ya cubrio su tramo o se lleno; si pasaron varios tramos se tiran varias de una vez
+    private Generations current(long now) {
+        while (true) {
+            Generations current = generations.get();
+            long elapsed = (now - current.startedAt()) / segmentMillis;
+            boolean full = current.segments()[0].size() >= maxKeysPerSegment;
+            if (elapsed <= 0 && !full) { return current; }
+            int length = current.segments().length;
+            int shift = (int) Math.min(length, Math.max(1, elapsed));
+            Map<Key, Entry>[] segments = newSegments(shift);
+            segments = Arrays.copyOf(segments, length);
+            System.arraycopy(current.segments(), 0, segments, shift, length - shift);
+            long startedAt = elapsed > 0 ? current.startedAt() + elapsed * segmentMillis : now;
+            Generations rotated = new Generations(startedAt, segments);
+            if (generations.compareAndSet(current, rotated)) {
+                rotations.add(shift);
+                return rotated;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Key, Entry>[] newSegments(int count) {
+        Map<Key, Entry>[] segments = new Map[count];
+        for (int i = 0; i < count; i++) { segments[i] = new ConcurrentHashMap<>(); }
+        return segments;
+    }
+}
@@ -0,0 +1,57 @@
+package org.udesa.tpa;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.udesa.tpa.Facade.*;
+
+// arma el snapshot nuevo con el anterior mas los segmentos cerrados del journal: nunca toca el estado vivo,
+// asi que compactar no frena a los cargos. Solo se leen y escriben los cargos nuevos desde el snapshot anterior
+public final class JournalCompactor {
+    private final ChargeJournal journal;
+    private final Path snapshotDirectory;
+
+    public JournalCompactor(ChargeJournal journal, Path snapshotDirectory) {
+        this.journal = Objects.requireNonNull(journal, NULL_OBJECT);
+        this.snapshotDirectory = Objects.requireNonNull(snapshotDirectory, NULL_OBJECT);
+    }
+
+    public synchronized long compact() throws IOException {
+        ChargeSnapshot base = ChargeSnapshot.latest(snapshotDirectory);
+        long upTo = journal.sealedSequence();
+        if (upTo <= base.sequence()) { return base.sequence(); }
+
+        Map<String, List<Charge>> newCharges = new LinkedHashMap<>();
+        journal.replay(base.sequence(), upTo, (sequence, charge) ->
+                newCharges.computeIfAbsent(charge.cardNumber(), k -> new ArrayList<>()).add(charge));
+
+        base.extend(snapshotDirectory, upTo, newCharges);
+        ChargeSnapshot.deleteOlderThan(snapshotDirectory, upTo);
+        journal.deleteSegmentsUpTo(upTo);
+        return upTo;
+    }
+
+    public ScheduledFuture<?> start(ScheduledExecutorService scheduler, Duration every) {
+        Objects.requireNonNull(scheduler, NULL_OBJECT);
+        long period = Objects.requireNonNull(every, NULL_OBJECT).toMillis();
+        return scheduler.scheduleWithFixedDelay(this::compactUnchecked, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void compactUnchecked() {
+        try {
+            compact();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.udesa.tpa;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// "Authorization: Basic ..." con el usuario de tpa.management autentica a operaciones en /actuator;
+// sin tpa.management.username y .password configurados no entra nadie
+public class ManagementCredentialFilter extends OncePerRequestFilter {
+    private static final String BASIC = "Basic ";
+    private static final String ACTUATOR = "/actuator/";
+
+    private final CredentialHasher hasher = new CredentialHasher();
+    private final String username;
+    private final HashedCredential credential;
+
+    public ManagementCredentialFilter(TpaProperties.ManagementProperties management) {
+        boolean configured = management.isConfigured();
+        this.username = configured ? management.username() : null;
+        this.credential = configured ? hasher.hashOrParse(management.password()) : null;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return credential == null || !request.getRequestURI().startsWith(ACTUATOR);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BASIC) && matches(header.substring(BASIC.length()).trim())) {
+            SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                    username, null, AuthorityUtils.createAuthorityList("ROLE_OPERATOR")));
+        }
+        chain.doFilter(request, response);
+    }
+
+    private boolean matches(String encoded) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getDecoder().decode(encoded), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+        int colon = decoded.indexOf(':');
+        return colon > 0 && decoded.substring(0, colon).equals(username) && hasher.matches(credential, decoded.substring(colon + 1));
+    }
+}
@@ -0,0 +1,36 @@
+package org.udesa.tpa;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// los merchants mandan su id y su credencial privada en headers; el principal es el Merchant. La IP de origen
+// separa los intentos: credenciales malas desde otra IP no traban al merchant verdadero
+public class MerchantCredentialFilter extends OncePerRequestFilter {
+    public static final String MERCHANT_ID = "X-Merchant-Id";
+    public static final String MERCHANT_CREDENTIAL = "X-Merchant-Credential";
+
+    private final Facade facade;
+
+    public MerchantCredentialFilter(Facade facade) {
+        this.facade = facade;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        String merchantId = request.getHeader(MERCHANT_ID);
+        String credential = request.getHeader(MERCHANT_CREDENTIAL);
+        if (facade.isMerchant(merchantId, credential, request.getRemoteAddr())) {
+            SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                    new Merchant(merchantId, credential), null, AuthorityUtils.createAuthorityList("ROLE_MERCHANT")));
+        }
+        chain.doFilter(request, response);
+    }
+}
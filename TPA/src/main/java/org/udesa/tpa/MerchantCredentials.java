@@ -0,0 +1,101 @@
+package org.udesa.tpa;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static org.udesa.tpa.Facade.*;
+
+// las credenciales de los merchants se guardan hasheadas. La primera verificacion paga el PBKDF2 y recuerda un
+// SHA-256 de la credencial aceptada; desde ahi cualquier candidato, bueno o malo, se resuelve comparando ese digest
+// en tiempo constante, sin PBKDF2. Antes de la primera aceptacion los intentos de PBKDF2 se limitan a
+// HASHES_PER_SECOND por merchant y por origen (la IP que manda el filtro): pasado eso se rechaza sin hashear, asi
+// probar credenciales no quema CPU. Los baldes son una tabla fija de SOURCE_STRIPES elegidos por merchant y
+// origen, asi que quien manda credenciales malas desde otra IP no le agota el balde al merchant verdadero salvo
+// que caiga en su misma franja (una en SOURCE_STRIPES). Sin origen (las llamadas directas a la Facade) todos los
+// intentos de un merchant comparten un balde y se pueden trabar entre si hasta que se acepte la primera.
+// Hay un lugar por merchant, asi que el cache queda acotado por la cantidad de merchants
+public final class MerchantCredentials {
+    public record Metrics(long hits, long misses, long rejected) {}
+
+    static final int HASHES_PER_SECOND = 5;
+    static final int HASH_BURST = 10;
+    static final int SOURCE_STRIPES = 1 << 12;
+    static final String NO_SOURCE = "";
+
+    private final CredentialHasher hasher;
+    private final Clock clock;
+    private final Map<String, HashedCredential> hashes;
+    private final TokenBucket[] hashBudgets = new TokenBucket[SOURCE_STRIPES];
+    private final Map<String, byte[]> verified = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public MerchantCredentials(Map<String, Merchant> merchantsById, CredentialHasher hasher) {
+        this(merchantsById, hasher, Clock.systemUTC());
+    }
+
+    // las credenciales en texto plano se hashean en paralelo
+    public MerchantCredentials(Map<String, Merchant> merchantsById, CredentialHasher hasher, Clock clock) {
+        this.hasher = Objects.requireNonNull(hasher, NULL_OBJECT);
+        this.clock = Objects.requireNonNull(clock, NULL_OBJECT);
+        this.hashes = Objects.requireNonNull(merchantsById, NULL_OBJECT).entrySet().parallelStream()
+                .collect(Collectors.toMap(Map.Entry::getKey, merchant -> hasher.hashOrParse(merchant.getValue().privateCredential())));
+        for (int i = 0; i < SOURCE_STRIPES; i++) { hashBudgets[i] = new TokenBucket(HASHES_PER_SECOND, HASH_BURST); }
+    }
+
+    public boolean contains(String merchantId) {
+        return merchantId != null && hashes.containsKey(merchantId);
+    }
+
+    public boolean verify(String merchantId, String credential) {
+        return verify(merchantId, credential, NO_SOURCE);
+    }
+
+    public boolean verify(String merchantId, String credential, String source) {
+        HashedCredential stored = merchantId == null ? null : hashes.get(merchantId);
+        if (stored == null || credential == null) { return false; }
+        byte[] digest = digest(merchantId, credential);
+        byte[] accepted = verified.get(merchantId);
+        if (accepted != null) {
+            boolean matches = MessageDigest.isEqual(accepted, digest);
+            (matches ? hits : rejected).increment();
+            return matches;
+        }
+        if (!budgetOf(merchantId, source).tryAcquire(1, clock.millis() * 1_000_000)) {
+            rejected.increment();
+            return false;
+        }
+        misses.increment();
+        if (!hasher.matches(stored, credential)) { return false; }
+        verified.put(merchantId, digest);
+        return true;
+    }
+
+    public Metrics metrics() {
+        return new Metrics(hits.sum(), misses.sum(), rejected.sum());
+    }
+
+    private TokenBucket budgetOf(String merchantId, String source) {
+        long id = (merchantId.hashCode() * 31L + Objects.requireNonNullElse(source, NO_SOURCE).hashCode()) * 0x9E3779B97F4A7C15L;
+        return hashBudgets[(int) (id ^ (id >>> 32)) & (SOURCE_STRIPES - 1)];
+    }
+
+    private static byte[] digest(String merchantId, String credential) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(merchantId.getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) 0);
+            return sha256.digest(credential.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
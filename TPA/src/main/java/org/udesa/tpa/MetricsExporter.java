@@ -0,0 +1,13 @@
+package org.udesa.tpa;
+
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// a donde se publican las metricas de la Facade. Cada serie se registra una sola vez y el exportador la lee
+// cuando quiere (pull): medir nunca espera al sistema de metricas. La latencia trae aparte la cantidad real de
+// llamadas, porque el histograma solo ve las muestreadas
+public interface MetricsExporter {
+    void counter(String name, Map<String, String> tags, LongSupplier count);
+    void gauge(String name, Map<String, String> tags, LongSupplier value);
+    void latency(String name, Map<String, String> tags, LongSupplier count, LatencyHistogram histogram);
+}
@@ -0,0 +1,53 @@
+package org.udesa.tpa;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// publica las metricas de la Facade en Micrometer (y de ahi en /actuator/metrics). La latencia se ve como un
+// FunctionTimer con la cantidad real de llamadas y un total estimado (la media muestreada por esa cantidad), mas
+// un gauge por percentil que lee el histograma
+public final class MicrometerMetricsExporter implements MetricsExporter {
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private final MeterRegistry registry;
+
+    public MicrometerMetricsExporter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void counter(String name, Map<String, String> tags, LongSupplier count) {
+        FunctionCounter.builder(name, count, LongSupplier::getAsLong).tags(tagsOf(tags)).register(registry);
+    }
+
+    @Override
+    public void gauge(String name, Map<String, String> tags, LongSupplier value) {
+        Gauge.builder(name, value, LongSupplier::getAsLong).tags(tagsOf(tags)).register(registry);
+    }
+
+    @Override
+    public void latency(String name, Map<String, String> tags, LongSupplier count, LatencyHistogram histogram) {
+        Tags meterTags = tagsOf(tags);
+        FunctionTimer.builder(name, histogram, h -> count.getAsLong(), h -> h.meanNanos() * count.getAsLong(), TimeUnit.NANOSECONDS)
+                .tags(meterTags).register(registry);
+        TimeGauge.builder(name + ".max", histogram, TimeUnit.NANOSECONDS, LatencyHistogram::maxNanos)
+                .tags(meterTags).register(registry);
+        for (double percentile : PERCENTILES) {
+            TimeGauge.builder(name + ".percentile", histogram, TimeUnit.NANOSECONDS, h -> h.valueAtPercentile(percentile))
+                    .tags(meterTags.and("percentile", String.valueOf(percentile / 100))).register(registry);
+        }
+    }
+
+    private static Tags tagsOf(Map<String, String> tags) {
+        return Tags.of(tags.entrySet().stream().map(tag -> Tag.of(tag.getKey(), tag.getValue())).toList());
+    }
+}
@@ -0,0 +1,125 @@
+package org.udesa.tpa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+// el cierre del dia: que el saldo de cada tarjeta sea el inicial menos sus cargos. Las tarjetas se reparten en un
+// ForkJoinPool partiendo el spliterator de la coleccion (sin copiarla) hasta tramos de CARDS_PER_TASK; cada tramo suma
+// los montos de cada historial directo de las columnas, sin armar Charges. Se corre con cobros en curso: saldo,
+// largo del historial y lo pendiente en el pipeline se leen juntos con el lock de la tarjeta, asi que cada
+// tarjeta se compara contra un estado en el que no hay un cargo a medias. El reporte cuenta todo y se queda
+// con las primeras maxMismatches diferencias, ordenadas por numero de tarjeta. Una tarjeta que solo tiene cargos
+// en el snapshot (nadie la toco desde el arranque) se compara contra los montos del archivo
+public final class Reconciliation {
+    public record Mismatch(String cardNumber, long expected, int actual) {}
+
+    public record Report(long cards, long charges, long amount, long mismatchCount, List<Mismatch> mismatches) {
+        public boolean balanced() { return mismatchCount == 0; }
+    }
+
+    public static String INVALID_MISMATCH_LIMIT = "The mismatch limit must not be negative";
+
+    public static final int DEFAULT_MAX_MISMATCHES = 1000;
+    static final int CARDS_PER_TASK = 1 << 12;
+
+    private final Collection<? extends CardAccount> cards;
+    private final Map<String, ChargeHistory> histories;
+    private final ChargeSnapshot archived;
+    private final int maxMismatches;
+
+    Reconciliation(Collection<? extends CardAccount> cards, Map<String, ChargeHistory> histories, int maxMismatches) {
+        this(cards, histories, ChargeSnapshot.empty(), maxMismatches);
+    }
+
+    Reconciliation(Collection<? extends CardAccount> cards, Map<String, ChargeHistory> histories, ChargeSnapshot archived, int maxMismatches) {
+        ensure(maxMismatches >= 0, INVALID_MISMATCH_LIMIT);
+        this.cards = cards;
+        this.histories = histories;
+        this.archived = Objects.requireNonNull(archived, NULL_OBJECT);
+        this.maxMismatches = maxMismatches;
+    }
+
+    Report run(ForkJoinPool pool) {
+        Objects.requireNonNull(pool, NULL_OBJECT);
+        Tally tally = pool.invoke(new Partition(cards.spliterator()));
+        tally.mismatches.sort(Comparator.comparing(Mismatch::cardNumber));
+        return new Report(tally.cards, tally.charges, tally.amount, tally.mismatchCount, List.copyOf(tally.mismatches));
+    }
+
+    // el saldo se lee antes de buscar el historial: si ya tenia un cargo, el historial ya estaba en el mapa
+    private void check(CardAccount card, Tally tally) {
+        int balance = card.balance();
+        ChargeHistory history = histories.get(card.cardNumber());
+        long charged = 0;
+        long pending = 0;
+        if (history != null) {
+            ChargeHistory.Snapshot snapshot = history.snapshot(card);
+            balance = snapshot.balance();
+            pending = snapshot.pending();
+            charged = history.amountOf(snapshot.size());
+            tally.charges += snapshot.size();
+        } else if (archived.contains(card.cardNumber())) {
+            charged = archived.amountOf(card.cardNumber());
+            tally.charges += archived.cards().get(card.cardNumber()).count();
+        }
+        tally.cards++;
+        tally.amount += charged;
+        long expected = card.initialBalance() - charged - pending;
+        if (expected != balance) { tally.mismatch(new Mismatch(card.cardNumber(), expected, balance), maxMismatches); }
+    }
+
+    private static final class Tally {
+        long cards;
+        long charges;
+        long amount;
+        long mismatchCount;
+        final List<Mismatch> mismatches = new ArrayList<>();
+
+        void mismatch(Mismatch mismatch, int max) {
+            mismatchCount++;
+            if (mismatches.size() < max) { mismatches.add(mismatch); }
+        }
+
+        void add(Tally other, int max) {
+            cards += other.cards;
+            charges += other.charges;
+            amount += other.amount;
+            mismatchCount += other.mismatchCount;
+            other.mismatches.stream().limit(Math.max(0, max - mismatches.size())).forEach(mismatches::add);
+        }
+    }
+
+    // se queda con la ultima mitad de cada particion y deja las otras a los demas hilos del pool
+    private final class Partition extends RecursiveTask<Tally> {
+        private final Spliterator<? extends CardAccount> cards;
+
+        Partition(Spliterator<? extends CardAccount> cards) {
+            this.cards = cards;
+        }
+
+        @Override
+        protected Tally compute() {
+            List<Partition> forked = new ArrayList<>();
+            Spliterator<? extends CardAccount> split;
+            while (cards.estimateSize() > CARDS_PER_TASK && (split = cards.trySplit()) != null) {
+                Partition partition = new Partition(split);
+                partition.fork();
+                forked.add(partition);
+            }
+            Tally tally = new Tally();
+            cards.forEachRemaining(card -> check(card, tally));
+            for (int i = forked.size() - 1; i >= 0; i--) { tally.add(forked.get(i).join(), maxMismatches); }
+            return tally;
+        }
+    }
+}
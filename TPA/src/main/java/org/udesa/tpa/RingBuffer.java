@@ -0,0 +1,64 @@
+package org.udesa.tpa;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.udesa.tpa.Utils.*;
+
+// cola acotada de varios productores y un consumidor sobre un arreglo circular (la de Vyukov): cada lugar tiene
+// su numero de secuencia, los productores se reparten los lugares con un CAS sobre la cola y el consumidor no
+// toma ningun lock. offer no espera: si esta llena devuelve false y el que produce decide que hacer
+final class RingBuffer<T> {
+    static String INVALID_CAPACITY = "The ring buffer capacity must be a power of 2";
+
+    private final Object[] items;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    RingBuffer(int capacity) {
+        ensure(capacity > 0 && Integer.bitCount(capacity) == 1, INVALID_CAPACITY);
+        this.items = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) { sequences.set(i, i); }
+    }
+
+    boolean offer(T item) {
+        long position = tail.get();
+        while (true) {
+            long available = sequences.get((int) position & mask) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) { break; }
+                position = tail.get();
+            } else if (available < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+        items[(int) position & mask] = item;
+        sequences.set((int) position & mask, position + 1);
+        return true;
+    }
+
+    // solo desde el hilo consumidor
+    @SuppressWarnings("unchecked")
+    int drainTo(List<T> batch, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) { break; }
+            batch.add((T) items[slot]);
+            items[slot] = null;
+            sequences.set(slot, head + mask + 1);
+            head++;
+            drained++;
+        }
+        return drained;
+    }
+
+    int capacity() { return items.length; }
+}
@@ -0,0 +1,40 @@
+package org.udesa.tpa;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.AnonymousAuthenticationFilter;
+
+// la API no guarda estado HTTP: cada request trae el token del usuario o la credencial del merchant.
+// De /actuator solo health queda abierto (sin detalles); el resto pide el usuario de operaciones
+@Configuration
+public class SecurityConfiguration {
+    @Bean
+    public SecurityFilterChain apiFilterChain(HttpSecurity http, Facade facade, TpaProperties properties) throws Exception {
+        return http
+                .csrf(AbstractHttpConfigurer::disable)
+                .httpBasic(AbstractHttpConfigurer::disable)
+                .formLogin(AbstractHttpConfigurer::disable)
+                .logout(AbstractHttpConfigurer::disable)
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(new SessionTokenFilter(facade), AnonymousAuthenticationFilter.class)
+                .addFilterBefore(new MerchantCredentialFilter(facade), AnonymousAuthenticationFilter.class)
+                .addFilterBefore(new ManagementCredentialFilter(properties.management()), AnonymousAuthenticationFilter.class)
+                .authorizeHttpRequests(requests -> requests
+                        .requestMatchers(HttpMethod.POST, "/login").permitAll()
+                        .requestMatchers("/error").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("OPERATOR")
+                        .requestMatchers("/merchants/**").hasRole("MERCHANT")
+                        .requestMatchers("/logout", "/cards/**").hasRole("USER")
+                        .anyRequest().denyAll())
+                .exceptionHandling(exceptions -> exceptions.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+                .build();
+    }
+}
@@ -0,0 +1,88 @@
+package org.udesa.tpa;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.springframework.util.Assert.*;
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+// sesiones sin estado: el token lleva usuario, emision y vencimiento firmados con HMAC-SHA256, asi cualquier nodo
+// con la misma clave lo valida sin buscarlo en ninguna tabla. Formato: base64url(usuario).emision.vencimiento.firma
+// Un Mac no se puede compartir entre hilos: se reparten varios por id de hilo, igual que en TokenGenerator
+public final class SessionSigner {
+    public static String INVALID_SIGNING_KEY = "The signing key must have at least 32 bytes";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final Mac[] macs;
+    private final int mask;
+
+    public SessionSigner(byte[] key) {
+        this(key, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public SessionSigner(byte[] key, int concurrency) {
+        ensure(key != null && key.length >= 32, INVALID_SIGNING_KEY);
+        int size = Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1;
+        this.macs = new Mac[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) { macs[i] = newMac(key); }
+    }
+
+    public UserSession issue(String username, Duration ttl, Clock clock) {
+        String user = nonBlank(username, NULL_OR_EMPTY_VALUE);
+        notNull(ttl, NULL_OBJECT);
+        notNull(clock, NULL_OBJECT);
+        ensure(!ttl.isNegative() && !ttl.isZero(), UserSession.INVALID_TTL);
+
+        Instant now = Instant.ofEpochMilli(clock.millis());
+        Instant expiresAt = now.plus(ttl);
+        String payload = ENCODER.encodeToString(user.getBytes(StandardCharsets.UTF_8)) + "." + now.toEpochMilli() + "." + expiresAt.toEpochMilli();
+        return UserSession.signed(payload + "." + ENCODER.encodeToString(sign(payload)), user, now, expiresAt);
+    }
+
+    // null si el token no tiene el formato o la firma no coincide; el vencimiento lo revisa quien lo usa
+    public UserSession verify(String token) {
+        if (token == null) { return null; }
+        int signatureAt = token.lastIndexOf('.');
+        if (signatureAt < 0) { return null; }
+        String payload = token.substring(0, signatureAt);
+        try {
+            if (!MessageDigest.isEqual(sign(payload), DECODER.decode(token.substring(signatureAt + 1)))) { return null; }
+            String[] fields = payload.split("\\.");
+            if (fields.length != 3) { return null; }
+            String username = new String(DECODER.decode(fields[0]), StandardCharsets.UTF_8);
+            return UserSession.signed(token, username, Instant.ofEpochMilli(Long.parseLong(fields[1])), Instant.ofEpochMilli(Long.parseLong(fields[2])));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private byte[] sign(String payload) {
+        long id = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        Mac mac = macs[(int) (id ^ (id >>> 32)) & mask];
+        synchronized (mac) {
+            return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static Mac newMac(byte[] key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key, ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
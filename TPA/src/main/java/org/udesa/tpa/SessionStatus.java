@@ -0,0 +1,7 @@
+package org.udesa.tpa;
+
+public enum SessionStatus {
+    ACTIVE, EXPIRED, UNKNOWN;
+
+    public boolean isActive() { return this == ACTIVE; }
+}
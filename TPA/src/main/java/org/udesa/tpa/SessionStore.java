@@ -0,0 +1,111 @@
+package org.udesa.tpa;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+public final class SessionStore {
+    public enum EvictionPolicy { EVICT_OLDEST, REJECT_NEW }
+
+    public record Metrics(int live, long expired, long evicted) {}
+
+    public static String TOO_MANY_SESSIONS = "The maximum number of live sessions has been reached";
+    public static String INVALID_CAPACITY = "The maximum number of live sessions must be greater than 0";
+
+    private static final Comparator<UserSession> BY_DEADLINE =
+            Comparator.comparing(UserSession::expiresAt).thenComparing(UserSession::token);
+
+    private final Clock clock;
+    private final int maxLiveSessions;
+    private final EvictionPolicy evictionPolicy;
+
+    private final SessionTable sessionsByToken = new SessionTable();
+    private final NavigableSet<UserSession> sessionsByDeadline = new ConcurrentSkipListSet<>(BY_DEADLINE);
+    private final List<Consumer<UserSession>> removalListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public SessionStore(Clock clock) {
+        this(clock, Integer.MAX_VALUE, EvictionPolicy.EVICT_OLDEST);
+    }
+
+    public SessionStore(Clock clock, int maxLiveSessions, EvictionPolicy evictionPolicy) {
+        this.clock = Objects.requireNonNull(clock, NULL_OBJECT);
+        this.evictionPolicy = Objects.requireNonNull(evictionPolicy, NULL_OBJECT);
+        ensure(maxLiveSessions > 0, INVALID_CAPACITY);
+        this.maxLiveSessions = maxLiveSessions;
+    }
+
+    public void onRemoval(Consumer<UserSession> listener) {
+        removalListeners.add(Objects.requireNonNull(listener, NULL_OBJECT));
+    }
+
+    public synchronized void add(UserSession session) {
+        Objects.requireNonNull(session, NULL_OBJECT);
+        if (sessionsByToken.size() >= maxLiveSessions) { makeRoom(); }
+        sessionsByToken.put(session);
+        sessionsByDeadline.add(session);
+    }
+
+    public UserSession get(String token) {
+        return sessionsByToken.get(token);
+    }
+
+    public boolean remove(String token) {
+        UserSession session = get(token);
+        return session != null && remove(session);
+    }
+
+    // la cola esta ordenada por vencimiento: se corta en la primera sesion que sigue viva
+    public synchronized int sweep() {
+        Instant now = Instant.now(clock);
+        int swept = 0;
+        for (UserSession oldest = first(); oldest != null && oldest.expiresAt().isBefore(now); oldest = first()) {
+            swept += expire(oldest);
+        }
+        return swept;
+    }
+
+    public ScheduledFuture<?> startSweeper(ScheduledExecutorService scheduler, Duration every) {
+        Objects.requireNonNull(scheduler, NULL_OBJECT);
+        long period = Objects.requireNonNull(every, NULL_OBJECT).toMillis();
+        return scheduler.scheduleAtFixedRate(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Metrics metrics() {
+        return new Metrics(sessionsByToken.size(), expired.sum(), evicted.sum());
+    }
+
+    private void makeRoom() {
+        sweep();
+        if (sessionsByToken.size() < maxLiveSessions) { return; }
+        ensure(evictionPolicy == EvictionPolicy.EVICT_OLDEST, TOO_MANY_SESSIONS);
+        UserSession oldest = first();
+        if (oldest != null && remove(oldest)) { evicted.increment(); }
+    }
+
+    private int expire(UserSession session) {
+        if (!remove(session)) { return 0; }
+        expired.increment();
+        return 1;
+    }
+
+    private UserSession first() {
+        Iterator<UserSession> oldestFirst = sessionsByDeadline.iterator();
+        return oldestFirst.hasNext() ? oldestFirst.next() : null;
+    }
+
+    private boolean remove(UserSession session) {
+        sessionsByDeadline.remove(session);
+        boolean removed = sessionsByToken.remove(session);
+        if (removed) { removalListeners.forEach(listener -> listener.accept(session)); }
+        return removed;
+    }
+}
@@ -0,0 +1,92 @@
+package org.udesa.tpa;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// sesiones indexadas por los dos longs del token: buscar un token que llega como texto no crea ningun objeto.
+// direccionamiento abierto con sondeo lineal; las escrituras se serializan y las lecturas no toman lock
+final class SessionTable {
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final Object REMOVED = new Object();
+
+    private volatile Object[] slots = new Object[16];
+    private int used;
+    private volatile int size;
+
+    UserSession get(String token) {
+        if (!SessionToken.isWellFormed(token)) { return null; }
+        long hi = SessionToken.decodeHi(token);
+        long lo = SessionToken.decodeLo(token);
+        Object[] table = slots;
+        int mask = table.length - 1;
+        for (int i = indexOf(hi, lo, mask); ; i = (i + 1) & mask) {
+            Object slot = SLOTS.getVolatile(table, i);
+            if (slot == null) { return null; }
+            if (slot instanceof UserSession session && session.key().hi() == hi && session.key().lo() == lo) { return session; }
+        }
+    }
+
+    synchronized void put(UserSession session) {
+        if ((used + 1) * 4L > slots.length * 3L) { rehash(); }
+        Object[] table = slots;
+        int mask = table.length - 1;
+        int free = -1;
+        for (int i = indexOf(session.key().hi(), session.key().lo(), mask); ; i = (i + 1) & mask) {
+            Object slot = table[i];
+            if (slot == null) {
+                if (free < 0) {
+                    free = i;
+                    used++;
+                }
+                break;
+            }
+            if (slot == REMOVED) {
+                if (free < 0) { free = i; }
+            } else if (((UserSession) slot).key().equals(session.key())) {
+                SLOTS.setVolatile(table, i, session);
+                return;
+            }
+        }
+        SLOTS.setVolatile(table, free, session);
+        size = size + 1;
+    }
+
+    // solo borra si el token sigue apuntando a esa misma sesion
+    synchronized boolean remove(UserSession session) {
+        Object[] table = slots;
+        int mask = table.length - 1;
+        for (int i = indexOf(session.key().hi(), session.key().lo(), mask); table[i] != null; i = (i + 1) & mask) {
+            if (table[i] == session) {
+                SLOTS.setVolatile(table, i, REMOVED);
+                size = size - 1;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() { return size; }
+
+    // se arma una tabla nueva sin los borrados y se publica entera; los lectores siguen con la anterior
+    private void rehash() {
+        Object[] old = slots;
+        int capacity = 16;
+        while (capacity < size * 4L) { capacity <<= 1; }
+        Object[] fresh = new Object[capacity];
+        int mask = capacity - 1;
+        for (Object slot : old) {
+            if (slot instanceof UserSession session) {
+                int i = indexOf(session.key().hi(), session.key().lo(), mask);
+                while (fresh[i] != null) { i = (i + 1) & mask; }
+                fresh[i] = session;
+            }
+        }
+        used = size;
+        slots = fresh;
+    }
+
+    private static int indexOf(long hi, long lo, int mask) {
+        long mixed = (hi ^ lo) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+}
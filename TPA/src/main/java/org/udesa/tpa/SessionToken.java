@@ -0,0 +1,82 @@
+package org.udesa.tpa;
+
+import java.util.Arrays;
+
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+// token de 128 bits guardado como dos longs; viaja como base64url sin padding (22 caracteres)
+public record SessionToken(long hi, long lo) {
+    public static String INVALID_TOKEN = "Token must be 22 base64url characters";
+
+    private static final int LENGTH = 22;
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) { VALUES[ALPHABET[i]] = (byte) i; }
+    }
+
+    public static SessionToken parse(String encoded) {
+        ensure(isWellFormed(nonBlank(encoded, NULL_OR_EMPTY_VALUE)), INVALID_TOKEN);
+        return new SessionToken(decodeHi(encoded), decodeLo(encoded));
+    }
+
+    static boolean isWellFormed(String encoded) {
+        if (encoded == null || encoded.length() != LENGTH) { return false; }
+        for (int i = 0; i < LENGTH; i++) {
+            if (valueAt(encoded, i) < 0) { return false; }
+        }
+        return (valueAt(encoded, LENGTH - 1) & 15) == 0;
+    }
+
+    // las dos mitades por separado, asi una busqueda no necesita crear el SessionToken
+    static long decodeHi(String encoded) { return decode(encoded, true); }
+    static long decodeLo(String encoded) { return decode(encoded, false); }
+
+    private static long decode(String encoded, boolean high) {
+        long hi = 0;
+        long lo = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            int value = valueAt(encoded, i);
+            int bits = 6;
+            if (i == LENGTH - 1) {
+                bits = 2;
+                value >>>= 4;
+            }
+            hi = (hi << bits) | (lo >>> (64 - bits));
+            lo = (lo << bits) | value;
+        }
+        return high ? hi : lo;
+    }
+
+    private static int valueAt(String encoded, int index) {
+        char c = encoded.charAt(index);
+        return c < 128 ? VALUES[c] : -1;
+    }
+
+    public String encode() {
+        char[] chars = new char[LENGTH];
+        for (int i = 0; i < LENGTH; i++) { chars[i] = ALPHABET[sixBits(6 * i)]; }
+        return new String(chars);
+    }
+
+    // bits [offset, offset + 6) del numero hi:lo, completando con ceros despues del bit 128
+    private int sixBits(int offset) {
+        long value;
+        if (offset <= 58) {
+            value = hi >>> (58 - offset);
+        } else if (offset < 64) {
+            value = (hi << (offset - 58)) | (lo >>> (122 - offset));
+        } else if (offset <= 122) {
+            value = lo >>> (122 - offset);
+        } else {
+            value = lo << (offset - 122);
+        }
+        return (int) (value & 63);
+    }
+
+    @Override
+    public String toString() { return encode(); }
+}
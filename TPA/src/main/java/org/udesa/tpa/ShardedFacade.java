@@ -0,0 +1,409 @@
+package org.udesa.tpa;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+import static org.udesa.tpa.Charge.*;
+import static org.udesa.tpa.GiftCard.*;
+
+// la Facade partida en shards. Cada shard es un hilo con su cola que es el unico que toca su parte de los datos,
+// asi que adentro todo es HashMap, TreeSet y campos comunes, sin locks ni atomicos: las sesiones y sus claims van
+// al shard del usuario y las tarjetas, sus historiales y quien las reclamo al shard de la tarjeta. Cada operacion
+// tiene su version xxxAsync que devuelve un CompletableFuture: lo que cruza shards (reclamar, consultar, logout)
+// se encadena paso por paso en los hilos de los shards, asi ni el que llama ni un shard esperan a otro. Las
+// versiones sin Async son las mismas con join. Que la tarjeta este reclamada por su dueño lo decide siempre el
+// shard de la tarjeta con el vencimiento de cada token; el logout suelta los claims enseguida y el barrido de
+// sesiones vencidas (que corre en el hilo de cada shard) avisa a los shards de las tarjetas sin esperarlos. Las
+// reglas de tarjeta son las de la Facade. Los tokens llevan adelante el numero del shard de su sesion
+public final class ShardedFacade implements AutoCloseable {
+    public static String INVALID_SHARD_COUNT = "The number of shards must be greater than 0";
+
+    static final Duration SWEEP_EVERY = Duration.ofSeconds(30);
+    private static final Comparator<UserSession> BY_DEADLINE =
+            Comparator.comparing(UserSession::expiresAt).thenComparing(UserSession::token);
+
+    private final Clock clock;
+    private final Duration ttl;
+    private final CredentialHasher hasher = new CredentialHasher();
+    private final Map<String, HashedCredential> users;
+    private final MerchantCredentials merchants;
+    private final Shard[] shards;
+
+    public ShardedFacade(Clock clock, Duration ttl, int shardCount, Map<String, String> users, Map<String, GiftCard> giftCardsByNumber, Map<String, Merchant> merchantsById) {
+        ensure(shardCount > 0, INVALID_SHARD_COUNT);
+        this.clock = Objects.requireNonNull(clock, NULL_OBJECT);
+        this.ttl = Objects.requireNonNull(ttl, NULL_OBJECT);
+        this.users = hashAll(users);
+        this.merchants = new MerchantCredentials(merchantsById, hasher, clock);
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) { shards[i] = new Shard(i, clock); }
+        Objects.requireNonNull(giftCardsByNumber).forEach((number, card) ->
+                shards[indexOf(number, shardCount)].state.cards.put(number, new ShardCard(card)));
+        for (Shard shard : shards) {
+            long period = SWEEP_EVERY.toMillis();
+            shard.executor.scheduleAtFixedRate(() -> releaseLater(shard.state.sweep()), period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public int shards() { return shards.length; }
+
+    public String login(String username, String password) { return await(loginAsync(username, password)); }
+    public void logout(String token) { await(logoutAsync(token)); }
+    public void claim(String token, String cardNumber) { await(claimAsync(token, cardNumber)); }
+    public List<String> myCards(String token) { return await(myCardsAsync(token)); }
+    public int balanceOf(String token, String cardNumber) { return await(balanceOfAsync(token, cardNumber)); }
+    public List<Charge> chargesOf(String token, String cardNumber) { return await(chargesOfAsync(token, cardNumber)); }
+
+    public void charge(String merchantId, String merchantCredential, String cardNumber, int amount, String description) {
+        await(chargeAsync(merchantId, merchantCredential, cardNumber, amount, description));
+    }
+
+    // el PBKDF2 corre en el hilo que llama; el shard solo guarda la sesion
+    public CompletableFuture<String> loginAsync(String username, String password) {
+        return async(() -> {
+            ensure(username != null && users.containsKey(username), UNKNOWN_USER);
+            ensure(hasher.matches(users.get(username), password), WRONG_PASSWORD);
+            Shard shard = shardOf(username);
+            UserSession session = UserSession.issue(username, ttl, clock);
+            return shard.submit(state -> state.addSession(session)).thenApply(added -> shard.index + "." + session.token());
+        });
+    }
+
+    public CompletableFuture<Void> logoutAsync(String token) {
+        return async(() -> {
+            String sessionToken = sessionToken(token);
+            return sessionShard(token).submit(state -> state.logout(sessionToken))
+                    .thenCompose(claimed -> releaseAll(claimed, sessionToken));
+        });
+    }
+
+    public CompletableFuture<Void> claimAsync(String token, String cardNumber) {
+        return async(() -> {
+            Shard shard = sessionShard(token);
+            Shard cardShard = shardOf(nonBlank(cardNumber, UNKNOWN_CARD));
+            String sessionToken = sessionToken(token);
+            return shard.submit(state -> state.activeSession(sessionToken))
+                    .thenCompose(session -> cardShard.submit(state -> state.claim(cardNumber, session)))
+                    .thenCompose(claimed -> shard.submit(state -> state.recordClaim(sessionToken, cardNumber)))
+                    .thenCompose(recorded -> recorded
+                            ? CompletableFuture.<Void>completedFuture(null)
+                            : cardShard.submit(state -> state.release(sessionToken)).thenApply(released -> {
+                                throw new IllegalArgumentException(NULL_OBJECT);
+                            }));
+        });
+    }
+
+    public CompletableFuture<List<String>> myCardsAsync(String token) {
+        return async(() -> {
+            String sessionToken = sessionToken(token);
+            return sessionShard(token).submit(state -> {
+                state.activeSession(sessionToken);
+                return List.copyOf(state.cardsByToken.getOrDefault(sessionToken, Set.of()));
+            });
+        });
+    }
+
+    public CompletableFuture<Integer> balanceOfAsync(String token, String cardNumber) {
+        return requireClaimed(token, cardNumber)
+                .thenCompose(username -> shardOf(cardNumber).submit(state -> state.ownedCard(cardNumber, username).balance()));
+    }
+
+    // la copia se arma en el hilo del shard: el que la recibe no comparte nada con el
+    public CompletableFuture<List<Charge>> chargesOfAsync(String token, String cardNumber) {
+        return requireClaimed(token, cardNumber).thenCompose(username -> shardOf(cardNumber).submit(state -> {
+            state.ownedCard(cardNumber, username);
+            return List.copyOf(state.histories.getOrDefault(cardNumber, List.of()));
+        }));
+    }
+
+    public CompletableFuture<Charge> chargeAsync(String merchantId, String merchantCredential, String cardNumber, int amount, String description) {
+        return async(() -> {
+            if (!merchants.contains(merchantId)) { throw new IllegalArgumentException(UNKNOWN_MERCHANT); }
+            ensure(merchants.verify(merchantId, merchantCredential), NULL_OR_EMPTY_VALUE);
+            return shardOf(nonBlank(cardNumber, UNKNOWN_CARD)).submit(state -> state.charge(cardNumber, merchantId, amount, description));
+        });
+    }
+
+    // lo que ya estaba en las colas se termina de correr antes de volver
+    @Override
+    public void close() {
+        for (Shard shard : shards) { shard.executor.shutdown(); }
+        try {
+            for (Shard shard : shards) { shard.executor.awaitTermination(1, TimeUnit.MINUTES); }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // barre ya las sesiones vencidas de todos los shards, sin esperar al barrido periodico
+    int sweep() {
+        return sum(state -> {
+            Map<String, Set<String>> expired = state.sweep();
+            releaseLater(expired);
+            return expired.size();
+        });
+    }
+
+    int liveSessions() {
+        return sum(state -> state.sessions.size());
+    }
+
+    int claimedCards() {
+        return sum(state -> state.tokensByCard.size());
+    }
+
+    private int sum(Function<ShardState, Integer> count) {
+        List<CompletableFuture<Integer>> counts = Arrays.stream(shards).map(shard -> shard.submit(count)).toList();
+        return await(CompletableFuture.allOf(counts.toArray(CompletableFuture[]::new))
+                .thenApply(done -> counts.stream().mapToInt(CompletableFuture::join).sum()));
+    }
+
+    // da el dueño de la sesion; si no reclamo la tarjeta, el shard de la tarjeta dice si al menos existe
+    private CompletableFuture<String> requireClaimed(String token, String cardNumber) {
+        return async(() -> {
+            String sessionToken = sessionToken(token);
+            return sessionShard(token).submit(state -> {
+                UserSession active = state.activeSession(sessionToken);
+                return state.cardsByToken.getOrDefault(sessionToken, Set.of()).contains(cardNumber) ? active.username() : null;
+            }).thenCompose(username -> {
+                if (username != null) { return CompletableFuture.completedFuture(username); }
+                if (cardNumber == null) { return CompletableFuture.failedFuture(new IllegalArgumentException(UNKNOWN_CARD)); }
+                return shardOf(cardNumber).submit(state -> {
+                    throw new IllegalArgumentException(state.cards.containsKey(cardNumber) ? UNCLAIMED_CARD : UNKNOWN_CARD);
+                });
+            });
+        });
+    }
+
+    private CompletableFuture<Void> releaseAll(Set<String> claimed, String token) {
+        return CompletableFuture.allOf(shardsOf(claimed).stream()
+                .map(cardShard -> cardShard.submit(state -> state.release(token)))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    // corre en el hilo del shard de la sesion: encola el aviso en los shards de las tarjetas y sigue
+    private void releaseLater(Map<String, Set<String>> claimsByToken) {
+        claimsByToken.forEach((token, claimed) -> shardsOf(claimed).forEach(cardShard -> cardShard.submit(state -> state.release(token))));
+    }
+
+    private Set<Shard> shardsOf(Set<String> cardNumbers) {
+        Set<Shard> cardShards = new LinkedHashSet<>();
+        cardNumbers.forEach(cardNumber -> cardShards.add(shardOf(cardNumber)));
+        return cardShards;
+    }
+
+    private Shard shardOf(String key) {
+        return shards[indexOf(key, shards.length)];
+    }
+
+    private static int indexOf(String key, int shardCount) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount);
+    }
+
+    private Shard sessionShard(String token) {
+        String nonEmptyToken = nonBlank(token, NULL_OR_EMPTY_VALUE);
+        int dot = nonEmptyToken.indexOf('.');
+        int index = -1;
+        try {
+            index = dot > 0 ? Integer.parseInt(nonEmptyToken, 0, dot, 10) : -1;
+        } catch (NumberFormatException ignored) {
+        }
+        if (index < 0 || index >= shards.length) { throw new IllegalArgumentException(NULL_OBJECT); }
+        return shards[index];
+    }
+
+    private static String sessionToken(String token) {
+        String nonEmptyToken = nonBlank(token, NULL_OR_EMPTY_VALUE);
+        return nonEmptyToken.substring(nonEmptyToken.indexOf('.') + 1);
+    }
+
+    // un error al validar en el hilo que llama sale como futuro fallido, igual que uno de un shard
+    private static <T> CompletableFuture<T> async(Supplier<CompletableFuture<T>> start) {
+        try {
+            return start.get();
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    // el error que tiro el shard se relanza tal cual en el hilo que espera
+    private static <T> T await(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException failure) { throw failure; }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private static final class Shard {
+        final int index;
+        final ScheduledExecutorService executor;
+        final ShardState state;
+
+        Shard(int index, Clock clock) {
+            this.index = index;
+            this.state = new ShardState(clock);
+            this.executor = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "tpa-shard-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        <T> CompletableFuture<T> submit(Function<ShardState, T> task) {
+            return CompletableFuture.supplyAsync(() -> task.apply(state), executor);
+        }
+    }
+
+    // solo la toca el hilo de su shard (y el constructor, antes de que arranque), asi que nada es concurrente
+    private static final class ShardState {
+        final Map<String, UserSession> sessions = new HashMap<>();
+        final NavigableSet<UserSession> sessionsByDeadline = new TreeSet<>(BY_DEADLINE);
+        final Map<String, Set<String>> cardsByToken = new HashMap<>();
+
+        final Map<String, ShardCard> cards = new HashMap<>();
+        final Map<String, Set<String>> tokensByCard = new HashMap<>();
+        final Map<String, Set<String>> claimsByToken = new HashMap<>();
+        final Map<String, Long> claimDeadlines = new HashMap<>();
+        final Map<String, List<Charge>> histories = new HashMap<>();
+        private final Clock clock;
+
+        ShardState(Clock clock) {
+            this.clock = clock;
+        }
+
+        Void addSession(UserSession session) {
+            sessions.put(session.token(), session);
+            sessionsByDeadline.add(session);
+            return null;
+        }
+
+        UserSession activeSession(String token) {
+            UserSession session = sessions.get(token);
+            if (session == null) { throw new IllegalArgumentException(NULL_OBJECT); }
+            session.ensureActive(clock);
+            return session;
+        }
+
+        boolean recordClaim(String token, String cardNumber) {
+            if (!sessions.containsKey(token)) { return false; }
+            cardsByToken.computeIfAbsent(token, k -> new HashSet<>()).add(cardNumber);
+            return true;
+        }
+
+        Set<String> logout(String token) {
+            UserSession session = sessions.remove(token);
+            if (session == null) { throw new IllegalArgumentException(NULL_OBJECT); }
+            sessionsByDeadline.remove(session);
+            Set<String> claimed = cardsByToken.remove(token);
+            return claimed == null ? Set.of() : claimed;
+        }
+
+        // la cola esta ordenada por vencimiento: se corta en la primera sesion que sigue viva. Devuelve las
+        // tarjetas que habia reclamado cada sesion vencida
+        Map<String, Set<String>> sweep() {
+            Map<String, Set<String>> expired = new HashMap<>();
+            long now = clock.millis();
+            while (!sessionsByDeadline.isEmpty() && sessionsByDeadline.first().expiresAt().toEpochMilli() < now) {
+                UserSession session = sessionsByDeadline.pollFirst();
+                sessions.remove(session.token());
+                Set<String> claimed = cardsByToken.remove(session.token());
+                expired.put(session.token(), claimed == null ? Set.of() : claimed);
+            }
+            return expired;
+        }
+
+        CardAccount ownedCard(String cardNumber, String username) {
+            return ownedBy(existingCard(cards.get(cardNumber)), username);
+        }
+
+        Void claim(String cardNumber, UserSession session) {
+            ownedCard(cardNumber, session.username());
+            Set<String> claimants = tokensByCard.computeIfAbsent(cardNumber, k -> new HashSet<>());
+            ensure(claimants.add(session.token()), CLAIMED_CARD);
+            claimsByToken.computeIfAbsent(session.token(), k -> new HashSet<>()).add(cardNumber);
+            claimDeadlines.put(session.token(), session.expiresAt().toEpochMilli());
+            return null;
+        }
+
+        Void release(String token) {
+            Set<String> claimed = claimsByToken.remove(token);
+            claimDeadlines.remove(token);
+            if (claimed == null) { return null; }
+            for (String cardNumber : claimed) {
+                Set<String> claimants = tokensByCard.get(cardNumber);
+                if (claimants != null && claimants.remove(token) && claimants.isEmpty()) { tokensByCard.remove(cardNumber); }
+            }
+            return null;
+        }
+
+        // el cargo se arma antes de descontar, asi un cargo invalido nunca toca el saldo
+        Charge charge(String cardNumber, String merchantId, int amount, String description) {
+            CardAccount card = existingCard(cards.get(cardNumber));
+            ensure(isClaimed(cardNumber), UNCLAIMED_CARD);
+            Charge charge = new Charge(card.cardNumber(), merchantId, amount, description, clock.instant());
+            card.charge(amount, description);
+            histories.computeIfAbsent(cardNumber, k -> new ArrayList<>()).add(charge);
+            return charge;
+        }
+
+        // un token vencido se olvida aca junto con todos sus claims
+        private boolean isClaimed(String cardNumber) {
+            Set<String> claimants = tokensByCard.get(cardNumber);
+            if (claimants == null) { return false; }
+            long now = clock.millis();
+            for (String token : List.copyOf(claimants)) {
+                Long deadline = claimDeadlines.get(token);
+                if (deadline != null && deadline >= now) { return true; }
+                release(token);
+            }
+            return false;
+        }
+    }
+
+    // una GiftCard sin atomicos: solo la cobra el hilo de su shard
+    private static final class ShardCard implements CardAccount {
+        private final String owner;
+        private final String cardNumber;
+        private final int initialBalance;
+        private int balance;
+
+        ShardCard(GiftCard card) {
+            this.owner = card.owner();
+            this.cardNumber = card.cardNumber();
+            this.initialBalance = card.initialBalance();
+            this.balance = card.balance();
+        }
+
+        @Override public String cardNumber() { return cardNumber; }
+        @Override public String owner() { return owner; }
+        @Override public int initialBalance() { return initialBalance; }
+        @Override public int balance() { return balance; }
+
+        @Override
+        public void charge(int amount, String description) {
+            ensure(amount > 0, INVALID_AMOUNT);
+            nonBlank(description, NULL_OR_EMPTY_VALUE);
+            if (balance - amount < 0) { throw new IllegalArgumentException(INSUFFICIENT_FUNDS); }
+            balance -= amount;
+        }
+
+        @Override
+        public void addBalance(int amount) {
+            ensure(amount > 0, INVALID_AMOUNT);
+            balance += amount;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.udesa.tpa;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.udesa.tpa.Utils.*;
+
+// la ultima pagina del extracto de cada tarjeta ya armada: los Charges se decodifican de las columnas una vez
+// por pagina y no en cada lectura, que es lo que cuesta servir un extracto (una entrada pesa pageSize Charges, y
+// por eso el default es de menos tarjetas). Una entrada vale mientras el historial tenga la misma cantidad de
+// cargos que cuando se armo: un cargo nuevo la invalida sin avisarle al cache, y como el historial publica el
+// tamaño despues de agregar, nunca se sirve una pagina mas vieja que el ultimo cargo confirmado. El saldo no se
+// cachea: es una lectura volatile del store, mas barata que buscar la entrada, y asi un addBalance nunca queda
+// escondido. Al llenarse desaloja con segunda oportunidad (CLOCK): las lecturas solo marcan la entrada, no toman locks.
+public final class StatementCache {
+    public record Metrics(long hits, long misses, long evictions, int size) {}
+
+    public static String INVALID_CAPACITY = "The statement cache capacity must be greater than 0";
+
+    public static final int DEFAULT_CAPACITY = 10_000;
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private final int capacity;
+    private final int pageSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<String> evictionOrder = new ConcurrentLinkedQueue<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public StatementCache(int capacity, int pageSize) {
+        ensure(capacity > 0, INVALID_CAPACITY);
+        ensure(pageSize > 0, StatementQuery.INVALID_PAGE_SIZE);
+        this.capacity = capacity;
+        this.pageSize = pageSize;
+    }
+
+    public StatementPage latest(String cardNumber, ChargeHistory history, int requestedPageSize) {
+        ensure(requestedPageSize > 0, StatementQuery.INVALID_PAGE_SIZE);
+        if (requestedPageSize > pageSize) { return history.newestFirst(StatementQuery.latest(requestedPageSize)); }
+        Entry entry = entries.get(cardNumber);
+        if (entry != null && entry.size == history.size()) {
+            hits.increment();
+            entry.referenced = true;
+            return entry.page(requestedPageSize);
+        }
+        misses.increment();
+        StatementPage page = history.newestFirst(StatementQuery.latest(pageSize));
+        Entry fresh = new Entry(page.cursor() + page.charges().size(), List.copyOf(page.charges()));
+        if (entries.put(cardNumber, fresh) == null) {
+            evictionOrder.add(cardNumber);
+            evictIfFull();
+        }
+        return fresh.page(requestedPageSize);
+    }
+
+    public Metrics metrics() {
+        return new Metrics(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    // cada tarjeta esta una sola vez en la cola: entra cuando se crea su entrada y sale cuando se desaloja
+    private void evictIfFull() {
+        while (entries.size() > capacity) {
+            String cardNumber = evictionOrder.poll();
+            if (cardNumber == null) { return; }
+            Entry entry = entries.get(cardNumber);
+            if (entry == null) { continue; }
+            if (entry.referenced) {
+                entry.referenced = false;
+                evictionOrder.add(cardNumber);
+            } else if (entries.remove(cardNumber, entry)) {
+                evictions.increment();
+            } else {
+                evictionOrder.add(cardNumber);
+            }
+        }
+    }
+
+    // los cargos de las filas [size - charges.size(), size), del mas nuevo al mas viejo; como el historial solo
+    // agrega al final, siguen siendo los mismos mientras el tamaño no cambie
+    private static final class Entry {
+        private final int size;
+        private final List<Charge> charges;
+        private volatile boolean referenced;
+
+        Entry(int size, List<Charge> charges) {
+            this.size = size;
+            this.charges = charges;
+        }
+
+        StatementPage page(int pageSize) {
+            List<Charge> page = pageSize >= charges.size() ? charges : charges.subList(0, pageSize);
+            int cursor = size - page.size();
+            return new StatementPage(page, cursor, cursor > 0);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package org.udesa.tpa;
+
+import java.util.List;
+
+// cursor: posicion en el historial de la tarjeta desde donde sigue la proxima pagina
+public record StatementPage(List<Charge> charges, int cursor, boolean hasMore) {}
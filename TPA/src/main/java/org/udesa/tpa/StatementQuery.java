@@ -0,0 +1,32 @@
+package org.udesa.tpa;
+
+import java.time.Instant;
+import java.util.Objects;
+
+import static org.udesa.tpa.Utils.*;
+import static org.udesa.tpa.Facade.*;
+
+public record StatementQuery(int pageSize, int before, Instant from, Instant to) {
+    public static String INVALID_PAGE_SIZE = "Page size must be greater than 0";
+    public static String INVALID_CURSOR = "Cursor must be a non-negative number";
+    public static String INVALID_RANGE = "The start of the range must not be after its end";
+
+    public StatementQuery {
+        ensure(pageSize > 0, INVALID_PAGE_SIZE);
+        ensure(before >= 0, INVALID_CURSOR);
+        Objects.requireNonNull(from, NULL_OBJECT);
+        Objects.requireNonNull(to, NULL_OBJECT);
+        ensure(!from.isAfter(to), INVALID_RANGE);
+    }
+
+    public static StatementQuery latest(int pageSize) {
+        return new StatementQuery(pageSize, Integer.MAX_VALUE, Instant.MIN, Instant.MAX);
+    }
+
+    public boolean isLatest() {
+        return before == Integer.MAX_VALUE && from.equals(Instant.MIN) && to.equals(Instant.MAX);
+    }
+
+    public StatementQuery before(int cursor) { return new StatementQuery(pageSize, cursor, from, to); }
+    public StatementQuery between(Instant from, Instant to) { return new StatementQuery(pageSize, before, from, to); }
+}
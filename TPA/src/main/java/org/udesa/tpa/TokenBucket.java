@@ -0,0 +1,27 @@
+package org.udesa.tpa;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// balde de tokens sin locks en forma GCRA: todo el estado es un long con el instante (en nanos) en que el balde
+// vuelve a estar lleno. Tomar permisos es un CAS que lo corre hacia adelante; si quedaria a mas de una rafaga
+// del presente se rechaza sin escribir nada, asi los rechazos no se pelean por la linea de cache
+final class TokenBucket {
+    private final long nanosPerPermit;
+    private final long capacityNanos;
+    private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE / 2);
+
+    TokenBucket(long permitsPerSecond, int burst) {
+        this.nanosPerPermit = Math.max(1, 1_000_000_000L / permitsPerSecond);
+        this.capacityNanos = nanosPerPermit * burst;
+    }
+
+    boolean tryAcquire(int permits, long nowNanos) {
+        long cost = nanosPerPermit * permits;
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, nowNanos) + cost;
+            if (next - nowNanos > capacityNanos) { return false; }
+            if (fullAt.compareAndSet(current, next)) { return true; }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.udesa.tpa;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+// UUID.randomUUID comparte un unico SecureRandom entre todos los hilos. Aca cada hilo cae en una de varias
+// instancias DRBG (cada una con su propio estado y su propio lock) segun su id: con hilos virtuales un
+// ThreadLocal crearia y sembraria un SecureRandom por request
+public final class TokenGenerator {
+    private final SecureRandom[] stripes;
+    private final int mask;
+
+    public TokenGenerator() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public TokenGenerator(int concurrency) {
+        int size = Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1;
+        this.stripes = new SecureRandom[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) { stripes[i] = newDrbg(); }
+    }
+
+    public SessionToken next() {
+        long id = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        SecureRandom random = stripes[(int) (id ^ (id >>> 32)) & mask];
+        return new SessionToken(random.nextLong(), random.nextLong());
+    }
+
+    private static SecureRandom newDrbg() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
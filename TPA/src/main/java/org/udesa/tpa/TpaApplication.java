@@ -0,0 +1,15 @@
+package org.udesa.tpa;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+
+// los usuarios se autentican con el token de la Facade, no hace falta el usuario en memoria de Spring
+@SpringBootApplication(exclude = UserDetailsServiceAutoConfiguration.class)
+@ConfigurationPropertiesScan
+public class TpaApplication {
+    public static void main(String[] args) {
+        SpringApplication.run(TpaApplication.class, args);
+    }
+}
@@ -0,0 +1,64 @@
+package org.udesa.tpa;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+// datos con los que arranca la Facade: tpa.users.<usuario>=<password o {pbkdf2}...>, tpa.cards.<numero>.owner / .balance
+// y tpa.merchants.<id>=<credencial>. Con tpa.signing-key (base64, 32 bytes o mas) los tokens son firmados
+// y cualquier nodo con la misma clave los acepta; los claims y los saldos siguen siendo de cada nodo, asi que las
+// rutas de una tarjeta (/cards/{numero}/..., y los cobros por cardNumber) necesitan afinidad con el nodo que la reclamo.
+// tpa.charges.rate / .burst limitan los cobros de cada merchant
+// (tpa.charges.merchants.<id>.rate / .burst para uno en particular) y tpa.charges.max-in-flight los cobros en curso.
+// tpa.charges.idempotency-window es cuanto se recuerda cada Idempotency-Key (10 minutos por defecto).
+// tpa.statements.cache-capacity / .cache-page-size: cuantas tarjetas y cuantos cargos por tarjeta cachea el extracto
+// (cada entrada guarda sus Charges armados, asi que pesa unos cache-page-size * 150 bytes).
+// Con tpa.preload.users / .cards / .merchants (CSV) la carga la hace el BulkLoader y se ignoran los mapas de arriba.
+// tpa.management.username / .password (texto o {pbkdf2}...) es el usuario de operaciones para /actuator.
+// Los datos de ejemplo estan en el perfil dev (application-dev.properties); sin perfil arranca vacio
+@ConfigurationProperties("tpa")
+public record TpaProperties(
+        Duration sessionTtl,
+        String signingKey,
+        Map<String, String> users,
+        Map<String, CardProperties> cards,
+        Map<String, String> merchants,
+        ChargeProperties charges,
+        PreloadProperties preload,
+        ManagementProperties management,
+        StatementProperties statements
+) {
+    public record CardProperties(String owner, int balance) {}
+    public record LimitProperties(long rate, int burst) {}
+    public record PreloadProperties(Path users, Path cards, Path merchants) {
+        public boolean isConfigured() { return users != null && cards != null && merchants != null; }
+    }
+    public record StatementProperties(Integer cacheCapacity, Integer cachePageSize) {
+        public StatementProperties {
+            cacheCapacity = cacheCapacity == null ? StatementCache.DEFAULT_CAPACITY : cacheCapacity;
+            cachePageSize = cachePageSize == null ? StatementCache.DEFAULT_PAGE_SIZE : cachePageSize;
+        }
+    }
+    public record ManagementProperties(String username, String password) {
+        public boolean isConfigured() { return username != null && !username.isBlank() && password != null && !password.isBlank(); }
+    }
+    public record ChargeProperties(Long rate, Integer burst, Integer maxInFlight, Map<String, LimitProperties> merchants, Duration idempotencyWindow) {
+        public ChargeProperties {
+            merchants = merchants == null ? Map.of() : merchants;
+            idempotencyWindow = idempotencyWindow == null ? IdempotencyCache.DEFAULT_WINDOW : idempotencyWindow;
+        }
+    }
+
+    public TpaProperties {
+        sessionTtl = sessionTtl == null ? Duration.ofMinutes(5) : sessionTtl;
+        users = users == null ? Map.of() : users;
+        cards = cards == null ? Map.of() : cards;
+        merchants = merchants == null ? Map.of() : merchants;
+        charges = charges == null ? new ChargeProperties(null, null, null, null, null) : charges;
+        preload = preload == null ? new PreloadProperties(null, null, null) : preload;
+        management = management == null ? new ManagementProperties(null, null) : management;
+        statements = statements == null ? new StatementProperties(null, null) : statements;
+    }
+}
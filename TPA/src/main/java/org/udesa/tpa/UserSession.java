@@ -1,54 +1,75 @@
 package org.udesa.tpa;
 
 import java.time.*;
-import java.util.UUID;
 
 import static org.springframework.util.Assert.*;
 import static org.udesa.tpa.Utils.*;
 import static org.udesa.tpa.Facade.*;
 
 public final class UserSession {
+    private static final TokenGenerator TOKENS = new TokenGenerator();
+
+    private final SessionToken key;
     private final String token;
     private final String username;
     private final Instant issuedAt;
     private final Instant expiresAt;
+    private final long expiresAtMillis;
     private final Duration ttl;
 
     public static String INVALID_TTL = "TTL can not be negative nor zero";
     public static String EXPIRED_TOKEN = "Token has expired";
 
-    private UserSession(String token, String username, Instant issuedAt, Instant expiresAt) {
+    private UserSession(SessionToken key, String token, String username, Instant issuedAt, Instant expiresAt) {
         notNull(issuedAt, NULL_OBJECT);
         notNull(expiresAt, NULL_OBJECT);
+        this.key = key;
         this.token = nonBlank(token, NULL_OR_EMPTY_VALUE);
         this.username = nonBlank(username, NULL_OR_EMPTY_VALUE);
         this.issuedAt = issuedAt;
         this.expiresAt = expiresAt;
+        this.expiresAtMillis = expiresAt.toEpochMilli();
         this.ttl = Duration.between(issuedAt, expiresAt);
     }
 
     public static UserSession issue(String username, Duration ttl, Clock clock) {
+        return issue(username, ttl, clock, TOKENS);
+    }
+
+    public static UserSession issue(String username, Duration ttl, Clock clock, TokenGenerator tokens) {
         nonBlank(username, NULL_OR_EMPTY_VALUE);
         notNull(ttl, NULL_OBJECT);
         notNull(clock, NULL_OBJECT);
+        notNull(tokens, NULL_OBJECT);
         ensure(!ttl.isNegative() && !ttl.isZero(), INVALID_TTL);
 
         Instant now = Instant.now(clock);
-        String token = UUID.randomUUID().toString();
-        return new UserSession(token, username, now, now.plus(ttl));
+        SessionToken key = tokens.next();
+        return new UserSession(key, key.encode(), username, now, now.plus(ttl));
     }
 
-    public boolean isActive(Clock clock) {
+    // las sesiones firmadas no tienen clave: no se guardan en ninguna tabla, el token se valida solo
+    static UserSession signed(String token, String username, Instant issuedAt, Instant expiresAt) {
+        return new UserSession(null, token, username, issuedAt, expiresAt);
+    }
+
+    // se compara en millis para no crear un Instant por cada validacion
+    public SessionStatus status(Clock clock) {
         notNull(clock, NULL_OBJECT);
-        return !Instant.now(clock).isAfter(expiresAt);
+        return clock.millis() > expiresAtMillis ? SessionStatus.EXPIRED : SessionStatus.ACTIVE;
+    }
+
+    public boolean isActive(Clock clock) {
+        return status(clock).isActive();
     }
 
     public void ensureActive(Clock clock) {
-        notNull(clock, NULL_OBJECT);
-        ensure(!Instant.now(clock).isAfter(expiresAt), EXPIRED_TOKEN);
+        ensure(isActive(clock), EXPIRED_TOKEN);
     }
 
+    public SessionToken key() { return key; }
     public String token()     { return token; }
     public String username()  { return username; }
     public Instant issuedAt() { return issuedAt; }
+    public Instant expiresAt() { return expiresAt; }
 }
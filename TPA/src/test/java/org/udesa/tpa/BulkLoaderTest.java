@@ -0,0 +1,120 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.ChargeJournalTest.*;
+import static org.udesa.tpa.BulkLoader.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkLoaderTest {
+    private final CredentialHasher hasher = new CredentialHasher(1000);
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("preload");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        deleteRecursively(directory);
+    }
+
+    @Test
+    void test01loadsCardsUsersAndMerchants() throws IOException {
+        Preload preload = new BulkLoader(hasher).load(
+                file("users.csv", USER_1 + "," + PASSWORD_1 + "\n" + USER_2 + "," + hasher.hash(PASSWORD_2).encoded() + "\n"),
+                file("cards.csv", CARD_NUMBER_1 + "," + USER_1 + ",1000\n" + CARD_NUMBER_2 + "," + USER_2 + ",500\n"),
+                file("merchants.csv", MERCHANT_ID_1 + "," + MERCHANT_CREDENTIAL_1 + "\n"));
+
+        assertEquals(1000, preload.cards().balance(CARD_NUMBER_1));
+        assertEquals(USER_2, preload.cards().owner(CARD_NUMBER_2));
+        assertTrue(hasher.matches(preload.users().get(USER_1), PASSWORD_1));
+        assertTrue(hasher.matches(preload.users().get(USER_2), PASSWORD_2));
+        assertEquals(new Merchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1), preload.merchants().get(MERCHANT_ID_1));
+    }
+
+    @Test
+    void test02facadeChargesTheLoadedStoreWithoutCopyingIt() throws IOException {
+        Preload preload = new BulkLoader(hasher).load(
+                file("users.csv", USER_1 + "," + PASSWORD_1 + "\n"),
+                file("cards.csv", CARD_NUMBER_1 + "," + USER_1 + ",1000\n"),
+                file("merchants.csv", MERCHANT_ID_1 + "," + MERCHANT_CREDENTIAL_1 + "\n"));
+        Facade facade = new Facade(Clock.systemUTC(), Duration.ofMinutes(5), preload);
+
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION);
+        assertEquals(700, facade.balance(token, CARD_NUMBER_1));
+        assertEquals(700, preload.cards().balance(CARD_NUMBER_1));
+        assertThrowsLike(() -> facade.login(null, PASSWORD_1), Facade.UNKNOWN_USER);
+        assertThrowsLike(() -> facade.claim(token, null), Facade.UNKNOWN_CARD);
+    }
+
+    @Test
+    void test03skipsBlankAndCommentLinesAndAcceptsWindowsLineEnds() throws IOException {
+        CompactCardStore cards = new BulkLoader(hasher).loadCards(
+                file("cards.csv", "# numero,dueño,saldo\r\n\r\n" + CARD_NUMBER_1 + "," + USER_1 + ",1000\r\n" + CARD_NUMBER_2 + "," + USER_1 + ",5"));
+        assertEquals(2, cards.size());
+        assertEquals(5, cards.balance(CARD_NUMBER_2));
+    }
+
+    @Test
+    void test04linesSplitAcrossChunksAreLoadedOnce() throws IOException {
+        String csv = IntStream.range(0, 1000)
+                .mapToObj(i -> (1_000_000 + i) + "," + USER_1 + "," + i + "\n")
+                .collect(Collectors.joining());
+        CompactCardStore cards = new BulkLoader(hasher, 7).loadCards(file("cards.csv", csv));
+        assertEquals(1000, cards.size());
+        assertEquals(999, cards.balance("1000999"));
+        assertEquals(0, cards.balance("1000000"));
+    }
+
+    @Test
+    void test05failsOnMalformedLines() {
+        BulkLoader loader = new BulkLoader(hasher);
+        assertThrowsLike(() -> loader.loadCards(file("cards.csv", CARD_NUMBER_1 + "," + USER_1 + "\n")), INVALID_LINE);
+        assertThrowsLike(() -> loader.loadCards(file("cards.csv", CARD_NUMBER_1 + "," + USER_1 + ",1,2\n")), INVALID_LINE);
+        assertThrowsLike(() -> loader.loadCards(file("cards.csv", CARD_NUMBER_1 + "," + USER_1 + ",mucho\n")), INVALID_LINE);
+        assertThrowsLike(() -> loader.loadCards(file("cards.csv", CARD_NUMBER_1 + "," + USER_1 + ",-1\n")), GiftCard.NEGATIVE_INITIAL_BALANCE);
+        assertThrowsLike(() -> loader.loadCards(file("cards.csv", "12a4," + USER_1 + ",1\n")), Charge.CARD_NUMBER_MUST_BE_A_NUMERIC_STRING);
+        assertThrowsLike(() -> loader.loadCards(file("cards.csv", "0123," + USER_1 + ",1\n")), CompactCardStore.CARD_NUMBER_TOO_LONG);
+        assertThrowsLike(() -> loader.loadMerchants(file("merchants.csv", MERCHANT_ID_1 + ",\n")), Facade.NULL_OR_EMPTY_VALUE);
+        assertThrowsLike(() -> loader.loadUsers(file("users.csv", USER_1 + "," + "x".repeat(MAX_LINE_BYTES) + "\n")), INVALID_LINE);
+    }
+
+    @Test
+    void test06failsOnDuplicates() {
+        BulkLoader loader = new BulkLoader(hasher);
+        assertThrowsLike(() -> loader.loadCards(file("cards.csv", CARD_NUMBER_1 + "," + USER_1 + ",1\n" + CARD_NUMBER_1 + "," + USER_2 + ",2\n")), CompactCardStore.DUPLICATED_CARD);
+        assertThrowsLike(() -> loader.loadUsers(file("users.csv", USER_1 + ",a\n" + USER_1 + ",b\n")), DUPLICATED_USER);
+        assertThrowsLike(() -> loader.loadMerchants(file("merchants.csv", MERCHANT_ID_1 + ",a\n" + MERCHANT_ID_1 + ",b\n")), DUPLICATED_MERCHANT);
+    }
+
+    @Test
+    void test07failuresInAnyChunkKeepTheirMessage() {
+        String csv = IntStream.range(0, 1000)
+                .mapToObj(i -> (1_000_000 + i) + "," + USER_1 + "," + (i == 700 ? "mucho" : "1") + "\n")
+                .collect(Collectors.joining());
+        assertThrowsLike(() -> new BulkLoader(hasher, 64).loadCards(file("cards.csv", csv)), INVALID_LINE);
+    }
+
+    @Test
+    void test08emptyFilesLoadNothing() throws IOException {
+        assertEquals(0, new BulkLoader(hasher).loadCards(file("cards.csv", "")).size());
+    }
+
+    private Path file(String name, String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content);
+    }
+}
@@ -0,0 +1,121 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.ChargeAdmission.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChargeAdmissionTest {
+    private final MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+
+    @Test
+    void test01admitsABurstAndThenRefillsAtTheConfiguredRate() {
+        ChargeAdmission admission = new ChargeAdmission(clock, new RateLimit(10, 3), Map.of(), Integer.MAX_VALUE);
+        admitTimes(admission, MERCHANT_ID_1, 3);
+        assertThrowsLike(() -> admission.acquire(MERCHANT_ID_1, 1), RATE_LIMITED);
+
+        clock.plus(Duration.ofMillis(100));
+        admitTimes(admission, MERCHANT_ID_1, 1);
+        assertThrowsLike(() -> admission.acquire(MERCHANT_ID_1, 1), RATE_LIMITED);
+
+        clock.plus(Duration.ofSeconds(10));
+        admitTimes(admission, MERCHANT_ID_1, 3);
+        assertThrowsLike(() -> admission.acquire(MERCHANT_ID_1, 1), RATE_LIMITED);
+    }
+
+    @Test
+    void test02eachMerchantHasItsOwnBucketAndCounters() {
+        ChargeAdmission admission = new ChargeAdmission(clock, new RateLimit(1, 1), Map.of(MERCHANT_ID_2, new RateLimit(1, 2)), Integer.MAX_VALUE);
+        admitTimes(admission, MERCHANT_ID_1, 1);
+        admitTimes(admission, MERCHANT_ID_2, 2);
+        assertThrowsLike(() -> admission.acquire(MERCHANT_ID_1, 1), RATE_LIMITED);
+        assertThrowsLike(() -> admission.acquire(MERCHANT_ID_2, 1), RATE_LIMITED);
+
+        assertEquals(new Counters(1, 1), admission.counters(MERCHANT_ID_1));
+        assertEquals(new Counters(2, 1), admission.counters(MERCHANT_ID_2));
+        assertEquals(new Counters(0, 0), admission.counters("unknown"));
+    }
+
+    @Test
+    void test03rejectsWhenTooManyChargesAreInFlight() {
+        ChargeAdmission admission = new ChargeAdmission(clock, RateLimit.UNLIMITED, Map.of(), 2);
+        admission.acquire(MERCHANT_ID_1, 1);
+        admission.acquire(MERCHANT_ID_2, 1);
+        assertThrowsLike(() -> admission.acquire(MERCHANT_ID_1, 1), OVERLOADED);
+
+        admission.release();
+        admission.acquire(MERCHANT_ID_1, 1);
+        assertEquals(2, admission.inFlight());
+    }
+
+    @Test
+    void test04rateLimitedChargesGiveBackTheirInFlightPlace() {
+        ChargeAdmission admission = new ChargeAdmission(clock, new RateLimit(1, 1), Map.of(), 1);
+        admission.acquire(MERCHANT_ID_1, 1);
+        admission.release();
+        assertThrowsLike(() -> admission.acquire(MERCHANT_ID_1, 1), RATE_LIMITED);
+        assertEquals(0, admission.inFlight());
+    }
+
+    @Test
+    void test05rejectionsAreSharedAndCarryNoStackTrace() {
+        ChargeAdmission admission = new ChargeAdmission(clock, new RateLimit(1, 1), Map.of(), Integer.MAX_VALUE);
+        admitTimes(admission, MERCHANT_ID_1, 1);
+        ChargeRejectedException first = assertThrows(ChargeRejectedException.class, () -> admission.acquire(MERCHANT_ID_1, 1));
+        ChargeRejectedException second = assertThrows(ChargeRejectedException.class, () -> admission.acquire(MERCHANT_ID_1, 1));
+        assertSame(first, second);
+        assertEquals(0, first.getStackTrace().length);
+    }
+
+    @Test
+    void test06aBatchSpendsOnePermitPerItem() {
+        ChargeAdmission admission = new ChargeAdmission(clock, new RateLimit(10, 5), Map.of(), Integer.MAX_VALUE);
+        admission.acquire(MERCHANT_ID_1, 4);
+        admission.release();
+        assertThrowsLike(() -> admission.acquire(MERCHANT_ID_1, 2), RATE_LIMITED);
+        admitTimes(admission, MERCHANT_ID_1, 1);
+    }
+
+    @Test
+    void test07concurrentAcquiresNeverExceedTheBurst() throws InterruptedException {
+        ChargeAdmission admission = new ChargeAdmission(clock, new RateLimit(1, 100), Map.of(), Integer.MAX_VALUE);
+        AtomicInteger admitted = new AtomicInteger();
+        runConcurrently(8, 50, () -> {
+            try {
+                admission.acquire(MERCHANT_ID_1, 1);
+                admitted.incrementAndGet();
+                admission.release();
+            } catch (ChargeRejectedException ignored) {
+            }
+        });
+        assertEquals(100, admitted.get());
+        assertEquals(new Counters(100, 300), admission.counters(MERCHANT_ID_1));
+    }
+
+    @Test
+    void test08failsWithInvalidLimits() {
+        assertThrowsLike(() -> new RateLimit(0, 1), INVALID_RATE);
+        assertThrowsLike(() -> new RateLimit(1, 0), INVALID_BURST);
+        assertThrowsLike(() -> new ChargeAdmission(clock, RateLimit.UNLIMITED, Map.of(), 0), INVALID_CONCURRENCY);
+    }
+
+    @Test
+    void test09reportsTheBurstEachMerchantCanAskForAtOnce() {
+        ChargeAdmission admission = new ChargeAdmission(clock, new RateLimit(10, 5), Map.of(MERCHANT_ID_2, new RateLimit(10, 20)), Integer.MAX_VALUE);
+        assertEquals(5, admission.burst(MERCHANT_ID_1));
+        assertEquals(20, admission.burst(MERCHANT_ID_2));
+        assertEquals(Integer.MAX_VALUE, ChargeAdmission.unlimited(clock).burst(MERCHANT_ID_1));
+    }
+
+    private static void admitTimes(ChargeAdmission admission, String merchantId, int times) {
+        for (int i = 0; i < times; i++) {
+            admission.acquire(merchantId, 1);
+            admission.release();
+        }
+    }
+}
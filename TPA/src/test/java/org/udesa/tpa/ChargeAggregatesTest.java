@@ -0,0 +1,133 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.udesa.tpa.ChargeAggregates.Granularity.*;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChargeAggregatesTest {
+    private static final Instant NOON = Instant.parse("2025-09-18T12:00:00Z");
+
+    private ChargeAggregates aggregates;
+
+    @BeforeEach
+    void createAggregates() {
+        aggregates = new ChargeAggregates(3, 2);
+    }
+
+    @Test
+    void test01keepsRunningTotalsPerMerchantAndPerCard() {
+        charge(MERCHANT_ID_1, CARD_NUMBER_1, 300, NOON);
+        charge(MERCHANT_ID_1, CARD_NUMBER_2, 200, NOON);
+        charge(MERCHANT_ID_2, CARD_NUMBER_1, 50, NOON);
+
+        assertEquals(new ChargeAggregates.Totals(2, 500), aggregates.merchantTotals(MERCHANT_ID_1));
+        assertEquals(new ChargeAggregates.Totals(1, 50), aggregates.merchantTotals(MERCHANT_ID_2));
+        assertEquals(new ChargeAggregates.Totals(2, 350), aggregates.cardTotals(CARD_NUMBER_1));
+        assertEquals(ChargeAggregates.Totals.NONE, aggregates.cardTotals(CARD_NUMBER_3));
+    }
+
+    @Test
+    void test02groupsChargesInHourlyAndDailyBuckets() {
+        charge(MERCHANT_ID_1, CARD_NUMBER_1, 100, NOON.plus(Duration.ofMinutes(10)));
+        charge(MERCHANT_ID_1, CARD_NUMBER_1, 200, NOON.plus(Duration.ofMinutes(50)));
+        charge(MERCHANT_ID_1, CARD_NUMBER_2, 300, NOON.plus(Duration.ofMinutes(130)));
+
+        assertEquals(List.of(
+                new ChargeAggregates.Bucket(NOON, 2, 300),
+                new ChargeAggregates.Bucket(NOON.plus(Duration.ofHours(2)), 1, 300)),
+                aggregates.merchantBuckets(MERCHANT_ID_1, HOUR, NOON, NOON.plus(Duration.ofHours(3))));
+        assertEquals(List.of(new ChargeAggregates.Bucket(Instant.parse("2025-09-18T00:00:00Z"), 3, 600)),
+                aggregates.merchantBuckets(MERCHANT_ID_1, DAY, NOON.minus(Duration.ofDays(1)), NOON));
+        assertEquals(List.of(new ChargeAggregates.Bucket(NOON.plus(Duration.ofHours(2)), 1, 300)),
+                aggregates.cardBuckets(CARD_NUMBER_2, HOUR, NOON, NOON.plus(Duration.ofHours(3))));
+    }
+
+    @Test
+    void test03bucketsOlderThanTheRetentionAreDropped() {
+        charge(MERCHANT_ID_1, CARD_NUMBER_1, 100, NOON);
+        charge(MERCHANT_ID_1, CARD_NUMBER_1, 100, NOON.plus(Duration.ofHours(3)));
+        charge(MERCHANT_ID_1, CARD_NUMBER_1, 100, NOON.plus(Duration.ofDays(2)));
+
+        assertEquals(List.of(NOON.plus(Duration.ofDays(2))), starts(aggregates.merchantBuckets(MERCHANT_ID_1, HOUR, NOON, NOON.plus(Duration.ofDays(3)))));
+        assertEquals(List.of(new ChargeAggregates.Bucket(Instant.parse("2025-09-20T00:00:00Z"), 1, 100)),
+                aggregates.merchantBuckets(MERCHANT_ID_1, DAY, NOON.minus(Duration.ofDays(5)), NOON.plus(Duration.ofDays(5))));
+        assertEquals(new ChargeAggregates.Totals(3, 300), aggregates.merchantTotals(MERCHANT_ID_1));
+    }
+
+    @Test
+    void test04concurrentChargesAreAllCounted() throws InterruptedException {
+        runConcurrently(8, 500, () -> charge(MERCHANT_ID_1, CARD_NUMBER_1, 2, NOON));
+        assertEquals(new ChargeAggregates.Totals(4000, 8000), aggregates.merchantTotals(MERCHANT_ID_1));
+        assertEquals(List.of(new ChargeAggregates.Bucket(NOON, 4000, 8000)),
+                aggregates.cardBuckets(CARD_NUMBER_1, HOUR, NOON, NOON.plus(Duration.ofHours(1))));
+    }
+
+    @Test
+    void test05rejectsInvalidRetentionsAndRanges() {
+        assertThrowsLike(() -> new ChargeAggregates(0, 1), ChargeAggregates.INVALID_RETENTION);
+        assertThrowsLike(() -> aggregates.merchantBuckets(MERCHANT_ID_1, HOUR, NOON, NOON), ChargeAggregates.INVALID_RANGE);
+        assertEquals(List.of(), aggregates.merchantBuckets(MERCHANT_ID_1, HOUR, NOON, NOON.plusSeconds(1)));
+    }
+
+    @Test
+    void test06chargesBeforeTheWindowOnlyCountInTheTotals() {
+        charge(MERCHANT_ID_1, CARD_NUMBER_1, 100, NOON.plus(Duration.ofDays(2)));
+        charge(MERCHANT_ID_1, CARD_NUMBER_1, 50, NOON);
+        charge(MERCHANT_ID_1, CARD_NUMBER_1, 25, NOON.plus(Duration.ofDays(2)).minus(Duration.ofHours(2)));
+
+        List<ChargeAggregates.Bucket> hours = List.of(
+                new ChargeAggregates.Bucket(NOON.plus(Duration.ofDays(2)).minus(Duration.ofHours(2)), 1, 25),
+                new ChargeAggregates.Bucket(NOON.plus(Duration.ofDays(2)), 1, 100));
+        Instant from = NOON.minus(Duration.ofDays(1));
+        Instant to = NOON.plus(Duration.ofDays(3));
+        assertEquals(hours, aggregates.merchantBuckets(MERCHANT_ID_1, HOUR, from, to));
+        assertEquals(hours, aggregates.cardBuckets(CARD_NUMBER_1, HOUR, from, to));
+        assertEquals(List.of(new ChargeAggregates.Bucket(Instant.parse("2025-09-20T00:00:00Z"), 2, 125)),
+                aggregates.cardBuckets(CARD_NUMBER_1, DAY, from, to));
+        assertEquals(new ChargeAggregates.Totals(3, 175), aggregates.merchantTotals(MERCHANT_ID_1));
+        assertEquals(new ChargeAggregates.Totals(3, 175), aggregates.cardTotals(CARD_NUMBER_1));
+    }
+
+    @Test
+    void test07cardBucketsReuseTheirSlotsAsTheWindowMoves() {
+        for (int hour = 0; hour < 10; hour++) { charge(MERCHANT_ID_1, CARD_NUMBER_1, hour + 1, NOON.plus(Duration.ofHours(hour))); }
+
+        assertEquals(List.of(
+                new ChargeAggregates.Bucket(NOON.plus(Duration.ofHours(7)), 1, 8),
+                new ChargeAggregates.Bucket(NOON.plus(Duration.ofHours(8)), 1, 9),
+                new ChargeAggregates.Bucket(NOON.plus(Duration.ofHours(9)), 1, 10)),
+                aggregates.cardBuckets(CARD_NUMBER_1, HOUR, NOON, NOON.plus(Duration.ofDays(1))));
+        assertEquals(aggregates.merchantBuckets(MERCHANT_ID_1, HOUR, NOON, NOON.plus(Duration.ofDays(1))),
+                aggregates.cardBuckets(CARD_NUMBER_1, HOUR, NOON, NOON.plus(Duration.ofDays(1))));
+    }
+
+    @Test
+    void test08cardsWithNothingLeftInTheWindowAreForgottenWhenADayStarts() {
+        charge(MERCHANT_ID_1, CARD_NUMBER_1, 100, NOON);
+        charge(MERCHANT_ID_1, CARD_NUMBER_2, 50, NOON.plus(Duration.ofDays(1)));
+        assertEquals(new ChargeAggregates.Totals(1, 100), aggregates.cardTotals(CARD_NUMBER_1));
+
+        charge(MERCHANT_ID_1, CARD_NUMBER_2, 25, NOON.plus(Duration.ofDays(2)));
+        assertEquals(ChargeAggregates.Totals.NONE, aggregates.cardTotals(CARD_NUMBER_1));
+        assertEquals(new ChargeAggregates.Totals(2, 75), aggregates.cardTotals(CARD_NUMBER_2));
+        assertEquals(new ChargeAggregates.Totals(3, 175), aggregates.merchantTotals(MERCHANT_ID_1));
+
+        charge(MERCHANT_ID_1, CARD_NUMBER_1, 10, NOON.plus(Duration.ofDays(2)));
+        assertEquals(new ChargeAggregates.Totals(1, 10), aggregates.cardTotals(CARD_NUMBER_1));
+    }
+
+    private void charge(String merchantId, String cardNumber, int amount, Instant at) {
+        aggregates.charged(new Charge(cardNumber, merchantId, amount, CHARGE_DESCRIPTION, at));
+    }
+
+    private static List<Instant> starts(List<ChargeAggregates.Bucket> buckets) {
+        return buckets.stream().map(ChargeAggregates.Bucket::start).toList();
+    }
+}
@@ -0,0 +1,78 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.udesa.tpa.FacadeTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChargeColumnsTest {
+    private static final Instant NOW = Instant.parse("2025-09-18T12:00:00Z");
+
+    @Test
+    void test01materializesTheChargeThatWasAppended() {
+        ChargeColumns columns = new ChargeColumns();
+        long row = columns.append(MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, NOW);
+        assertEquals(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, NOW), columns.charge(CARD_NUMBER_1, row));
+        assertEquals(NOW.toEpochMilli(), columns.millis(row));
+    }
+
+    @Test
+    void test02repeatedTextsAreStoredOnce() {
+        ChargeColumns columns = new ChargeColumns();
+        long first = columns.append(MERCHANT_ID_1, 1, new String(CHARGE_DESCRIPTION), NOW);
+        long second = columns.append(MERCHANT_ID_1, 2, new String(CHARGE_DESCRIPTION), NOW);
+        assertSame(columns.charge(CARD_NUMBER_1, first).description(), columns.charge(CARD_NUMBER_1, second).description());
+    }
+
+    @Test
+    void test03rowsKeepTheirValuesAcrossSegments() {
+        ChargeColumns columns = new ChargeColumns();
+        int rows = ChargeColumns.ROWS_PER_SEGMENT + 10;
+        for (int i = 0; i < rows; i++) {
+            columns.append(i % 2 == 0 ? MERCHANT_ID_1 : MERCHANT_ID_2, i + 1, CHARGE_DESCRIPTION, NOW.plusMillis(i));
+        }
+        assertEquals(rows, columns.rows());
+        assertEquals(2L * ChargeColumns.SEGMENT_BYTES, columns.offHeapBytes());
+        for (int i = 0; i < rows; i++) {
+            Charge charge = columns.charge(CARD_NUMBER_2, i);
+            assertEquals(i + 1, charge.amount());
+            assertEquals(i % 2 == 0 ? MERCHANT_ID_1 : MERCHANT_ID_2, charge.merchantId());
+            assertEquals(NOW.plusMillis(i), charge.timestamp());
+        }
+    }
+
+    @Test
+    void test04concurrentAppendsGetDistinctRows() throws Exception {
+        ChargeColumns columns = new ChargeColumns();
+        Set<Long> rows = ConcurrentHashMap.newKeySet();
+        runConcurrently(8, 1000, () -> rows.add(columns.append(MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, NOW)));
+        assertEquals(8000, rows.size());
+        assertEquals(8000, columns.rows());
+        for (long row : rows) { assertEquals(1, columns.charge(CARD_NUMBER_1, row).amount()); }
+    }
+
+    @Test
+    void test05descriptionsPastTheDictionaryBoundAreKeptAsBytesAcrossChunks() {
+        ChargeColumns columns = new ChargeColumns(ChargeColumns.MAX_ROWS, 2, 16);
+        long[] rows = new long[50];
+        for (int i = 0; i < rows.length; i++) { rows[i] = columns.append(MERCHANT_ID_1, 1, "pedido " + i + " ñandu", NOW); }
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals("pedido " + i + " ñandu", columns.charge(CARD_NUMBER_1, rows[i]).description());
+        }
+        assertSame(columns.charge(CARD_NUMBER_1, rows[0]).description(), columns.charge(CARD_NUMBER_1, columns.append(MERCHANT_ID_1, 1, "pedido 0 ñandu", NOW)).description());
+    }
+
+    @Test
+    void test06appendingPastTheLastRowFailsInsteadOfWrapping() {
+        ChargeColumns columns = new ChargeColumns(2, ChargeColumns.MAX_DESCRIPTIONS, ChargeColumns.TEXT_CHUNK_BYTES);
+        columns.append(MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, NOW);
+        columns.append(MERCHANT_ID_1, 2, CHARGE_DESCRIPTION, NOW);
+        assertThrowsLike(() -> columns.append(MERCHANT_ID_1, 3, CHARGE_DESCRIPTION, NOW), ChargeColumns.COLUMNS_FULL);
+        assertEquals(2, columns.rows());
+        assertEquals(2, columns.amount(1));
+    }
+}
@@ -0,0 +1,200 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.udesa.tpa.FacadeTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChargeFeedTest {
+    private static final Instant NOW = Instant.parse("2025-09-18T12:00:00Z");
+
+    private ChargeFeed feed;
+
+    @BeforeEach
+    void createFeed() {
+        feed = new ChargeFeed(16, 4);
+    }
+
+    @AfterEach
+    void closeFeed() {
+        feed.close();
+    }
+
+    @Test
+    void test01deliversChargesInCommitOrderInBatchesAsRequested() throws InterruptedException {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber);
+        List<Charge> charged = charge(6);
+
+        subscriber.request(1);
+        ChargeFeed.Batch first = subscriber.nextBatch();
+        assertEquals(0, first.firstOffset());
+        assertEquals(charged.subList(0, 4), first.charges());
+        assertNull(subscriber.batches.poll(50, TimeUnit.MILLISECONDS));
+
+        subscriber.request(1);
+        ChargeFeed.Batch second = subscriber.nextBatch();
+        assertEquals(4, second.firstOffset());
+        assertEquals(charged.subList(4, 6), second.charges());
+        assertEquals(6, second.nextOffset());
+    }
+
+    @Test
+    void test02subscribersResumeFromAnOffsetTheyAlreadyConsumed() throws InterruptedException {
+        List<Charge> charged = charge(5);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber, 3);
+        subscriber.request(Long.MAX_VALUE);
+        assertEquals(charged.subList(3, 5), subscriber.nextBatch().charges());
+
+        feed.charged(charged.get(0));
+        assertEquals(5, subscriber.nextBatch().firstOffset());
+    }
+
+    @Test
+    void test03aSubscriberThatFallsOutOfTheRetentionGetsAnError() throws InterruptedException {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber, 0);
+        charge(40);
+        subscriber.request(1);
+        assertEquals(ChargeFeed.OFFSET_EXPIRED, subscriber.error.poll(5, TimeUnit.SECONDS).getMessage());
+        assertEquals(25, feed.oldestOffset());
+        assertThrowsLike(() -> feed.subscribe(new RecordingSubscriber(), 41), ChargeFeed.INVALID_OFFSET);
+    }
+
+    @Test
+    void test04aSlowSubscriberDoesNotHoldBackChargesOrOtherSubscribers() throws InterruptedException {
+        feed.close();
+        feed = new ChargeFeed(1024, 64);
+        CountDownLatch stuck = new CountDownLatch(1);
+        RecordingSubscriber slow = new RecordingSubscriber() {
+            @Override public void onNext(ChargeFeed.Batch batch) {
+                try {
+                    stuck.await();
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        };
+        RecordingSubscriber fast = new RecordingSubscriber();
+        feed.subscribe(slow);
+        feed.subscribe(fast);
+        slow.request(Long.MAX_VALUE);
+        fast.request(Long.MAX_VALUE);
+
+        charge(500);
+        long received = 0;
+        while (received < 500) { received += fast.nextBatch().charges().size(); }
+        stuck.countDown();
+        assertEquals(500, feed.nextOffset());
+    }
+
+    @Test
+    void test05cancelledSubscribersStopReceiving() throws InterruptedException {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber);
+        subscriber.request(Long.MAX_VALUE);
+        charge(1);
+        subscriber.nextBatch();
+        subscriber.subscription.cancel();
+        charge(1);
+        assertNull(subscriber.batches.poll(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void test06closingCompletesSubscribersOnceTheyCatchUp() throws InterruptedException {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber);
+        charge(2);
+        feed.close();
+        subscriber.request(Long.MAX_VALUE);
+        assertEquals(2, subscriber.nextBatch().charges().size());
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void test07rejectsInvalidSettingsAndDemand() throws InterruptedException {
+        assertThrowsLike(() -> new ChargeFeed(12, 4), ChargeFeed.INVALID_RETENTION);
+        assertThrowsLike(() -> new ChargeFeed(16, 0), ChargeFeed.INVALID_BATCH_SIZE);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber);
+        subscriber.request(0);
+        assertEquals(ChargeFeed.INVALID_DEMAND, subscriber.error.poll(5, TimeUnit.SECONDS).getMessage());
+    }
+
+    @Test
+    void test08invalidDemandIsSignalledFromTheDeliveryThread() throws InterruptedException {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber);
+        subscriber.request(-1);
+        assertEquals(ChargeFeed.INVALID_DEMAND, subscriber.error.poll(5, TimeUnit.SECONDS).getMessage());
+        assertNotSame(Thread.currentThread(), subscriber.signalledFrom);
+        charge(1);
+        subscriber.request(1);
+        assertNull(subscriber.batches.poll(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void test09concurrentChargesArePublishedWithoutGapsOrDuplicates() throws InterruptedException {
+        feed.close();
+        feed = new ChargeFeed(4096, 64);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(subscriber);
+        subscriber.request(Long.MAX_VALUE);
+        runConcurrently(8, 250, () -> feed.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, NOW)));
+
+        long expected = 0;
+        while (expected < 2000) {
+            ChargeFeed.Batch batch = subscriber.nextBatch();
+            assertEquals(expected, batch.firstOffset());
+            assertTrue(batch.charges().stream().allMatch(charge -> charge != null));
+            expected = batch.nextOffset();
+        }
+        assertEquals(2000, feed.nextOffset());
+    }
+
+    private List<Charge> charge(int count) {
+        List<Charge> charged = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Charge charge = new Charge(CARD_NUMBER_1, MERCHANT_ID_1, i + 1, CHARGE_DESCRIPTION, NOW);
+            feed.charged(charge);
+            charged.add(charge);
+        }
+        return charged;
+    }
+
+    static class RecordingSubscriber implements Flow.Subscriber<ChargeFeed.Batch> {
+        final BlockingQueue<ChargeFeed.Batch> batches = new LinkedBlockingQueue<>();
+        final BlockingQueue<Throwable> error = new LinkedBlockingQueue<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile Thread signalledFrom;
+
+        @Override public void onSubscribe(Flow.Subscription subscription) { this.subscription = subscription; }
+        @Override public void onNext(ChargeFeed.Batch batch) { batches.add(batch); }
+        @Override public void onError(Throwable failure) {
+            signalledFrom = Thread.currentThread();
+            error.add(failure);
+        }
+        @Override public void onComplete() { completed.countDown(); }
+
+        void request(long batches) { subscription.request(batches); }
+
+        ChargeFeed.Batch nextBatch() throws InterruptedException {
+            ChargeFeed.Batch batch = batches.poll(5, TimeUnit.SECONDS);
+            assertNotNull(batch);
+            return batch;
+        }
+    }
+}
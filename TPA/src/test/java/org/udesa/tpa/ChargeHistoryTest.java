@@ -0,0 +1,178 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.GiftCard.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChargeHistoryTest {
+    public static final FacadeListener NO_LISTENER = new FacadeListener() {};
+
+    private MyClock clock;
+    private GiftCard card;
+    private ChargeHistory history;
+
+    @BeforeEach
+    void createHistory() {
+        clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        card = new GiftCard(USER_1, CARD_NUMBER_1, 1000);
+        history = new ChargeHistory(CARD_NUMBER_1, new ChargeColumns());
+    }
+
+    @Test
+    void test01chargeDebitsTheCardAndRecordsIt() {
+        Charge charge = history.charge(card, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, clock, NO_LISTENER);
+        assertEquals(700, card.balance());
+        assertEquals(1, history.size());
+        assertEquals(charge, history.charges().get(0));
+        assertEquals(clock.instant(), charge.timestamp());
+    }
+
+    @Test
+    void test02failedChargeIsNotRecorded() {
+        assertThrowsLike(() -> history.charge(card, MERCHANT_ID_1, 2000, CHARGE_DESCRIPTION, clock, NO_LISTENER), INSUFFICIENT_FUNDS);
+        assertEquals(1000, card.balance());
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    void test03concurrentChargesKeepBalanceAndHistoryInStep() throws InterruptedException {
+        runConcurrently(8, 100, () -> {
+            try {
+                history.charge(card, MERCHANT_ID_1, 3, CHARGE_DESCRIPTION, clock, NO_LISTENER);
+            } catch (IllegalArgumentException ignored) {
+            }
+        });
+        assertEquals(1, card.balance());
+        assertEquals(333, history.size());
+    }
+
+    @Test
+    void test04pagesGoFromNewestToOldest() {
+        chargeAmounts(10, 20, 30, 40, 50);
+        StatementPage first = history.newestFirst(StatementQuery.latest(2));
+        StatementPage second = history.newestFirst(StatementQuery.latest(2).before(first.cursor()));
+        StatementPage last = history.newestFirst(StatementQuery.latest(2).before(second.cursor()));
+
+        assertEquals(List.of(50, 40), amounts(first));
+        assertEquals(List.of(30, 20), amounts(second));
+        assertEquals(List.of(10), amounts(last));
+        assertTrue(first.hasMore());
+        assertFalse(last.hasMore());
+    }
+
+    @Test
+    void test05pagesCanBeRestrictedToATimeRange() {
+        chargeAmounts(10, 20, 30, 40, 50);
+        Instant start = Instant.parse("2025-09-18T12:01:00Z");
+        Instant end = Instant.parse("2025-09-18T12:03:00Z");
+        StatementPage page = history.newestFirst(StatementQuery.latest(10).between(start, end));
+        assertEquals(List.of(40, 30, 20), amounts(page));
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void test06pollingSinceACursorReturnsOnlyNewCharges() {
+        chargeAmounts(10, 20);
+        StatementPage firstPoll = history.since(0, 10);
+        chargeAmounts(30);
+        StatementPage secondPoll = history.since(firstPoll.cursor(), 10);
+        StatementPage idlePoll = history.since(secondPoll.cursor(), 10);
+
+        assertEquals(List.of(10, 20), amounts(firstPoll));
+        assertEquals(List.of(30), amounts(secondPoll));
+        assertTrue(idlePoll.charges().isEmpty());
+        assertEquals(3, idlePoll.cursor());
+    }
+
+    @Test
+    void test07pagesAreReadOnlyViewsThatIgnoreLaterCharges() {
+        chargeAmounts(10, 20);
+        List<Charge> view = history.charges();
+        chargeAmounts(30);
+        assertEquals(2, view.size());
+        assertThrows(UnsupportedOperationException.class, () -> view.add(view.get(0)));
+        assertThrows(UnsupportedOperationException.class, () -> view.remove(0));
+    }
+
+    @Test
+    void test08failsToPollWithInvalidCursorOrPageSize() {
+        assertThrowsLike(() -> history.since(-1, 10), StatementQuery.INVALID_CURSOR);
+        assertThrowsLike(() -> history.since(0, 0), StatementQuery.INVALID_PAGE_SIZE);
+    }
+
+    @Test
+    void test09chargeIsUndoneWhenTheListenerFails() {
+        FacadeListener failing = new FacadeListener() {
+            @Override public void charged(Charge charge) { throw new IllegalStateException("disk full"); }
+        };
+        assertThrowsLike(() -> history.charge(card, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, clock, failing), "disk full");
+        assertEquals(1000, card.balance());
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    void test10replayedChargesDebitTheCardWithTheirOriginalTimestamp() {
+        Charge original = new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, Instant.parse("2025-01-01T00:00:00Z"));
+        history.replay(card, original);
+        assertEquals(700, card.balance());
+        assertEquals(List.of(original), history.charges());
+    }
+
+    @Test
+    void test11batchChargesEveryValidItemAndNotifiesOnce() {
+        List<List<Charge>> notified = new ArrayList<>();
+        FacadeListener listener = new FacadeListener() {
+            @Override public void charged(List<Charge> charges) { notified.add(charges); }
+        };
+        List<ChargeResult> results = history.chargeAll(card, MERCHANT_ID_1, List.of(
+                new ChargeItem(CARD_NUMBER_1, 600, CHARGE_DESCRIPTION),
+                new ChargeItem(CARD_NUMBER_1, 600, CHARGE_DESCRIPTION),
+                new ChargeItem(CARD_NUMBER_1, 400, CHARGE_DESCRIPTION)), clock, listener);
+
+        assertEquals(List.of(true, false, true), results.stream().map(ChargeResult::succeeded).toList());
+        assertEquals(INSUFFICIENT_FUNDS, results.get(1).error());
+        assertEquals(0, card.balance());
+        assertEquals(1, notified.size());
+        assertEquals(history.charges(), notified.get(0));
+    }
+
+    @Test
+    void test12batchIsUndoneWhenTheListenerFails() {
+        FacadeListener failing = new FacadeListener() {
+            @Override public void charged(List<Charge> charges) { throw new IllegalStateException("disk full"); }
+        };
+        List<ChargeResult> results = history.chargeAll(card, MERCHANT_ID_1, List.of(
+                new ChargeItem(CARD_NUMBER_1, 600, CHARGE_DESCRIPTION),
+                new ChargeItem(CARD_NUMBER_1, 0, CHARGE_DESCRIPTION)), clock, failing);
+
+        assertEquals(List.of("disk full", Charge.INVALID_AMOUNT), results.stream().map(ChargeResult::error).toList());
+        assertEquals(1000, card.balance());
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    void test13statementReturnsTheSameChargeThatWasNotified() {
+        clock.plus(Duration.ofNanos(1_234_567));
+        Charge charge = history.charge(card, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, clock, NO_LISTENER);
+        assertEquals(Instant.parse("2025-09-18T12:00:00.001Z"), charge.timestamp());
+        assertEquals(List.of(charge), history.charges());
+    }
+
+    private void chargeAmounts(int... amounts) {
+        for (int amount : amounts) {
+            history.charge(card, MERCHANT_ID_1, amount, CHARGE_DESCRIPTION, clock, NO_LISTENER);
+            clock.plus(Duration.ofMinutes(1));
+        }
+    }
+
+    private static List<Integer> amounts(StatementPage page) {
+        return page.charges().stream().map(Charge::amount).toList();
+    }
+}
@@ -0,0 +1,243 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChargeJournalTest {
+    private static final Instant NOW = Instant.parse("2025-09-18T12:00:00.123456789Z");
+
+    private Path directory;
+    private Path journalDirectory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        journalDirectory = directory.resolve("journal");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        deleteRecursively(directory);
+    }
+
+    @Test
+    void test01replaysChargesAndClaimsInTheOrderTheyWereWritten() throws IOException {
+        Charge first = new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, NOW);
+        Charge second = new Charge(CARD_NUMBER_2, MERCHANT_ID_2, 50, "medialunas ñ", NOW.plusSeconds(1));
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit())) {
+            journal.claimed(USER_1, CARD_NUMBER_1, NOW);
+            journal.charged(first);
+            journal.charged(second);
+        }
+
+        List<Object> replayed = replayAll();
+        assertEquals(List.of(USER_1 + "/" + CARD_NUMBER_1, 2L, first, 3L, second), replayed);
+    }
+
+    @Test
+    void test02reopenedJournalContinuesTheSequence() throws IOException {
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.batched())) {
+            journal.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, NOW));
+        }
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.batched())) {
+            assertEquals(1, journal.lastSequence());
+            journal.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 200, CHARGE_DESCRIPTION, NOW));
+            assertEquals(2, journal.lastSequence());
+        }
+    }
+
+    @Test
+    void test03tornTailIsDiscardedOnOpen() throws IOException {
+        Charge kept = new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, NOW);
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit())) {
+            journal.charged(kept);
+            journal.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 200, CHARGE_DESCRIPTION, NOW));
+        }
+        try (FileChannel channel = FileChannel.open(segments().get(0), WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        assertEquals(List.of(1L, kept), replayAll());
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit())) {
+            assertEquals(1, journal.lastSequence());
+        }
+    }
+
+    @Test
+    void test04intervalPolicyFlushesWithoutWaitingForEachCharge() throws Exception {
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.every(Duration.ofMillis(5)))) {
+            journal.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, NOW));
+            for (int i = 0; i < 200 && Files.size(segments().get(0)) == 0; i++) { Thread.sleep(5); }
+            assertTrue(Files.size(segments().get(0)) > 0);
+        }
+    }
+
+    @Test
+    void test05concurrentBatchedCommitsAreAllDurable() throws Exception {
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.batched())) {
+            runConcurrently(8, 50, () -> journal.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, NOW)));
+        }
+        assertEquals(800, replayAll().size());
+    }
+
+    @Test
+    void test06facadeRecoversBalancesAndStatementsAfterARestart() throws IOException {
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit())) {
+            Facade facade = journaledFacade(journal);
+            String token = facade.login(USER_1, PASSWORD_1);
+            facade.claim(token, CARD_NUMBER_1);
+            facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION);
+            facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 200, CHARGE_DESCRIPTION);
+        }
+
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit())) {
+            Facade facade = journaledFacade(journal);
+            String token = facade.login(USER_1, PASSWORD_1);
+            facade.claim(token, CARD_NUMBER_1);
+            assertEquals(500, facade.balance(token, CARD_NUMBER_1));
+            assertEquals(List.of(300, 200), facade.statement(token, CARD_NUMBER_1).stream().map(Charge::amount).toList());
+        }
+    }
+
+    @Test
+    void test07fullSegmentsAreSealedAndANewOneIsStarted() throws IOException {
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit(), 100)) {
+            for (int i = 0; i < 5; i++) { journal.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, NOW)); }
+            assertEquals(5, segments().size());
+            assertEquals(4, journal.sealedSequence());
+        }
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit(), 100)) {
+            assertEquals(5, journal.lastSequence());
+        }
+        assertEquals(10, replayAll().size());
+    }
+
+    @Test
+    void test08replayCanBeRestrictedToASequenceRange() throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit(), 100)) {
+            for (int i = 0; i < 6; i++) { journal.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, NOW)); }
+            journal.replay(2, 4, (sequence, charge) -> sequences.add(sequence));
+        }
+        assertEquals(List.of(3L, 4L), sequences);
+    }
+
+    @Test
+    void test09onlySealedSegmentsCoveredBySequenceAreDeleted() throws IOException {
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit(), 100)) {
+            for (int i = 0; i < 5; i++) { journal.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, NOW)); }
+            assertEquals(3, journal.deleteSegmentsUpTo(3));
+            assertEquals(1, journal.deleteSegmentsUpTo(Long.MAX_VALUE));
+            assertEquals(1, segments().size());
+        }
+    }
+
+    @Test
+    void test10failsToOpenWithAnInvalidSegmentSize() {
+        assertThrowsLike(() -> ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit(), 0), ChargeJournal.INVALID_SEGMENT_SIZE);
+    }
+
+    @Test
+    void test11batchOfChargesIsJournaledInOrder() throws IOException {
+        Charge first = new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, NOW);
+        Charge second = new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 2, CHARGE_DESCRIPTION, NOW);
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit())) {
+            journal.charged(List.of(first, second));
+            journal.charged(List.of());
+            assertEquals(2, journal.lastSequence());
+        }
+        assertEquals(List.of(1L, first, 2L, second), replayAll());
+    }
+
+    @Test
+    void test12afterAFailedWriteEveryLaterCommitIsRejected() throws IOException {
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.batched(), 100)) {
+            journal.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, NOW));
+            Files.createFile(journalDirectory.resolve(String.format("journal-%019d.log", 2)));
+
+            assertThrowsLike(() -> journal.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 2, CHARGE_DESCRIPTION, NOW)), ChargeJournal.JOURNAL_FAILED);
+            assertThrowsLike(() -> journal.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 3, CHARGE_DESCRIPTION, NOW)), ChargeJournal.JOURNAL_FAILED);
+            assertThrowsLike(journal::sync, ChargeJournal.JOURNAL_FAILED);
+            assertEquals(1, journal.lastSequence());
+        }
+    }
+
+    @Test
+    void test13aCorruptRecordInASealedSegmentFailsTheReplay() throws IOException {
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit(), 100)) {
+            for (int i = 0; i < 3; i++) { journal.charged(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, NOW)); }
+        }
+        try (FileChannel channel = FileChannel.open(segments().get(0), WRITE)) {
+            channel.write(java.nio.ByteBuffer.wrap(new byte[] {42}), channel.size() - 1);
+        }
+
+        assertThrowsLike(this::replayAll, ChargeJournal.CORRUPT_SEGMENT);
+    }
+
+    @Test
+    void test14aBatchWithATextTooLongLeavesNoRecordBehind() throws IOException {
+        Charge valid = new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, NOW);
+        Charge tooLong = new Charge(CARD_NUMBER_1, "m".repeat(0x10000), 2, CHARGE_DESCRIPTION, NOW);
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.batched())) {
+            assertThrowsLike(() -> journal.charged(List.of(valid, tooLong)), ChargeJournal.TEXT_TOO_LONG);
+            assertEquals(0, journal.lastSequence());
+            journal.charged(valid);
+        }
+        assertEquals(List.of(1L, valid), replayAll());
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(journalDirectory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static Facade journaledFacade(ChargeJournal journal) {
+        Facade facade = new Facade(
+                new MyClock(NOW), Duration.ofMinutes(5),
+                java.util.Map.of(USER_1, PASSWORD_1),
+                java.util.Map.of(CARD_NUMBER_1, new GiftCard(USER_1, CARD_NUMBER_1, 1000)),
+                java.util.Map.of(MERCHANT_ID_1, new Merchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1))
+        );
+        facade.recoverFrom(journal);
+        return facade;
+    }
+
+    private List<Object> replayAll() throws IOException {
+        List<Object> replayed = new ArrayList<>();
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit())) {
+            journal.replay(new ChargeJournal.Replay() {
+                @Override public void charged(long sequence, Charge charge) {
+                    replayed.add(sequence);
+                    replayed.add(charge);
+                }
+                @Override public void claimed(long sequence, String username, String cardNumber, Instant at) {
+                    replayed.add(username + "/" + cardNumber);
+                }
+            });
+        }
+        return replayed;
+    }
+
+    public static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) { Files.delete(path); }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.udesa.tpa.FacadeTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChargePipelineTest {
+    private MyClock clock;
+    private GiftCard card;
+    private ChargeHistory history;
+    private List<List<Charge>> notified;
+    private ChargePipeline pipeline;
+
+    @BeforeEach
+    void createPipeline() {
+        clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        card = new GiftCard(USER_1, CARD_NUMBER_1, 1000);
+        history = new ChargeHistory(CARD_NUMBER_1, new ChargeColumns());
+        notified = Collections.synchronizedList(new ArrayList<>());
+        pipeline = new ChargePipeline(64, 16, new FacadeListener() {
+            @Override public void charged(List<Charge> charges) { notified.add(List.copyOf(charges)); }
+        });
+    }
+
+    @AfterEach
+    void closePipeline() {
+        pipeline.close();
+    }
+
+    @Test
+    void test01debitsOnSubmitAndRecordsOnceDurable() {
+        CompletableFuture<Charge> charged = pipeline.submit(card, history, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, clock);
+        assertEquals(700, card.balance());
+
+        Charge charge = charged.join();
+        assertEquals(List.of(charge), history.charges());
+        assertEquals(List.of(List.of(charge)), notified);
+        assertEquals(clock.instant(), charge.timestamp());
+    }
+
+    @Test
+    void test02rejectsChargesTheCardCanNotPayWithoutEnqueuingThem() {
+        assertThrowsLike(() -> pipeline.submit(card, history, MERCHANT_ID_1, 2000, CHARGE_DESCRIPTION, clock), GiftCard.INSUFFICIENT_FUNDS);
+        pipeline.close();
+        assertEquals(1000, card.balance());
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    void test03failedPersistenceRefundsTheCardAndFailsTheFuture() {
+        pipeline.close();
+        pipeline = new ChargePipeline(64, 16, new FacadeListener() {
+            @Override public void charged(List<Charge> charges) { throw new IllegalStateException("disk full"); }
+        });
+        CompletableFuture<Charge> charged = pipeline.submit(card, history, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, clock);
+
+        assertEquals("disk full", assertThrows(CompletionException.class, charged::join).getCause().getMessage());
+        assertEquals(1000, card.balance());
+        assertEquals(0, history.size());
+        assertEquals(new ChargePipeline.Metrics(0, 1, 1), pipeline.metrics());
+    }
+
+    @Test
+    void test04concurrentChargesKeepTheCardsOrderFromDebitToStatement() throws InterruptedException {
+        List<CompletableFuture<Charge>> charged = Collections.synchronizedList(new ArrayList<>());
+        runConcurrently(4, 300, () -> {
+            try {
+                charged.add(pipeline.submit(card, history, MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, clock));
+            } catch (IllegalArgumentException ignored) {
+            }
+        });
+        charged.forEach(CompletableFuture::join);
+
+        assertEquals(0, card.balance());
+        assertEquals(1000, history.size());
+        List<Charge> persisted = notified.stream().flatMap(List::stream).toList();
+        assertEquals(history.charges(), persisted);
+        assertTrue(pipeline.metrics().batches() <= 1000);
+    }
+
+    @Test
+    void test05aFullQueueHoldsTheCallerBackUntilTheDurableStageCatchesUp() throws InterruptedException {
+        pipeline.close();
+        CountDownLatch disk = new CountDownLatch(1);
+        pipeline = new ChargePipeline(2, 1, new FacadeListener() {
+            @Override public void charged(List<Charge> charges) {
+                try {
+                    assertTrue(disk.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        });
+        CompletableFuture<Void> caller = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 10; i++) { pipeline.submit(card, history, MERCHANT_ID_1, 10, CHARGE_DESCRIPTION, clock); }
+        });
+        Thread.sleep(50);
+        assertFalse(caller.isDone());
+        disk.countDown();
+        caller.join();
+        pipeline.close();
+
+        assertEquals(900, card.balance());
+        assertEquals(10, history.size());
+    }
+
+    @Test
+    void test06closedPipelineRejectsNewCharges() {
+        pipeline.close();
+        assertThrowsLike(() -> pipeline.submit(card, history, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, clock), ChargePipeline.PIPELINE_CLOSED);
+        assertEquals(1000, card.balance());
+    }
+
+    @Test
+    void test07batchSizeMustBePositive() {
+        assertThrowsLike(() -> new ChargePipeline(64, 0, new FacadeListener() {}), ChargePipeline.INVALID_BATCH_SIZE);
+    }
+
+    @Test
+    void test08closingWhileChargesArriveLeavesNoChargeUnfinished() throws InterruptedException {
+        List<CompletableFuture<Charge>> accepted = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch started = new CountDownLatch(4);
+        List<Thread> callers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread caller = new Thread(() -> {
+                started.countDown();
+                try {
+                    for (int i = 0; i < 200; i++) { accepted.add(pipeline.submit(card, history, MERCHANT_ID_1, 1, CHARGE_DESCRIPTION, clock)); }
+                } catch (IllegalArgumentException closed) {
+                    assertEquals(ChargePipeline.PIPELINE_CLOSED, closed.getMessage());
+                }
+            });
+            callers.add(caller);
+            caller.start();
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        pipeline.close();
+        for (Thread caller : callers) { caller.join(10_000); }
+
+        assertTrue(accepted.stream().allMatch(CompletableFuture::isDone));
+        assertEquals(accepted.size(), history.size());
+        assertEquals(1000 - accepted.size(), card.balance());
+    }
+
+    @Test
+    void test09aRejectedChargeFailsAloneAndTheRestOfItsBatchIsPersisted() {
+        pipeline.close();
+        CountDownLatch disk = new CountDownLatch(1);
+        pipeline = new ChargePipeline(64, 16, new FacadeListener() {
+            @Override public void charged(List<Charge> charges) {
+                try {
+                    assertTrue(disk.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+                if (charges.stream().anyMatch(charge -> charge.amount() == 7)) { throw new IllegalStateException("rejected"); }
+                notified.add(List.copyOf(charges));
+            }
+        });
+        CompletableFuture<Charge> first = pipeline.submit(card, history, MERCHANT_ID_1, 100, CHARGE_DESCRIPTION, clock);
+        CompletableFuture<Charge> rejected = pipeline.submit(card, history, MERCHANT_ID_1, 7, CHARGE_DESCRIPTION, clock);
+        CompletableFuture<Charge> last = pipeline.submit(card, history, MERCHANT_ID_1, 200, CHARGE_DESCRIPTION, clock);
+        disk.countDown();
+
+        assertEquals("rejected", assertThrows(CompletionException.class, rejected::join).getCause().getMessage());
+        assertEquals(List.of(first.join(), last.join()), history.charges());
+        assertEquals(700, card.balance());
+        assertEquals(1, pipeline.metrics().failed());
+    }
+}
@@ -0,0 +1,28 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChargeResultTest {
+    private static final ChargeItem ITEM = new ChargeItem(CARD_NUMBER_1, 300, CHARGE_DESCRIPTION);
+
+    @Test
+    void test01successfulResultCarriesTheCharge() {
+        Charge charge = new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, Instant.parse("2025-09-18T12:00:00Z"));
+        ChargeResult result = ChargeResult.charged(ITEM, charge);
+        assertTrue(result.succeeded());
+        assertEquals(charge, result.charge());
+        assertNull(result.error());
+    }
+
+    @Test
+    void test02failedResultCarriesTheError() {
+        ChargeResult result = ChargeResult.failed(ITEM, GiftCard.INSUFFICIENT_FUNDS);
+        assertFalse(result.succeeded());
+        assertNull(result.charge());
+        assertEquals(GiftCard.INSUFFICIENT_FUNDS, result.error());
+    }
+}
@@ -0,0 +1,113 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.udesa.tpa.ChargeJournalTest.deleteRecursively;
+import static org.udesa.tpa.ChargeSnapshot.*;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChargeSnapshotTest {
+    private static final Instant NOW = Instant.parse("2025-09-18T12:00:00.5Z");
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("snapshots");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        deleteRecursively(directory);
+    }
+
+    @Test
+    void test01extendedSnapshotIsReadBackWithTheSameCharges() throws IOException {
+        Map<String, List<Charge>> charges = Map.of(
+                CARD_NUMBER_1, List.of(charge(CARD_NUMBER_1, 300), charge(CARD_NUMBER_1, 200)),
+                CARD_NUMBER_2, List.of(charge(CARD_NUMBER_2, 50)));
+        ChargeSnapshot.empty().extend(directory, 42, charges);
+
+        ChargeSnapshot read = ChargeSnapshot.latest(directory);
+        assertEquals(42, read.sequence());
+        assertEquals(Map.of(CARD_NUMBER_1, 2, CARD_NUMBER_2, 1), Map.of(
+                CARD_NUMBER_1, read.cards().get(CARD_NUMBER_1).count(), CARD_NUMBER_2, read.cards().get(CARD_NUMBER_2).count()));
+        assertEquals(500, read.cards().get(CARD_NUMBER_1).amount());
+        assertEquals(charges.get(CARD_NUMBER_1), read.charges(CARD_NUMBER_1));
+        assertEquals(charges.get(CARD_NUMBER_2), read.charges(CARD_NUMBER_2));
+        assertEquals(500, read.amountOf(CARD_NUMBER_1));
+        assertFalse(read.contains(CARD_NUMBER_3));
+        assertEquals(List.of(), read.charges(CARD_NUMBER_3));
+    }
+
+    @Test
+    void test02latestPicksTheSnapshotWithTheHighestSequence() throws IOException {
+        ChargeSnapshot first = ChargeSnapshot.empty().extend(directory, 9, Map.of());
+        first.extend(directory, 10, Map.of(CARD_NUMBER_1, List.of(charge(CARD_NUMBER_1, 1))));
+        assertEquals(10, ChargeSnapshot.latest(directory).sequence());
+        assertEquals(1, ChargeSnapshot.deleteOlderThan(directory, 10));
+        assertEquals(10, ChargeSnapshot.latest(directory).sequence());
+        assertEquals(1, ChargeSnapshot.latest(directory).amountOf(CARD_NUMBER_1));
+    }
+
+    @Test
+    void test03missingSnapshotsMeanAnEmptySnapshot() throws IOException {
+        ChargeSnapshot latest = ChargeSnapshot.latest(directory.resolve("missing"));
+        assertEquals(0, latest.sequence());
+        assertTrue(latest.cards().isEmpty());
+    }
+
+    @Test
+    void test04corruptSnapshotIsRejected() throws IOException {
+        ChargeSnapshot.empty().extend(directory, 1, Map.of(CARD_NUMBER_1, List.of(charge(CARD_NUMBER_1, 300))));
+        Path file = directory.resolve(String.format("snapshot-%019d.bin", 1));
+        try (FileChannel channel = FileChannel.open(file, WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3}), 20);
+        }
+        assertThrowsLike(() -> ChargeSnapshot.read(file), CORRUPT_SNAPSHOT);
+    }
+
+    @Test
+    void test05extendingAppendsOnlyTheNewChargesAndKeepsTheOlderSnapshotReadable() throws IOException {
+        ChargeSnapshot first = ChargeSnapshot.empty().extend(directory, 1, Map.of(CARD_NUMBER_1, List.of(charge(CARD_NUMBER_1, 300))));
+        long archived = Files.size(directory.resolve("charges.archive"));
+        ChargeSnapshot second = first.extend(directory, 2, Map.of(
+                CARD_NUMBER_1, List.of(charge(CARD_NUMBER_1, 200)),
+                CARD_NUMBER_2, List.of(charge(CARD_NUMBER_2, 50))));
+
+        assertEquals(3 * archived, Files.size(directory.resolve("charges.archive")));
+        assertEquals(List.of(charge(CARD_NUMBER_1, 300), charge(CARD_NUMBER_1, 200)), second.charges(CARD_NUMBER_1));
+        assertEquals(new Card(2, 500, second.cards().get(CARD_NUMBER_1).lastChunk()), second.cards().get(CARD_NUMBER_1));
+        assertEquals(List.of(charge(CARD_NUMBER_1, 300)), first.charges(CARD_NUMBER_1));
+        assertFalse(first.contains(CARD_NUMBER_2));
+    }
+
+    @Test
+    void test06archiveBytesPastTheLatestIndexAreDiscarded() throws IOException {
+        ChargeSnapshot.empty().extend(directory, 1, Map.of(CARD_NUMBER_1, List.of(charge(CARD_NUMBER_1, 300))));
+        Files.write(directory.resolve("charges.archive"), new byte[] {9, 9, 9, 9, 9}, APPEND);
+
+        ChargeSnapshot.latest(directory).extend(directory, 2, Map.of(CARD_NUMBER_1, List.of(charge(CARD_NUMBER_1, 200))));
+        ChargeSnapshot read = ChargeSnapshot.latest(directory);
+        assertEquals(List.of(charge(CARD_NUMBER_1, 300), charge(CARD_NUMBER_1, 200)), read.charges(CARD_NUMBER_1));
+        assertEquals(500, read.amountOf(CARD_NUMBER_1));
+    }
+
+    private static Charge charge(String cardNumber, int amount) {
+        return new Charge(cardNumber, MERCHANT_ID_1, amount, CHARGE_DESCRIPTION, NOW);
+    }
+}
@@ -57,4 +57,10 @@ public class ChargeTest {
         assertNotEquals(charge1, charge2);
     }
 
+    @Test
+    void test07failsWhenTheDescriptionDoesNotFitTheJournal() {
+        assertEquals(MAX_DESCRIPTION_BYTES, new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 300, "a".repeat(MAX_DESCRIPTION_BYTES), now()).description().length());
+        assertThrowsLike(() -> new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 300, "a".repeat(MAX_DESCRIPTION_BYTES + 1), now()), DESCRIPTION_TOO_LONG);
+        assertThrowsLike(() -> new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 300, "ñ".repeat(MAX_DESCRIPTION_BYTES / 2 + 1), now()), DESCRIPTION_TOO_LONG);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClaimRegistryTest {
+    private static final String TOKEN_1 = "token-1";
+    private static final String TOKEN_2 = "token-2";
+
+    private ClaimRegistry claims;
+
+    @BeforeEach
+    void createRegistry() {
+        claims = new ClaimRegistry();
+    }
+
+    @Test
+    void test01claimedCardIsIndexedByTokenAndByCard() {
+        assertTrue(claims.claim(TOKEN_1, CARD_NUMBER_1));
+        assertTrue(claims.isClaimedBy(TOKEN_1, CARD_NUMBER_1));
+        assertTrue(claims.isClaimed(CARD_NUMBER_1, token -> true));
+        assertEquals(Set.of(CARD_NUMBER_1), claims.cardsOf(TOKEN_1));
+    }
+
+    @Test
+    void test02claimingTheSameCardTwiceOnTheSameTokenIsRejected() {
+        claims.claim(TOKEN_1, CARD_NUMBER_1);
+        assertFalse(claims.claim(TOKEN_1, CARD_NUMBER_1));
+    }
+
+    @Test
+    void test03releasingATokenUnindexesItsCards() {
+        claims.claim(TOKEN_1, CARD_NUMBER_1);
+        claims.claim(TOKEN_1, CARD_NUMBER_2);
+        claims.release(TOKEN_1);
+        assertFalse(claims.isClaimed(CARD_NUMBER_1, token -> true));
+        assertFalse(claims.isClaimed(CARD_NUMBER_2, token -> true));
+        assertTrue(claims.cardsOf(TOKEN_1).isEmpty());
+    }
+
+    @Test
+    void test04cardStaysClaimedWhileAnyClaimantIsLive() {
+        claims.claim(TOKEN_1, CARD_NUMBER_1);
+        claims.claim(TOKEN_2, CARD_NUMBER_1);
+        assertTrue(claims.isClaimed(CARD_NUMBER_1, TOKEN_2::equals));
+        assertFalse(claims.isClaimedBy(TOKEN_1, CARD_NUMBER_1));
+        assertTrue(claims.isClaimedBy(TOKEN_2, CARD_NUMBER_1));
+    }
+
+    @Test
+    void test05deadClaimantsAreReleasedWhenTheCardIsChecked() {
+        claims.claim(TOKEN_1, CARD_NUMBER_1);
+        claims.claim(TOKEN_1, CARD_NUMBER_2);
+        assertFalse(claims.isClaimed(CARD_NUMBER_1, token -> false));
+        assertFalse(claims.isClaimed(CARD_NUMBER_2, token -> true));
+    }
+
+    @Test
+    void test06claimsRacingWithReleaseLeaveNoOrphanOnceTheirTokensAreDead() throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        runConcurrently(4, 500, () -> {
+            String token = "token-" + next.getAndIncrement() / 2;
+            if (ThreadLocalRandom.current().nextBoolean()) { claims.claim(token, CARD_NUMBER_1); } else { claims.release(token); }
+        });
+        assertFalse(claims.isClaimed(CARD_NUMBER_1, token -> false));
+        assertEquals(0, claims.claimedCards());
+    }
+}
@@ -0,0 +1,123 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.Facade.*;
+import static org.udesa.tpa.GiftCard.*;
+import static org.udesa.tpa.Charge.*;
+import static org.udesa.tpa.CompactCardStore.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactCardStoreTest {
+    private CompactCardStore store;
+
+    @BeforeEach
+    void createStore() {
+        store = new CompactCardStore(4);
+        store.add(USER_1, CARD_NUMBER_1, 1000);
+        store.add(USER_1, CARD_NUMBER_2, 100);
+    }
+
+    @Test
+    void test01looksUpOwnerAndBalanceByCardNumber() {
+        assertEquals(2, store.size());
+        assertEquals(USER_1, store.owner(CARD_NUMBER_1));
+        assertEquals(1000, store.balance(CARD_NUMBER_1));
+        assertEquals(100, store.balance(CARD_NUMBER_2));
+        assertFalse(store.contains(CARD_NUMBER_3));
+    }
+
+    @Test
+    void test02chargesAndAddsBalanceLikeAGiftCard() {
+        store.charge(CARD_NUMBER_1, 500, CHARGE_DESCRIPTION);
+        store.addBalance(CARD_NUMBER_2, 50);
+        assertEquals(500, store.balance(CARD_NUMBER_1));
+        assertEquals(150, store.balance(CARD_NUMBER_2));
+    }
+
+    @Test
+    void test03rejectsTheSameInputsAsAGiftCard() {
+        assertThrowsLike(() -> store.charge(CARD_NUMBER_2, 2000, CHARGE_DESCRIPTION), INSUFFICIENT_FUNDS);
+        assertThrowsLike(() -> store.charge(CARD_NUMBER_1, 0, CHARGE_DESCRIPTION), INVALID_AMOUNT);
+        assertThrowsLike(() -> store.addBalance(CARD_NUMBER_1, -5), INVALID_AMOUNT);
+        assertThrowsLike(() -> store.charge(CARD_NUMBER_1, 10, " "), NULL_OR_EMPTY_VALUE);
+        assertThrowsLike(() -> store.add(USER_1, CARD_NUMBER_3, -3), NEGATIVE_INITIAL_BALANCE);
+        assertEquals(1000, store.balance(CARD_NUMBER_1));
+        assertEquals(100, store.balance(CARD_NUMBER_2));
+    }
+
+    @Test
+    void test04failsOnUnknownOrMalformedCardNumbers() {
+        assertThrowsLike(() -> store.balance(CARD_NUMBER_3), UNKNOWN_CARD);
+        assertThrowsLike(() -> store.charge(CARD_NUMBER_3, 10, CHARGE_DESCRIPTION), UNKNOWN_CARD);
+        assertThrowsLike(() -> store.balance("12a4"), CARD_NUMBER_MUST_BE_A_NUMERIC_STRING);
+        assertThrowsLike(() -> store.add(USER_1, "0123", 10), CARD_NUMBER_TOO_LONG);
+        assertThrowsLike(() -> store.add(USER_1, "1234567890123456789", 10), CARD_NUMBER_TOO_LONG);
+    }
+
+    @Test
+    void test05rejectsDuplicatedCardsAndStopsAtCapacity() {
+        assertThrowsLike(() -> store.add(USER_1, CARD_NUMBER_1, 10), DUPLICATED_CARD);
+        store.add(USER_1, CARD_NUMBER_3, 10);
+        store.add(USER_1, "0", 10);
+        assertThrowsLike(() -> store.add(USER_1, "42", 10), STORE_FULL);
+        assertThrowsLike(() -> new CompactCardStore(0), INVALID_CAPACITY);
+        assertThrowsLike(() -> new CompactCardStore((3 << 28) + 1), INVALID_CAPACITY);
+    }
+
+    @Test
+    void test06keepsEveryCardReachableUnderCollisions() {
+        CompactCardStore big = new CompactCardStore(10_000);
+        for (int i = 0; i < 10_000; i++) { big.add("user" + (i % 7), String.valueOf(i * 1024L), i); }
+        for (int i = 0; i < 10_000; i++) {
+            String cardNumber = String.valueOf(i * 1024L);
+            int position = big.positionOf(cardNumber);
+            assertEquals(cardNumber, big.cardNumberAt(position));
+            assertEquals(i, big.balance(cardNumber));
+            assertEquals("user" + (i % 7), big.owner(cardNumber));
+        }
+    }
+
+    @Test
+    void test07concurrentChargesNeverOverdraw() throws Exception {
+        CompactCardStore shared = new CompactCardStore(1);
+        shared.add(USER_1, CARD_NUMBER_1, 1000);
+        runConcurrently(8, 200, () -> {
+            try { shared.charge(CARD_NUMBER_1, 1, CHARGE_DESCRIPTION); } catch (IllegalArgumentException ignored) {}
+        });
+        assertEquals(0, shared.balance(CARD_NUMBER_1));
+    }
+
+    @Test
+    void test08cardViewsChargeTheStoreAndMalformedNumbersAreJustMissing() {
+        CardAccount card = store.card(CARD_NUMBER_1);
+        card.charge(300, CHARGE_DESCRIPTION);
+        card.addBalance(50);
+        assertEquals(750, store.balance(CARD_NUMBER_1));
+        assertEquals(1000, card.initialBalance());
+        assertEquals(USER_1, card.owner());
+        assertEquals(CARD_NUMBER_1, card.cardNumber());
+        assertNull(store.card(CARD_NUMBER_3));
+        assertNull(store.card("12a4"));
+        assertNull(store.card("0123"));
+        assertNull(store.card(null));
+    }
+
+    @Test
+    void test09copiesGiftCardsAndListsEveryCardByPosition() {
+        GiftCard charged = new GiftCard(USER_2, CARD_NUMBER_2, 500);
+        charged.charge(100, CHARGE_DESCRIPTION);
+        CompactCardStore copy = CompactCardStore.of(List.of(new GiftCard(USER_1, CARD_NUMBER_1, 1000), charged));
+
+        assertEquals(List.of(CARD_NUMBER_1, CARD_NUMBER_2), copy.cards().stream().map(CardAccount::cardNumber).toList());
+        assertEquals(400, copy.balance(CARD_NUMBER_2));
+        assertEquals(500, copy.card(CARD_NUMBER_2).initialBalance());
+        copy.restoreCharged(copy.positionOf(CARD_NUMBER_1), 250);
+        assertEquals(750, copy.balance(CARD_NUMBER_1));
+        assertThrowsLike(() -> copy.restoreCharged(copy.positionOf(CARD_NUMBER_1), 751), INSUFFICIENT_FUNDS);
+    }
+}
@@ -0,0 +1,48 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.Facade.*;
+import static org.udesa.tpa.CredentialHasher.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CredentialHasherTest {
+    private final CredentialHasher hasher = new CredentialHasher(1000);
+
+    @Test
+    void test01matchesOnlyTheHashedSecret() {
+        HashedCredential hashed = hasher.hash(PASSWORD_1);
+        assertTrue(hasher.matches(hashed, PASSWORD_1));
+        assertFalse(hasher.matches(hashed, PASSWORD_1 + " "));
+        assertFalse(hasher.matches(hashed, "otra"));
+        assertFalse(hasher.matches(hashed, null));
+        assertFalse(hasher.matches(null, PASSWORD_1));
+    }
+
+    @Test
+    void test02everyHashHasItsOwnSalt() {
+        HashedCredential first = hasher.hash(PASSWORD_1);
+        HashedCredential second = hasher.hash(PASSWORD_1);
+        assertNotEquals(first.encoded(), second.encoded());
+        assertEquals(1000, first.iterations());
+    }
+
+    @Test
+    void test03hashesWithDifferentCostsStillVerify() {
+        HashedCredential cheap = new CredentialHasher(10).hash(PASSWORD_1);
+        assertTrue(hasher.matches(cheap, PASSWORD_1));
+    }
+
+    @Test
+    void test04keepsAlreadyHashedValuesAndHashesPlainOnes() {
+        String encoded = hasher.hash(PASSWORD_1).encoded();
+        assertEquals(encoded, hasher.hashOrParse(encoded).encoded());
+        assertTrue(hasher.matches(hasher.hashOrParse(PASSWORD_1), PASSWORD_1));
+    }
+
+    @Test
+    void test05rejectsBlankSecretsAndInvalidCosts() {
+        assertThrowsLike(() -> hasher.hash(" "), NULL_OR_EMPTY_VALUE);
+        assertThrowsLike(() -> new CredentialHasher(0), INVALID_ITERATIONS);
+    }
+}
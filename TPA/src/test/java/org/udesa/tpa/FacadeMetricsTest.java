@@ -0,0 +1,121 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.FacadeMetrics.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FacadeMetricsTest {
+    private final FacadeMetrics metrics = new FacadeMetrics(1);
+
+    @Test
+    void test01countsSuccessesAndFailuresByReasonCode() {
+        metrics.succeeded(Operation.CHARGE, metrics.start());
+        metrics.succeeded(Operation.CHARGE, metrics.start());
+        metrics.failed(Operation.CHARGE, new IllegalArgumentException(GiftCard.INSUFFICIENT_FUNDS), metrics.start());
+        metrics.failed(Operation.LOGIN, new IllegalArgumentException(Facade.WRONG_PASSWORD), metrics.start());
+
+        assertEquals(2, metrics.outcome(Operation.CHARGE, SUCCESS).count());
+        assertEquals(1, metrics.outcome(Operation.CHARGE, "insufficient_funds").count());
+        assertEquals(1, metrics.outcome(Operation.LOGIN, "wrong_password").count());
+        assertEquals(0, metrics.outcome(Operation.CHARGE, GiftCard.INSUFFICIENT_FUNDS).count());
+        assertEquals(0, metrics.outcome(Operation.LOGIN, SUCCESS).count());
+    }
+
+    @Test
+    void test02sampledLatenciesAreRecorded() {
+        long start = metrics.start();
+        metrics.succeeded(Operation.BALANCE, start - 5_000);
+        assertTrue(metrics.outcome(Operation.BALANCE, SUCCESS).maxNanos() >= 5_000);
+    }
+
+    @Test
+    void test03failuresWithoutMessageCountAsOther() {
+        metrics.failed(Operation.CLAIM, new NullPointerException(), metrics.start());
+        assertEquals(1, metrics.outcome(Operation.CLAIM, OTHER_REASON).count());
+    }
+
+    @Test
+    void test04unknownMessagesCountAsOther() {
+        for (int i = 0; i < 50; i++) {
+            metrics.failed(Operation.CHARGE, new IllegalStateException("reason " + i), metrics.start());
+        }
+        assertEquals(50, metrics.outcome(Operation.CHARGE, OTHER_REASON).count());
+        assertEquals(0, metrics.outcome(Operation.CHARGE, "reason 0").count());
+    }
+
+    @Test
+    void test05exportersSeeExistingAndLaterSeries() {
+        RecordingExporter exporter = new RecordingExporter();
+        metrics.succeeded(Operation.CHARGE, metrics.start());
+        metrics.exportTo(exporter);
+        int registered = exporter.counters.size();
+        metrics.failed(Operation.CHARGE, new IllegalArgumentException(Facade.UNKNOWN_CARD), metrics.start());
+
+        assertEquals(Operation.values().length, registered);
+        assertEquals(registered + 1, exporter.counters.size());
+        assertEquals(Map.of("operation", "charge", "outcome", "unknown_card"), exporter.tags.getLast());
+        assertEquals(1, exporter.counters.getLast().getAsLong());
+        assertEquals(1, exporter.latencyCounts.getLast().getAsLong());
+    }
+
+    @Test
+    void test06unsampledCallsAreCountedButNotTimed() {
+        FacadeMetrics sampled = new FacadeMetrics(1 << 30);
+        for (int i = 0; i < 100; i++) { sampled.succeeded(Operation.CHARGE, sampled.start()); }
+        assertEquals(100, sampled.outcome(Operation.CHARGE, SUCCESS).count());
+    }
+
+    @Test
+    void test07exportedLatencyCountsEveryCallNotJustTheSampledOnes() {
+        FacadeMetrics sampled = new FacadeMetrics(1 << 30);
+        RecordingExporter exporter = new RecordingExporter();
+        sampled.exportTo(exporter);
+        for (int i = 0; i < 100; i++) { sampled.succeeded(Operation.LOGIN, sampled.start()); }
+
+        int login = exporter.tags.indexOf(Map.of("operation", "login", "outcome", SUCCESS));
+        assertEquals(100, exporter.latencyCounts.get(login).getAsLong());
+    }
+
+    @Test
+    void test08disabledMetricsRecordNothing() {
+        FacadeMetrics disabled = FacadeMetrics.disabled();
+        disabled.succeeded(Operation.CHARGE, disabled.start());
+        disabled.failed(Operation.CHARGE, new IllegalArgumentException(GiftCard.INSUFFICIENT_FUNDS), disabled.start());
+        assertEquals(0, disabled.outcome(Operation.CHARGE, SUCCESS).count());
+        assertEquals(0, disabled.outcome(Operation.CHARGE, "insufficient_funds").count());
+    }
+
+    @Test
+    void test09failsWithInvalidSampling() {
+        assertThrowsLike(() -> new FacadeMetrics(3), INVALID_SAMPLING);
+        assertThrowsLike(() -> new FacadeMetrics(0), INVALID_SAMPLING);
+    }
+
+    static final class RecordingExporter implements MetricsExporter {
+        final List<LongSupplier> counters = new ArrayList<>();
+        final List<Map<String, String>> tags = new ArrayList<>();
+        final List<String> gauges = new ArrayList<>();
+        final List<LongSupplier> gaugeValues = new ArrayList<>();
+        final List<LongSupplier> latencyCounts = new ArrayList<>();
+
+        @Override public void counter(String name, Map<String, String> tags, LongSupplier count) {
+            this.counters.add(count);
+            this.tags.add(tags);
+        }
+        @Override public void gauge(String name, Map<String, String> tags, LongSupplier value) {
+            gauges.add(name);
+            gaugeValues.add(value);
+        }
+        @Override public void latency(String name, Map<String, String> tags, LongSupplier count, LatencyHistogram histogram) {
+            latencyCounts.add(count);
+        }
+
+        long gauge(String name) { return gaugeValues.get(gauges.indexOf(name)).getAsLong(); }
+    }
+}
@@ -7,9 +7,17 @@ import static org.udesa.tpa.Facade.*;
 import static org.udesa.tpa.UserSession.*;
 import static org.udesa.tpa.Charge.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -18,6 +26,7 @@ public class FacadeTest {
     public static final String PASSWORD_1 = "12345678";
     public static final String USER_2 = "maximo";
     public static final String PASSWORD_2 = "abcdefgh";
+    public static final String SIGNING_KEY = "clave-de-firma-compartida-32-bytes";
     public static final String MERCHANT_ID_1 = "mercado-pago";
     public static final String MERCHANT_CREDENTIAL_1 = "galperin123";
     public static final String MERCHANT_ID_2 = "uala";
@@ -236,6 +245,655 @@ public class FacadeTest {
         );
     }
 
+    @Test
+    void test18rejectsChargeOnceTheClaimingSessionHasExpired() {
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        Facade facade = facadeWithOneUserCardAndMerchant(clock);
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+
+        clock.plus(Duration.ofMinutes(6));
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION), UNCLAIMED_CARD);
+    }
+
+    @Test
+    void test19logoutReleasesTheClaimedCards() {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.logout(token);
+
+        assertFalse(facade.isSessionActive(token));
+        assertThrowsLike(() -> facade.myCards(token), NULL_OBJECT);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION), UNCLAIMED_CARD);
+    }
+
+    @Test
+    void test20cardStaysChargeableWhileAnotherSessionStillClaimsIt() {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        String token1 = facade.login(USER_1, PASSWORD_1);
+        String token2 = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token1, CARD_NUMBER_1);
+        facade.claim(token2, CARD_NUMBER_1);
+        facade.logout(token1);
+
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        assertEquals(900, facade.balance(token2, CARD_NUMBER_1));
+    }
+
+    @Test
+    void test21failsToLogoutAnUnknownToken() {
+        assertThrowsLike(() -> facade.logout("unknown"), NULL_OBJECT);
+        assertThrowsLike(() -> facade.logout(" "), NULL_OR_EMPTY_VALUE);
+    }
+
+    @Test
+    void test22concurrentChargesOnTheSameCardNeverOverdraw() throws InterruptedException {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+
+        runConcurrently(8, 50, () -> {
+            try {
+                facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 3, CHARGE_DESCRIPTION);
+            } catch (IllegalArgumentException ex) {
+                assertEquals(GiftCard.INSUFFICIENT_FUNDS, ex.getMessage());
+            }
+        });
+
+        assertEquals(1, facade.balance(token, CARD_NUMBER_1));
+        assertEquals(333, facade.statement(token, CARD_NUMBER_1).size());
+    }
+
+    @Test
+    void test23concurrentChargesOnDifferentCardsAreAllApplied() throws InterruptedException {
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.claim(token, CARD_NUMBER_2);
+
+        runConcurrently(8, 25, () -> {
+            facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 4, CHARGE_DESCRIPTION);
+            facade.charge(MERCHANT_ID_2, MERCHANT_CREDENTIAL_2, CARD_NUMBER_2, 1, CHARGE_DESCRIPTION);
+        });
+
+        assertEquals(200, facade.balance(token, CARD_NUMBER_1));
+        assertEquals(0, facade.balance(token, CARD_NUMBER_2));
+        assertEquals(200, facade.statement(token, CARD_NUMBER_1).size());
+        assertEquals(200, facade.statement(token, CARD_NUMBER_2).size());
+    }
+
+    @Test
+    void test24sweptSessionsReleaseTheirClaims() {
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        SessionStore sessions = new SessionStore(clock);
+        Facade facade = new Facade(
+                clock, Duration.ofMinutes(5), sessions,
+                Map.of(USER_1, PASSWORD_1),
+                Map.of(CARD_NUMBER_1, new GiftCard(USER_1, CARD_NUMBER_1, 1000)),
+                Map.of(MERCHANT_ID_1, new Merchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1))
+        );
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+
+        clock.plus(Duration.ofMinutes(6));
+        sessions.sweep();
+        assertEquals(new SessionStore.Metrics(0, 1, 0), facade.sessionMetrics());
+        assertThrowsLike(() -> facade.myCards(token), NULL_OBJECT);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION), UNCLAIMED_CARD);
+    }
+
+    @Test
+    void test25boundedSessionStoreEvictsTheOldestLogin() {
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        Facade facade = new Facade(
+                clock, Duration.ofMinutes(5), new SessionStore(clock, 1, SessionStore.EvictionPolicy.EVICT_OLDEST),
+                Map.of(USER_1, PASSWORD_1), Map.of(), Map.of()
+        );
+        String first = facade.login(USER_1, PASSWORD_1);
+        clock.plus(Duration.ofSeconds(1));
+        String second = facade.login(USER_1, PASSWORD_1);
+
+        assertFalse(facade.isSessionActive(first));
+        assertTrue(facade.isSessionActive(second));
+        assertEquals(new SessionStore.Metrics(1, 0, 1), facade.sessionMetrics());
+    }
+
+    @Test
+    void test26reportsTheSessionStatusOfAnyToken() {
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        Facade facade = facadeWithOneUserCardAndMerchant(clock);
+        String token = facade.login(USER_1, PASSWORD_1);
+
+        assertEquals(SessionStatus.ACTIVE, facade.sessionStatus(token));
+        assertEquals(SessionStatus.UNKNOWN, facade.sessionStatus("unknown"));
+        assertEquals(SessionStatus.UNKNOWN, facade.sessionStatus(null));
+        clock.plus(Duration.ofMinutes(6));
+        assertEquals(SessionStatus.EXPIRED, facade.sessionStatus(token));
+    }
+
+    @Test
+    void test27validatingAnExpiredTokenKeepsReportingItExpired() {
+        // que no reserve memoria lo mide SessionValidationBenchmark con -prof gc, no el test
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        Facade facade = facadeWithOneUserCardAndMerchant(clock);
+        String token = facade.login(USER_1, PASSWORD_1);
+        clock.plus(Duration.ofMinutes(6));
+
+        for (int i = 0; i < 1_000; i++) { assertEquals(SessionStatus.EXPIRED, facade.sessionStatus(token)); }
+        assertFalse(facade.isSessionActive(token));
+    }
+
+    @Test
+    void test28statementPagesAndPollingRequireAClaimedCard() {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        String token = facade.login(USER_1, PASSWORD_1);
+        assertThrowsLike(() -> facade.statementPage(token, CARD_NUMBER_1, StatementQuery.latest(10)), UNCLAIMED_CARD);
+        assertThrowsLike(() -> facade.chargesSince(token, CARD_NUMBER_1, 0, 10), UNCLAIMED_CARD);
+
+        facade.claim(token, CARD_NUMBER_1);
+        assertTrue(facade.statementPage(token, CARD_NUMBER_1, StatementQuery.latest(10)).charges().isEmpty());
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 200, CHARGE_DESCRIPTION);
+
+        StatementPage newest = facade.statementPage(token, CARD_NUMBER_1, StatementQuery.latest(1));
+        assertEquals(200, newest.charges().get(0).amount());
+        assertTrue(newest.hasMore());
+        StatementPage polled = facade.chargesSince(token, CARD_NUMBER_1, 1, 10);
+        assertEquals(1, polled.charges().size());
+        assertEquals(2, polled.cursor());
+    }
+
+    @Test
+    void test29batchReportsAResultPerItemInTheOriginalOrder() {
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.claim(token, CARD_NUMBER_2);
+        List<ChargeItem> items = List.of(
+                new ChargeItem(CARD_NUMBER_1, 300, CHARGE_DESCRIPTION),
+                new ChargeItem(CARD_NUMBER_2, 500, CHARGE_DESCRIPTION),
+                new ChargeItem(CARD_NUMBER_3, 100, CHARGE_DESCRIPTION),
+                new ChargeItem(CARD_NUMBER_1, 0, CHARGE_DESCRIPTION),
+                new ChargeItem("unknown", 100, CHARGE_DESCRIPTION),
+                new ChargeItem(CARD_NUMBER_1, 200, " "),
+                new ChargeItem(CARD_NUMBER_1, 400, CHARGE_DESCRIPTION)
+        );
+
+        List<ChargeResult> results = facade.chargeBatch(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, items);
+
+        assertEquals(items, results.stream().map(ChargeResult::item).toList());
+        assertEquals(Arrays.asList(null, GiftCard.INSUFFICIENT_FUNDS, UNCLAIMED_CARD, INVALID_AMOUNT, UNKNOWN_CARD, NULL_OR_EMPTY_VALUE, null),
+                results.stream().map(ChargeResult::error).toList());
+        assertEquals(300, facade.balance(token, CARD_NUMBER_1));
+        assertEquals(200, facade.balance(token, CARD_NUMBER_2));
+        assertEquals(List.of(300, 400), facade.statement(token, CARD_NUMBER_1).stream().map(Charge::amount).toList());
+    }
+
+    @Test
+    void test30batchFailsAsAWholeWhenTheMerchantCanNotAuthenticate() {
+        List<ChargeItem> items = List.of(new ChargeItem(CARD_NUMBER_1, 300, CHARGE_DESCRIPTION));
+        assertThrowsLike(() -> facade.chargeBatch("unknown", MERCHANT_CREDENTIAL_1, items), UNKNOWN_MERCHANT);
+        assertThrowsLike(() -> facade.chargeBatch(MERCHANT_ID_1, "otra", items), NULL_OR_EMPTY_VALUE);
+        assertThrowsLike(() -> facade.chargeBatch(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, null), NULL_OBJECT);
+    }
+
+    @Test
+    void test31recognizesOnlyMerchantsWithTheirCredential() {
+        assertTrue(facade.isMerchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1));
+        assertFalse(facade.isMerchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_2));
+        assertFalse(facade.isMerchant("unknown", MERCHANT_CREDENTIAL_1));
+        assertFalse(facade.isMerchant(null, null));
+    }
+
+    @Test
+    void test32repeatedStatementPollsAreServedFromTheCacheUntilTheNextCharge() {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        facade.statementPage(token, CARD_NUMBER_1, StatementQuery.latest(10));
+        facade.statementPage(token, CARD_NUMBER_1, StatementQuery.latest(10));
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 200, CHARGE_DESCRIPTION);
+
+        assertEquals(List.of(200, 100), facade.statementPage(token, CARD_NUMBER_1, StatementQuery.latest(10))
+                .charges().stream().map(Charge::amount).toList());
+        assertEquals(new StatementCache.Metrics(1, 2, 0, 1), facade.statementCacheMetrics());
+    }
+
+    @Test
+    void test33signedTokensWorkOnEveryNodeButClaimsAndChargesStayOnTheNodeThatClaimed() {
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        byte[] key = SIGNING_KEY.getBytes();
+        Facade first = signedFacadeWithOneUserCardAndMerchant(clock, key);
+        Facade second = signedFacadeWithOneUserCardAndMerchant(clock, key);
+
+        String token = first.login(USER_1, PASSWORD_1);
+        second.claim(token, CARD_NUMBER_1);
+        second.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION);
+        assertEquals(700, second.balance(token, CARD_NUMBER_1));
+        assertEquals(List.of(CARD_NUMBER_1), second.myCards(token));
+        assertEquals(SessionStatus.ACTIVE, first.sessionStatus(token));
+
+        assertEquals(List.of(), first.myCards(token));
+        assertThrowsLike(() -> first.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION), UNCLAIMED_CARD);
+        assertThrowsLike(() -> first.balance(token, CARD_NUMBER_1), UNCLAIMED_CARD);
+        first.claim(token, CARD_NUMBER_1);
+        assertEquals(1000, first.balance(token, CARD_NUMBER_1));
+
+        Facade stranger = signedFacadeWithOneUserCardAndMerchant(clock, "otra-clave-de-firma-de-32-bytes!!".getBytes());
+        assertEquals(SessionStatus.UNKNOWN, stranger.sessionStatus(token));
+        assertThrowsLike(() -> stranger.claim(token, CARD_NUMBER_1), NULL_OBJECT);
+    }
+
+    @Test
+    void test34signedClaimsBelongToTheUserAndEndWithTheirTokens() {
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        Facade facade = signedFacadeWithOneUserCardAndMerchant(clock, SIGNING_KEY.getBytes());
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+
+        clock.plus(Duration.ofMinutes(3));
+        String later = facade.login(USER_1, PASSWORD_1);
+        assertEquals(List.of(CARD_NUMBER_1), facade.myCards(later));
+        assertThrowsLike(() -> facade.claim(later, CARD_NUMBER_1), CLAIMED_CARD);
+
+        clock.plus(Duration.ofMinutes(3));
+        assertThrowsLike(() -> facade.myCards(token), UserSession.EXPIRED_TOKEN);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+
+        clock.plus(Duration.ofMinutes(3));
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION), UNCLAIMED_CARD);
+    }
+
+    @Test
+    void test35signedLogoutReleasesTheUsersClaims() {
+        Facade facade = signedFacadeWithOneUserCardAndMerchant(Clock.systemUTC(), SIGNING_KEY.getBytes());
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.logout(token);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION), UNCLAIMED_CARD);
+        assertTrue(facade.myCards(token).isEmpty());
+    }
+
+    @Test
+    void test36acceptsPreHashedCredentialsAndRehashesMerchantsOnlyOnce() {
+        CredentialHasher hasher = new CredentialHasher(1000);
+        Facade facade = new Facade(
+                Clock.systemUTC(), Duration.ofMinutes(5),
+                Map.of(USER_1, hasher.hash(PASSWORD_1).encoded()),
+                Map.of(CARD_NUMBER_1, new GiftCard(USER_1, CARD_NUMBER_1, 1000)),
+                Map.of(MERCHANT_ID_1, new Merchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1)));
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_2, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION), NULL_OR_EMPTY_VALUE);
+
+        assertEquals(800, facade.balance(token, CARD_NUMBER_1));
+        assertEquals(new MerchantCredentials.Metrics(1, 1, 1), facade.merchantCredentialMetrics());
+    }
+
+    @Test
+    void test37rateLimitedChargesAreRejectedWithoutTouchingTheCard() {
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        Facade facade = facadeWithOneUserCardAndMerchant(clock);
+        facade.admitChargesWith(new ChargeAdmission(clock, new ChargeAdmission.RateLimit(1, 2), Map.of(), 10));
+        facade.claim(facade.login(USER_1, PASSWORD_1), CARD_NUMBER_1);
+
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION), ChargeAdmission.RATE_LIMITED);
+        assertThrowsLike(() -> facade.chargeBatch(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, List.of(
+                new ChargeItem(CARD_NUMBER_1, 100, CHARGE_DESCRIPTION))), ChargeAdmission.RATE_LIMITED);
+
+        clock.plus(Duration.ofSeconds(1));
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        assertEquals(new ChargeAdmission.Counters(3, 2), facade.chargeAdmissionCounters(MERCHANT_ID_1));
+    }
+
+    @Test
+    void test38failedChargesStillReleaseTheirInFlightPlace() {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        facade.admitChargesWith(new ChargeAdmission(Clock.systemUTC(), ChargeAdmission.RateLimit.UNLIMITED, Map.of(), 1));
+        facade.claim(facade.login(USER_1, PASSWORD_1), CARD_NUMBER_1);
+
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 5000, CHARGE_DESCRIPTION), GiftCard.INSUFFICIENT_FUNDS);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        assertEquals(new ChargeAdmission.Counters(2, 0), facade.chargeAdmissionCounters(MERCHANT_ID_1));
+    }
+
+    @Test
+    void test39unauthenticatedMerchantsDoNotSpendTheMerchantsPermits() {
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        Facade facade = facadeWithOneUserCardAndMerchant(clock);
+        facade.admitChargesWith(new ChargeAdmission(clock, new ChargeAdmission.RateLimit(1, 1), Map.of(), 10));
+        facade.claim(facade.login(USER_1, PASSWORD_1), CARD_NUMBER_1);
+
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_2, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION), NULL_OR_EMPTY_VALUE);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        assertEquals(new ChargeAdmission.Counters(1, 0), facade.chargeAdmissionCounters(MERCHANT_ID_1));
+    }
+
+    @Test
+    void test40operationsAreCountedByOutcome() {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        String token = facade.login(USER_1, PASSWORD_1);
+        assertThrowsLike(() -> facade.login(USER_1, PASSWORD_2), WRONG_PASSWORD);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 5000, CHARGE_DESCRIPTION), GiftCard.INSUFFICIENT_FUNDS);
+        facade.balance(token, CARD_NUMBER_1);
+        facade.statement(token, CARD_NUMBER_1);
+        assertThrowsLike(() -> facade.balance(token, CARD_NUMBER_2), UNKNOWN_CARD);
+
+        FacadeMetrics metrics = facade.operationMetrics();
+        assertEquals(1, metrics.outcome(FacadeMetrics.Operation.LOGIN, FacadeMetrics.SUCCESS).count());
+        assertEquals(1, metrics.outcome(FacadeMetrics.Operation.LOGIN, "wrong_password").count());
+        assertEquals(1, metrics.outcome(FacadeMetrics.Operation.CLAIM, FacadeMetrics.SUCCESS).count());
+        assertEquals(1, metrics.outcome(FacadeMetrics.Operation.CHARGE, FacadeMetrics.SUCCESS).count());
+        assertEquals(1, metrics.outcome(FacadeMetrics.Operation.CHARGE, "insufficient_funds").count());
+        assertEquals(1, metrics.outcome(FacadeMetrics.Operation.BALANCE, "unknown_card").count());
+        assertEquals(1, metrics.outcome(FacadeMetrics.Operation.STATEMENT, FacadeMetrics.SUCCESS).count());
+    }
+
+    @Test
+    void test41gaugesFollowSessionsClaimsAndCharges() {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        FacadeMetricsTest.RecordingExporter exporter = new FacadeMetricsTest.RecordingExporter();
+        facade.exportMetricsTo(exporter);
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+
+        assertEquals(1, exporter.gauge("tpa.sessions.live"));
+        assertEquals(1, exporter.gauge("tpa.cards.claimed"));
+        assertEquals(2, exporter.gauge("tpa.charges.total"));
+        facade.logout(token);
+        assertEquals(0, exporter.gauge("tpa.cards.claimed"));
+    }
+
+    @Test
+    void test42pipelinedChargesAreDurableAndInTheStatementWhenTheirFutureCompletes() throws IOException {
+        Path directory = Files.createTempDirectory("pipeline");
+        try {
+            Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+            ChargeJournal journal = ChargeJournal.open(directory, FsyncPolicy.everyCommit());
+            facade.recoverFrom(journal);
+            facade.startChargePipeline(64, 16);
+            String token = facade.login(USER_1, PASSWORD_1);
+            facade.claim(token, CARD_NUMBER_1);
+
+            Charge charge = facade.chargeAsync(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION).join();
+            assertEquals(List.of(charge), facade.statement(token, CARD_NUMBER_1));
+            facade.stopChargePipeline();
+            journal.close();
+
+            Facade recovered = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+            try (ChargeJournal reopened = ChargeJournal.open(directory, FsyncPolicy.everyCommit())) {
+                recovered.recoverFrom(reopened);
+                String recoveredToken = recovered.login(USER_1, PASSWORD_1);
+                recovered.claim(recoveredToken, CARD_NUMBER_1);
+                assertEquals(700, recovered.balance(recoveredToken, CARD_NUMBER_1));
+                assertEquals(List.of(charge), recovered.statement(recoveredToken, CARD_NUMBER_1));
+            }
+        } finally {
+            ChargeJournalTest.deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void test43synchronousChargesAndBatchesWaitForThePipeline() throws InterruptedException {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        facade.startChargePipeline(64, 16);
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+
+        runConcurrently(4, 50, () -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 2, CHARGE_DESCRIPTION));
+        assertEquals(600, facade.balance(token, CARD_NUMBER_1));
+        assertEquals(200, facade.statement(token, CARD_NUMBER_1).size());
+
+        List<ChargeResult> results = facade.chargeBatch(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, List.of(
+                new ChargeItem(CARD_NUMBER_1, 500, CHARGE_DESCRIPTION),
+                new ChargeItem(CARD_NUMBER_1, 500, CHARGE_DESCRIPTION),
+                new ChargeItem(CARD_NUMBER_1, 100, CHARGE_DESCRIPTION)));
+        assertEquals(Arrays.asList(null, GiftCard.INSUFFICIENT_FUNDS, null), results.stream().map(ChargeResult::error).toList());
+        assertEquals(0, facade.balance(token, CARD_NUMBER_1));
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 1, CHARGE_DESCRIPTION), GiftCard.INSUFFICIENT_FUNDS);
+        assertEquals(200, facade.operationMetrics().outcome(FacadeMetrics.Operation.CHARGE, FacadeMetrics.SUCCESS).count());
+        facade.stopChargePipeline();
+    }
+
+    @Test
+    void test44thePipelineStartsOnceAndChargesRunInlineAfterStoppingIt() {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        ChargePipeline pipeline = facade.startChargePipeline(64, 16);
+        assertThrowsLike(() -> facade.startChargePipeline(64, 16), ChargePipeline.PIPELINE_ALREADY_STARTED);
+        facade.claim(facade.login(USER_1, PASSWORD_1), CARD_NUMBER_1);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        facade.stopChargePipeline();
+
+        CompletableFuture<Charge> inline = facade.chargeAsync(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        assertTrue(inline.isDone());
+        assertEquals(new ChargePipeline.Metrics(1, 0, 1), pipeline.metrics());
+    }
+
+    @Test
+    void test45retriedChargesWithTheSameKeyDebitTheCardOnce() {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+
+        Charge first = facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION, "ticket-1");
+        Charge retried = facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION, "ticket-1");
+        assertEquals(first, retried);
+        assertEquals(700, facade.balance(token, CARD_NUMBER_1));
+        assertEquals(List.of(first), facade.statement(token, CARD_NUMBER_1));
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 500, CHARGE_DESCRIPTION, "ticket-1"), IdempotencyCache.KEY_REUSED);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1 + "x", CARD_NUMBER_1, 300, CHARGE_DESCRIPTION, "ticket-1"), NULL_OR_EMPTY_VALUE);
+        assertEquals(1, facade.idempotencyMetrics().replays());
+    }
+
+    @Test
+    void test46aRejectedChargeCanBeRetriedWithTheSameKey() {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION, "ticket-1"), UNCLAIMED_CARD);
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION, "ticket-1");
+        assertEquals(700, facade.balance(token, CARD_NUMBER_1));
+    }
+
+    @Test
+    void test47concurrentRetriesThroughThePipelineChargeOnce() throws InterruptedException {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        facade.startChargePipeline(64, 16);
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+
+        runConcurrently(4, 25, () -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION, "ticket-1"));
+        facade.stopChargePipeline();
+        assertEquals(700, facade.balance(token, CARD_NUMBER_1));
+        assertEquals(1, facade.statement(token, CARD_NUMBER_1).size());
+    }
+
+    @Test
+    void test48theChargeFeedStreamsOnlyCommittedCharges() throws InterruptedException {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        try (ChargeFeed feed = new ChargeFeed(1024, 64)) {
+            facade.addListener(feed);
+            ChargeFeedTest.RecordingSubscriber subscriber = new ChargeFeedTest.RecordingSubscriber();
+            feed.subscribe(subscriber);
+            subscriber.request(Long.MAX_VALUE);
+            String token = facade.login(USER_1, PASSWORD_1);
+            facade.claim(token, CARD_NUMBER_1);
+
+            facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION);
+            assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 5000, CHARGE_DESCRIPTION), GiftCard.INSUFFICIENT_FUNDS);
+            facade.chargeBatch(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, List.of(new ChargeItem(CARD_NUMBER_1, 100, CHARGE_DESCRIPTION)));
+
+            List<Charge> streamed = new ArrayList<>();
+            while (streamed.size() < 2) { streamed.addAll(subscriber.nextBatch().charges()); }
+            assertEquals(facade.statement(token, CARD_NUMBER_1), streamed);
+            assertEquals(2, feed.nextOffset());
+        }
+    }
+
+    @Test
+    void test49aggregatesIncludeRecoveredChargesAndFollowNewOnes() {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION);
+
+        ChargeAggregates aggregates = new ChargeAggregates();
+        facade.aggregateChargesWith(aggregates);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 200, CHARGE_DESCRIPTION);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 5000, CHARGE_DESCRIPTION), GiftCard.INSUFFICIENT_FUNDS);
+
+        assertEquals(new ChargeAggregates.Totals(2, 500), aggregates.merchantTotals(MERCHANT_ID_1));
+        assertEquals(new ChargeAggregates.Totals(2, 500), aggregates.cardTotals(CARD_NUMBER_1));
+    }
+
+    @Test
+    void test50reconciliationMatchesRecoveredAndNewCharges() throws IOException {
+        Path directory = Files.createTempDirectory("reconciliation");
+        try {
+            Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+            try (ChargeJournal journal = ChargeJournal.open(directory, FsyncPolicy.everyCommit())) {
+                facade.recoverFrom(journal);
+                String token = facade.login(USER_1, PASSWORD_1);
+                facade.claim(token, CARD_NUMBER_1);
+                facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION);
+            }
+
+            Facade recovered = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+            try (ChargeJournal reopened = ChargeJournal.open(directory, FsyncPolicy.everyCommit())) {
+                recovered.recoverFrom(reopened);
+                String token = recovered.login(USER_1, PASSWORD_1);
+                recovered.claim(token, CARD_NUMBER_1);
+                recovered.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 200, CHARGE_DESCRIPTION);
+                assertEquals(new Reconciliation.Report(1, 2, 500, 0, List.of()), recovered.reconcile());
+            }
+        } finally {
+            ChargeJournalTest.deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void test51reconciliationRunsWhileThePipelineIsCharging() throws InterruptedException {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        facade.startChargePipeline(64, 16);
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+
+        AtomicBoolean charging = new AtomicBoolean(true);
+        AtomicLong mismatches = new AtomicLong();
+        Thread reconciler = new Thread(() -> {
+            while (charging.get()) { mismatches.addAndGet(facade.reconcile().mismatchCount()); }
+        });
+        reconciler.start();
+        runConcurrently(4, 50, () -> facade.chargeAsync(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 1, CHARGE_DESCRIPTION));
+        facade.stopChargePipeline();
+        charging.set(false);
+        reconciler.join();
+
+        assertEquals(0, mismatches.get());
+        assertEquals(new Reconciliation.Report(1, 200, 200, 0, List.of()), facade.reconcile());
+    }
+
+    @Test
+    void test52statementCacheSizesComeFromTheConfiguredCache() {
+        Facade facade = facadeWithOneUserCardAndMerchant(Clock.systemUTC());
+        facade.cacheStatementsWith(new StatementCache(1, 2));
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        for (int amount = 1; amount <= 3; amount++) {
+            facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, amount, CHARGE_DESCRIPTION);
+        }
+
+        assertEquals(List.of(3, 2), facade.statementPage(token, CARD_NUMBER_1, StatementQuery.latest(2))
+                .charges().stream().map(Charge::amount).toList());
+        assertEquals(List.of(3), facade.statementPage(token, CARD_NUMBER_1, StatementQuery.latest(1))
+                .charges().stream().map(Charge::amount).toList());
+        assertEquals(List.of(3, 2, 1), facade.statementPage(token, CARD_NUMBER_1, StatementQuery.latest(3))
+                .charges().stream().map(Charge::amount).toList());
+        assertEquals(new StatementCache.Metrics(1, 1, 0, 1), facade.statementCacheMetrics());
+        assertThrowsLike(() -> facade.cacheStatementsWith(null), NULL_OBJECT);
+    }
+
+    @Test
+    void test53batchesLargerThanTheBurstAreChargedInBurstSizedChunks() {
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        Facade facade = facadeWithOneUserCardAndMerchant(clock);
+        facade.admitChargesWith(new ChargeAdmission(clock, new ChargeAdmission.RateLimit(1, 2), Map.of(), 10));
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        List<ChargeItem> items = List.of(
+                new ChargeItem(CARD_NUMBER_1, 100, CHARGE_DESCRIPTION),
+                new ChargeItem(CARD_NUMBER_1, 100, CHARGE_DESCRIPTION),
+                new ChargeItem(CARD_NUMBER_1, 100, CHARGE_DESCRIPTION));
+
+        List<ChargeResult> results = facade.chargeBatch(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, items);
+        assertTrue(results.get(0).succeeded());
+        assertTrue(results.get(1).succeeded());
+        assertEquals(ChargeResult.failed(items.get(2), ChargeAdmission.RATE_LIMITED), results.get(2));
+        assertEquals(800, facade.balance(token, CARD_NUMBER_1));
+
+        clock.plus(Duration.ofSeconds(2));
+        assertTrue(facade.chargeBatch(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, items.subList(0, 2)).stream().allMatch(ChargeResult::succeeded));
+        assertEquals(600, facade.balance(token, CARD_NUMBER_1));
+        assertEquals(new ChargeAdmission.Counters(2, 1), facade.chargeAdmissionCounters(MERCHANT_ID_1));
+    }
+
+    @Test
+    void test54descriptionsTooLongForTheJournalAreRejectedBeforeCharging() {
+        Facade facade = facadeWithOneUserCardAndMerchant(new MyClock(Instant.parse("2025-09-18T12:00:00Z")));
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        String tooLong = "a".repeat(Charge.MAX_DESCRIPTION_BYTES + 1);
+        List<ChargeItem> items = List.of(new ChargeItem(CARD_NUMBER_1, 100, tooLong), new ChargeItem(CARD_NUMBER_1, 100, CHARGE_DESCRIPTION));
+
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, tooLong), Charge.DESCRIPTION_TOO_LONG);
+        List<ChargeResult> results = facade.chargeBatch(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, items);
+        assertEquals(ChargeResult.failed(items.get(0), Charge.DESCRIPTION_TOO_LONG), results.get(0));
+        assertTrue(results.get(1).succeeded());
+        assertEquals(900, facade.balance(token, CARD_NUMBER_1));
+    }
+
+    @Test
+    void test55cardsTheCompactStoreCanNotHoldAreStillServedAndShared() {
+        GiftCard leadingZero = new GiftCard(USER_1, "0123", 1000);
+        GiftCard nineteenDigits = new GiftCard(USER_1, "1234567890123456789", 1000);
+        GiftCard rekeyed = new GiftCard(USER_1, CARD_NUMBER_3, 1000);
+        Facade facade = new Facade(new MyClock(Instant.parse("2025-09-18T12:00:00Z")), Duration.ofMinutes(5),
+                Map.of(USER_1, PASSWORD_1),
+                Map.of("0123", leadingZero, "1234567890123456789", nineteenDigits, CARD_NUMBER_2, rekeyed,
+                        CARD_NUMBER_1, new GiftCard(USER_1, CARD_NUMBER_1, 1000)),
+                Map.of(MERCHANT_ID_1, new Merchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1)));
+        String token = facade.login(USER_1, PASSWORD_1);
+        List.of("0123", "1234567890123456789", CARD_NUMBER_2, CARD_NUMBER_1).forEach(cardNumber -> facade.claim(token, cardNumber));
+
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, "0123", 100, CHARGE_DESCRIPTION);
+        Reconciliation.Report report = facade.reconcile();
+        assertTrue(report.balanced());
+        assertEquals(4, report.cards());
+
+        leadingZero.addBalance(50);
+        assertEquals(950, facade.balance(token, "0123"));
+        assertEquals(1000, facade.balance(token, "1234567890123456789"));
+        assertEquals(1000, facade.balance(token, CARD_NUMBER_2));
+        assertThrowsLike(() -> facade.claim(token, CARD_NUMBER_3), UNKNOWN_CARD);
+    }
+
+    private static Facade signedFacadeWithOneUserCardAndMerchant(Clock clock, byte[] key) {
+        return new Facade(
+                clock, Duration.ofMinutes(5), new SessionSigner(key),
+                Map.of(USER_1, PASSWORD_1),
+                Map.of(CARD_NUMBER_1, new GiftCard(USER_1, CARD_NUMBER_1, 1000)),
+                Map.of(MERCHANT_ID_1, new Merchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1))
+        );
+    }
+
     // helper privado para balance total
     private static int totalBalance(Facade facade, String token) {
         return facade.myCards(token).stream()
@@ -243,12 +901,38 @@ public class FacadeTest {
                 .sum();
     }
 
+    public static void runConcurrently(int threads, int timesPerThread, Runnable task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < timesPerThread; j++) { task.run(); }
+                return null;
+            }));
+        }
+        start.countDown();
+        workers.forEach(worker -> assertDoesNotThrow(() -> worker.get()));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
     public static void assertThrowsLike(Executable executable, String message ) {
         assertEquals( message,
                 assertThrows( Exception.class, executable )
                         .getMessage() );
     }
 
+    private static Facade facadeWithOneUserCardAndMerchant(Clock clock) {
+        return new Facade(
+                clock, Duration.ofMinutes(5),
+                Map.of(USER_1, PASSWORD_1),
+                Map.of(CARD_NUMBER_1, new GiftCard(USER_1, CARD_NUMBER_1, 1000)),
+                Map.of(MERCHANT_ID_1, new Merchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1))
+        );
+    }
+
     private static void createFacadeForDatabaseWithOnlyOneUserCardAndMerchant(Clock clock){
         Facade facade = new Facade(
                 clock, Duration.ofMinutes(5),
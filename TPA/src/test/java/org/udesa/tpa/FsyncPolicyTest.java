@@ -0,0 +1,26 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.Facade.*;
+import static org.udesa.tpa.FsyncPolicy.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FsyncPolicyTest {
+
+    @Test
+    void test01createsEachPolicyCorrectly() {
+        assertEquals(Kind.EVERY_COMMIT, FsyncPolicy.everyCommit().kind());
+        assertEquals(Kind.BATCHED, FsyncPolicy.batched().kind());
+        assertEquals(Duration.ofMillis(10), FsyncPolicy.every(Duration.ofMillis(10)).interval());
+    }
+
+    @Test
+    void test02failsToCreateAnIntervalPolicyWithoutAPositiveInterval() {
+        assertThrowsLike(() -> FsyncPolicy.every(Duration.ZERO), INVALID_INTERVAL);
+        assertThrowsLike(() -> FsyncPolicy.every(Duration.ofMillis(-1)), INVALID_INTERVAL);
+        assertThrowsLike(() -> new FsyncPolicy(null, Duration.ZERO), NULL_OBJECT);
+    }
+}
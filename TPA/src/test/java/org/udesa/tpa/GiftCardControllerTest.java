@@ -0,0 +1,137 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.udesa.tpa.MerchantCredentialFilter.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "tpa.users.juan=secreto",
+        "tpa.cards.2001.owner=juan",
+        "tpa.cards.2001.balance=1000",
+        "tpa.cards.2002.owner=juan",
+        "tpa.cards.2002.balance=1000",
+        "tpa.cards.2003.owner=martina",
+        "tpa.cards.2003.balance=1000",
+        "tpa.cards.2004.owner=juan",
+        "tpa.cards.2004.balance=1000",
+        "tpa.merchants.uala=uala123",
+        "tpa.management.username=ops",
+        "tpa.management.password=ops-secreto",
+        "management.server.port="
+})
+@AutoConfigureMockMvc
+public class GiftCardControllerTest {
+    @Autowired private MockMvc mvc;
+    @Autowired private Facade facade;
+
+    @Test
+    void test01loginReturnsATokenThatOpensTheUserRoutes() throws Exception {
+        mvc.perform(post("/login").contentType(MediaType.APPLICATION_JSON).content("{\"username\":\"juan\",\"password\":\"secreto\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").isNotEmpty());
+    }
+
+    @Test
+    void test02rejectsWrongPasswordsAndMissingTokens() throws Exception {
+        mvc.perform(post("/login").contentType(MediaType.APPLICATION_JSON).content("{\"username\":\"juan\",\"password\":\"otra\"}"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.error").value(Facade.WRONG_PASSWORD));
+        mvc.perform(get("/cards")).andExpect(status().isUnauthorized());
+        mvc.perform(get("/cards").header("Authorization", "Bearer not-a-token")).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void test03claimedCardShowsItsBalanceAndStatement() throws Exception {
+        String token = facade.login("juan", "secreto");
+        mvc.perform(post("/cards/2001/claim").header("Authorization", "Bearer " + token)).andExpect(status().isNoContent());
+        mvc.perform(get("/cards").header("Authorization", "Bearer " + token))
+                .andExpect(jsonPath("$[0]").value("2001"));
+        mvc.perform(post("/merchants/charges").header(MERCHANT_ID, "uala").header(MERCHANT_CREDENTIAL, "uala123")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"cardNumber\":\"2001\",\"amount\":300,\"description\":\"Cafe\"}"))
+                .andExpect(status().isNoContent());
+        mvc.perform(get("/cards/2001/balance").header("Authorization", "Bearer " + token))
+                .andExpect(jsonPath("$.balance").value(700));
+        mvc.perform(get("/cards/2001/statement").header("Authorization", "Bearer " + token))
+                .andExpect(jsonPath("$.charges[0].amount").value(300))
+                .andExpect(jsonPath("$.charges[0].merchantId").value("uala"))
+                .andExpect(jsonPath("$.hasMore").value(false));
+    }
+
+    @Test
+    void test04merchantRoutesNeedAValidCredential() throws Exception {
+        String body = "{\"cardNumber\":\"2002\",\"amount\":300,\"description\":\"Cafe\"}";
+        mvc.perform(post("/merchants/charges").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isUnauthorized());
+        mvc.perform(post("/merchants/charges").header(MERCHANT_ID, "uala").header(MERCHANT_CREDENTIAL, "otra")
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isUnauthorized());
+        mvc.perform(post("/merchants/charges").header(MERCHANT_ID, "uala").header(MERCHANT_CREDENTIAL, "uala123")
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value(Facade.UNCLAIMED_CARD));
+    }
+
+    @Test
+    void test05facadeErrorsMapToHttpStatuses() throws Exception {
+        String token = facade.login("juan", "secreto");
+        mvc.perform(post("/cards/9999/claim").header("Authorization", "Bearer " + token)).andExpect(status().isNotFound());
+        mvc.perform(post("/cards/2003/claim").header("Authorization", "Bearer " + token)).andExpect(status().isForbidden());
+        mvc.perform(get("/cards/2002/balance").header("Authorization", "Bearer " + token))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value(Facade.UNCLAIMED_CARD));
+    }
+
+    @Test
+    void test06retriedChargesWithTheSameIdempotencyKeyChargeOnce() throws Exception {
+        String token = facade.login("juan", "secreto");
+        facade.claim(token, "2004");
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mvc.perform(post("/merchants/charges").header(MERCHANT_ID, "uala").header(MERCHANT_CREDENTIAL, "uala123")
+                            .header("Idempotency-Key", "pos-7-ticket-1")
+                            .contentType(MediaType.APPLICATION_JSON).content("{\"cardNumber\":\"2004\",\"amount\":300,\"description\":\"Cafe\"}"))
+                    .andExpect(status().isNoContent());
+        }
+        mvc.perform(post("/merchants/charges").header(MERCHANT_ID, "uala").header(MERCHANT_CREDENTIAL, "uala123")
+                        .header("Idempotency-Key", "pos-7-ticket-1")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"cardNumber\":\"2004\",\"amount\":500,\"description\":\"Cafe\"}"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.error").value(IdempotencyCache.KEY_REUSED));
+        mvc.perform(get("/cards/2004/balance").header("Authorization", "Bearer " + token))
+                .andExpect(jsonPath("$.balance").value(700));
+    }
+
+    @Test
+    void test07merchantsSeeTheirOwnTotals() throws Exception {
+        mvc.perform(get("/merchants/totals").header(MERCHANT_ID, "uala").header(MERCHANT_CREDENTIAL, "uala123"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").isNumber());
+        mvc.perform(get("/merchants/totals/buckets").header(MERCHANT_ID, "uala").header(MERCHANT_CREDENTIAL, "uala123")
+                        .param("granularity", "DAY").param("from", "2025-01-01T00:00:00Z").param("to", "2025-01-02T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray());
+    }
+
+    @Test
+    void test08onlyHealthIsOpenAndMetricsNeedTheOperator() throws Exception {
+        mvc.perform(get("/actuator/health")).andExpect(status().isOk());
+        mvc.perform(get("/actuator/metrics")).andExpect(status().isUnauthorized());
+        mvc.perform(get("/actuator/metrics").header("Authorization", basic("ops", "otra"))).andExpect(status().isUnauthorized());
+        mvc.perform(get("/actuator/metrics").header("Authorization", basic("ops", "ops-secreto"))).andExpect(status().isOk());
+        String token = facade.login("juan", "secreto");
+        mvc.perform(get("/actuator/metrics").header("Authorization", "Bearer " + token)).andExpect(status().isForbidden());
+    }
+
+    private static String basic(String username, String password) {
+        return "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -112,4 +112,30 @@ public class GiftCardTest {
         assertEquals(1400, card1.balance());
         assertEquals(140, card2.balance());
     }
-}
\ No newline at end of file
+
+    @Test
+    void test14concurrentChargesNeverLeaveANegativeBalance() throws InterruptedException {
+        runConcurrently(8, 200, () -> {
+            try {
+                card.charge(7, CHARGE_DESCRIPTION);
+            } catch (IllegalArgumentException ex) {
+                assertEquals(INSUFFICIENT_FUNDS, ex.getMessage());
+            }
+        });
+        assertEquals(6, card.balance());
+    }
+
+    @Test
+    void test15concurrentTopUpsAreNotLost() throws InterruptedException {
+        runConcurrently(8, 100, () -> card.addBalance(1));
+        assertEquals(1800, card.balance());
+    }
+
+    @Test
+    void test16keepsItsInitialBalanceAfterChargesAndTopUps() {
+        card.charge(300, CHARGE_DESCRIPTION);
+        card.addBalance(50);
+        assertEquals(750, card.balance());
+        assertEquals(1000, card.initialBalance());
+    }
+}
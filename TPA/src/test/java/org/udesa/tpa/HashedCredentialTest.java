@@ -0,0 +1,34 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.HashedCredential.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashedCredentialTest {
+    @Test
+    void test01encodingRoundTrips() {
+        HashedCredential hashed = new HashedCredential(1000, new byte[] {1, 2, 3}, new byte[] {4, 5, 6});
+        HashedCredential parsed = HashedCredential.parse(hashed.encoded());
+        assertEquals("{pbkdf2}1000$AQID$BAUG", hashed.encoded());
+        assertEquals(1000, parsed.iterations());
+        assertArrayEquals(hashed.salt(), parsed.salt());
+        assertArrayEquals(hashed.hash(), parsed.hash());
+    }
+
+    @Test
+    void test02recognizesOnlyTheTaggedForm() {
+        assertTrue(HashedCredential.isEncoded("{pbkdf2}1000$AQID$BAUG"));
+        assertFalse(HashedCredential.isEncoded(PASSWORD_1));
+        assertFalse(HashedCredential.isEncoded(null));
+    }
+
+    @Test
+    void test03rejectsMalformedEncodings() {
+        assertThrowsLike(() -> HashedCredential.parse(PASSWORD_1), INVALID_HASHED_CREDENTIAL);
+        assertThrowsLike(() -> HashedCredential.parse("{pbkdf2}1000$AQID"), INVALID_HASHED_CREDENTIAL);
+        assertThrowsLike(() -> HashedCredential.parse("{pbkdf2}mil$AQID$BAUG"), INVALID_HASHED_CREDENTIAL);
+        assertThrowsLike(() -> HashedCredential.parse("{pbkdf2}0$AQID$BAUG"), INVALID_HASHED_CREDENTIAL);
+        assertThrowsLike(() -> HashedCredential.parse("{pbkdf2}1000$%%$BAUG"), INVALID_HASHED_CREDENTIAL);
+    }
+}
@@ -0,0 +1,133 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.udesa.tpa.FacadeTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyCacheTest {
+    private static final IdempotencyCache.Request REQUEST = new IdempotencyCache.Request(CARD_NUMBER_1, 300, CHARGE_DESCRIPTION);
+
+    private MyClock clock;
+    private IdempotencyCache cache;
+    private AtomicInteger charges;
+
+    @BeforeEach
+    void createCache() {
+        clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        cache = new IdempotencyCache(clock, Duration.ofMinutes(10), 2, 100);
+        charges = new AtomicInteger();
+    }
+
+    @Test
+    void test01retriesGetTheFirstChargeWithoutChargingAgain() {
+        Charge first = charge(MERCHANT_ID_1, "ticket-1").join();
+        Charge retried = charge(MERCHANT_ID_1, "ticket-1").join();
+        assertSame(first, retried);
+        assertEquals(1, charges.get());
+        assertEquals(new IdempotencyCache.Metrics(1, 1, 0, 1), cache.metrics());
+    }
+
+    @Test
+    void test02keysBelongToTheirMerchant() {
+        charge(MERCHANT_ID_1, "ticket-1").join();
+        charge(MERCHANT_ID_2, "ticket-1").join();
+        assertEquals(2, charges.get());
+    }
+
+    @Test
+    void test03reusingAKeyForAnotherChargeFails() {
+        charge(MERCHANT_ID_1, "ticket-1").join();
+        IdempotencyCache.Request other = new IdempotencyCache.Request(CARD_NUMBER_1, 500, CHARGE_DESCRIPTION);
+        assertThrowsLike(() -> cache.charge(MERCHANT_ID_1, "ticket-1", other, this::newCharge), IdempotencyCache.KEY_REUSED);
+        assertEquals(1, charges.get());
+    }
+
+    @Test
+    void test04failedChargesAreNotRemembered() {
+        assertThrowsLike(() -> cache.charge(MERCHANT_ID_1, "ticket-1", REQUEST, () -> {
+            throw new IllegalArgumentException(GiftCard.INSUFFICIENT_FUNDS);
+        }), GiftCard.INSUFFICIENT_FUNDS);
+        CompletableFuture<Charge> failed = cache.charge(MERCHANT_ID_1, "ticket-2", REQUEST,
+                () -> CompletableFuture.failedFuture(new IllegalStateException("disk full")));
+        assertTrue(failed.isCompletedExceptionally());
+
+        charge(MERCHANT_ID_1, "ticket-1").join();
+        charge(MERCHANT_ID_1, "ticket-2").join();
+        assertEquals(2, charges.get());
+    }
+
+    @Test
+    void test05aRetryWhileTheFirstChargeIsInFlightWaitsForIt() {
+        CompletableFuture<Charge> durable = new CompletableFuture<>();
+        CompletableFuture<Charge> first = cache.charge(MERCHANT_ID_1, "ticket-1", REQUEST, () -> durable);
+        CompletableFuture<Charge> retried = charge(MERCHANT_ID_1, "ticket-1");
+        assertFalse(retried.isDone());
+
+        Charge charge = new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, clock.instant());
+        durable.complete(charge);
+        assertSame(charge, first.join());
+        assertSame(charge, retried.join());
+        assertEquals(0, charges.get());
+    }
+
+    @Test
+    void test06keysAreRememberedForTheWholeWindowAndThenForgotten() {
+        charge(MERCHANT_ID_1, "ticket-1").join();
+        clock.plus(Duration.ofMinutes(9));
+        charge(MERCHANT_ID_1, "ticket-1").join();
+        assertEquals(1, charges.get());
+
+        clock.plus(Duration.ofMinutes(7));
+        charge(MERCHANT_ID_1, "ticket-1").join();
+        assertEquals(2, charges.get());
+    }
+
+    @Test
+    void test07aFullGenerationRotatesEarlySoMemoryStaysBounded() {
+        for (int i = 0; i < 1_000; i++) { charge(MERCHANT_ID_1, "ticket-" + i).join(); }
+        IdempotencyCache.Metrics metrics = cache.metrics();
+        assertTrue(metrics.size() <= 300);
+        assertTrue(metrics.rotations() >= 9);
+        charge(MERCHANT_ID_1, "ticket-999").join();
+        assertEquals(1_000, charges.get());
+    }
+
+    @Test
+    void test08failsWithInvalidSettingsOrKeys() {
+        assertThrowsLike(() -> new IdempotencyCache(clock, Duration.ZERO, 2, 100), IdempotencyCache.INVALID_WINDOW);
+        assertThrowsLike(() -> new IdempotencyCache(clock, Duration.ofMinutes(1), 0, 100), IdempotencyCache.INVALID_SEGMENTS);
+        assertThrowsLike(() -> new IdempotencyCache(clock, Duration.ofMinutes(1), 2, 0), IdempotencyCache.INVALID_SEGMENT_SIZE);
+        assertThrowsLike(() -> charge(MERCHANT_ID_1, " "), Facade.NULL_OR_EMPTY_VALUE);
+    }
+
+    @Test
+    void test09aKeyRacingARotationIsStillChargedOnce() throws InterruptedException {
+        cache = new IdempotencyCache(clock, Duration.ofMinutes(1_000), 1_000, 1);
+        Set<String> used = ConcurrentHashMap.newKeySet();
+        runConcurrently(8, 2_000, () -> {
+            String key = "ticket-" + ThreadLocalRandom.current().nextInt(64);
+            used.add(key);
+            charge(MERCHANT_ID_1, key).join();
+        });
+        assertEquals(used.size(), charges.get());
+    }
+
+    private CompletableFuture<Charge> charge(String merchantId, String idempotencyKey) {
+        return cache.charge(merchantId, idempotencyKey, REQUEST, this::newCharge);
+    }
+
+    private CompletableFuture<Charge> newCharge() {
+        charges.incrementAndGet();
+        return CompletableFuture.completedFuture(new Charge(CARD_NUMBER_1, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, clock.instant()));
+    }
+}
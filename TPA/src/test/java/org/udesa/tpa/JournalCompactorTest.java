@@ -0,0 +1,145 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.udesa.tpa.ChargeJournalTest.deleteRecursively;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalCompactorTest {
+    private static final Instant NOW = Instant.parse("2025-09-18T12:00:00Z");
+    private static final long TINY_SEGMENTS = 100;
+
+    private Path directory;
+    private Path journalDirectory;
+    private Path snapshotDirectory;
+
+    @BeforeEach
+    void createDirectories() throws IOException {
+        directory = Files.createTempDirectory("compaction");
+        journalDirectory = directory.resolve("journal");
+        snapshotDirectory = directory.resolve("snapshots");
+    }
+
+    @AfterEach
+    void deleteDirectories() throws IOException {
+        deleteRecursively(directory);
+    }
+
+    @Test
+    void test01compactionSnapshotsSealedSegmentsAndDeletesThem() throws IOException {
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit(), TINY_SEGMENTS)) {
+            for (int amount = 1; amount <= 5; amount++) { journal.charged(charge(amount)); }
+            assertEquals(4, new JournalCompactor(journal, snapshotDirectory).compact());
+        }
+
+        ChargeSnapshot snapshot = ChargeSnapshot.latest(snapshotDirectory);
+        assertEquals(4, snapshot.sequence());
+        assertEquals(List.of(1, 2, 3, 4), snapshot.charges(CARD_NUMBER_1).stream().map(Charge::amount).toList());
+        assertEquals(1, count(journalDirectory));
+    }
+
+    @Test
+    void test02laterCompactionsBuildOnThePreviousSnapshot() throws IOException {
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit(), TINY_SEGMENTS)) {
+            JournalCompactor compactor = new JournalCompactor(journal, snapshotDirectory);
+            for (int amount = 1; amount <= 3; amount++) { journal.charged(charge(amount)); }
+            compactor.compact();
+            for (int amount = 4; amount <= 6; amount++) { journal.charged(charge(amount)); }
+            assertEquals(5, compactor.compact());
+            assertEquals(5, compactor.compact());
+        }
+
+        assertEquals(2, count(snapshotDirectory));
+        assertEquals(5, ChargeSnapshot.latest(snapshotDirectory).cards().get(CARD_NUMBER_1).count());
+        assertEquals(List.of(1, 2, 3, 4, 5), ChargeSnapshot.latest(snapshotDirectory).charges(CARD_NUMBER_1).stream().map(Charge::amount).toList());
+    }
+
+    @Test
+    void test03facadeRecoversFromSnapshotPlusNewerJournalEntries() throws IOException {
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit(), TINY_SEGMENTS)) {
+            Facade facade = facade();
+            facade.recoverFrom(ChargeSnapshot.latest(snapshotDirectory), journal);
+            String token = facade.login(USER_1, PASSWORD_1);
+            facade.claim(token, CARD_NUMBER_1);
+            for (int amount = 1; amount <= 4; amount++) {
+                facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, amount, CHARGE_DESCRIPTION);
+            }
+            new JournalCompactor(journal, snapshotDirectory).compact();
+        }
+
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit(), TINY_SEGMENTS)) {
+            Facade facade = facade();
+            facade.recoverFrom(ChargeSnapshot.latest(snapshotDirectory), journal);
+            String token = facade.login(USER_1, PASSWORD_1);
+            facade.claim(token, CARD_NUMBER_1);
+            assertEquals(990, facade.balance(token, CARD_NUMBER_1));
+            assertEquals(List.of(1, 2, 3, 4), facade.statement(token, CARD_NUMBER_1).stream().map(Charge::amount).toList());
+        }
+    }
+
+    @Test
+    void test04backgroundCompactionRunsOnASchedule() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit(), TINY_SEGMENTS)) {
+            for (int amount = 1; amount <= 3; amount++) { journal.charged(charge(amount)); }
+            new JournalCompactor(journal, snapshotDirectory).start(scheduler, Duration.ofMillis(5));
+            for (int i = 0; i < 200 && ChargeSnapshot.latest(snapshotDirectory).sequence() < 2; i++) { Thread.sleep(5); }
+            scheduler.shutdown();
+            assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        assertEquals(2, ChargeSnapshot.latest(snapshotDirectory).sequence());
+    }
+
+    @Test
+    void test05facadeRestoresSnapshotBalancesAndReadsTheirHistoryOnFirstUse() throws IOException {
+        ChargeSnapshot.empty().extend(snapshotDirectory, 4, Map.of(CARD_NUMBER_1, List.of(charge(1), charge(2), charge(3), charge(4))));
+        try (ChargeJournal journal = ChargeJournal.open(journalDirectory, FsyncPolicy.everyCommit(), TINY_SEGMENTS)) {
+            Facade facade = facade();
+            facade.recoverFrom(ChargeSnapshot.latest(snapshotDirectory), journal);
+            Reconciliation.Report report = facade.reconcile();
+            assertTrue(report.balanced());
+            assertEquals(4, report.charges());
+
+            String token = facade.login(USER_1, PASSWORD_1);
+            facade.claim(token, CARD_NUMBER_1);
+            assertEquals(990, facade.balance(token, CARD_NUMBER_1));
+            facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 5, CHARGE_DESCRIPTION);
+            assertEquals(List.of(1, 2, 3, 4, 5), facade.statement(token, CARD_NUMBER_1).stream().map(Charge::amount).toList());
+            assertEquals(new Reconciliation.Report(1, 5, 15, 0, List.of()), facade.reconcile());
+        }
+    }
+
+    private static Facade facade() {
+        return new Facade(
+                new MyClock(NOW), Duration.ofMinutes(5),
+                Map.of(USER_1, PASSWORD_1),
+                Map.of(CARD_NUMBER_1, new GiftCard(USER_1, CARD_NUMBER_1, 1000)),
+                Map.of(MERCHANT_ID_1, new Merchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1))
+        );
+    }
+
+    private static Charge charge(int amount) {
+        return new Charge(CARD_NUMBER_1, MERCHANT_ID_1, amount, CHARGE_DESCRIPTION, NOW);
+    }
+
+    private static long count(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
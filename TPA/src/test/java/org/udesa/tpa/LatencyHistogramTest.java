@@ -0,0 +1,69 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.LatencyHistogram.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+    private final LatencyHistogram histogram = new LatencyHistogram(4);
+
+    @Test
+    void test01emptyHistogramReportsZeros() {
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.valueAtPercentile(99));
+        assertEquals(0.0, histogram.meanNanos());
+    }
+
+    @Test
+    void test02smallValuesAreExact() {
+        for (long value = 1; value <= 10; value++) { histogram.record(value); }
+        assertEquals(10, histogram.count());
+        assertEquals(5, histogram.valueAtPercentile(50));
+        assertEquals(10, histogram.valueAtPercentile(100));
+        assertEquals(55, histogram.totalNanos());
+    }
+
+    @Test
+    void test03percentilesStayWithinOneSixteenthOfTheRecordedValue() {
+        for (long value = 1_000; value <= 100_000; value += 1_000) { histogram.record(value); }
+        assertWithinBucket(50_000, histogram.valueAtPercentile(50));
+        assertWithinBucket(99_000, histogram.valueAtPercentile(99));
+        assertEquals(100_000, histogram.valueAtPercentile(100));
+        assertEquals(100_000, histogram.maxNanos());
+    }
+
+    @Test
+    void test04everyValueFallsInsideItsBucket() {
+        for (long value : new long[] { 0, 15, 16, 31, 32, 1_000, 123_456_789, MAX_VALUE }) {
+            int bucket = bucketOf(value);
+            assertTrue(lowestValueIn(bucket) <= value && value <= highestValueIn(bucket));
+        }
+        assertEquals(BUCKETS - 1, bucketOf(MAX_VALUE));
+    }
+
+    @Test
+    void test05outOfRangeValuesAreClamped() {
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.valueAtPercentile(50));
+        assertEquals(MAX_VALUE, histogram.maxNanos());
+    }
+
+    @Test
+    void test06concurrentRecordsAreNotLost() throws InterruptedException {
+        runConcurrently(8, 1000, () -> histogram.record(100));
+        assertEquals(8000, histogram.count());
+        assertEquals(800_000, histogram.totalNanos());
+    }
+
+    @Test
+    void test07failsWithInvalidPercentile() {
+        assertThrowsLike(() -> histogram.valueAtPercentile(101), INVALID_PERCENTILE);
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 16, expected + " vs " + actual);
+    }
+}
@@ -0,0 +1,73 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.MerchantCredentials.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MerchantCredentialsTest {
+    private final CredentialHasher hasher = new CredentialHasher(1000);
+    private final MerchantCredentials credentials = new MerchantCredentials(Map.of(
+            MERCHANT_ID_1, new Merchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1),
+            MERCHANT_ID_2, new Merchant(MERCHANT_ID_2, hasher.hash(MERCHANT_CREDENTIAL_2).encoded())), hasher);
+
+    @Test
+    void test01verifiesPlainAndPreHashedCredentials() {
+        assertTrue(credentials.verify(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1));
+        assertTrue(credentials.verify(MERCHANT_ID_2, MERCHANT_CREDENTIAL_2));
+        assertFalse(credentials.verify(MERCHANT_ID_1, MERCHANT_CREDENTIAL_2));
+        assertFalse(credentials.verify("unknown", MERCHANT_CREDENTIAL_1));
+        assertFalse(credentials.verify(null, null));
+        assertTrue(credentials.contains(MERCHANT_ID_1));
+        assertFalse(credentials.contains(null));
+    }
+
+    @Test
+    void test02onlyTheFirstAcceptedCredentialIsHashed() {
+        credentials.verify(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1);
+        credentials.verify(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1);
+        credentials.verify(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1);
+        assertEquals(new Metrics(2, 1, 0), credentials.metrics());
+    }
+
+    @Test
+    void test03wrongCredentialsAreRejectedByTheCachedDigestWithoutHashing() {
+        credentials.verify(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1);
+        assertFalse(credentials.verify(MERCHANT_ID_1, "otra"));
+        assertFalse(credentials.verify(MERCHANT_ID_1, "otra"));
+        assertTrue(credentials.verify(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1));
+        assertEquals(new Metrics(1, 1, 2), credentials.metrics());
+    }
+
+    @Test
+    void test04guessesBeforeTheFirstAcceptanceAreThrottledPerMerchant() {
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        MerchantCredentials guarded = new MerchantCredentials(Map.of(
+                MERCHANT_ID_1, new Merchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1),
+                MERCHANT_ID_2, new Merchant(MERCHANT_ID_2, MERCHANT_CREDENTIAL_2)), hasher, clock);
+        for (int i = 0; i < HASH_BURST; i++) { assertFalse(guarded.verify(MERCHANT_ID_1, "otra" + i)); }
+        assertFalse(guarded.verify(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1));
+        assertTrue(guarded.verify(MERCHANT_ID_2, MERCHANT_CREDENTIAL_2));
+        assertEquals(new Metrics(0, HASH_BURST + 1, 1), guarded.metrics());
+
+        clock.plus(Duration.ofSeconds(1));
+        assertTrue(guarded.verify(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1));
+    }
+
+    @Test
+    void test05guessesFromOneSourceDoNotLockOutTheMerchantFromAnother() {
+        MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        MerchantCredentials guarded = new MerchantCredentials(Map.of(
+                MERCHANT_ID_1, new Merchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1)), hasher, clock);
+        for (int i = 0; i < 2 * HASH_BURST; i++) { assertFalse(guarded.verify(MERCHANT_ID_1, "otra" + i, "10.0.0.66")); }
+        assertFalse(guarded.verify(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, "10.0.0.66"));
+
+        assertTrue(guarded.verify(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, "10.0.0.7"));
+        assertEquals(new Metrics(0, HASH_BURST + 1, HASH_BURST + 1), guarded.metrics());
+        assertTrue(guarded.verify(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, "10.0.0.66"));
+    }
+}
@@ -0,0 +1,134 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.udesa.tpa.ChargeHistoryTest.NO_LISTENER;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.Reconciliation.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReconciliationTest {
+    private MyClock clock;
+    private ChargeColumns columns;
+    private Map<String, GiftCard> cards;
+    private Map<String, ChargeHistory> histories;
+
+    @BeforeEach
+    void createCards() {
+        clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        columns = new ChargeColumns();
+        cards = new HashMap<>();
+        histories = new ConcurrentHashMap<>();
+        addCard(CARD_NUMBER_1, 1000);
+        addCard(CARD_NUMBER_2, 500);
+        addCard(CARD_NUMBER_3, 100);
+    }
+
+    @Test
+    void test01balancedCardsWithAndWithoutChargesProduceACleanReport() {
+        charge(CARD_NUMBER_1, 300);
+        charge(CARD_NUMBER_1, 200);
+        charge(CARD_NUMBER_2, 50);
+
+        Report report = reconcile(10);
+        assertTrue(report.balanced());
+        assertEquals(new Report(3, 3, 550, 0, List.of()), report);
+    }
+
+    @Test
+    void test02aBalanceThatDoesNotMatchItsChargesIsReported() {
+        charge(CARD_NUMBER_1, 300);
+        cards.get(CARD_NUMBER_1).addBalance(40);
+        cards.get(CARD_NUMBER_3).charge(10, CHARGE_DESCRIPTION);
+
+        Report report = reconcile(10);
+        assertFalse(report.balanced());
+        assertEquals(List.of(new Mismatch(CARD_NUMBER_1, 700, 740), new Mismatch(CARD_NUMBER_3, 100, 90)), report.mismatches());
+    }
+
+    @Test
+    void test03theReportCountsEveryMismatchButKeepsOnlyTheLimit() {
+        cards.values().forEach(card -> card.charge(1, CHARGE_DESCRIPTION));
+
+        Report report = reconcile(2);
+        assertEquals(3, report.mismatchCount());
+        assertEquals(2, report.mismatches().size());
+        assertEquals(0, reconcile(0).mismatches().size());
+        assertThrowsLike(() -> reconcile(-1), INVALID_MISMATCH_LIMIT);
+    }
+
+    @Test
+    void test04chargesStillInThePipelineCountAsPending() {
+        GiftCard card = cards.get(CARD_NUMBER_1);
+        ChargeHistory history = histories.computeIfAbsent(CARD_NUMBER_1, number -> new ChargeHistory(number, columns));
+        Charge recorded = history.reserve(card, MERCHANT_ID_1, 300, CHARGE_DESCRIPTION, clock, charge -> true);
+        Charge refunded = history.reserve(card, MERCHANT_ID_1, 200, CHARGE_DESCRIPTION, clock, charge -> true);
+        assertNull(history.reserve(card, MERCHANT_ID_1, 100, CHARGE_DESCRIPTION, clock, charge -> false));
+        assertEquals(500, card.balance());
+        assertTrue(reconcile(10).balanced());
+
+        history.record(recorded);
+        history.refund(card, refunded.amount());
+        assertEquals(700, card.balance());
+        assertEquals(new Report(3, 1, 300, 0, List.of()), reconcile(10));
+    }
+
+    @Test
+    void test05partitionsManyCardsAcrossThePool() {
+        for (int i = 0; i < 5 * CARDS_PER_TASK; i++) {
+            addCard("9" + i, 10);
+            if (i % 7 == 0) { charge("9" + i, 3); }
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Report report = new Reconciliation(cards.values(), histories, 10).run(pool);
+            long charged = (5 * CARDS_PER_TASK + 6) / 7;
+            assertEquals(new Report(3 + 5 * CARDS_PER_TASK, charged, 3 * charged, 0, List.of()), report);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void test06reconcilingWhileChargingNeverSeesAChargeHalfDone() throws InterruptedException {
+        for (int i = 0; i < 200; i++) { addCard("9" + i, 1_000_000); }
+        AtomicBoolean charging = new AtomicBoolean(true);
+        AtomicLong mismatches = new AtomicLong();
+        Thread reconciler = new Thread(() -> {
+            while (charging.get()) { mismatches.addAndGet(reconcile(10).mismatchCount()); }
+        });
+        reconciler.start();
+        runConcurrently(4, 2000, () -> charge("9" + (int) (Math.random() * 200), 7));
+        charging.set(false);
+        reconciler.join();
+        assertEquals(0, mismatches.get());
+
+        Report report = reconcile(10);
+        assertTrue(report.balanced());
+        assertEquals(8000, report.charges());
+        assertEquals(56_000, report.amount());
+    }
+
+    private Report reconcile(int maxMismatches) {
+        return new Reconciliation(cards.values(), histories, maxMismatches).run(ForkJoinPool.commonPool());
+    }
+
+    private void addCard(String cardNumber, int balance) {
+        cards.put(cardNumber, new GiftCard(USER_1, cardNumber, balance));
+    }
+
+    private void charge(String cardNumber, int amount) {
+        histories.computeIfAbsent(cardNumber, number -> new ChargeHistory(number, columns))
+                .charge(cards.get(cardNumber), MERCHANT_ID_1, amount, CHARGE_DESCRIPTION, clock, NO_LISTENER);
+    }
+}
@@ -0,0 +1,64 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.udesa.tpa.FacadeTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RingBufferTest {
+
+    @Test
+    void test01drainsInTheOrderItemsWereOffered() {
+        RingBuffer<Integer> ring = new RingBuffer<>(8);
+        List<Integer> drained = new ArrayList<>();
+        for (int i = 0; i < 5; i++) { assertTrue(ring.offer(i)); }
+        assertEquals(3, ring.drainTo(drained, 3));
+        assertEquals(2, ring.drainTo(drained, 10));
+        assertEquals(0, ring.drainTo(drained, 10));
+        assertEquals(List.of(0, 1, 2, 3, 4), drained);
+    }
+
+    @Test
+    void test02refusesOffersWhenFullUntilTheConsumerDrains() {
+        RingBuffer<Integer> ring = new RingBuffer<>(2);
+        assertTrue(ring.offer(1));
+        assertTrue(ring.offer(2));
+        assertFalse(ring.offer(3));
+        ring.drainTo(new ArrayList<>(), 1);
+        assertTrue(ring.offer(3));
+    }
+
+    @Test
+    void test03wrapsAroundManyTimes() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        List<Integer> drained = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(ring.offer(i));
+            if (i % 3 == 2) { ring.drainTo(drained, 4); }
+        }
+        ring.drainTo(drained, 4);
+        assertEquals(100, drained.size());
+        for (int i = 0; i < 100; i++) { assertEquals(i, (int) drained.get(i)); }
+    }
+
+    @Test
+    void test04concurrentProducersNeverLoseOrDuplicateItems() throws InterruptedException {
+        RingBuffer<Integer> ring = new RingBuffer<>(1024);
+        AtomicInteger next = new AtomicInteger();
+        runConcurrently(4, 250, () -> assertTrue(ring.offer(next.getAndIncrement())));
+        List<Integer> drained = new ArrayList<>();
+        ring.drainTo(drained, 2000);
+        assertEquals(1000, drained.size());
+        assertEquals(1000, drained.stream().distinct().count());
+    }
+
+    @Test
+    void test05capacityMustBeAPowerOfTwo() {
+        assertThrowsLike(() -> new RingBuffer<>(3), RingBuffer.INVALID_CAPACITY);
+        assertThrowsLike(() -> new RingBuffer<>(0), RingBuffer.INVALID_CAPACITY);
+    }
+}
@@ -0,0 +1,55 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.SessionSigner.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionSignerTest {
+    private final MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+    private final SessionSigner signer = new SessionSigner(SIGNING_KEY.getBytes());
+
+    @Test
+    void test01verifiedTokenCarriesUserAndValidity() {
+        UserSession issued = signer.issue(USER_1, Duration.ofMinutes(5), clock);
+        UserSession verified = signer.verify(issued.token());
+        assertEquals(USER_1, verified.username());
+        assertEquals(clock.instant(), verified.issuedAt());
+        assertEquals(clock.instant().plus(Duration.ofMinutes(5)), verified.expiresAt());
+        assertEquals(issued.token(), verified.token());
+    }
+
+    @Test
+    void test02rejectsTamperedOrForeignTokens() {
+        String token = signer.issue(USER_1, Duration.ofMinutes(5), clock).token();
+        String[] parts = token.split("\\.");
+        String longer = parts[0] + "." + parts[1] + "." + (Long.parseLong(parts[2]) + 60_000) + "." + parts[3];
+        assertNull(signer.verify(longer));
+        assertNull(signer.verify(token.substring(0, token.length() - 2)));
+        assertNull(signer.verify(new SessionSigner("otra-clave-de-firma-de-32-bytes!!".getBytes()).issue(USER_1, Duration.ofMinutes(5), clock).token()));
+        assertNull(signer.verify("not-a-token"));
+        assertNull(signer.verify(null));
+    }
+
+    @Test
+    void test03expiryIsLeftToTheSession() {
+        UserSession session = signer.verify(signer.issue(USER_1, Duration.ofMinutes(5), clock).token());
+        clock.plus(Duration.ofMinutes(5).plusMillis(1));
+        assertEquals(SessionStatus.EXPIRED, session.status(clock));
+    }
+
+    @Test
+    void test04rejectsShortKeys() {
+        assertThrowsLike(() -> new SessionSigner("corta".getBytes()), INVALID_SIGNING_KEY);
+        assertThrowsLike(() -> new SessionSigner(null), INVALID_SIGNING_KEY);
+    }
+
+    @Test
+    void test05verifiesConcurrently() throws Exception {
+        String token = signer.issue(USER_1, Duration.ofMinutes(5), clock).token();
+        runConcurrently(8, 500, () -> assertEquals(USER_1, signer.verify(token).username()));
+    }
+}
@@ -0,0 +1,123 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.Facade.*;
+import static org.udesa.tpa.SessionStore.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionStoreTest {
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    private MyClock clock;
+    private SessionStore store;
+
+    @BeforeEach
+    void createStore() {
+        clock = new MyClock(Instant.parse("2025-09-15T20:00:00Z"));
+        store = new SessionStore(clock);
+    }
+
+    @Test
+    void test01addedSessionsCanBeLookedUpByToken() {
+        UserSession session = UserSession.issue(USER_1, TTL, clock);
+        store.add(session);
+        assertSame(session, store.get(session.token()));
+        assertEquals(new Metrics(1, 0, 0), store.metrics());
+    }
+
+    @Test
+    void test02sweepRemovesOnlyExpiredSessions() {
+        UserSession old = issueAndAdd();
+        clock.plus(Duration.ofMinutes(3));
+        UserSession young = issueAndAdd();
+        clock.plus(Duration.ofMinutes(3));
+
+        assertEquals(1, store.sweep());
+        assertNull(store.get(old.token()));
+        assertSame(young, store.get(young.token()));
+        assertEquals(new Metrics(1, 1, 0), store.metrics());
+    }
+
+    @Test
+    void test03sessionIsNotSweptOnTheExactDeadline() {
+        issueAndAdd();
+        clock.plus(TTL);
+        assertEquals(0, store.sweep());
+    }
+
+    @Test
+    void test04removalListenersAreNotifiedOnLogoutAndExpiry() {
+        List<UserSession> removed = new ArrayList<>();
+        store.onRemoval(removed::add);
+        UserSession loggedOut = issueAndAdd();
+        UserSession expired = issueAndAdd();
+
+        assertTrue(store.remove(loggedOut.token()));
+        clock.plus(Duration.ofMinutes(6));
+        store.sweep();
+        assertEquals(List.of(loggedOut, expired), removed);
+        assertFalse(store.remove(loggedOut.token()));
+    }
+
+    @Test
+    void test05fullStoreEvictsTheSessionClosestToExpiry() {
+        store = new SessionStore(clock, 2, EvictionPolicy.EVICT_OLDEST);
+        UserSession oldest = issueAndAdd();
+        clock.plus(Duration.ofMinutes(1));
+        issueAndAdd();
+        issueAndAdd();
+
+        assertNull(store.get(oldest.token()));
+        assertEquals(new Metrics(2, 0, 1), store.metrics());
+    }
+
+    @Test
+    void test06fullStoreRejectsNewSessionsWhenConfiguredTo() {
+        store = new SessionStore(clock, 1, EvictionPolicy.REJECT_NEW);
+        issueAndAdd();
+        assertThrowsLike(this::issueAndAdd, TOO_MANY_SESSIONS);
+    }
+
+    @Test
+    void test07fullStoreMakesRoomByExpiringBeforeEvicting() {
+        store = new SessionStore(clock, 1, EvictionPolicy.REJECT_NEW);
+        issueAndAdd();
+        clock.plus(Duration.ofMinutes(6));
+        issueAndAdd();
+        assertEquals(new Metrics(1, 1, 0), store.metrics());
+    }
+
+    @Test
+    void test08failsToBuildTheStoreWithInvalidValues() {
+        assertThrowsLike(() -> new SessionStore(clock, 0, EvictionPolicy.EVICT_OLDEST), INVALID_CAPACITY);
+        assertThrowsLike(() -> new SessionStore(null), NULL_OBJECT);
+        assertThrowsLike(() -> new SessionStore(clock, 1, null), NULL_OBJECT);
+    }
+
+    @Test
+    void test09backgroundSweeperExpiresSessions() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        issueAndAdd();
+        clock.plus(Duration.ofMinutes(6));
+        ScheduledFuture<?> sweeper = store.startSweeper(scheduler, Duration.ofMillis(5));
+        for (int i = 0; i < 200 && store.metrics().live() > 0; i++) { Thread.sleep(5); }
+        sweeper.cancel(false);
+        scheduler.shutdown();
+        assertEquals(new Metrics(0, 1, 0), store.metrics());
+    }
+
+    private UserSession issueAndAdd() {
+        UserSession session = UserSession.issue(USER_1, TTL, clock);
+        store.add(session);
+        return session;
+    }
+}
@@ -0,0 +1,73 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionTableTest {
+    private final MyClock clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+
+    @Test
+    void test01findsSessionsByTheirEncodedToken() {
+        SessionTable table = new SessionTable();
+        UserSession session = issue();
+        table.put(session);
+        assertSame(session, table.get(session.token()));
+        assertNull(table.get(issue().token()));
+        assertNull(table.get("not-a-token"));
+        assertNull(table.get(null));
+    }
+
+    @Test
+    void test02removesOnlyTheSameSession() {
+        SessionTable table = new SessionTable();
+        UserSession session = issue();
+        table.put(session);
+        assertFalse(table.remove(issue()));
+        assertTrue(table.remove(session));
+        assertFalse(table.remove(session));
+        assertNull(table.get(session.token()));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void test03keepsEverySessionReachableAcrossGrowthAndRemovals() {
+        SessionTable table = new SessionTable();
+        List<UserSession> live = new ArrayList<>();
+        List<UserSession> removed = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            UserSession session = issue();
+            table.put(session);
+            live.add(session);
+            if (i % 3 == 0) {
+                UserSession oldest = live.remove(0);
+                assertTrue(table.remove(oldest));
+                removed.add(oldest);
+            }
+        }
+        live.forEach(session -> assertSame(session, table.get(session.token())));
+        removed.forEach(session -> assertNull(table.get(session.token())));
+        assertEquals(live.size(), table.size());
+    }
+
+    @Test
+    void test04readersSeeSessionsWhileTheTableGrows() throws Exception {
+        SessionTable table = new SessionTable();
+        UserSession first = issue();
+        table.put(first);
+        Thread writer = new Thread(() -> { for (int i = 0; i < 20_000; i++) { table.put(issue()); } });
+        writer.start();
+        while (writer.isAlive()) { assertSame(first, table.get(first.token())); }
+        writer.join();
+        assertEquals(20_001, table.size());
+    }
+
+    private UserSession issue() {
+        return UserSession.issue(USER_1, Duration.ofMinutes(5), clock);
+    }
+}
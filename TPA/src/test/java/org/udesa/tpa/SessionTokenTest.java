@@ -0,0 +1,53 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.Facade.*;
+import static org.udesa.tpa.SessionToken.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionTokenTest {
+    @Test
+    void test01encodesAsUnpaddedBase64UrlOfTheSixteenBytes() {
+        SessionToken token = new SessionToken(0x0123456789ABCDEFL, 0xFEDCBA9876543210L);
+        byte[] bytes = ByteBuffer.allocate(16).putLong(token.hi()).putLong(token.lo()).array();
+        assertEquals(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes), token.encode());
+    }
+
+    @Test
+    void test02parsingTheEncodingGivesBackTheSameToken() {
+        TokenGenerator generator = new TokenGenerator(1);
+        for (int i = 0; i < 1000; i++) {
+            SessionToken token = generator.next();
+            assertEquals(token, SessionToken.parse(token.encode()));
+        }
+        assertEquals(new SessionToken(-1, -1), SessionToken.parse(new SessionToken(-1, -1).encode()));
+        assertEquals(new SessionToken(0, 0), SessionToken.parse("AAAAAAAAAAAAAAAAAAAAAA"));
+    }
+
+    @Test
+    void test03rejectsTextsThatAreNotATokenEncoding() {
+        assertThrowsLike(() -> SessionToken.parse(" "), NULL_OR_EMPTY_VALUE);
+        assertThrowsLike(() -> SessionToken.parse("abc"), INVALID_TOKEN);
+        assertThrowsLike(() -> SessionToken.parse("AAAAAAAAAAAAAAAAAAAA+A"), INVALID_TOKEN);
+        assertThrowsLike(() -> SessionToken.parse("AAAAAAAAAAAAAAAAAAAAAB"), INVALID_TOKEN);
+        assertThrowsLike(() -> SessionToken.parse("123e4567-e89b-12d3-a456-426614174000"), INVALID_TOKEN);
+    }
+
+    @Test
+    void test04generatorNeverRepeatsTokensAcrossThreads() throws Exception {
+        TokenGenerator generator = new TokenGenerator(4);
+        Set<SessionToken> tokens = ConcurrentHashMap.newKeySet();
+        runConcurrently(8, 1000, () -> tokens.add(generator.next()));
+        assertEquals(8000, tokens.size());
+        Set<String> encoded = new HashSet<>();
+        tokens.forEach(token -> encoded.add(token.encode()));
+        assertEquals(8000, encoded.size());
+    }
+}
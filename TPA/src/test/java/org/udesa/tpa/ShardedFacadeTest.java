@@ -0,0 +1,174 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.Facade.*;
+import static org.udesa.tpa.ShardedFacade.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedFacadeTest {
+    private MyClock clock;
+    private ShardedFacade facade;
+
+    @BeforeEach
+    void createFacade() {
+        clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        facade = new ShardedFacade(clock, Duration.ofMinutes(5), 4,
+                Map.of(USER_1, PASSWORD_1, USER_2, PASSWORD_2),
+                Map.of(CARD_NUMBER_1, new GiftCard(USER_1, CARD_NUMBER_1, 1000),
+                        CARD_NUMBER_2, new GiftCard(USER_1, CARD_NUMBER_2, 500),
+                        CARD_NUMBER_3, new GiftCard(USER_2, CARD_NUMBER_3, 100)),
+                Map.of(MERCHANT_ID_1, new Merchant(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1)));
+    }
+
+    @AfterEach
+    void closeFacade() {
+        facade.close();
+    }
+
+    @Test
+    void test01chargesClaimedCardsOnTheirOwnShards() {
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.claim(token, CARD_NUMBER_2);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_2, 100, CHARGE_DESCRIPTION);
+
+        assertEquals(700, facade.balanceOf(token, CARD_NUMBER_1));
+        assertEquals(400, facade.balanceOf(token, CARD_NUMBER_2));
+        assertEquals(List.of(300), facade.chargesOf(token, CARD_NUMBER_1).stream().map(Charge::amount).toList());
+        assertEquals(2, facade.myCards(token).size());
+    }
+
+    @Test
+    void test02onlyTheOwnerCanClaimACardAndOnlyOncePerSession() {
+        String token = facade.login(USER_1, PASSWORD_1);
+        String other = facade.login(USER_2, PASSWORD_2);
+        assertThrowsLike(() -> facade.claim(other, CARD_NUMBER_1), GIFT_CARD_DOES_NOT_BELONG_TO_USER);
+        assertThrowsLike(() -> facade.claim(token, "999"), UNKNOWN_CARD);
+        facade.claim(token, CARD_NUMBER_1);
+        assertThrowsLike(() -> facade.claim(token, CARD_NUMBER_1), CLAIMED_CARD);
+        assertTrue(facade.myCards(other).isEmpty());
+    }
+
+    @Test
+    void test03unclaimedCardsCanNotBeChargedNorRead() {
+        String token = facade.login(USER_1, PASSWORD_1);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION), UNCLAIMED_CARD);
+        assertThrowsLike(() -> facade.balanceOf(token, CARD_NUMBER_1), UNCLAIMED_CARD);
+        assertThrowsLike(() -> facade.balanceOf(token, "999"), UNKNOWN_CARD);
+    }
+
+    @Test
+    void test04logoutReleasesTheClaimsOnTheCardShards() {
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.logout(token);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION), UNCLAIMED_CARD);
+        assertThrowsLike(() -> facade.myCards(token), NULL_OBJECT);
+    }
+
+    @Test
+    void test05claimsEndWhenTheirSessionExpires() {
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        clock.plus(Duration.ofMinutes(6));
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION), UNCLAIMED_CARD);
+        assertThrowsLike(() -> facade.balanceOf(token, CARD_NUMBER_1), UserSession.EXPIRED_TOKEN);
+
+        String later = facade.login(USER_1, PASSWORD_1);
+        facade.claim(later, CARD_NUMBER_1);
+        facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION);
+        assertEquals(900, facade.balanceOf(later, CARD_NUMBER_1));
+    }
+
+    @Test
+    void test06rejectsBadCredentialsAndTokens() {
+        assertThrowsLike(() -> facade.login(USER_1, PASSWORD_2), WRONG_PASSWORD);
+        assertThrowsLike(() -> facade.login("nadie", PASSWORD_1), UNKNOWN_USER);
+        assertThrowsLike(() -> facade.myCards("9.abc"), NULL_OBJECT);
+        assertThrowsLike(() -> facade.myCards("sin-shard"), NULL_OBJECT);
+        assertThrowsLike(() -> facade.myCards(null), NULL_OR_EMPTY_VALUE);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_2, MERCHANT_CREDENTIAL_2, CARD_NUMBER_1, 100, CHARGE_DESCRIPTION), UNKNOWN_MERCHANT);
+    }
+
+    @Test
+    void test07concurrentChargesOnOneShardNeverOverdraw() throws InterruptedException {
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        runConcurrently(8, 50, () -> {
+            try {
+                facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 3, CHARGE_DESCRIPTION);
+            } catch (IllegalArgumentException ignored) {
+            }
+        });
+        assertEquals(1, facade.balanceOf(token, CARD_NUMBER_1));
+        assertEquals(333, facade.chargesOf(token, CARD_NUMBER_1).size());
+    }
+
+    @Test
+    void test08failsWithoutShards() {
+        assertThrowsLike(() -> new ShardedFacade(clock, Duration.ofMinutes(5), 0, Map.of(), Map.of(), Map.of()), INVALID_SHARD_COUNT);
+    }
+
+    @Test
+    void test09sweepingExpiredSessionsReleasesTheirClaimsOnEveryShard() {
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        facade.claim(token, CARD_NUMBER_2);
+        facade.login(USER_2, PASSWORD_2);
+        assertEquals(2, facade.liveSessions());
+        assertEquals(2, facade.claimedCards());
+
+        clock.plus(Duration.ofMinutes(6));
+        assertEquals(2, facade.sweep());
+        assertEquals(0, facade.liveSessions());
+        assertEquals(0, facade.claimedCards());
+        assertThrowsLike(() -> facade.myCards(token), NULL_OBJECT);
+    }
+
+    @Test
+    void test10invalidChargesNeverTouchTheBalance() {
+        String token = facade.login(USER_1, PASSWORD_1);
+        facade.claim(token, CARD_NUMBER_1);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 0, CHARGE_DESCRIPTION), Charge.INVALID_AMOUNT);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 100, " "), NULL_OR_EMPTY_VALUE);
+        assertThrowsLike(() -> facade.charge(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 2000, CHARGE_DESCRIPTION), GiftCard.INSUFFICIENT_FUNDS);
+        assertThrowsLike(() -> facade.claim(token, "no-es-un-numero"), UNKNOWN_CARD);
+        assertEquals(1000, facade.balanceOf(token, CARD_NUMBER_1));
+        assertTrue(facade.chargesOf(token, CARD_NUMBER_1).isEmpty());
+    }
+
+    @Test
+    void test11composesClaimAndChargeAsFuturesAcrossShards() {
+        String token = facade.loginAsync(USER_1, PASSWORD_1).join();
+        Charge charge = facade.claimAsync(token, CARD_NUMBER_1)
+                .thenCompose(claimed -> facade.chargeAsync(MERCHANT_ID_1, MERCHANT_CREDENTIAL_1, CARD_NUMBER_1, 300, CHARGE_DESCRIPTION))
+                .join();
+
+        assertEquals(300, charge.amount());
+        assertEquals(700, (int) facade.balanceOfAsync(token, CARD_NUMBER_1).join());
+        assertEquals(List.of(charge), facade.chargesOfAsync(token, CARD_NUMBER_1).join());
+    }
+
+    @Test
+    void test12failedStepsCompleteTheFutureExceptionally() {
+        String token = facade.login(USER_1, PASSWORD_1);
+        CompletableFuture<Integer> balance = facade.balanceOfAsync(token, CARD_NUMBER_1);
+        CompletionException failure = assertThrows(CompletionException.class, balance::join);
+        assertEquals(UNCLAIMED_CARD, failure.getCause().getMessage());
+
+        assertTrue(facade.claimAsync("99." + token, CARD_NUMBER_1).isCompletedExceptionally());
+        facade.logoutAsync(token).join();
+        assertThrowsLike(() -> facade.claim(token, CARD_NUMBER_1), NULL_OBJECT);
+    }
+}
\ No newline at end of file
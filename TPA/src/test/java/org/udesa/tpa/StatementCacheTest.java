@@ -0,0 +1,98 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.ChargeHistoryTest.*;
+import static org.udesa.tpa.StatementCache.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementCacheTest {
+    private MyClock clock;
+    private ChargeColumns columns;
+    private GiftCard card;
+    private ChargeHistory history;
+    private StatementCache cache;
+
+    @BeforeEach
+    void createCache() {
+        clock = new MyClock(Instant.parse("2025-09-18T12:00:00Z"));
+        columns = new ChargeColumns();
+        card = new GiftCard(USER_1, CARD_NUMBER_1, 1000);
+        history = new ChargeHistory(CARD_NUMBER_1, columns);
+        cache = new StatementCache(2, 3);
+    }
+
+    @Test
+    void test01secondReadOfTheSamePageIsAHit() {
+        chargeAmounts(history, card, 100, 200);
+        StatementPage first = cache.latest(CARD_NUMBER_1, history, 3);
+        StatementPage second = cache.latest(CARD_NUMBER_1, history, 3);
+        assertEquals(first, second);
+        assertSame(first.charges(), second.charges());
+        assertEquals(List.of(200, 100), amounts(second));
+        assertEquals(new Metrics(1, 1, 0, 1), cache.metrics());
+    }
+
+    @Test
+    void test02aNewChargeIsNeverHiddenByTheCache() {
+        chargeAmounts(history, card, 100);
+        cache.latest(CARD_NUMBER_1, history, 3);
+        chargeAmounts(history, card, 200);
+        assertEquals(List.of(200, 100), amounts(cache.latest(CARD_NUMBER_1, history, 3)));
+        assertEquals(new Metrics(0, 2, 0, 1), cache.metrics());
+    }
+
+    @Test
+    void test03smallerPagesAreServedFromTheCachedOne() {
+        chargeAmounts(history, card, 100, 200, 300, 400);
+        assertEquals(history.newestFirst(StatementQuery.latest(3)), cache.latest(CARD_NUMBER_1, history, 3));
+        StatementPage page = cache.latest(CARD_NUMBER_1, history, 2);
+        assertEquals(history.newestFirst(StatementQuery.latest(2)), page);
+        assertTrue(page.hasMore());
+        assertEquals(1, cache.metrics().hits());
+    }
+
+    @Test
+    void test04largerPagesBypassTheCache() {
+        chargeAmounts(history, card, 100, 200, 300, 400);
+        assertEquals(List.of(400, 300, 200, 100), amounts(cache.latest(CARD_NUMBER_1, history, 10)));
+        assertEquals(new Metrics(0, 0, 0, 0), cache.metrics());
+    }
+
+    @Test
+    void test05evictsTheFirstCardNotReadSinceItWasCached() {
+        ChargeHistory second = new ChargeHistory(CARD_NUMBER_2, columns);
+        ChargeHistory third = new ChargeHistory(CARD_NUMBER_3, columns);
+        cache.latest(CARD_NUMBER_1, history, 3);
+        cache.latest(CARD_NUMBER_2, second, 3);
+        cache.latest(CARD_NUMBER_1, history, 3);
+        cache.latest(CARD_NUMBER_3, third, 3);
+
+        assertEquals(new Metrics(1, 3, 1, 2), cache.metrics());
+        cache.latest(CARD_NUMBER_1, history, 3);
+        assertEquals(2, cache.metrics().hits());
+    }
+
+    @Test
+    void test06rejectsInvalidSizes() {
+        assertThrowsLike(() -> new StatementCache(0, 3), INVALID_CAPACITY);
+        assertThrowsLike(() -> new StatementCache(2, 0), StatementQuery.INVALID_PAGE_SIZE);
+        assertThrowsLike(() -> cache.latest(CARD_NUMBER_1, history, 0), StatementQuery.INVALID_PAGE_SIZE);
+    }
+
+    private void chargeAmounts(ChargeHistory history, GiftCard card, int... amounts) {
+        for (int amount : amounts) {
+            history.charge(card, MERCHANT_ID_1, amount, CHARGE_DESCRIPTION, clock, NO_LISTENER);
+            clock.plus(Duration.ofMinutes(1));
+        }
+    }
+
+    private static List<Integer> amounts(StatementPage page) {
+        return page.charges().stream().map(Charge::amount).toList();
+    }
+}
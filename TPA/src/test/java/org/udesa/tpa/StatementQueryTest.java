@@ -0,0 +1,44 @@
+package org.udesa.tpa;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import static org.udesa.tpa.FacadeTest.*;
+import static org.udesa.tpa.Facade.*;
+import static org.udesa.tpa.StatementQuery.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatementQueryTest {
+    private static final Instant START = Instant.parse("2025-09-18T12:00:00Z");
+    private static final Instant END = Instant.parse("2025-09-18T13:00:00Z");
+
+    @Test
+    void test01latestQueryCoversTheWholeHistory() {
+        StatementQuery query = StatementQuery.latest(20);
+        assertEquals(20, query.pageSize());
+        assertEquals(Integer.MAX_VALUE, query.before());
+        assertEquals(Instant.MIN, query.from());
+        assertEquals(Instant.MAX, query.to());
+    }
+
+    @Test
+    void test02cursorAndRangeCanBeNarrowed() {
+        StatementQuery query = StatementQuery.latest(20).before(7).between(START, END);
+        assertEquals(new StatementQuery(20, 7, START, END), query);
+    }
+
+    @Test
+    void test03failsToBuildInvalidQueries() {
+        assertThrowsLike(() -> StatementQuery.latest(0), INVALID_PAGE_SIZE);
+        assertThrowsLike(() -> StatementQuery.latest(10).before(-1), INVALID_CURSOR);
+        assertThrowsLike(() -> StatementQuery.latest(10).between(END, START), INVALID_RANGE);
+        assertThrowsLike(() -> StatementQuery.latest(10).between(null, END), NULL_OBJECT);
+    }
+
+    @Test
+    void test04onlyTheUnboundedQueryIsTheLatestPage() {
+        assertTrue(StatementQuery.latest(10).isLatest());
+        assertFalse(StatementQuery.latest(10).before(7).isLatest());
+        assertFalse(StatementQuery.latest(10).between(START, END).isLatest());
+    }
+}
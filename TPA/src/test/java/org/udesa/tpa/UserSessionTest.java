@@ -64,4 +64,20 @@ class  UserSessionTest {
         assertNotEquals(session1.token(), session2.token());
     }
 
+    @Test
+    void test06reportsItsStatusWithoutThrowing() {
+        UserSession session = UserSession.issue(USER_1, Duration.ofMinutes(5), clock);
+        assertEquals(SessionStatus.ACTIVE, session.status(clock));
+        clock.plus(Duration.ofMinutes(5));
+        assertEquals(SessionStatus.ACTIVE, session.status(clock));
+        clock.plus(Duration.ofMillis(1));
+        assertEquals(SessionStatus.EXPIRED, session.status(clock));
+    }
+
+    @Test
+    void test07tokenIsTheCompactEncodingOfItsKey() {
+        UserSession session = UserSession.issue(USER_1, Duration.ofMinutes(5), clock);
+        assertEquals(22, session.token().length());
+        assertEquals(session.key(), SessionToken.parse(session.token()));
+    }
 }